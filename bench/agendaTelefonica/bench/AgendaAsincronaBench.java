@@ -0,0 +1,177 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.AgendaAsincrona;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rendimiento de {@link AgendaAsincrona} frente a la API síncrona de {@link Agenda}
+ * protegida por un cerrojo (lo que haría falta para compartirla entre hilos).
+ *
+ * Cada hilo repite un 90 % de búsquedas por teléfono y un 10 % de cambios de teléfono
+ * sobre una agenda precargada. Con {@code --calientes=P}, el P % de las búsquedas va a
+ * 16 teléfonos muy consultados, que es donde la fachada asíncrona combina búsquedas
+ * iguales. En la asíncrona cada hilo lanza {@code --ventana} operaciones y espera a
+ * todas antes de lanzar las siguientes; las modificaciones rechazadas por la cola llena
+ * se cuentan aparte. La puntuación es ns por operación del conjunto de hilos.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.AgendaAsincronaBench
+ *        [--tamano=100000] [--hilos=1,4] [--ventana=64] [--calientes=0,50]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=1000] [--salida=out/bench/asincrona.json]
+ */
+public class AgendaAsincronaBench {
+
+    private static final int CALIENTES = 16;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "100000"));
+        String[] hilos = opciones.getOrDefault("hilos", "1,4").split(",");
+        int ventana = Integer.parseInt(opciones.getOrDefault("ventana", "64"));
+        String[] calientes = opciones.getOrDefault("calientes", "0,50").split(",");
+
+        PrintStream consola = System.out;
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "asincrona.json", consola);
+        int calentamiento = m.calentamiento(), iteraciones = m.iteraciones();
+        long ms = m.msPorIteracion();
+        Datos datos = Datos.crear("acentos", n);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String c : calientes) {
+            int porcentaje = Integer.parseInt(c.trim());
+            for (String api : new String[]{"sincrona", "asincrona"}) {
+                Agenda agenda = new Agenda(n);
+                List<Contacto> contactos = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+                agenda.anadirEnBloque(contactos);
+                AgendaAsincrona asincrona = new AgendaAsincrona(agenda, ejecutor, AgendaAsincrona.MAX_PENDIENTES_POR_DEFECTO);
+                for (String h : hilos) {
+                    int cantidad = Integer.parseInt(h.trim());
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("tamano", String.valueOf(n));
+                    params.put("calientes", String.valueOf(porcentaje));
+                    params.put("hilos", String.valueOf(cantidad));
+                    if ("asincrona".equals(api)) params.put("ventana", String.valueOf(ventana));
+                    AtomicLong rechazadas = new AtomicLong();
+                    for (int i = 0; i < calentamiento; i++) {
+                        ejecutar(api, agenda, asincrona, datos, cantidad, ventana, porcentaje, ms, rechazadas);
+                    }
+                    long combinadasAntes = asincrona.busquedasCombinadas();
+                    rechazadas.set(0);
+                    double[] puntuaciones = new double[iteraciones];
+                    for (int i = 0; i < iteraciones; i++) {
+                        puntuaciones[i] = ejecutar(api, agenda, asincrona, datos, cantidad, ventana, porcentaje, ms, rechazadas);
+                    }
+                    double media = m.registrar("asincrona." + api, params, cantidad, puntuaciones).media();
+                    tabla.add(new String[]{String.valueOf(porcentaje), api, h.trim(),
+                            String.format(Locale.ROOT, "%.0f", 1e9 / media),
+                            String.valueOf(asincrona.busquedasCombinadas() - combinadasAntes),
+                            String.valueOf(rechazadas.get())});
+                }
+                agenda.close();
+            }
+        }
+        ejecutor.shutdown();
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-10s %-10s %6s %14s %12s %11s%n",
+                "calientes", "api", "hilos", "ops/s", "combinadas", "rechazadas");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-10s %-10s %6s %14s %12s %11s%n", (Object[]) fila);
+        consola.println("Procesadores disponibles: " + Runtime.getRuntime().availableProcessors());
+
+        m.guardar();
+    }
+
+    /**
+     * Lanza los hilos a la vez durante {@code ms} milisegundos y devuelve los ns por
+     * operación del conjunto.
+     */
+    private static double ejecutar(String api, Agenda agenda, AgendaAsincrona asincrona, Datos datos, int hilos,
+                                   int ventana, int calientes, long ms, AtomicLong rechazadas) throws Exception {
+        long[] operaciones = new long[hilos];
+        long[] tiempos = new long[2];
+        CyclicBarrier barrera = new CyclicBarrier(hilos, () -> tiempos[tiempos[0] == 0 ? 0 : 1] = System.nanoTime());
+        Thread[] trabajadores = new Thread[hilos];
+        boolean sincrona = "sincrona".equals(api);
+        for (int t = 0; t < hilos; t++) {
+            int id = t;
+            trabajadores[t] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                int n = datos.tamano();
+                int lote = sincrona ? 64 : ventana;
+                List<CompletableFuture<?>> futuros = new ArrayList<>(lote);
+                long ops = 0;
+                try {
+                    barrera.await();
+                    long fin = System.nanoTime() + ms * 1_000_000L;
+                    while (System.nanoTime() < fin) {
+                        for (int i = 0; i < lote; i++) {
+                            int k = r.nextInt(n);
+                            if (r.nextInt(10) == 0) {
+                                // Cada hilo sólo cambia los contactos de su residuo
+                                k -= k % hilos - id;
+                                if (k >= n) k -= hilos;
+                                if (k < 0) continue;
+                                String telefono = r.nextBoolean() ? datos.telefonos[k] : datos.telefonoAlternativo(k);
+                                if (sincrona) {
+                                    synchronized (agenda) {
+                                        agenda.modificarTelefono(datos.nombres[k], datos.apellidos[k], telefono);
+                                    }
+                                } else {
+                                    futuros.add(asincrona.modificarTelefonoAsync(datos.nombres[k], datos.apellidos[k], telefono));
+                                }
+                            } else {
+                                if (r.nextInt(100) < calientes) k = k % CALIENTES;
+                                if (sincrona) {
+                                    synchronized (agenda) {
+                                        Medidor.sumidero += agenda.buscarContacto("telefono", datos.telefonos[k]).size();
+                                    }
+                                } else {
+                                    futuros.add(asincrona.buscarAsync("telefono", datos.telefonos[k]));
+                                }
+                            }
+                        }
+                        for (CompletableFuture<?> f : futuros) {
+                            try {
+                                f.join();
+                            } catch (CompletionException e) {
+                                if (!(e.getCause() instanceof RejectedExecutionException)) throw e;
+                                rechazadas.incrementAndGet();
+                            }
+                        }
+                        futuros.clear();
+                        ops += lote;
+                    }
+                    operaciones[id] = ops;
+                    barrera.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "bench-" + t);
+            trabajadores[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < hilos; t++) {
+            trabajadores[t].join();
+            total += operaciones[t];
+        }
+        return (double) (tiempos[1] - tiempos[0]) / total;
+    }
+}
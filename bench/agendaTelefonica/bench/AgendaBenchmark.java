@@ -0,0 +1,282 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.importacion.ImportadorContactos;
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.persistencia.ArchivoAgenda;
+import agendaTelefonica.persistencia.DiarioAgenda;
+import agendaTelefonica.servicio.Agenda;
+
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks de las operaciones de {@link Agenda} a distintos tamaños y con datos
+ * ASCII o acentuados. Genera un JSON compatible con JMH para comparar versiones.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   java -cp out agendaTelefonica.bench.AgendaBenchmark
+ *        [--tamanos=1000,100000,1000000] [--datos=ascii,acentos] [--almacen=objetos,compacta,fueraDelHeap]
+ *        [--calentamiento=3] [--iteraciones=5] [--ms=1000]
+ *        [--filtro=buscar] [--salida=out/bench/resultados.json]
+ */
+public class AgendaBenchmark {
+
+    /** Cantidad de índices aleatorios precalculados para las búsquedas */
+    private static final int INDICES = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = leerOpciones(args);
+        String[] tamanos = opciones.getOrDefault("tamanos", "1000,100000,1000000").split(",");
+        String[] tiposDatos = opciones.getOrDefault("datos", "ascii,acentos").split(",");
+        String[] almacenes = opciones.getOrDefault("almacen", "objetos").split(",");
+        String filtro = opciones.getOrDefault("filtro", "");
+
+        PrintStream consola = System.out;
+
+        Medidor medidor = Medidor.desdeOpciones(opciones, 3, 1000, "resultados.json", consola);
+
+        for (String tipo : tiposDatos) {
+            for (String t : tamanos) {
+                int n = Integer.parseInt(t.trim());
+                Datos datos = Datos.crear(tipo.trim(), n);
+                for (String almacen : almacenes) {
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("tamano", String.valueOf(n));
+                    params.put("datos", datos.nombre);
+                    params.put("almacen", almacen.trim());
+                    ejecutar(medidor, filtro, datos, params);
+                }
+            }
+        }
+
+        medidor.guardar();
+    }
+
+    private static void ejecutar(Medidor m, String filtro, Datos datos, Map<String, String> params) throws Exception {
+        int n = datos.tamano();
+        String almacen = params.get("almacen");
+        Contacto[] contactos = new Contacto[n];
+        for (int i = 0; i < n; i++) contactos[i] = datos.contacto(i);
+
+        int[] indices = new int[INDICES];
+        Random r = new Random(42);
+        for (int i = 0; i < INDICES; i++) indices[i] = r.nextInt(n);
+
+        if (incluir(filtro, "normalizarTexto")) {
+            int[] k = {0};
+            m.medir("normalizarTexto", params, () -> {
+                int i = indices[k[0]++ & (INDICES - 1)];
+                Medidor.sumidero += Contacto.normalizarTexto(datos.nombres[i]).length()
+                        + Contacto.normalizarTexto(datos.apellidos[i]).length();
+                return 2;
+            });
+        }
+
+        if (incluir(filtro, "anadirContacto")) {
+            // Cada llamada carga los N contactos en una agenda vacía: se reporta por alta
+            m.medir("anadirContacto", params, () -> {
+                try (Agenda a = nuevaAgenda(almacen, n)) {
+                    for (Contacto c : contactos) a.anadirContacto(c);
+                    Medidor.sumidero += a.espaciosLibres();
+                }
+                return n;
+            });
+        }
+
+        if (incluir(filtro, "importar")) {
+            // Importación completa desde texto en memoria a una agenda vacía: se reporta por fila
+            StringBuilder csv = new StringBuilder("nombre,apellido,telefono\n");
+            StringBuilder vcard = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                csv.append(datos.nombres[i]).append(',').append(datos.apellidos[i]).append(',')
+                        .append(datos.telefonos[i]).append('\n');
+                vcard.append("BEGIN:VCARD\r\nVERSION:3.0\r\nN:").append(datos.apellidos[i]).append(';')
+                        .append(datos.nombres[i]).append(";;;\r\nTEL;TYPE=CELL:").append(datos.telefonos[i])
+                        .append("\r\nEND:VCARD\r\n");
+            }
+            String textoCsv = csv.toString();
+            String textoVCard = vcard.toString();
+            csv = vcard = null;
+            m.medir("importar.csv", params, () -> {
+                try (Agenda a = nuevaAgenda(almacen, n)) {
+                    Medidor.sumidero += new ImportadorContactos(a).importarCsv(new StringReader(textoCsv)).getImportadas();
+                }
+                return n;
+            });
+            m.medir("importar.vcard", params, () -> {
+                try (Agenda a = nuevaAgenda(almacen, n)) {
+                    Medidor.sumidero += new ImportadorContactos(a).importarVCard(new StringReader(textoVCard)).getImportadas();
+                }
+                return n;
+            });
+        }
+
+        Agenda agenda = nuevaAgenda(almacen, n);
+        for (Contacto c : contactos) agenda.anadirContacto(c);
+
+        if (incluir(filtro, "archivo")) {
+            // Guardado y carga completos del archivo binario, reportados por contacto
+            Path archivo = Files.createTempFile("agenda-bench", ".dat");
+            try {
+                m.medir("archivo.guardar", params, () -> {
+                    ArchivoAgenda.guardar(agenda, archivo);
+                    return n;
+                });
+                m.medir("archivo.cargar", params, () -> {
+                    Medidor.sumidero += ArchivoAgenda.cargar(archivo).cantidadContactos();
+                    return n;
+                });
+            } finally {
+                Files.deleteIfExists(archivo);
+            }
+        }
+
+        if (incluir(filtro, "diario")) {
+            // Cambios de teléfono registrados en el diario; el coste de cada registro no
+            // depende del tamaño de la agenda. Las instantáneas se hacen en segundo plano.
+            Path directorio = Files.createTempDirectory("agenda-bench-diario");
+            DiarioAgenda diario = DiarioAgenda.abrir(directorio, agenda);
+            try {
+                boolean[] alternado = new boolean[n];
+                int[] k = {0};
+                m.medir("diario.modificarTelefono", params, () -> {
+                    int i = indices[k[0]++ & (INDICES - 1)];
+                    String tel = alternado[i] ? datos.telefonos[i] : datos.telefonoAlternativo(i);
+                    agenda.modificarTelefono(datos.nombres[i], datos.apellidos[i], tel);
+                    alternado[i] = !alternado[i];
+                    return 1;
+                });
+                // Se deja cada contacto con su teléfono original para los benchmarks siguientes
+                for (int i = 0; i < n; i++) {
+                    if (alternado[i]) agenda.modificarTelefono(datos.nombres[i], datos.apellidos[i], datos.telefonos[i]);
+                }
+            } finally {
+                diario.close();
+                try (Stream<Path> archivos = Files.list(directorio)) {
+                    for (Path p : (Iterable<Path>) archivos::iterator) Files.deleteIfExists(p);
+                }
+                Files.deleteIfExists(directorio);
+            }
+        }
+
+        if (incluir(filtro, "existeContacto")) {
+            int[] k = {0};
+            m.medir("existeContacto", params, () -> {
+                int i = indices[k[0]++ & (INDICES - 1)];
+                if (agenda.existeContacto(datos.nombres[i], datos.apellidos[i], datos.telefonos[i])) Medidor.sumidero++;
+                return 1;
+            });
+        }
+
+        for (String campo : new String[]{"nombre", "apellido", "telefono"}) {
+            String[] valores = campo.equals("nombre") ? datos.nombres
+                    : campo.equals("apellido") ? datos.apellidos : datos.telefonos;
+            if (incluir(filtro, "buscarContacto." + campo)) {
+                int[] k = {0};
+                m.medir("buscarContacto." + campo, params, () -> {
+                    Medidor.sumidero += agenda.buscarContacto(campo, valores[indices[k[0]++ & (INDICES - 1)]]).size();
+                    return 1;
+                });
+            }
+        }
+
+        for (String campo : new String[]{"nombre", "apellido", "telefono"}) {
+            if (incluir(filtro, "buscarPorPrefijo." + campo)) {
+                // Prefijos de 3 caracteres (fragmentos de 4 dígitos del final del teléfono)
+                String[] prefijos = new String[INDICES];
+                for (int i = 0; i < INDICES; i++) {
+                    int j = indices[i];
+                    prefijos[i] = campo.equals("nombre") ? datos.nombres[j].substring(0, 3)
+                            : campo.equals("apellido") ? datos.apellidos[j].substring(0, 3)
+                            : datos.telefonos[j].substring(datos.telefonos[j].length() - 4);
+                }
+                int[] k = {0};
+                m.medir("buscarPorPrefijo." + campo, params, () -> {
+                    Medidor.sumidero += agenda.buscarPorPrefijo(campo, prefijos[k[0]++ & (INDICES - 1)], 20).size();
+                    return 1;
+                });
+            }
+        }
+
+        if (incluir(filtro, "modificarTelefono")) {
+            // Alterna cada contacto entre su teléfono original y uno alternativo libre
+            boolean[] alternado = new boolean[n];
+            int[] k = {0};
+            m.medir("modificarTelefono", params, () -> {
+                int i = indices[k[0]++ & (INDICES - 1)];
+                String tel = alternado[i] ? datos.telefonos[i] : datos.telefonoAlternativo(i);
+                agenda.modificarTelefono(datos.nombres[i], datos.apellidos[i], tel);
+                alternado[i] = !alternado[i];
+                return 1;
+            });
+        }
+
+        if (incluir(filtro, "eliminarContacto")) {
+            // Se vuelve a añadir el contacto eliminado para mantener constante el tamaño
+            int[] k = {0};
+            m.medir("eliminarContacto", params, () -> {
+                int i = indices[k[0]++ & (INDICES - 1)];
+                agenda.eliminarContacto(datos.nombres[i], datos.apellidos[i]);
+                agenda.anadirContacto(contactos[i]);
+                return 1;
+            });
+        }
+
+        if (incluir(filtro, "listarContactos")) {
+            // Recorre el listado completo leyendo cada contacto, sin escribir en consola
+            m.medir("listarContactos", params, () -> {
+                for (Iterator<Contacto> it = agenda.iteradorContactos(); it.hasNext(); ) {
+                    Medidor.sumidero += it.next().getTelefono().length();
+                }
+                return 1;
+            });
+        }
+
+        if (incluir(filtro, "listarContactos.pagina")) {
+            // Páginas de 50 contactos en posiciones aleatorias del listado ordenado
+            int[] k = {0};
+            m.medir("listarContactos.pagina", params, () -> {
+                Medidor.sumidero += agenda.listarContactos(indices[k[0]++ & (INDICES - 1)], 50).size();
+                return 1;
+            });
+        }
+        agenda.close();
+    }
+
+    /** Agenda vacía con el almacenamiento indicado: objetos, compacta o fueraDelHeap */
+    static Agenda nuevaAgenda(String almacen, int n) {
+        switch (almacen) {
+            case "objetos":
+                return new Agenda(n);
+            case "compacta":
+                return Agenda.compacta(n);
+            case "fueraDelHeap":
+                return Agenda.fueraDelHeap(n);
+            default:
+                throw new IllegalArgumentException("Almacén desconocido: " + almacen);
+        }
+    }
+
+    private static boolean incluir(String filtro, String benchmark) {
+        return filtro.isEmpty() || benchmark.contains(filtro);
+    }
+
+    static Map<String, String> leerOpciones(String[] args) {
+        Map<String, String> opciones = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Opción inválida: " + arg + " (use --clave=valor)");
+            }
+            int igual = arg.indexOf('=');
+            opciones.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+        return opciones;
+    }
+}
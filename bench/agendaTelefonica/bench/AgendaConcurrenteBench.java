@@ -0,0 +1,196 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.AgendaConcurrente;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rendimiento agregado de {@link AgendaConcurrente} con varios hilos, frente a una
+ * {@link Agenda} protegida por un único cerrojo (lo que haría falta para compartirla).
+ *
+ * Cada hilo repite operaciones al azar sobre una agenda precargada: lecturas
+ * (existeTelefono, existeNombreApellido, buscarPorPrefijo) y escrituras
+ * (modificarTelefono alternando entre dos números). La carga "lectura" tiene un 5 %
+ * de escrituras y la "mixta" un 50 %. La puntuación es ns por operación del conjunto
+ * de hilos (tiempo / operaciones totales), así que menos es mejor y con escalado ideal
+ * se divide por el número de hilos.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.AgendaConcurrenteBench
+ *        [--tamano=100000] [--hilos=1,2,4,8] [--cargas=lectura,mixta]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=1000] [--salida=out/bench/concurrencia.json]
+ */
+public class AgendaConcurrenteBench {
+
+    /** Vista común de las dos agendas para el bucle de los hilos */
+    private interface Destino {
+        boolean existeTelefono(String telefono);
+
+        boolean existeNombreApellido(String nombre, String apellido);
+
+        int buscarPorPrefijo(String campo, String texto, int limite);
+
+        void modificarTelefono(String nombre, String apellido, String telefono);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "100000"));
+        String[] hilos = opciones.getOrDefault("hilos", "1,2,4,8").split(",");
+        String[] cargas = opciones.getOrDefault("cargas", "lectura,mixta").split(",");
+
+        PrintStream consola = System.out;
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "concurrencia.json", consola);
+        int calentamiento = m.calentamiento(), iteraciones = m.iteraciones();
+        long ms = m.msPorIteracion();
+        Datos datos = Datos.crear("acentos", n);
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String carga : cargas) {
+            int escrituras = "mixta".equals(carga.trim()) ? 50 : 5;
+            for (String implementacion : new String[]{"sincronizada", "concurrente"}) {
+                Destino destino = crear(implementacion, datos);
+                for (String h : hilos) {
+                    int cantidad = Integer.parseInt(h.trim());
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("tamano", String.valueOf(n));
+                    params.put("carga", carga.trim());
+                    params.put("hilos", String.valueOf(cantidad));
+                    for (int i = 0; i < calentamiento; i++) ejecutar(destino, datos, cantidad, escrituras, ms);
+                    double[] puntuaciones = new double[iteraciones];
+                    for (int i = 0; i < iteraciones; i++) {
+                        puntuaciones[i] = ejecutar(destino, datos, cantidad, escrituras, ms);
+                    }
+                    double media = m.registrar("concurrencia." + implementacion, params, cantidad, puntuaciones).media();
+                    tabla.add(new String[]{carga.trim(), implementacion, h.trim(),
+                            String.format(Locale.ROOT, "%.0f", 1e9 / media)});
+                }
+            }
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-10s %-14s %6s %14s%n", "carga", "agenda", "hilos", "ops/s");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-10s %-14s %6s %14s%n", (Object[]) fila);
+        consola.println("Procesadores disponibles: " + Runtime.getRuntime().availableProcessors());
+
+        m.guardar();
+    }
+
+    /**
+     * Lanza los hilos a la vez durante {@code ms} milisegundos y devuelve los ns por
+     * operación del conjunto.
+     */
+    private static double ejecutar(Destino destino, Datos datos, int hilos, int escrituras, long ms)
+            throws Exception {
+        long[] operaciones = new long[hilos];
+        long[] tiempos = new long[2];
+        CyclicBarrier barrera = new CyclicBarrier(hilos, () -> tiempos[tiempos[0] == 0 ? 0 : 1] = System.nanoTime());
+        Thread[] trabajadores = new Thread[hilos];
+        for (int t = 0; t < hilos; t++) {
+            int id = t;
+            trabajadores[t] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                int n = datos.nombres.length;
+                long ops = 0;
+                try {
+                    barrera.await();
+                    long fin = System.nanoTime() + ms * 1_000_000L;
+                    while (System.nanoTime() < fin) {
+                        for (int i = 0; i < 64; i++) {
+                            int k = r.nextInt(n);
+                            int op = r.nextInt(100);
+                            if (op < escrituras) {
+                                // Cada hilo sólo cambia los contactos de su residuo, y siempre
+                                // a un número libre del rango alternativo o de vuelta al suyo
+                                k -= k % hilos - id;
+                                if (k >= n) k -= hilos;
+                                if (k < 0) continue;
+                                String telefono = r.nextBoolean() ? datos.telefonos[k]
+                                        : String.valueOf(Datos.TELEFONO_ALTERNATIVO + k);
+                                destino.modificarTelefono(datos.nombres[k], datos.apellidos[k], telefono);
+                            } else if (op < escrituras + (100 - escrituras) / 3) {
+                                if (destino.existeTelefono(datos.telefonos[k])) Medidor.sumidero++;
+                            } else if (op < escrituras + 2 * (100 - escrituras) / 3) {
+                                if (destino.existeNombreApellido(datos.nombres[k], datos.apellidos[k])) Medidor.sumidero++;
+                            } else {
+                                String apellido = datos.apellidos[k];
+                                Medidor.sumidero += destino.buscarPorPrefijo("apellido",
+                                        apellido.substring(0, Math.min(4, apellido.length())), 10);
+                            }
+                        }
+                        ops += 64;
+                    }
+                    operaciones[id] = ops;
+                    barrera.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "bench-" + t);
+            trabajadores[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < hilos; t++) {
+            trabajadores[t].join();
+            total += operaciones[t];
+        }
+        return (double) (tiempos[1] - tiempos[0]) / total;
+    }
+
+    private static Destino crear(String implementacion, Datos datos) {
+        int n = datos.nombres.length;
+        if ("concurrente".equals(implementacion)) {
+            AgendaConcurrente a = new AgendaConcurrente(n);
+            for (int i = 0; i < n; i++) {
+                a.anadirContacto(new Contacto(datos.nombres[i], datos.apellidos[i], datos.telefonos[i]));
+            }
+            return new Destino() {
+                public boolean existeTelefono(String telefono) {
+                    return a.existeTelefono(telefono);
+                }
+
+                public boolean existeNombreApellido(String nombre, String apellido) {
+                    return a.existeNombreApellido(nombre, apellido);
+                }
+
+                public int buscarPorPrefijo(String campo, String texto, int limite) {
+                    return a.buscarPorPrefijo(campo, texto, limite).size();
+                }
+
+                public void modificarTelefono(String nombre, String apellido, String telefono) {
+                    a.modificarTelefono(nombre, apellido, telefono);
+                }
+            };
+        }
+
+        Agenda a = new Agenda(n);
+        for (int i = 0; i < n; i++) {
+            a.anadirContacto(new Contacto(datos.nombres[i], datos.apellidos[i], datos.telefonos[i]));
+        }
+        return new Destino() {
+            public synchronized boolean existeTelefono(String telefono) {
+                return a.existeTelefono(telefono);
+            }
+
+            public synchronized boolean existeNombreApellido(String nombre, String apellido) {
+                return a.existeNombreApellido(nombre, apellido);
+            }
+
+            public synchronized int buscarPorPrefijo(String campo, String texto, int limite) {
+                return a.buscarPorPrefijo(campo, texto, limite).size();
+            }
+
+            public synchronized void modificarTelefono(String nombre, String apellido, String telefono) {
+                a.modificarTelefono(nombre, apellido, telefono);
+            }
+        };
+    }
+}
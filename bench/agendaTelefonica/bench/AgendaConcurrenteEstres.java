@@ -0,0 +1,146 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.AgendaConcurrente;
+import agendaTelefonica.servicio.ResultadoOperacion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prueba de estrés de {@link AgendaConcurrente}: varios hilos dan altas, bajas, cambios
+ * de teléfono y lecturas sobre un espacio de claves pequeño (muchas colisiones de
+ * nombre y de teléfono) con una capacidad menor que ese espacio. Al terminar comprueba
+ * que no hay nombres ni teléfonos repetidos, que no se superó la capacidad, que los
+ * índices coinciden entre sí y que altas - bajas == contactos. Sale con código 1 si
+ * alguna comprobación falla.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.AgendaConcurrenteEstres
+ *        [--hilos=8] [--ms=5000] [--claves=200] [--capacidad=100]
+ */
+public class AgendaConcurrenteEstres {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int hilos = Integer.parseInt(opciones.getOrDefault("hilos", "8"));
+        long ms = Long.parseLong(opciones.getOrDefault("ms", "5000"));
+        int claves = Integer.parseInt(opciones.getOrDefault("claves", "200"));
+        int capacidad = Integer.parseInt(opciones.getOrDefault("capacidad", "100"));
+
+        AgendaConcurrente agenda = new AgendaConcurrente(capacidad);
+        AtomicLong altas = new AtomicLong(), bajas = new AtomicLong(), cambios = new AtomicLong();
+        AtomicLong llenas = new AtomicLong(), lecturas = new AtomicLong();
+        List<String> errores = Collections.synchronizedList(new ArrayList<>());
+
+        CountDownLatch salida = new CountDownLatch(1);
+        long fin = System.nanoTime() + ms * 1_000_000L;
+        List<Thread> trabajadores = new ArrayList<>();
+        for (int t = 0; t < hilos; t++) {
+            Thread h = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                try {
+                    salida.await();
+                    while (System.nanoTime() < fin) {
+                        for (int i = 0; i < 256; i++) {
+                            int k = r.nextInt(claves);
+                            // Los teléfonos se eligen al azar del mismo espacio, así que
+                            // chocan también entre contactos distintos
+                            String telefono = telefono(r.nextInt(claves));
+                            int op = r.nextInt(10);
+                            if (op < 3) {
+                                ResultadoOperacion res = agenda.anadirContacto(
+                                        new Contacto(nombre(k), apellido(k), telefono));
+                                if (res == ResultadoOperacion.CORRECTO) altas.incrementAndGet();
+                                else if (res == ResultadoOperacion.AGENDA_LLENA) llenas.incrementAndGet();
+                            } else if (op < 5) {
+                                if (agenda.eliminarContacto(nombre(k), apellido(k)) == ResultadoOperacion.CORRECTO)
+                                    bajas.incrementAndGet();
+                            } else if (op < 7) {
+                                if (agenda.modificarTelefono(nombre(k), apellido(k), telefono) == ResultadoOperacion.CORRECTO)
+                                    cambios.incrementAndGet();
+                            } else if (op < 8) {
+                                int n = agenda.cantidadContactos();
+                                if (n < 0 || n > capacidad) errores.add("cantidad fuera de rango: " + n);
+                                lecturas.incrementAndGet();
+                            } else if (op < 9) {
+                                for (Contacto c : agenda.buscarPorPrefijo("nombre", "Nombre" + (k % 10), 20)) {
+                                    if (!c.getNombre().startsWith("Nombre" + (k % 10)))
+                                        errores.add("prefijo incorrecto: " + c);
+                                }
+                                lecturas.incrementAndGet();
+                            } else {
+                                Medidor.sumidero += agenda.listarContactos(0, 50).size();
+                                lecturas.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    errores.add(Thread.currentThread().getName() + ": " + e);
+                }
+            }, "estres-" + t);
+            trabajadores.add(h);
+            h.start();
+        }
+        salida.countDown();
+        for (Thread h : trabajadores) h.join();
+
+        comprobar(agenda, capacidad, altas.get() - bajas.get(), errores);
+
+        System.out.printf("hilos=%d ms=%d claves=%d capacidad=%d%n", hilos, ms, claves, capacidad);
+        System.out.printf("altas=%d bajas=%d cambios=%d llena=%d lecturas=%d contactos=%d%n",
+                altas.get(), bajas.get(), cambios.get(), llenas.get(), lecturas.get(), agenda.cantidadContactos());
+        if (!errores.isEmpty()) {
+            for (int i = 0; i < Math.min(errores.size(), 20); i++) System.out.println("ERROR " + errores.get(i));
+            System.out.println(errores.size() + " errores");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /** Invariantes del estado final, ya sin hilos escribiendo */
+    private static void comprobar(AgendaConcurrente agenda, int capacidad, long esperados, List<String> errores) {
+        List<Contacto> todos = agenda.obtenerContactos();
+        int n = agenda.cantidadContactos();
+        if (n > capacidad) errores.add("capacidad superada: " + n);
+        if (n != esperados) errores.add("altas - bajas = " + esperados + " pero hay " + n);
+        if (todos.size() != n) errores.add("listado con " + todos.size() + " contactos, contador " + n);
+        if (agenda.listarContactos(0, Integer.MAX_VALUE).size() != n) errores.add("listarContactos no cuadra");
+
+        Set<String> nombres = new HashSet<>(), telefonos = new HashSet<>();
+        Contacto anterior = null;
+        for (Contacto c : todos) {
+            if (!nombres.add(c.getNombreNormalizado() + '\0' + c.getApellidoNormalizado()))
+                errores.add("nombre repetido: " + c);
+            if (!telefonos.add(c.getTelefono())) errores.add("teléfono repetido: " + c);
+            if (!agenda.existeContacto(c.getNombre(), c.getApellido(), c.getTelefono()))
+                errores.add("listado pero no indexado por nombre: " + c);
+            if (!agenda.existeTelefono(c.getTelefono())) errores.add("listado pero no indexado por teléfono: " + c);
+            if (anterior != null && anterior.getClaveOrden().compareTo(c.getClaveOrden()) > 0)
+                errores.add("listado desordenado: " + anterior + " > " + c);
+            anterior = c;
+        }
+        if (agenda.buscarPorPrefijo("nombre", "", Integer.MAX_VALUE).size() != n) errores.add("índice de nombres no cuadra");
+        if (agenda.buscarPorPrefijo("apellido", "", Integer.MAX_VALUE).size() != n) errores.add("índice de apellidos no cuadra");
+        if (agenda.buscarPorPrefijo("telefono", "", Integer.MAX_VALUE).size() != n) errores.add("índice de teléfonos no cuadra");
+    }
+
+    private static String nombre(int k) {
+        return "Nombre" + (k % 10);
+    }
+
+    private static String apellido(int k) {
+        return "Apellido" + k;
+    }
+
+    private static String telefono(int k) {
+        return String.valueOf(Datos.TELEFONO_BASE + k);
+    }
+}
@@ -0,0 +1,165 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Comprobación aleatoria de que {@link Agenda#compacta} y {@link Agenda#fueraDelHeap}
+ * se comportan exactamente igual que una {@link Agenda} con el almacén por defecto: se
+ * aplica la misma secuencia de altas (sueltas y en bloque), bajas y cambios de teléfono
+ * a las tres y se comparan los listados, las búsquedas y las consultas de existencia.
+ *
+ * Los nombres mezclan acentos y mayúsculas (claves normalizadas repetidas) y los
+ * teléfonos tienen entre 7 y 15 dígitos con ceros a la izquierda. Una segunda fase
+ * da altas y bajas con textos siempre distintos para forzar la compactación de los
+ * textos; la agenda fuera del heap se redimensiona a ratos y al final se cierra.
+ * La compacta y la de fuera del heap tienen activada una caché de teléfonos pequeña,
+ * y en cada paso se buscan por teléfono los últimos números usados, para comprobar
+ * que las bajas y los cambios la invalidan.
+ * Termina con código 1 ante la primera discrepancia.
+ *
+ * Uso: bench/ejecutar.sh agendaTelefonica.bench.AlmacenEquivalencia
+ */
+public class AlmacenEquivalencia {
+
+    private static final String[] NOMBRES = {"Ana", "ana", "Ána", "José", "JOSE", "Iñigo", "Zoë", "Émile", "Ñandú", "Li"};
+    private static final String[] APELLIDOS = {"Pérez", "perez", "Gómez", "Núñez", "NUNEZ", "Ölz", "Díaz", "Ruiz"};
+    private static final String[] ALMACENES = {"objetos", "compacta", "fueraDelHeap"};
+
+    public static void main(String[] args) {
+        PrintStream consola = System.out;
+        Random r = new Random(12);
+        long operaciones = 0;
+
+        for (int ronda = 0; ronda < 200; ronda++) {
+            int capacidad = 20 + r.nextInt(400);
+            Agenda[] agendas = {new Agenda(capacidad), Agenda.compacta(capacidad), Agenda.fueraDelHeap(capacidad)};
+            agendas[1].activarCacheTelefonos(1 + r.nextInt(8));
+            agendas[2].activarCacheTelefonos(1 + r.nextInt(8));
+            String[] recientes = new String[12];
+
+            for (int paso = 0; paso < 400; paso++, operaciones++) {
+                String nombre = NOMBRES[r.nextInt(NOMBRES.length)] + (r.nextInt(4) == 0 ? "" : " " + r.nextInt(20));
+                String apellido = APELLIDOS[r.nextInt(APELLIDOS.length)];
+                String telefono = telefono(r);
+                recientes[paso % recientes.length] = r.nextInt(3) == 0 ? recientes[r.nextInt(recientes.length)] : telefono;
+                int op = r.nextInt(10);
+                if (op < 4) {
+                    igual("anadirContacto", agendas, a -> a.anadirContacto(new Contacto(nombre, apellido, telefono)));
+                } else if (op < 5) {
+                    List<String[]> bloque = new ArrayList<>();
+                    for (int i = r.nextInt(60); i > 0; i--) {
+                        bloque.add(new String[]{NOMBRES[r.nextInt(NOMBRES.length)] + " " + r.nextInt(30),
+                                APELLIDOS[r.nextInt(APELLIDOS.length)], telefono(r)});
+                    }
+                    igual("anadirEnBloque", agendas, a -> {
+                        List<Contacto> contactos = new ArrayList<>();
+                        for (String[] d : bloque) contactos.add(new Contacto(d[0], d[1], d[2]));
+                        return Arrays.toString(a.anadirEnBloque(contactos));
+                    });
+                } else if (op < 7) {
+                    for (Agenda a : agendas) a.eliminarContacto(nombre, apellido);
+                } else if (op < 9) {
+                    for (Agenda a : agendas) a.modificarTelefono(nombre, apellido, telefono);
+                } else {
+                    // Crea los índices de búsqueda para que se mantengan en los pasos siguientes
+                    String prefijo = nombre.substring(0, 1 + r.nextInt(2));
+                    igual("buscarPorPrefijo nombre", agendas, a -> a.buscarPorPrefijo("nombre", prefijo, 50));
+                    igual("buscarPorPrefijo apellido", agendas, a -> a.buscarPorPrefijo("apellido", apellido, 50));
+                    String fragmento = telefono.substring(0, 1 + r.nextInt(4));
+                    igual("buscarPorPrefijo telefono", agendas, a -> a.buscarPorPrefijo("telefono", fragmento, 50));
+                    igual("buscarAproximado apellido", agendas, a -> a.buscarAproximado("apellido", apellido + "s", 2, 50));
+                    int desde = r.nextInt(20);
+                    igual("listarPorPrefijoTelefono", agendas, a -> a.listarPorPrefijoTelefono(fragmento, desde, 20));
+                    igual("contarPorPrefijoTelefono", agendas, a -> a.contarPorPrefijoTelefono(fragmento));
+                    igual("prefijoTelefonoMasLargo", agendas, a -> a.prefijoTelefonoMasLargo(telefono + "0"));
+                }
+                if (paso % 97 == 0) agendas[2].redimensionar(r.nextInt(2 * capacidad));
+
+                igual("cantidadContactos", agendas, Agenda::cantidadContactos);
+                igual("existeNombreApellido", agendas, a -> a.existeNombreApellido(nombre, apellido));
+                igual("existeTelefono", agendas, a -> a.existeTelefono(telefono));
+                igual("existeContacto", agendas, a -> a.existeContacto(nombre, apellido, telefono));
+                for (String t : recientes) {
+                    if (t != null) igual("buscarContacto telefono", agendas, a -> a.buscarContacto("telefono", t));
+                }
+                if (paso % 20 == 0) {
+                    igual("listarContactos", agendas, a -> a.listarContactos(0, capacidad));
+                    int desde = r.nextInt(capacidad);
+                    igual("listarContactos pagina", agendas, a -> a.listarContactos(desde, 7));
+                    igual("obtenerContactos", agendas, Agenda::obtenerContactos);
+                    igual("instantanea", agendas, a -> a.instantanea().pagina(desde, 7) + " " + a.instantanea().tamano());
+                    igual("flujoContactos", agendas, a -> a.flujoContactos().collect(Collectors.toList()));
+                    igual("buscarContacto", agendas, a -> a.buscarContacto("apellido", apellido));
+                    igual("buscarPorNombreApellido", agendas, a -> a.buscarPorNombreApellido(nombre, apellido));
+                }
+            }
+            for (Agenda a : agendas) a.close();
+        }
+
+        // Altas y bajas con textos siempre nuevos, para que la arena acumule espacio
+        // libre y se compacte varias veces
+        Agenda[] agendas = {new Agenda(5000), Agenda.compacta(5000), Agenda.fueraDelHeap(5000)};
+        for (int i = 0; i < 200_000; i++, operaciones++) {
+            String nombre = "Nombre con un texto bastante largo " + i;
+            String apellido = "Apellido también largo " + (i / 3);
+            String telefono = String.valueOf(1_000_000_000L + i);
+            igual("anadirContacto", agendas, a -> a.anadirContacto(new Contacto(nombre, apellido, telefono)));
+            if (i >= 4000) {
+                int viejo = i - 4000;
+                String n = "Nombre con un texto bastante largo " + viejo, ap = "Apellido también largo " + (viejo / 3);
+                for (Agenda a : agendas) a.eliminarContacto(n, ap);
+            }
+            if (i % 20_000 == 0) {
+                igual("listarContactos", agendas, a -> a.listarContactos(0, 5000));
+                igual("existeNombreApellido", agendas, a -> a.existeNombreApellido(nombre, apellido));
+            }
+        }
+        igual("listarContactos", agendas, a -> a.listarContactos(0, 5000));
+        igual("cantidadContactos", agendas, Agenda::cantidadContactos);
+
+        // Una agenda cerrada rechaza cualquier operación
+        for (Agenda a : agendas) a.close();
+        try {
+            agendas[2].existeTelefono("1000000000");
+            System.err.println("La agenda fuera del heap sigue respondiendo después de close()");
+            System.exit(1);
+        } catch (IllegalStateException esperado) {
+            // correcto
+        }
+
+        consola.println("OK: " + operaciones + " operaciones equivalentes");
+    }
+
+    /** Teléfono de 7 a 15 dígitos, a veces con ceros a la izquierda, de un rango pequeño */
+    private static String telefono(Random r) {
+        int largo = 7 + r.nextInt(9);
+        StringBuilder sb = new StringBuilder();
+        if (r.nextInt(4) == 0) sb.append('0');
+        sb.append(1 + r.nextInt(3));
+        while (sb.length() < largo) sb.append(r.nextInt(3));
+        return sb.toString();
+    }
+
+    /** Aplica la operación a cada agenda y compara el resultado con el de la primera */
+    private static void igual(String que, Agenda[] agendas, Function<Agenda, Object> operacion) {
+        // Los contactos se comparan por su texto: los otros almacenes devuelven copias
+        String esperado = String.valueOf(operacion.apply(agendas[0]));
+        for (int i = 1; i < agendas.length; i++) {
+            String obtenido = String.valueOf(operacion.apply(agendas[i]));
+            if (!esperado.equals(obtenido)) {
+                System.err.println("Discrepancia en " + que + ":\n  " + ALMACENES[0] + ": " + esperado
+                        + "\n  " + ALMACENES[i] + ": " + obtenido);
+                System.exit(1);
+            }
+        }
+    }
+}
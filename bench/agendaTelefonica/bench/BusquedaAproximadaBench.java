@@ -0,0 +1,195 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.modelo.Normalizador;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.HistogramaLatencias;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link Agenda#buscarAproximado}: primero compara los resultados con un recorrido
+ * completo de la agenda que calcula la distancia de cada contacto, tras altas y bajas
+ * al azar (sale con código 1 si difieren); después mide la latencia de búsquedas de
+ * apellidos con una errata (una letra cambiada, quitada o duplicada, o un cambio que
+ * suena igual) en una agenda grande, y la compara con la del recorrido completo.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.BusquedaAproximadaBench
+ *        [--tamano=1000000] [--almacen=objetos] [--distancias=1,2] [--limite=20]
+ *        [--consultas=2000] [--calentamiento=2] [--iteraciones=5] [--ms=1000]
+ *        [--salida=out/bench/aproximada.json]
+ */
+public class BusquedaAproximadaBench {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "1000000"));
+        String almacen = opciones.getOrDefault("almacen", "objetos");
+        String[] distancias = opciones.getOrDefault("distancias", "1,2").split(",");
+        int limite = Integer.parseInt(opciones.getOrDefault("limite", "20"));
+        int numConsultas = Integer.parseInt(opciones.getOrDefault("consultas", "2000"));
+
+        PrintStream consola = System.out;
+        comprobar(consola);
+
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "aproximada.json", consola);
+        Datos datos = Datos.crear("acentos", n);
+        Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen, n);
+        List<Contacto> contactos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+        agenda.anadirEnBloque(contactos);
+        contactos = null;
+
+        Random r = new Random(22);
+        String[] consultas = new String[numConsultas];
+        for (int i = 0; i < numConsultas; i++) consultas[i] = errata(datos.apellidos[r.nextInt(n)], r);
+        long inicio = System.nanoTime();
+        agenda.buscarAproximado("apellido", consultas[0], 1, limite);
+        consola.printf(Locale.ROOT, "Primera búsqueda (construye los índices): %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String d : distancias) {
+            int distancia = Integer.parseInt(d.trim());
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("tamano", String.valueOf(n));
+            params.put("almacen", almacen);
+            params.put("distancia", String.valueOf(distancia));
+            HistogramaLatencias latencias = new HistogramaLatencias();
+            int[] k = {0};
+            long[] encontrados = {0, 0};
+            m.medir("aproximada.apellido", params, () -> {
+                long t0 = System.nanoTime();
+                int hallados = agenda.buscarAproximado("apellido", consultas[k[0]++ % numConsultas], distancia, limite).size();
+                latencias.registrar(System.nanoTime() - t0);
+                encontrados[0] += hallados;
+                encontrados[1]++;
+                return 1;
+            });
+            tabla.add(new String[]{String.valueOf(distancia),
+                    String.format(Locale.ROOT, "%.1f", latencias.getPercentil50Nanos() / 1e3),
+                    String.format(Locale.ROOT, "%.1f", latencias.getPercentil99Nanos() / 1e3),
+                    String.format(Locale.ROOT, "%.1f", (double) encontrados[0] / encontrados[1])});
+        }
+
+        // Referencia: recorrer todos los contactos calculando la distancia
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("tamano", String.valueOf(n));
+        params.put("almacen", almacen);
+        int[] k = {0};
+        double recorrido = m.medir("aproximada.recorridoCompleto", params, () -> {
+            Medidor.sumidero += recorrer(agenda, consultas[k[0]++ % numConsultas], 2, limite).size();
+            return 1;
+        }).media();
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-10s %10s %10s %12s%n", "distancia", "p50 us", "p99 us", "resultados");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-10s %10s %10s %12s%n", (Object[]) fila);
+        consola.printf(Locale.ROOT, "Recorrido completo a distancia 2: %.1f us por búsqueda%n", recorrido / 1e3);
+
+        agenda.close();
+        m.guardar();
+    }
+
+    /** Altas, bajas y búsquedas al azar en agendas pequeñas, contra el recorrido completo */
+    private static void comprobar(PrintStream consola) {
+        String[] nombres = {"Lucía", "Luisa", "Lucas", "Yolanda", "Llolanda", "Gisela", "Jisela", "Xavier", "Javier", "Ana"};
+        String[] apellidos = {"Ramírez", "Ramires", "Ramos", "Vázquez", "Basques", "Guerra", "Quiroga", "Kiroga", "Cid", "Zid"};
+        Random r = new Random(5);
+        long busquedas = 0;
+        for (int ronda = 0; ronda < 50; ronda++) {
+            Agenda agenda = ronda % 2 == 0 ? new Agenda(300) : Agenda.compacta(300);
+            for (int paso = 0; paso < 600; paso++) {
+                String nombre = nombres[r.nextInt(nombres.length)] + (r.nextInt(3) == 0 ? "" : " " + (char) ('a' + r.nextInt(4)));
+                String apellido = apellidos[r.nextInt(apellidos.length)];
+                if (r.nextInt(3) > 0) {
+                    agenda.anadirContacto(new Contacto(nombre, apellido, String.valueOf(1_000_000_000L + r.nextInt(5000))));
+                } else {
+                    agenda.eliminarContacto(nombre, apellido);
+                }
+                if (paso % 10 == 0) {
+                    String campo = r.nextBoolean() ? "nombre" : "apellido";
+                    String texto = errata(campo.equals("nombre") ? nombre : apellido, r);
+                    int distancia = r.nextInt(3);
+                    int limite = 1 + r.nextInt(40);
+                    String obtenido = agenda.buscarAproximado(campo, texto, distancia, limite).toString();
+                    String esperado = recorrer(agenda, texto, distancia, limite, campo).toString();
+                    if (!obtenido.equals(esperado)) {
+                        consola.println("FALLO: buscarAproximado(" + campo + ", " + texto + ", " + distancia + ", " + limite + ")"
+                                + "\n  índice:    " + obtenido + "\n  recorrido: " + esperado);
+                        System.exit(1);
+                    }
+                    busquedas++;
+                }
+            }
+        }
+        consola.println("Comprobación correcta: " + busquedas + " búsquedas iguales al recorrido completo");
+    }
+
+    private static List<Contacto> recorrer(Agenda agenda, String texto, int maxDistancia, int limite) {
+        return recorrer(agenda, texto, maxDistancia, limite, "apellido");
+    }
+
+    /** Lo que debe devolver buscarAproximado, calculado contacto a contacto */
+    private static List<Contacto> recorrer(Agenda agenda, String texto, int maxDistancia, int limite, String campo) {
+        String consulta = Contacto.normalizarTexto(texto);
+        String clave = Normalizador.claveFonetica(consulta);
+        boolean porNombre = campo.equals("nombre");
+        List<Object[]> candidatos = new ArrayList<>();
+        agenda.flujoContactos().forEach(c -> {
+            String valor = porNombre ? c.getNombreNormalizado() : c.getApellidoNormalizado();
+            if (valor.isEmpty()) return;
+            int d = levenshtein(consulta, valor);
+            if (d <= maxDistancia || Normalizador.claveFonetica(valor).equals(clave)) {
+                candidatos.add(new Object[]{d, valor, c});
+            }
+        });
+        // Por distancia y valor; dentro de un valor, en el orden de los índices de prefijos
+        // (nombre y apellido, o apellido y nombre)
+        candidatos.sort(Comparator.<Object[]>comparingInt(o -> (Integer) o[0])
+                .thenComparing(o -> (String) o[1])
+                .thenComparing(o -> porNombre ? ((Contacto) o[2]).getApellidoNormalizado() : ((Contacto) o[2]).getNombreNormalizado()));
+        List<Contacto> resultado = new ArrayList<>();
+        for (int i = 0; i < candidatos.size() && i < limite; i++) resultado.add((Contacto) candidatos.get(i)[2]);
+        return consulta.isEmpty() ? new ArrayList<>() : resultado;
+    }
+
+    /** Una errata al azar: cambiar, quitar o duplicar una letra, o una grafía que suena igual */
+    private static String errata(String texto, Random r) {
+        if (texto.isEmpty()) return texto;
+        int i = r.nextInt(texto.length());
+        switch (r.nextInt(4)) {
+            case 0:
+                return texto.substring(0, i) + (char) ('a' + r.nextInt(26)) + texto.substring(i + 1);
+            case 1:
+                return texto.substring(0, i) + texto.substring(i + 1);
+            case 2:
+                return texto.substring(0, i) + texto.charAt(i) + texto.substring(i);
+            default:
+                return texto.replace("z", "s").replace("v", "b").replace("ll", "y").replace("c", "s");
+        }
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] fila = new int[b.length() + 1], nueva = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) fila[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            nueva[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                nueva[j] = Math.min(fila[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                        Math.min(fila[j], nueva[j - 1]) + 1);
+            }
+            int[] t = fila;
+            fila = nueva;
+            nueva = t;
+        }
+        return fila[b.length()];
+    }
+}
@@ -0,0 +1,121 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.EstadisticasCache;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Búsquedas por teléfono con y sin la caché de {@link Agenda#activarCacheTelefonos},
+ * sobre agendas compactas o fuera del heap, donde cada consulta al almacén construye
+ * el contacto.
+ *
+ * Las consultas siguen una distribución de Zipf de exponente {@code --zipf} sobre los
+ * contactos (unos pocos números se consultan constantemente). Con {@code --barrido=P}
+ * el P % de las consultas recorre en cambio todos los números en orden, cada uno una
+ * sola vez por vuelta: es la carga en la que una LRU sin admisión perdería los números
+ * frecuentes. Se informa de los ns por búsqueda y de la tasa de aciertos.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.CacheTelefonosBench
+ *        [--tamano=1000000] [--almacen=compacta,fueraDelHeap] [--caches=0,1000,10000]
+ *        [--zipf=1.0] [--barrido=0,20] [--calentamiento=2] [--iteraciones=5] [--ms=1000]
+ *        [--salida=out/bench/cache.json]
+ */
+public class CacheTelefonosBench {
+
+    private static final int CONSULTAS = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "1000000"));
+        String[] almacenes = opciones.getOrDefault("almacen", "compacta,fueraDelHeap").split(",");
+        String[] caches = opciones.getOrDefault("caches", "0,1000,10000").split(",");
+        double zipf = Double.parseDouble(opciones.getOrDefault("zipf", "1.0"));
+        String[] barridos = opciones.getOrDefault("barrido", "0,20").split(",");
+
+        PrintStream consola = System.out;
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "cache.json", consola);
+        Datos datos = Datos.crear("acentos", n);
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String almacen : almacenes) {
+            Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen.trim(), n);
+            List<Contacto> contactos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+            agenda.anadirEnBloque(contactos);
+            for (String b : barridos) {
+                int barrido = Integer.parseInt(b.trim());
+                String[] consultas = consultas(datos, zipf, barrido);
+                for (String c : caches) {
+                    int capacidad = Integer.parseInt(c.trim());
+                    agenda.activarCacheTelefonos(capacidad);
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("tamano", String.valueOf(n));
+                    params.put("almacen", almacen.trim());
+                    params.put("barrido", String.valueOf(barrido));
+                    params.put("cache", String.valueOf(capacidad));
+                    int[] siguiente = {0};
+                    double media = m.medir("cache.buscarTelefono", params, () -> {
+                        String telefono = consultas[siguiente[0]++ & (CONSULTAS - 1)];
+                        Medidor.sumidero += agenda.buscarContacto("telefono", telefono).size();
+                        return 1;
+                    }).media();
+                    EstadisticasCache e = agenda.estadisticasCacheTelefonos();
+                    tabla.add(new String[]{almacen.trim(), String.valueOf(barrido), String.valueOf(capacidad),
+                            String.format(Locale.ROOT, "%.1f", media),
+                            capacidad == 0 ? "-" : String.format(Locale.ROOT, "%.1f", 100 * e.tasaAciertos())});
+                }
+            }
+            agenda.close();
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-14s %8s %8s %10s %10s%n", "almacen", "barrido", "cache", "ns/op", "aciertos %");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-14s %8s %8s %10s %10s%n", (Object[]) fila);
+
+        m.guardar();
+    }
+
+    /** Secuencia fija de teléfonos a consultar, con Zipf más el porcentaje de barrido */
+    private static String[] consultas(Datos datos, double exponente, int barrido) {
+        int n = datos.tamano();
+        double[] acumulada = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, exponente);
+            acumulada[i] = total;
+        }
+        // El rango de popularidad no coincide con el orden de los datos
+        Random r = new Random(18);
+        int[] contactoDeRango = new int[n];
+        for (int i = 0; i < n; i++) contactoDeRango[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1), t = contactoDeRango[i];
+            contactoDeRango[i] = contactoDeRango[j];
+            contactoDeRango[j] = t;
+        }
+
+        String[] consultas = new String[CONSULTAS];
+        int recorrido = 0;
+        for (int i = 0; i < CONSULTAS; i++) {
+            int contacto;
+            if (r.nextInt(100) < barrido) {
+                contacto = recorrido++ % n;
+            } else {
+                int rango = Arrays.binarySearch(acumulada, r.nextDouble() * total);
+                contacto = contactoDeRango[Math.min(n - 1, rango < 0 ? -rango - 1 : rango)];
+            }
+            consultas[i] = datos.telefonos[contacto];
+        }
+        return consultas;
+    }
+}
@@ -0,0 +1,79 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Microbenchmark que mide la memoria reservada por sondeo de un HashSet de contactos.
+ * Compara la forma anterior (normalizar nombre y apellido en cada equals/hashCode)
+ * con los valores normalizados que ahora guarda cada Contacto.
+ *
+ * Uso: java -cp out agendaTelefonica.bench.ContactoAsignacionBench [contactos] [sondeos]
+ */
+public class ContactoAsignacionBench {
+
+    /** Evita que el JIT descarte los resultados de los bucles medidos */
+    private static long sumidero;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int sondeos = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        Contacto[] datos = new Contacto[n];
+        for (int i = 0; i < n; i++) {
+            datos[i] = new Contacto("José" + i, "Muñoz" + i, String.valueOf(3_000_000_000L + i));
+        }
+        Set<Contacto> conjunto = new HashSet<>();
+        for (Contacto c : datos) conjunto.add(c);
+
+        // Calentamiento para que ambas variantes lleguen compiladas a la medición
+        for (int r = 0; r < 5; r++) {
+            sinCache(datos, sondeos / 10);
+            conCache(conjunto, datos, sondeos / 10);
+        }
+
+        long antes = bytesReservados();
+        sinCache(datos, sondeos);
+        long bytesSinCache = bytesReservados() - antes;
+
+        antes = bytesReservados();
+        conCache(conjunto, datos, sondeos);
+        long bytesConCache = bytesReservados() - antes;
+
+        System.out.printf("sondeos: %d sobre %d contactos%n", sondeos, n);
+        System.out.printf("sin caché: %.1f bytes/sondeo%n", (double) bytesSinCache / sondeos);
+        System.out.printf("con caché: %.1f bytes/sondeo%n", (double) bytesConCache / sondeos);
+        if (sumidero == 42) System.out.println();
+    }
+
+    /** Reproduce el coste de hashCode + equals tal como se calculaban antes */
+    private static void sinCache(Contacto[] datos, int sondeos) {
+        long acc = 0;
+        for (int i = 0; i < sondeos; i++) {
+            Contacto c = datos[i % datos.length];
+            acc += Objects.hash(Contacto.normalizarTexto(c.getNombre()),
+                    Contacto.normalizarTexto(c.getApellido()), c.getTelefono().trim());
+            if (Contacto.normalizarTexto(c.getNombre()).equals(Contacto.normalizarTexto(c.getNombre()))) acc++;
+        }
+        sumidero += acc;
+    }
+
+    /** Sondeo real sobre el HashSet usando los valores normalizados en caché */
+    private static void conCache(Set<Contacto> conjunto, Contacto[] datos, int sondeos) {
+        long acc = 0;
+        for (int i = 0; i < sondeos; i++) {
+            if (conjunto.contains(datos[i % datos.length])) acc++;
+        }
+        sumidero += acc;
+    }
+
+    /** Bytes reservados hasta ahora por el hilo actual (extensión de HotSpot) */
+    private static long bytesReservados() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,94 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Generador determinista de contactos para los benchmarks.
+ * Produce combinaciones únicas de nombre+apellido y teléfonos únicos de 10 dígitos,
+ * en una variante sólo ASCII y otra con acentos y eñes.
+ */
+final class Datos {
+
+    private static final String[] NOMBRES_ASCII = {
+            "Juan", "Maria", "Carlos", "Ana", "Pedro", "Lucia", "Andres", "Sofia", "Diego", "Laura",
+            "Jose", "Elena", "Miguel", "Paula", "Javier", "Marta", "David", "Sara", "Pablo", "Clara",
+            "Jorge", "Isabel", "Luis", "Carmen", "Daniel", "Rosa", "Raul", "Julia", "Ivan", "Alba"
+    };
+
+    private static final String[] NOMBRES_ACENTOS = {
+            "Juan", "María", "Carlos", "Ana", "Pedro", "Lucía", "Andrés", "Sofía", "Diego", "Laura",
+            "José", "Elena", "Miguel", "Paula", "Javier", "Marta", "David", "Sara", "Pablo", "Clara",
+            "Jorge", "Isabel", "Luis", "Carmen", "Daniel", "Rosa", "Raúl", "Julia", "Iván", "Begoña"
+    };
+
+    private static final String[] APELLIDOS_ASCII = {
+            "Perez", "Lopez", "Gomez", "Martinez", "Ramirez", "Torres", "Morales", "Castro", "Diaz", "Ruiz",
+            "Sanchez", "Romero", "Alvarez", "Navarro", "Dominguez", "Gil", "Serrano", "Molina", "Ortiz", "Rubio",
+            "Munoz", "Iglesias", "Medina", "Garrido", "Cortes", "Nunez", "Vazquez", "Lozano", "Guerrero", "Prieto"
+    };
+
+    private static final String[] APELLIDOS_ACENTOS = {
+            "Pérez", "López", "Gómez", "Martínez", "Ramírez", "Torres", "Morales", "Castro", "Díaz", "Ruiz",
+            "Sánchez", "Romero", "Álvarez", "Navarro", "Domínguez", "Gil", "Serrano", "Molina", "Ortiz", "Rubio",
+            "Muñoz", "Iglesias", "Medina", "Garrido", "Cortés", "Núñez", "Vázquez", "Lozano", "Guerrero", "Prieto"
+    };
+
+    /** Primer teléfono de los datos; los alternativos empiezan en otro rango */
+    static final long TELEFONO_BASE = 3_000_000_000L;
+    static final long TELEFONO_ALTERNATIVO = 6_000_000_000L;
+
+    final String nombre;
+    final String[] nombres;
+    final String[] apellidos;
+    final String[] telefonos;
+
+    private Datos(String nombre, int n, String[] poolNombres, String[] poolApellidos) {
+        this.nombre = nombre;
+        this.nombres = new String[n];
+        this.apellidos = new String[n];
+        this.telefonos = new String[n];
+        int np = poolNombres.length, ap = poolApellidos.length;
+        for (int i = 0; i < n; i++) {
+            nombres[i] = poolNombres[i % np];
+            // El sufijo alfabético hace única cada combinación nombre+apellido
+            apellidos[i] = poolApellidos[(i / np) % ap] + sufijo(i / (np * ap));
+            telefonos[i] = String.valueOf(TELEFONO_BASE + i);
+        }
+    }
+
+    /** Crea el conjunto de datos "ascii" o "acentos" con n contactos */
+    static Datos crear(String tipo, int n) {
+        switch (tipo) {
+            case "ascii":
+                return new Datos(tipo, n, NOMBRES_ASCII, APELLIDOS_ASCII);
+            case "acentos":
+                return new Datos(tipo, n, NOMBRES_ACENTOS, APELLIDOS_ACENTOS);
+            default:
+                throw new IllegalArgumentException("Conjunto de datos desconocido: " + tipo);
+        }
+    }
+
+    int tamano() {
+        return telefonos.length;
+    }
+
+    Contacto contacto(int i) {
+        return new Contacto(nombres[i], apellidos[i], telefonos[i]);
+    }
+
+    /** Teléfono alternativo para el contacto i, que nunca choca con los de los datos */
+    String telefonoAlternativo(int i) {
+        return String.valueOf(TELEFONO_ALTERNATIVO + i);
+    }
+
+    /** Convierte un entero en un sufijo de letras: 0 -> "", 1 -> "a", 27 -> "aa"... */
+    private static String sufijo(int k) {
+        StringBuilder sb = new StringBuilder();
+        while (k > 0) {
+            k--;
+            sb.append((char) ('a' + k % 26));
+            k /= 26;
+        }
+        return sb.length() == 0 ? "" : " " + sb;
+    }
+}
@@ -0,0 +1,289 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.red.ClienteAgenda;
+import agendaTelefonica.red.ServidorAgenda;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.EventoAgenda;
+import agendaTelefonica.servicio.FlujoEventos;
+import agendaTelefonica.servicio.InstantaneaAgenda;
+import agendaTelefonica.servicio.ModoLote;
+import agendaTelefonica.servicio.OperacionLote;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Flujo de eventos de {@link Agenda#activarEventos}: primero comprueba que una réplica
+ * que sólo aplica eventos queda igual que la agenda tras altas, bajas, cambios, altas en
+ * bloque y lotes al azar, que un suscriptor que se queda atrás se entera y se reanuda
+ * desde una instantánea, que varios hilos suscritos a la vez ven la misma secuencia y que
+ * EVENTOS del servidor devuelve lo mismo (sale con código 1 si algo falla); después mide
+ * cuánto añade publicar a un alta seguida de baja y compara ponerse al día leyendo los
+ * eventos con volver a leer la agenda entera.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.EventosBench
+ *        [--tamano=100000] [--almacen=objetos,compacta] [--cambios=100]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=1000] [--salida=out/bench/eventos.json]
+ */
+public class EventosBench {
+
+    private static final int INDICES = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "100000"));
+        String[] almacenes = opciones.getOrDefault("almacen", "objetos,compacta").split(",");
+        int cambios = Integer.parseInt(opciones.getOrDefault("cambios", "100"));
+
+        PrintStream consola = System.out;
+        comprobarReplica(consola);
+        comprobarConHilos(consola);
+        comprobarServidor(consola);
+
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "eventos.json", consola);
+        Datos datos = Datos.crear("acentos", n);
+        int[] indices = new int[INDICES];
+        Random r = new Random(25);
+        for (int i = 0; i < INDICES; i++) indices[i] = r.nextInt(n);
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String almacen : almacenes) {
+            Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen.trim(), n + 1);
+            List<Contacto> contactos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+            agenda.anadirEnBloque(contactos);
+            contactos = null;
+            Contacto extra = new Contacto("Extra", "Eventos", "3999999999");
+
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("tamano", String.valueOf(n));
+            params.put("almacen", almacen.trim());
+            for (boolean activos : new boolean[]{false, true}) {
+                agenda.activarEventos(activos ? 1 << 16 : 0);
+                params.put("eventos", String.valueOf(activos));
+                double altaBaja = m.medir("eventos.altaBaja", params, () -> {
+                    Medidor.sumidero += agenda.anadirContacto(extra).ordinal();
+                    Medidor.sumidero += agenda.eliminarContacto("Extra", "Eventos").ordinal();
+                    return 2;
+                }).media();
+                tabla.add(new String[]{almacen.trim(), "alta + baja, eventos " + (activos ? "sí" : "no"),
+                        String.format(Locale.ROOT, "%.0f ns", altaBaja)});
+            }
+            params.remove("eventos");
+
+            // Ponerse al día tras unos cambios de teléfono: leyendo sus eventos o releyendo todo
+            FlujoEventos flujo = agenda.eventos().orElseThrow();
+            FlujoEventos.Suscripcion suscripcion = flujo.suscribir();
+            Map<String, String> replica = new HashMap<>();
+            agenda.flujoContactos().forEach(c -> replica.put(c.getNombre() + '\t' + c.getApellido(), c.getTelefono()));
+            boolean[] alternativo = new boolean[n];
+            int[] k = {0};
+            Runnable hacerCambios = () -> {
+                for (int j = 0; j < cambios; j++) {
+                    int i = indices[k[0]++ & (INDICES - 1)];
+                    alternativo[i] = !alternativo[i];
+                    agenda.modificarTelefono(datos.nombres[i], datos.apellidos[i],
+                            alternativo[i] ? datos.telefonoAlternativo(i) : datos.telefonos[i]);
+                }
+            };
+            params.put("cambios", String.valueOf(cambios));
+            double porEventos = m.medir("eventos.alDiaConEventos", params, () -> {
+                hacerCambios.run();
+                for (EventoAgenda e : suscripcion.leer(Integer.MAX_VALUE)) aplicar(replica, e);
+                return 1;
+            }).media();
+            double releyendo = m.medir("eventos.alDiaReleyendo", params, () -> {
+                hacerCambios.run();
+                Map<String, String> copia = new HashMap<>();
+                for (Contacto c : agenda.listarContactos()) copia.put(c.getNombre() + '\t' + c.getApellido(), c.getTelefono());
+                Medidor.sumidero += copia.size();
+                return 1;
+            }).media();
+            tabla.add(new String[]{almacen.trim(), cambios + " cambios y leer sus eventos", String.format(Locale.ROOT, "%.0f ns", porEventos)});
+            tabla.add(new String[]{almacen.trim(), cambios + " cambios y releer la agenda", String.format(Locale.ROOT, "%.0f ns", releyendo)});
+            agenda.close();
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-10s %-36s %16s%n", "almacen", "medida", "valor");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-10s %-36s %16s%n", (Object[]) fila);
+
+        m.guardar();
+    }
+
+    /**
+     * Una réplica nombre y apellido -> teléfono alimentada sólo con eventos, leídos a
+     * trozos de tamaño al azar, y otra que lee tan poco que se queda atrás y se reanuda.
+     */
+    private static void comprobarReplica(PrintStream consola) {
+        Random r = new Random(17);
+        long eventos = 0, reanudaciones = 0;
+        for (int ronda = 0; ronda < 30; ronda++) {
+            Agenda agenda = ronda % 2 == 0 ? new Agenda(400) : Agenda.compacta(400);
+            agenda.activarEventos(64);
+            FlujoEventos flujo = agenda.eventos().orElseThrow();
+            FlujoEventos.Suscripcion rapida = flujo.suscribir();
+            FlujoEventos.Suscripcion lenta = flujo.suscribir();
+            Map<String, String> replica = new TreeMap<>(), replicaLenta = new TreeMap<>();
+            long esperada = flujo.ultimaSecuencia() + 1;
+
+            for (int paso = 0; paso < 2000; paso++) {
+                modificarAlAzar(agenda, r);
+
+                do {
+                    for (EventoAgenda e : rapida.leer(1 + r.nextInt(64))) {
+                        if (e.getSecuencia() != esperada++) fallo(consola, "secuencia " + e.getSecuencia() + " en lugar de " + (esperada - 1));
+                        aplicar(replica, e);
+                        eventos++;
+                    }
+                } while (rapida.pendientes() > 0);
+                if (!replica.equals(estado(agenda))) fallo(consola, "réplica distinta tras el evento " + (esperada - 1));
+                if (agenda.instantanea().version() != esperada - 1) fallo(consola, "versión distinta de la última secuencia");
+
+                // La lenta lee de vez en cuando; si se quedó atrás se reanuda desde una instantánea
+                if (r.nextInt(20) != 0) continue;
+                if (lenta.seQuedoAtras()) {
+                    try {
+                        lenta.leer(1);
+                        fallo(consola, "leer tras quedarse atrás no falló");
+                    } catch (IllegalStateException esperado) {
+                        // Lo que debe pasar
+                    }
+                    InstantaneaAgenda foto = agenda.instantanea();
+                    replicaLenta.clear();
+                    for (Contacto c : foto) replicaLenta.put(c.getNombre() + '\t' + c.getApellido(), c.getTelefono());
+                    lenta = flujo.suscribir(foto.version() + 1);
+                    reanudaciones++;
+                }
+                for (EventoAgenda e : lenta.leer(Integer.MAX_VALUE)) aplicar(replicaLenta, e);
+                if (!replicaLenta.equals(estado(agenda))) fallo(consola, "réplica lenta distinta en la ronda " + ronda);
+            }
+            agenda.close();
+        }
+        if (reanudaciones == 0) fallo(consola, "ningún suscriptor se quedó atrás");
+        consola.println("Comprobación correcta: " + eventos + " eventos aplicados a la réplica, " + reanudaciones + " reanudaciones");
+    }
+
+    /** Tres hilos esperan eventos mientras este modifica la agenda; al final sus réplicas deben coincidir */
+    private static void comprobarConHilos(PrintStream consola) throws InterruptedException {
+        Agenda agenda = new Agenda(5000);
+        agenda.activarEventos(1 << 20);
+        FlujoEventos flujo = agenda.eventos().orElseThrow();
+        AtomicBoolean terminado = new AtomicBoolean();
+        AtomicReference<String> error = new AtomicReference<>();
+        List<Map<String, String>> replicas = new ArrayList<>();
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < 3; h++) {
+            FlujoEventos.Suscripcion s = flujo.suscribir();
+            Map<String, String> replica = new HashMap<>();
+            replicas.add(replica);
+            Thread t = new Thread(() -> {
+                long esperada = s.siguiente();
+                try {
+                    while (!terminado.get() || s.pendientes() > 0) {
+                        for (EventoAgenda e : s.esperar(256, 10, TimeUnit.MILLISECONDS)) {
+                            if (e.getSecuencia() != esperada++) error.set("secuencia " + e.getSecuencia() + " en un hilo");
+                            aplicar(replica, e);
+                        }
+                    }
+                } catch (InterruptedException | IllegalStateException e) {
+                    error.set(e.toString());
+                }
+            });
+            hilos.add(t);
+            t.start();
+        }
+        Random r = new Random(19);
+        for (int paso = 0; paso < 100_000; paso++) modificarAlAzar(agenda, r);
+        terminado.set(true);
+        for (Thread t : hilos) t.join();
+        if (error.get() != null) fallo(consola, "suscriptor en otro hilo: " + error.get());
+        Map<String, String> actual = estado(agenda);
+        for (Map<String, String> replica : replicas) {
+            if (!new TreeMap<>(replica).equals(actual)) fallo(consola, "la réplica de un hilo no coincide con la agenda");
+        }
+        consola.println("Comprobación correcta: " + replicas.size() + " hilos con " + flujo.ultimaSecuencia() + " eventos cada uno");
+    }
+
+    /** EVENTOS por la red: los mismos eventos y EVENTOS_PERDIDOS cuando ya no están */
+    private static void comprobarServidor(PrintStream consola) throws Exception {
+        Agenda agenda = new Agenda(100);
+        agenda.activarEventos(8);
+        try (ServidorAgenda servidor = ServidorAgenda.iniciar(agenda, 0);
+             ClienteAgenda cliente = new ClienteAgenda("127.0.0.1", servidor.getPuerto())) {
+            cliente.pedir("ALTA", "Ana", "Pérez", "6015550100");
+            cliente.pedir("CAMBIO", "Ana", "Pérez", "6015550101");
+            cliente.pedir("BAJA", "Ana", "Pérez");
+            String esperado = "OK\t3\t4\tALTA\t1\tAna\tPérez\t6015550100\t"
+                    + "\tCAMBIO_TELEFONO\t2\tAna\tPérez\t6015550101\t6015550100"
+                    + "\tBAJA\t3\tAna\tPérez\t6015550101\t";
+            String obtenido = cliente.pedir("EVENTOS", "0", "100");
+            if (!obtenido.equals(esperado)) fallo(consola, "EVENTOS respondió " + obtenido.replace('\t', '|'));
+            if (!cliente.pedir("EVENTOS", "4", "100").equals("OK\t0\t4")) fallo(consola, "EVENTOS sin novedades");
+            for (int i = 0; i < 10; i++) cliente.pedir("ALTA", "N" + i, "A" + i, String.valueOf(3_000_000_000L + i));
+            if (!cliente.pedir("EVENTOS", "2", "100").startsWith("ERR\tEVENTOS_PERDIDOS")) fallo(consola, "EVENTOS perdidos no avisó");
+        }
+        consola.println("Comprobación correcta: EVENTOS del servidor");
+    }
+
+    private static void modificarAlAzar(Agenda agenda, Random r) {
+        int k = r.nextInt(600);
+        String telefono = String.valueOf(3_000_000_000L + r.nextInt(2000));
+        switch (r.nextInt(10)) {
+            case 0: case 1: case 2: case 3:
+                agenda.anadirContacto(new Contacto("N" + k, "A" + k, telefono));
+                break;
+            case 4: case 5: case 6:
+                agenda.eliminarContacto("N" + k, "A" + k);
+                break;
+            case 7: case 8:
+                agenda.modificarTelefono("N" + k, "A" + k, telefono);
+                break;
+            default:
+                List<Contacto> bloque = new ArrayList<>();
+                List<OperacionLote> lote = new ArrayList<>();
+                for (int i = 0; i < 1 + r.nextInt(40); i++) {
+                    int j = r.nextInt(600);
+                    String t = String.valueOf(3_000_000_000L + r.nextInt(2000));
+                    bloque.add(new Contacto("N" + j, "A" + j, t));
+                    switch (r.nextInt(3)) {
+                        case 0: lote.add(OperacionLote.alta(new Contacto("N" + j, "A" + j, t))); break;
+                        case 1: lote.add(OperacionLote.baja("N" + j, "A" + j)); break;
+                        default: lote.add(OperacionLote.cambioTelefono("N" + j, "A" + j, t));
+                    }
+                }
+                if (r.nextBoolean()) agenda.anadirEnBloque(bloque);
+                else agenda.aplicarLote(lote, r.nextBoolean() ? ModoLote.TODO_O_NADA : ModoLote.POR_OPERACION);
+        }
+    }
+
+    private static void aplicar(Map<String, String> replica, EventoAgenda e) {
+        Contacto c = e.getContacto();
+        String clave = c.getNombre() + '\t' + c.getApellido();
+        if (e.getTipo() == EventoAgenda.Tipo.BAJA) replica.remove(clave);
+        else replica.put(clave, c.getTelefono());
+    }
+
+    private static Map<String, String> estado(Agenda agenda) {
+        Map<String, String> estado = new TreeMap<>();
+        agenda.flujoContactos().forEach(c -> estado.put(c.getNombre() + '\t' + c.getApellido(), c.getTelefono()));
+        return estado;
+    }
+
+    private static void fallo(PrintStream consola, String que) {
+        consola.println("FALLO: " + que);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,92 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.importacion.ImportadorContactos;
+import agendaTelefonica.servicio.Agenda;
+
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Escalado de la importación CSV con el número de hilos de la etapa de validación.
+ *
+ * Para cada cantidad de hilos se mide la importación completa a una agenda vacía y,
+ * aparte, sólo la etapa paralela (agenda de capacidad 0: todas las filas se separan,
+ * validan y normalizan, pero ninguna se añade). "hilos=0" es el modo secuencial, sin
+ * pool. Al final se imprime la aceleración respecto a ese modo.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.ImportacionParalelaBench
+ *        [--tamano=200000] [--datos=acentos] [--hilos=0,1,2,4]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=2000] [--salida=out/bench/importacion.json]
+ */
+public class ImportacionParalelaBench {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "200000"));
+        String tipo = opciones.getOrDefault("datos", "acentos");
+        String[] hilos = opciones.getOrDefault("hilos", hilosPorDefecto()).split(",");
+
+        PrintStream consola = System.out;
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 2000, "importacion.json", consola);
+
+        Datos datos = Datos.crear(tipo, n);
+        StringBuilder sb = new StringBuilder("nombre,apellido,telefono\n");
+        for (int i = 0; i < n; i++) {
+            sb.append(datos.nombres[i]).append(',').append(datos.apellidos[i]).append(',')
+                    .append(datos.telefonos[i]).append('\n');
+        }
+        String csv = sb.toString();
+        sb = null;
+
+        double[] completa = new double[hilos.length];
+        double[] validacion = new double[hilos.length];
+        for (int h = 0; h < hilos.length; h++) {
+            int cantidad = Integer.parseInt(hilos[h].trim());
+            ForkJoinPool pool = cantidad > 0 ? new ForkJoinPool(cantidad) : null;
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("tamano", String.valueOf(n));
+            params.put("datos", datos.nombre);
+            params.put("hilos", String.valueOf(cantidad));
+            try {
+                completa[h] = m.medir("importar.csv", params, () -> {
+                    Agenda a = new Agenda(n);
+                    Medidor.sumidero += new ImportadorContactos(a, ImportadorContactos.TAMANO_LOTE, pool)
+                            .importarCsv(new StringReader(csv)).getImportadas();
+                    return n;
+                }).media();
+                validacion[h] = m.medir("importar.csv.validacion", params, () -> {
+                    Agenda a = new Agenda(0);
+                    Medidor.sumidero += new ImportadorContactos(a, ImportadorContactos.TAMANO_LOTE, pool)
+                            .importarCsv(new StringReader(csv)).getRechazadas();
+                    return n;
+                }).media();
+            } finally {
+                if (pool != null) pool.shutdown();
+            }
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-8s %14s %10s %14s %10s%n", "hilos", "filas/s", "acel.", "validación/s", "acel.");
+        for (int h = 0; h < hilos.length; h++) {
+            consola.printf(Locale.ROOT, "%-8s %14.0f %9.2fx %14.0f %9.2fx%n", hilos[h].trim(),
+                    1e9 / completa[h], completa[0] / completa[h],
+                    1e9 / validacion[h], validacion[0] / validacion[h]);
+        }
+        consola.println("Procesadores disponibles: " + Runtime.getRuntime().availableProcessors());
+
+        m.guardar();
+    }
+
+    /** 0 (secuencial) y potencias de dos hasta el número de procesadores */
+    private static String hilosPorDefecto() {
+        StringBuilder sb = new StringBuilder("0");
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int h = 1; h < cpus; h *= 2) sb.append(',').append(h);
+        return sb.append(',').append(cpus).toString();
+    }
+}
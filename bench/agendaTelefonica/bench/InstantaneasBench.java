@@ -0,0 +1,247 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.InstantaneaAgenda;
+import agendaTelefonica.servicio.ModoLote;
+import agendaTelefonica.servicio.OperacionLote;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Instantáneas de {@link Agenda#instantanea}: primero comprueba, tras altas, bajas,
+ * cambios de teléfono, altas en bloque y lotes al azar, que cada instantánea sigue
+ * igual que el listado del momento en que se tomó y que un hilo puede recorrerlas
+ * mientras otro modifica la agenda (sale con código 1 si algo falla); después compara
+ * en una agenda grande tomar una instantánea tras un cambio con copiar la lista entera,
+ * como hace {@link Agenda#obtenerContactos}, y estima la memoria que comparten.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.InstantaneasBench
+ *        [--tamano=1000000] [--almacen=objetos,compacta] [--retenidas=1000]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=1000] [--salida=out/bench/instantaneas.json]
+ */
+public class InstantaneasBench {
+
+    private static final int INDICES = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "1000000"));
+        String[] almacenes = opciones.getOrDefault("almacen", "objetos,compacta").split(",");
+        int retenidas = Integer.parseInt(opciones.getOrDefault("retenidas", "1000"));
+
+        PrintStream consola = System.out;
+        comprobar(consola);
+        comprobarConOtroHilo(consola);
+
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "instantaneas.json", consola);
+        Datos datos = Datos.crear("acentos", n);
+        int[] indices = new int[INDICES];
+        Random r = new Random(24);
+        for (int i = 0; i < INDICES; i++) indices[i] = r.nextInt(n);
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String almacen : almacenes) {
+            Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen.trim(), n);
+            List<Contacto> contactos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+            agenda.anadirEnBloque(contactos);
+            contactos = null;
+
+            // Cada cambio alterna el teléfono de un contacto entre el suyo y el alternativo
+            boolean[] alternativo = new boolean[n];
+            int[] k = {0};
+            Runnable cambio = () -> {
+                int i = indices[k[0]++ & (INDICES - 1)];
+                alternativo[i] = !alternativo[i];
+                String telefono = alternativo[i] ? datos.telefonoAlternativo(i) : datos.telefonos[i];
+                Medidor.sumidero += agenda.modificarTelefono(datos.nombres[i], datos.apellidos[i], telefono).ordinal();
+            };
+
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("tamano", String.valueOf(n));
+            params.put("almacen", almacen.trim());
+            double copia = m.medir("instantaneas.copiaCompleta", params, () -> {
+                List<Contacto> lista = new ArrayList<>(agenda.cantidadContactos());
+                for (Iterator<Contacto> it = agenda.iteradorContactos(); it.hasNext(); ) lista.add(it.next());
+                Medidor.sumidero += lista.size();
+                return 1;
+            }).media();
+            double soloCambio = m.medir("instantaneas.cambioSinInstantanea", params, () -> {
+                cambio.run();
+                return 1;
+            }).media();
+
+            long inicio = System.nanoTime();
+            agenda.instantanea();
+            double construir = (System.nanoTime() - inicio) / 1e6;
+
+            double cambioEInstantanea = m.medir("instantaneas.cambioEInstantanea", params, () -> {
+                cambio.run();
+                Medidor.sumidero += agenda.instantanea().tamano();
+                return 1;
+            }).media();
+            double recorrido = m.medir("instantaneas.recorrido", params, () -> {
+                long suma = 0;
+                for (Contacto c : agenda.instantanea()) suma += c.getTelefono().length();
+                Medidor.sumidero += suma;
+                return n;
+            }).media();
+
+            // Memoria: muchas instantáneas vivas, cada una separada de la anterior por un cambio
+            long antes = memoriaUsada();
+            InstantaneaAgenda[] vivas = new InstantaneaAgenda[retenidas];
+            for (int i = 0; i < retenidas; i++) {
+                cambio.run();
+                vivas[i] = agenda.instantanea();
+            }
+            double bytesPorInstantanea = (double) (memoriaUsada() - antes) / retenidas;
+            Medidor.sumidero += vivas[retenidas - 1].tamano();
+            vivas = null;
+            agenda.close();
+
+            consola.printf(Locale.ROOT, "%s: primera instantánea %.0f ms%n", almacen.trim(), construir);
+            tabla.add(new String[]{almacen.trim(), "copia de la lista entera", String.format(Locale.ROOT, "%.0f ns", copia)});
+            tabla.add(new String[]{almacen.trim(), "cambio sin instantáneas previas", String.format(Locale.ROOT, "%.0f ns", soloCambio)});
+            tabla.add(new String[]{almacen.trim(), "cambio de teléfono + instantánea", String.format(Locale.ROOT, "%.0f ns", cambioEInstantanea)});
+            tabla.add(new String[]{almacen.trim(), "recorrer una instantánea", String.format(Locale.ROOT, "%.1f ns/contacto", recorrido)});
+            tabla.add(new String[]{almacen.trim(), "memoria por instantánea retenida", String.format(Locale.ROOT, "%.0f bytes", bytesPorInstantanea)});
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-10s %-34s %20s%n", "almacen", "medida", "valor");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-10s %-34s %20s%n", (Object[]) fila);
+
+        m.guardar();
+    }
+
+    /**
+     * Modificaciones al azar en agendas pequeñas, guardando instantáneas junto con el
+     * texto del listado del momento y comprobando después que no han cambiado.
+     */
+    private static void comprobar(PrintStream consola) {
+        Random r = new Random(11);
+        long comprobadas = 0;
+        for (int ronda = 0; ronda < 30; ronda++) {
+            Agenda agenda = ronda % 2 == 0 ? new Agenda(400) : Agenda.compacta(400);
+            ArrayDeque<Object[]> guardadas = new ArrayDeque<>();
+            long ultimaVersion = -1;
+            for (int paso = 0; paso < 2000; paso++) {
+                int k = r.nextInt(600);
+                String telefono = String.valueOf(3_000_000_000L + r.nextInt(2000));
+                switch (r.nextInt(8)) {
+                    case 0: case 1: case 2:
+                        agenda.anadirContacto(new Contacto("N" + k, "A" + k, telefono));
+                        break;
+                    case 3: case 4:
+                        agenda.eliminarContacto("N" + k, "A" + k);
+                        break;
+                    case 5: case 6:
+                        agenda.modificarTelefono("N" + k, "A" + k, telefono);
+                        break;
+                    default:
+                        List<Contacto> bloque = new ArrayList<>();
+                        List<OperacionLote> lote = new ArrayList<>();
+                        for (int i = 0; i < 1 + r.nextInt(150); i++) {
+                            int j = r.nextInt(600);
+                            Contacto c = new Contacto("N" + j, "A" + j, String.valueOf(3_000_000_000L + r.nextInt(2000)));
+                            bloque.add(c);
+                            lote.add(r.nextBoolean() ? OperacionLote.alta(c) : OperacionLote.baja("N" + j, "A" + j));
+                        }
+                        if (r.nextBoolean()) agenda.anadirEnBloque(bloque);
+                        else agenda.aplicarLote(lote, r.nextBoolean() ? ModoLote.TODO_O_NADA : ModoLote.POR_OPERACION);
+                }
+                if (paso % 7 != 0) continue;
+
+                InstantaneaAgenda foto = agenda.instantanea();
+                String listado = agenda.listarContactos(0, agenda.cantidadContactos()).toString();
+                if (!foto.contactos().toString().equals(listado)) fallo(consola, "instantánea distinta del listado en la versión " + foto.version());
+                if (foto.version() < ultimaVersion) fallo(consola, "versión " + foto.version() + " tras " + ultimaVersion);
+                if (foto.version() == ultimaVersion && foto != guardadas.peekLast()[0]) fallo(consola, "instantánea nueva sin cambios");
+                if (agenda.instantanea() != foto) fallo(consola, "dos instantáneas seguidas distintas");
+                ultimaVersion = foto.version();
+
+                // Acceso por posición y por páginas frente al recorrido
+                if (foto.tamano() > 0) {
+                    int i = r.nextInt(foto.tamano());
+                    if (!foto.obtener(i).toString().equals(foto.contactos().get(i).toString())) fallo(consola, "obtener(" + i + ")");
+                    int limite = r.nextInt(20);
+                    if (!foto.pagina(i, limite).toString().equals(agenda.listarContactos(i, limite).toString())) fallo(consola, "pagina(" + i + ", " + limite + ")");
+                    // Modificar un contacto devuelto no cambia la instantánea
+                    foto.obtener(i).setTelefono("999999999");
+                    if (!foto.contactos().toString().equals(listado)) fallo(consola, "un contacto devuelto cambió la instantánea");
+                }
+
+                guardadas.add(new Object[]{foto, listado});
+                if (guardadas.size() > 20) guardadas.removeFirst();
+                for (Object[] g : guardadas) {
+                    if (!((InstantaneaAgenda) g[0]).contactos().toString().equals(g[1])) {
+                        fallo(consola, "la instantánea de la versión " + ((InstantaneaAgenda) g[0]).version() + " cambió");
+                    }
+                    comprobadas++;
+                }
+            }
+            agenda.close();
+        }
+        consola.println("Comprobación correcta: " + comprobadas + " instantáneas iguales al listado de su momento");
+    }
+
+    /** Un hilo recorre instantáneas una y otra vez mientras este modifica la agenda */
+    private static void comprobarConOtroHilo(PrintStream consola) throws InterruptedException {
+        Agenda agenda = new Agenda(20_000);
+        for (int i = 0; i < 10_000; i++) agenda.anadirContacto(new Contacto("N" + i, "A" + i, String.valueOf(3_000_000_000L + i)));
+        AtomicReference<InstantaneaAgenda> publicada = new AtomicReference<>(agenda.instantanea());
+        AtomicReference<String> error = new AtomicReference<>();
+        long[] recorridos = {0};
+        Thread lector = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                InstantaneaAgenda foto = publicada.get();
+                int vistos = 0;
+                String anterior = null;
+                for (Contacto c : foto) {
+                    if (anterior != null && anterior.compareTo(c.getClaveOrden()) >= 0) error.set("desorden en la versión " + foto.version());
+                    anterior = c.getClaveOrden();
+                    vistos++;
+                }
+                if (vistos != foto.tamano()) error.set(vistos + " contactos en una instantánea de " + foto.tamano());
+                recorridos[0]++;
+            }
+        });
+        lector.start();
+        Random r = new Random(13);
+        for (int paso = 0; paso < 200_000; paso++) {
+            int k = r.nextInt(20_000);
+            if (r.nextBoolean()) agenda.anadirContacto(new Contacto("N" + k, "A" + k, String.valueOf(3_000_000_000L + k)));
+            else agenda.eliminarContacto("N" + k, "A" + k);
+            if (paso % 100 == 0) publicada.set(agenda.instantanea());
+        }
+        lector.interrupt();
+        lector.join();
+        if (error.get() != null) fallo(consola, "lector concurrente: " + error.get());
+        consola.println("Comprobación correcta: " + recorridos[0] + " recorridos desde otro hilo mientras la agenda cambiaba");
+    }
+
+    private static long memoriaUsada() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void fallo(PrintStream consola, String que) {
+        consola.println("FALLO: " + que);
+        System.exit(1);
+    }
+}
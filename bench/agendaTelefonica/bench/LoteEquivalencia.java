@@ -0,0 +1,191 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.ModoLote;
+import agendaTelefonica.servicio.OperacionLote;
+import agendaTelefonica.servicio.OyenteAgenda;
+import agendaTelefonica.servicio.ResultadoOperacion;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comprobación aleatoria de {@link Agenda#aplicarLote} con los tres almacenamientos.
+ *
+ * Cada lote mezcla altas, bajas y cambios de teléfono con nombres y teléfonos de
+ * conjuntos pequeños (choques frecuentes dentro del lote y con la agenda), teléfonos
+ * inválidos y datos nulos. Se compara con aplicar las mismas operaciones una a una:
+ * <ul>
+ *   <li>POR_OPERACION: mismos resultados, mismo listado y mismos avisos a los oyentes,
+ *       en el mismo orden, que la agenda modificada operación a operación;</li>
+ *   <li>TODO_O_NADA: si todas son válidas, el mismo estado que aplicarlas una a una
+ *       sobre una copia; si no, la agenda no cambia, no hay avisos y las válidas
+ *       quedan como NO_APLICADO.</li>
+ * </ul>
+ * Termina con código 1 ante la primera discrepancia.
+ *
+ * Uso: bench/ejecutar.sh agendaTelefonica.bench.LoteEquivalencia
+ */
+public class LoteEquivalencia {
+
+    private static final String[] NOMBRES = {"Ana", "ána", "José", "JOSE", "Iñigo", "Zoë", "Li"};
+    private static final String[] APELLIDOS = {"Pérez", "perez", "Gómez", "Núñez", "Ruiz"};
+
+    public static void main(String[] args) {
+        PrintStream consola = System.out;
+        Random r = new Random(14);
+        long operaciones = 0;
+
+        for (String almacen : new String[]{"objetos", "compacta", "fueraDelHeap"}) {
+            for (int ronda = 0; ronda < 60; ronda++) {
+                int capacidad = 10 + r.nextInt(60);
+                Agenda lotes = AgendaBenchmark.nuevaAgenda(almacen, capacidad);
+                Agenda sueltas = AgendaBenchmark.nuevaAgenda(almacen, capacidad);
+                Agenda atomica = AgendaBenchmark.nuevaAgenda(almacen, capacidad);
+                List<String> avisosLotes = new ArrayList<>(), avisosSueltas = new ArrayList<>();
+                List<String> avisosAtomica = new ArrayList<>();
+                lotes.agregarOyente(registrador(avisosLotes));
+                sueltas.agregarOyente(registrador(avisosSueltas));
+                atomica.agregarOyente(registrador(avisosAtomica));
+
+                for (int paso = 0; paso < 40; paso++) {
+                    List<OperacionLote> lote = lote(r);
+                    operaciones += lote.size();
+                    String que = almacen + " ronda " + ronda + " paso " + paso + " " + lote;
+
+                    // Los índices de búsqueda deben seguir los cambios del lote
+                    if (r.nextInt(4) == 0) {
+                        igual(que + " buscarPorPrefijo", sueltas.buscarPorPrefijo("apellido", "p", 100),
+                                lotes.buscarPorPrefijo("apellido", "p", 100));
+                    }
+
+                    ResultadoOperacion[] esperados = aplicarUnaAUna(sueltas, copiar(lote));
+                    ResultadoOperacion[] obtenidos = lotes.aplicarLote(copiar(lote), ModoLote.POR_OPERACION);
+                    igual(que + " resultados", Arrays.toString(esperados), Arrays.toString(obtenidos));
+                    igual(que + " listado", listado(sueltas), listado(lotes));
+                    igual(que + " avisos", avisosSueltas, avisosLotes);
+                    igual(que + " buscarPorPrefijo", sueltas.buscarPorPrefijo("nombre", "a", 100),
+                            lotes.buscarPorPrefijo("nombre", "a", 100));
+
+                    // Todo o nada, comparado con aplicarlas una a una sobre una copia
+                    String antes = listado(atomica);
+                    Agenda copia = copia(atomica, capacidad);
+                    ResultadoOperacion[] simulados = aplicarUnaAUna(copia, copiar(lote));
+                    avisosAtomica.clear();
+                    ResultadoOperacion[] atomicos = atomica.aplicarLote(copiar(lote), ModoLote.TODO_O_NADA);
+                    boolean todas = Arrays.stream(simulados).allMatch(x -> x == ResultadoOperacion.CORRECTO);
+                    if (todas) {
+                        igual(que + " todo o nada resultados", Arrays.toString(simulados), Arrays.toString(atomicos));
+                        igual(que + " todo o nada listado", listado(copia), listado(atomica));
+                        igual(que + " todo o nada avisos", lote.size(), avisosAtomica.size());
+                    } else {
+                        for (int i = 0; i < simulados.length; i++) {
+                            if (simulados[i] == ResultadoOperacion.CORRECTO) simulados[i] = ResultadoOperacion.NO_APLICADO;
+                        }
+                        igual(que + " todo o nada resultados", Arrays.toString(simulados), Arrays.toString(atomicos));
+                        igual(que + " todo o nada sin cambios", antes, listado(atomica));
+                        igual(que + " todo o nada sin avisos", 0, avisosAtomica.size());
+                    }
+                    copia.close();
+                }
+                lotes.close();
+                sueltas.close();
+                atomica.close();
+            }
+        }
+        consola.println("OK: " + operaciones + " operaciones en lote equivalentes");
+    }
+
+    private static List<OperacionLote> lote(Random r) {
+        List<OperacionLote> lote = new ArrayList<>();
+        for (int i = r.nextInt(25); i > 0; i--) {
+            String nombre = NOMBRES[r.nextInt(NOMBRES.length)];
+            String apellido = APELLIDOS[r.nextInt(APELLIDOS.length)];
+            String telefono = String.valueOf(5_550_000 + r.nextInt(40));
+            int tipo = r.nextInt(10);
+            if (tipo < 5) {
+                lote.add(OperacionLote.alta(r.nextInt(30) == 0 ? null : new Contacto(nombre, apellido, telefono)));
+            } else if (tipo < 7) {
+                lote.add(OperacionLote.baja(r.nextInt(30) == 0 ? null : nombre, apellido));
+            } else {
+                if (r.nextInt(15) == 0) telefono = r.nextBoolean() ? "55-50" : null;
+                lote.add(OperacionLote.cambioTelefono(nombre, r.nextInt(30) == 0 ? null : apellido, telefono));
+            }
+        }
+        return lote;
+    }
+
+    /**
+     * El mismo lote con contactos nuevos: la agenda de objetos guarda la instancia que
+     * recibe y un cambio de teléfono en una agenda no debe verse en las demás.
+     */
+    private static List<OperacionLote> copiar(List<OperacionLote> lote) {
+        List<OperacionLote> copia = new ArrayList<>(lote.size());
+        for (OperacionLote op : lote) {
+            Contacto c = op.getContacto();
+            copia.add(op.getTipo() != OperacionLote.Tipo.ALTA || c == null ? op
+                    : OperacionLote.alta(new Contacto(c.getNombre(), c.getApellido(), c.getTelefono())));
+        }
+        return copia;
+    }
+
+    /** Aplica el lote con las operaciones sueltas de la agenda */
+    private static ResultadoOperacion[] aplicarUnaAUna(Agenda agenda, List<OperacionLote> lote) {
+        ResultadoOperacion[] resultados = new ResultadoOperacion[lote.size()];
+        for (int i = 0; i < resultados.length; i++) {
+            OperacionLote op = lote.get(i);
+            if (op.getTipo() == OperacionLote.Tipo.ALTA) {
+                resultados[i] = agenda.anadirContacto(op.getContacto());
+            } else if (op.getTipo() == OperacionLote.Tipo.BAJA) {
+                resultados[i] = agenda.eliminarContacto(op.getNombre(), op.getApellido());
+            } else {
+                resultados[i] = agenda.modificarTelefono(op.getNombre(), op.getApellido(), op.getTelefono());
+            }
+        }
+        return resultados;
+    }
+
+    private static Agenda copia(Agenda agenda, int capacidad) {
+        Agenda copia = new Agenda(capacidad);
+        List<Contacto> contactos = new ArrayList<>();
+        for (Contacto c : agenda.obtenerContactos()) {
+            contactos.add(new Contacto(c.getNombre(), c.getApellido(), c.getTelefono()));
+        }
+        copia.anadirEnBloque(contactos);
+        return copia;
+    }
+
+    private static String listado(Agenda agenda) {
+        return agenda.cantidadContactos() + " " + agenda.listarContactos(0, Integer.MAX_VALUE);
+    }
+
+    private static OyenteAgenda registrador(List<String> avisos) {
+        return new OyenteAgenda() {
+            @Override
+            public void contactoAnadido(Contacto c) {
+                avisos.add("alta " + c);
+            }
+
+            @Override
+            public void contactoEliminado(Contacto c) {
+                avisos.add("baja " + c);
+            }
+
+            @Override
+            public void telefonoModificado(Contacto c, String telefonoAnterior) {
+                avisos.add("cambio " + c + " antes " + telefonoAnterior);
+            }
+        };
+    }
+
+    private static void igual(String que, Object esperado, Object obtenido) {
+        if (!String.valueOf(esperado).equals(String.valueOf(obtenido))) {
+            System.err.println("Discrepancia en " + que + ":\n  esperado: " + esperado + "\n  obtenido: " + obtenido);
+            System.exit(1);
+        }
+    }
+}
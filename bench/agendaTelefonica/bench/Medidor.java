@@ -0,0 +1,237 @@
+package agendaTelefonica.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Arnés mínimo de medición al estilo JMH, sin dependencias externas.
+ *
+ * Cada benchmark se ejecuta en iteraciones de duración fija: primero las de
+ * calentamiento (descartadas) y después las de medición. Dentro de una iteración la
+ * operación se invoca en lotes cuyo tamaño se ajusta para que leer el reloj no pese
+ * en operaciones de pocos nanosegundos. Los resultados se escriben en el mismo
+ * formato JSON que {@code -rf json} de JMH, así que se pueden comparar entre
+ * versiones con las herramientas habituales o con un simple diff.
+ *
+ * Todos los benchmarks aceptan {@code --calentamiento}, {@code --iteraciones},
+ * {@code --ms} (duración de cada iteración) y {@code --salida}; sin esta última, el
+ * JSON va a {@value #CARPETA_RESULTADOS}, que ignora el control de versiones.
+ */
+final class Medidor {
+
+    /**
+     * Operación medida. Devuelve cuántas operaciones lógicas realizó la llamada,
+     * lo que permite medir cargas completas (p. ej. N altas) como N operaciones.
+     */
+    interface Operacion {
+        long ejecutar() throws Exception;
+    }
+
+    /**
+     * Resultado de un benchmark: puntuación en ns/op de cada iteración medida y cuántos
+     * hilos ejecutaban la operación a la vez
+     */
+    static final class Resultado {
+        final String benchmark;
+        final Map<String, String> parametros;
+        final int hilos;
+        final double[] iteraciones;
+
+        Resultado(String benchmark, Map<String, String> parametros, int hilos, double[] iteraciones) {
+            this.benchmark = benchmark;
+            this.parametros = parametros;
+            this.hilos = hilos;
+            this.iteraciones = iteraciones;
+        }
+
+        double media() {
+            double s = 0;
+            for (double v : iteraciones) s += v;
+            return s / iteraciones.length;
+        }
+
+        /** Semiancho del intervalo de confianza al 99,9 % (aproximación normal, como JMH) */
+        double error() {
+            int n = iteraciones.length;
+            if (n < 2) return Double.NaN;
+            double m = media(), s = 0;
+            for (double v : iteraciones) s += (v - m) * (v - m);
+            return 3.291 * Math.sqrt(s / (n - 1)) / Math.sqrt(n);
+        }
+    }
+
+    /** Evita que el JIT elimine el trabajo de las operaciones medidas */
+    static volatile long sumidero;
+
+    /** Carpeta de los resultados sin --salida, relativa a la raíz del proyecto (ver bench/ejecutar.sh) */
+    static final String CARPETA_RESULTADOS = "out/bench";
+
+    private final int calentamiento;
+    private final int iteraciones;
+    private final long nanosPorIteracion;
+    private final Path salida;
+    private final PrintStream consola;
+    private final List<Resultado> resultados = new ArrayList<>();
+
+    private Medidor(int calentamiento, int iteraciones, long msPorIteracion, Path salida, PrintStream consola) {
+        this.calentamiento = calentamiento;
+        this.iteraciones = iteraciones;
+        this.nanosPorIteracion = msPorIteracion * 1_000_000L;
+        this.salida = salida;
+        this.consola = consola;
+    }
+
+    /**
+     * Medidor con las opciones comunes de la línea de órdenes, o con estos valores por
+     * defecto si no se indican (5 iteraciones de medición).
+     *
+     * @param archivo nombre del JSON dentro de {@value #CARPETA_RESULTADOS} si no hay --salida
+     * @param consola flujo donde se imprime el resumen; los benchmarks pueden redirigir
+     *                System.out para descartar lo que imprime la propia Agenda
+     */
+    static Medidor desdeOpciones(Map<String, String> opciones, int calentamiento, long msPorIteracion,
+                                 String archivo, PrintStream consola) {
+        return new Medidor(
+                Integer.parseInt(opciones.getOrDefault("calentamiento", String.valueOf(calentamiento))),
+                Integer.parseInt(opciones.getOrDefault("iteraciones", "5")),
+                Long.parseLong(opciones.getOrDefault("ms", String.valueOf(msPorIteracion))),
+                Paths.get(opciones.getOrDefault("salida", CARPETA_RESULTADOS + "/" + archivo)),
+                consola);
+    }
+
+    /** Iteraciones de calentamiento, para los benchmarks que miden cada iteración por su cuenta */
+    int calentamiento() {
+        return calentamiento;
+    }
+
+    int iteraciones() {
+        return iteraciones;
+    }
+
+    long msPorIteracion() {
+        return nanosPorIteracion / 1_000_000;
+    }
+
+    /**
+     * Ejecuta el benchmark, imprime un resumen en consola y guarda el resultado.
+     */
+    Resultado medir(String benchmark, Map<String, String> parametros, Operacion op) throws Exception {
+        int lote = 1;
+        for (int i = 0; i < calentamiento; i++) {
+            lote = ajustarLote(iteracion(op, lote));
+        }
+
+        double[] puntuaciones = new double[iteraciones];
+        for (int i = 0; i < iteraciones; i++) {
+            double[] it = iteracion(op, lote);
+            puntuaciones[i] = it[0];
+            lote = ajustarLote(it);
+        }
+
+        Resultado r = new Resultado(benchmark, new LinkedHashMap<>(parametros), 1, puntuaciones);
+        resultados.add(r);
+        consola.printf(Locale.ROOT, "%-32s %-36s %14.1f +- %10.1f ns/op%n",
+                benchmark, parametros, r.media(), r.error());
+        return r;
+    }
+
+    /**
+     * Guarda y resume un resultado medido fuera del medidor con {@code hilos} hilos a la
+     * vez, para que aparezca en el mismo JSON.
+     */
+    Resultado registrar(String benchmark, Map<String, String> parametros, int hilos, double[] nsPorOp) {
+        Resultado r = new Resultado(benchmark, new LinkedHashMap<>(parametros), hilos, nsPorOp);
+        resultados.add(r);
+        consola.printf(Locale.ROOT, "%-32s %-36s %14.1f +- %10.1f ns/op%n",
+                benchmark, parametros, r.media(), r.error());
+        return r;
+    }
+
+    /** Ejecuta una iteración y devuelve {ns/op, llamadas por lote realizadas} */
+    private double[] iteracion(Operacion op, int lote) throws Exception {
+        long ops = 0, llamadas = 0;
+        long inicio = System.nanoTime(), transcurrido;
+        do {
+            for (int i = 0; i < lote; i++) ops += op.ejecutar();
+            llamadas += lote;
+            transcurrido = System.nanoTime() - inicio;
+        } while (transcurrido < nanosPorIteracion);
+        return new double[]{(double) transcurrido / ops, (double) transcurrido / llamadas};
+    }
+
+    /** Ajusta el lote para que cada lectura del reloj cubra al menos ~10 µs de trabajo */
+    private static int ajustarLote(double[] iteracion) {
+        double nanosPorLlamada = iteracion[1];
+        return (int) Math.max(1, Math.min(1 << 20, 10_000 / Math.max(1, nanosPorLlamada)));
+    }
+
+    /** Escribe todos los resultados en el JSON de salida, creando su carpeta si hace falta */
+    void guardar() throws IOException {
+        Path carpeta = salida.toAbsolutePath().getParent();
+        if (carpeta != null) Files.createDirectories(carpeta);
+        escribirJson(salida);
+        consola.println("Resultados guardados en " + salida.toAbsolutePath());
+    }
+
+    /** Escribe todos los resultados en formato JSON compatible con JMH */
+    private void escribirJson(Path archivo) throws IOException {
+        try (Writer w = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            w.write("[\n");
+            for (int i = 0; i < resultados.size(); i++) {
+                Resultado r = resultados.get(i);
+                w.write("    {\n");
+                w.write("        \"jmhVersion\" : \"agenda-medidor\",\n");
+                w.write("        \"benchmark\" : \"" + r.benchmark + "\",\n");
+                w.write("        \"mode\" : \"avgt\",\n");
+                w.write("        \"threads\" : " + r.hilos + ",\n");
+                w.write("        \"forks\" : 1,\n");
+                w.write("        \"jvm\" : \"" + escapar(System.getProperty("java.home")) + "\",\n");
+                w.write("        \"jdkVersion\" : \"" + System.getProperty("java.version") + "\",\n");
+                w.write("        \"warmupIterations\" : " + calentamiento + ",\n");
+                w.write("        \"warmupTime\" : \"" + nanosPorIteracion / 1_000_000 + " ms\",\n");
+                w.write("        \"measurementIterations\" : " + iteraciones + ",\n");
+                w.write("        \"measurementTime\" : \"" + nanosPorIteracion / 1_000_000 + " ms\",\n");
+                w.write("        \"params\" : {\n");
+                int p = 0;
+                for (Map.Entry<String, String> e : r.parametros.entrySet()) {
+                    w.write("            \"" + e.getKey() + "\" : \"" + escapar(e.getValue()) + "\""
+                            + (++p < r.parametros.size() ? ",\n" : "\n"));
+                }
+                w.write("        },\n");
+                w.write("        \"primaryMetric\" : {\n");
+                double media = r.media(), error = r.error();
+                w.write("            \"score\" : " + numero(media) + ",\n");
+                w.write("            \"scoreError\" : " + numero(error) + ",\n");
+                w.write("            \"scoreConfidence\" : [ " + numero(media - error) + ", " + numero(media + error) + " ],\n");
+                w.write("            \"scoreUnit\" : \"ns/op\",\n");
+                w.write("            \"rawData\" : [ [ ");
+                for (int j = 0; j < r.iteraciones.length; j++) {
+                    w.write((j > 0 ? ", " : "") + numero(r.iteraciones[j]));
+                }
+                w.write(" ] ]\n");
+                w.write("        },\n");
+                w.write("        \"secondaryMetrics\" : {\n        }\n");
+                w.write(i + 1 < resultados.size() ? "    },\n" : "    }\n");
+            }
+            w.write("]\n");
+        }
+    }
+
+    private static String numero(double v) {
+        return Double.isNaN(v) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    private static String escapar(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,85 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+
+import java.io.PrintStream;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Memoria por contacto de cada almacenamiento de la agenda: el de objetos
+ * ({@code new Agenda(n)}) y el compacto ({@link Agenda#compacta}).
+ *
+ * Para cada tamaño se llena una agenda vacía, se pide el listado completo una vez
+ * (las dos guardan entonces su orden de listado) y se mide el heap ocupado después
+ * de forzar la recolección. Cada contacto se crea con cadenas propias para que su
+ * texto cuente en la medida. Los índices de búsqueda por prefijo no se crean.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.MemoriaAlmacenBench
+ *        [--tamanos=100000,1000000] [--datos=acentos]
+ */
+public class MemoriaAlmacenBench {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        String[] tamanos = opciones.getOrDefault("tamanos", "100000,1000000").split(",");
+        String tipo = opciones.getOrDefault("datos", "acentos");
+
+        PrintStream consola = System.out;
+        consola.printf(Locale.ROOT, "%-10s %-10s %12s %16s %12s%n", "tamano", "almacen", "MB", "bytes/contacto", "carga ms");
+
+        for (String t : tamanos) {
+            int n = Integer.parseInt(t.trim());
+            Datos datos = Datos.crear(tipo, n);
+            double[] porContacto = new double[2];
+            String[] almacenes = {"objetos", "compacta"};
+            for (int a = 0; a < almacenes.length; a++) {
+                long antes = heapUsado();
+                long inicio = System.nanoTime();
+                Agenda agenda = "objetos".equals(almacenes[a]) ? new Agenda(n) : Agenda.compacta(n);
+                llenar(agenda, datos);
+                long cargaMs = (System.nanoTime() - inicio) / 1_000_000;
+                Medidor.sumidero += agenda.listarContactos(n / 2, 1).size();
+                long despues = heapUsado();
+                Reference.reachabilityFence(agenda);
+
+                porContacto[a] = (double) (despues - antes) / n;
+                consola.printf(Locale.ROOT, "%-10d %-10s %12.1f %16.1f %12d%n", n, almacenes[a],
+                        (despues - antes) / 1e6, porContacto[a], cargaMs);
+            }
+            consola.printf(Locale.ROOT, "%-10d compacta ocupa %.1f%% de objetos (%.1fx menos)%n", n,
+                    100 * porContacto[1] / porContacto[0], porContacto[0] / porContacto[1]);
+        }
+    }
+
+    /** Altas en bloques de 8192, como la importación, con cadenas propias de cada contacto */
+    private static void llenar(Agenda agenda, Datos datos) {
+        List<Contacto> bloque = new ArrayList<>(8192);
+        for (int i = 0; i < datos.nombres.length; i++) {
+            bloque.add(new Contacto(new String(datos.nombres[i]), new String(datos.apellidos[i]),
+                    new String(datos.telefonos[i])));
+            if (bloque.size() == 8192) {
+                agenda.anadirEnBloque(bloque);
+                bloque.clear();
+            }
+        }
+        agenda.anadirEnBloque(bloque);
+    }
+
+    /** Heap ocupado tras varias recolecciones completas */
+    private static long heapUsado() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long usado = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+            usado = Math.min(usado, rt.totalMemory() - rt.freeMemory());
+        }
+        return usado;
+    }
+}
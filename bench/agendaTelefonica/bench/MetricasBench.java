@@ -0,0 +1,182 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.HistogramaLatencias;
+import agendaTelefonica.servicio.MetricasAgenda;
+import agendaTelefonica.servicio.ResultadoOperacion;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de {@link Agenda#activarMetricas}: primero comprueba que los percentiles del
+ * histograma quedan dentro de su error, que los rechazos contados coinciden con los
+ * resultados devueltos y que JMX publica lo mismo (sale con código 1 si algo falla);
+ * después mide cuánto añade medir a una búsqueda por teléfono y a un alta seguida de
+ * baja.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.MetricasBench
+ *        [--tamano=100000] [--almacen=objetos,compacta] [--operaciones=200000]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=1000] [--salida=out/bench/metricas.json]
+ */
+public class MetricasBench {
+
+    private static final int INDICES = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "100000"));
+        String[] almacenes = opciones.getOrDefault("almacen", "objetos,compacta").split(",");
+        int operaciones = Integer.parseInt(opciones.getOrDefault("operaciones", "200000"));
+
+        PrintStream consola = System.out;
+        List<String> fallos = new ArrayList<>();
+        comprobarPercentiles(fallos);
+        comprobarRechazos(operaciones, fallos);
+        if (!fallos.isEmpty()) {
+            for (String f : fallos) consola.println("FALLO: " + f);
+            System.exit(1);
+        }
+        consola.println("Comprobaciones correctas: percentiles, rechazos y JMX");
+
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "metricas.json", consola);
+        Datos datos = Datos.crear("acentos", n);
+        int[] indices = new int[INDICES];
+        Random r = new Random(21);
+        for (int i = 0; i < INDICES; i++) indices[i] = r.nextInt(n);
+
+        List<String[]> tabla = new ArrayList<>();
+        for (String almacen : almacenes) {
+            Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen.trim(), n + 1);
+            List<Contacto> contactos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+            agenda.anadirEnBloque(contactos);
+            Contacto extra = new Contacto("Extra", "Medicion", "3999999999");
+
+            for (boolean activas : new boolean[]{false, true}) {
+                agenda.activarMetricas(activas);
+                Map<String, String> params = new LinkedHashMap<>();
+                params.put("tamano", String.valueOf(n));
+                params.put("almacen", almacen.trim());
+                params.put("metricas", String.valueOf(activas));
+                int[] k = {0};
+                double busqueda = m.medir("metricas.buscarTelefono", params, () -> {
+                    int i = indices[k[0]++ & (INDICES - 1)];
+                    Medidor.sumidero += agenda.buscarContacto("telefono", datos.telefonos[i]).size();
+                    return 1;
+                }).media();
+                double altaBaja = m.medir("metricas.altaBaja", params, () -> {
+                    Medidor.sumidero += agenda.anadirContacto(extra).ordinal();
+                    Medidor.sumidero += agenda.eliminarContacto("Extra", "Medicion").ordinal();
+                    return 2;
+                }).media();
+                tabla.add(new String[]{almacen.trim(), String.valueOf(activas),
+                        String.format(Locale.ROOT, "%.1f", busqueda), String.format(Locale.ROOT, "%.1f", altaBaja)});
+            }
+            agenda.close();
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-12s %9s %18s %14s%n", "almacen", "metricas", "buscarTelefono ns", "altaBaja ns");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-12s %9s %18s %14s%n", (Object[]) fila);
+
+        m.guardar();
+    }
+
+    /** Percentiles de valores log-uniformes entre 10 ns y 10 s frente a los exactos */
+    private static void comprobarPercentiles(List<String> fallos) {
+        Random r = new Random(7);
+        long[] valores = new long[100_000];
+        HistogramaLatencias h = new HistogramaLatencias();
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = (long) Math.pow(10, 1 + 9 * r.nextDouble());
+            h.registrar(valores[i]);
+        }
+        Arrays.sort(valores);
+        if (h.getCuenta() != valores.length) fallos.add("cuenta " + h.getCuenta() + " en lugar de " + valores.length);
+        if (h.getMaximoNanos() != valores[valores.length - 1]) fallos.add("máximo " + h.getMaximoNanos());
+        for (double q : new double[]{0.001, 0.5, 0.9, 0.99, 0.999, 1}) {
+            long exacto = valores[Math.max(0, (int) Math.ceil(q * valores.length) - 1)];
+            long estimado = h.percentil(q);
+            // El histograma redondea hacia arriba, como mucho hasta el final de la cubeta
+            if (estimado < exacto || estimado > exacto + exacto / 16 + 1) {
+                fallos.add("percentil " + q + ": " + estimado + " frente a " + exacto);
+            }
+        }
+    }
+
+    /** Operaciones al azar sobre una agenda pequeña, contando los resultados a mano */
+    private static void comprobarRechazos(int operaciones, List<String> fallos) throws Exception {
+        Agenda agenda = new Agenda(500);
+        agenda.activarMetricas(true);
+        MetricasAgenda metricas = agenda.metricas().orElseThrow();
+        Map<ResultadoOperacion, Long> esperados = new EnumMap<>(ResultadoOperacion.class);
+        Random r = new Random(3);
+        long llamadasAlta = 0, llamadasBaja = 0, llamadasCambio = 0;
+        for (int i = 0; i < operaciones; i++) {
+            int k = r.nextInt(800);
+            ResultadoOperacion resultado;
+            switch (r.nextInt(4)) {
+                case 0:
+                case 1:
+                    // Teléfonos de un rango más corto: también hay teléfonos repetidos
+                    resultado = agenda.anadirContacto(new Contacto("N" + k, "A" + k, String.valueOf(3_000_000_000L + r.nextInt(900))));
+                    llamadasAlta++;
+                    break;
+                case 2:
+                    resultado = agenda.eliminarContacto("N" + k, "A" + k);
+                    llamadasBaja++;
+                    break;
+                default:
+                    resultado = agenda.modificarTelefono("N" + k, "A" + k, r.nextInt(10) == 0 ? "12ab" : String.valueOf(3_000_000_000L + r.nextInt(900)));
+                    llamadasCambio++;
+            }
+            if (resultado != ResultadoOperacion.CORRECTO) esperados.merge(resultado, 1L, Long::sum);
+        }
+
+        for (ResultadoOperacion motivo : ResultadoOperacion.values()) {
+            long esperado = esperados.getOrDefault(motivo, 0L);
+            if (metricas.rechazos(motivo) != esperado) {
+                fallos.add("rechazos " + motivo + ": " + metricas.rechazos(motivo) + " en lugar de " + esperado);
+            }
+        }
+        comprobarCuenta(fallos, "alta", metricas.latencias(MetricasAgenda.Operacion.ALTA).getCuenta(), llamadasAlta);
+        comprobarCuenta(fallos, "baja", metricas.latencias(MetricasAgenda.Operacion.BAJA).getCuenta(), llamadasBaja);
+        comprobarCuenta(fallos, "cambioTelefono", metricas.latencias(MetricasAgenda.Operacion.CAMBIO_TELEFONO).getCuenta(), llamadasCambio);
+        if (metricas.getContactos() != agenda.cantidadContactos()) {
+            fallos.add("contactos " + metricas.getContactos() + " en lugar de " + agenda.cantidadContactos());
+        }
+
+        // Lo mismo leído por JMX
+        metricas.publicarEnJmx("comprobacion");
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName base = new ObjectName(MetricasAgenda.DOMINIO_JMX + ":type=Agenda,name=" + ObjectName.quote("comprobacion"));
+            ObjectName alta = new ObjectName(base + ",operacion=alta");
+            Object contactos = servidor.getAttribute(base, "Contactos");
+            Object rechazos = servidor.getAttribute(base, "RechazosTotales");
+            Object cuentaAlta = servidor.getAttribute(alta, "Cuenta");
+            if (!Integer.valueOf(agenda.cantidadContactos()).equals(contactos)) fallos.add("JMX Contactos = " + contactos);
+            if (!Long.valueOf(metricas.getRechazosTotales()).equals(rechazos)) fallos.add("JMX RechazosTotales = " + rechazos);
+            if (!Long.valueOf(llamadasAlta).equals(cuentaAlta)) fallos.add("JMX alta Cuenta = " + cuentaAlta);
+        } finally {
+            metricas.retirarDeJmx();
+        }
+    }
+
+    private static void comprobarCuenta(List<String> fallos, String operacion, long contadas, long esperadas) {
+        if (contadas != esperadas) fallos.add("llamadas " + operacion + ": " + contadas + " en lugar de " + esperadas);
+    }
+}
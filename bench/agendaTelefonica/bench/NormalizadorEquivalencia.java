@@ -0,0 +1,117 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Normalizador;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Comprobación exhaustiva de que {@link Normalizador} produce exactamente lo mismo
+ * que la normalización original basada en NFD + regex, y de que el validador de
+ * teléfonos coincide con {@code trim().matches("\\d{7,15}")}.
+ *
+ * Recorre todos los caracteres UTF-16, todos los pares dentro de la tabla de plegado
+ * y cadenas aleatorias mixtas, con el locale por defecto y después con turco, lituano
+ * y {@link Locale#ROOT}, cuyas reglas de minúsculas difieren (la tabla de
+ * {@link Normalizador} depende del locale). Termina con código 1 ante la primera
+ * discrepancia.
+ *
+ * Uso: java -cp out agendaTelefonica.bench.NormalizadorEquivalencia
+ */
+public class NormalizadorEquivalencia {
+
+    private static final int LIMITE_TABLA = 0x250;
+
+    private static final Locale[] LOCALES = {
+            Locale.forLanguageTag("tr"), Locale.forLanguageTag("lt"), Locale.ROOT
+    };
+
+    private static long comprobados;
+
+    // Locale por defecto durante la comprobación en curso, para los mensajes de error
+    private static Locale locale;
+
+    public static void main(String[] args) {
+        Locale original = Locale.getDefault();
+        try {
+            comprobarTodo(original);
+            for (Locale l : LOCALES) comprobarTodo(l);
+        } finally {
+            Locale.setDefault(original);
+        }
+        System.out.println("OK: " + comprobados + " casos equivalentes.");
+    }
+
+    private static void comprobarTodo(Locale l) {
+        Locale.setDefault(l);
+        locale = l;
+
+        // 1. Cada carácter UTF-16 de forma aislada y rodeado de espacios
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String s = String.valueOf((char) c);
+            comprobarTexto(s);
+            comprobarTexto(" " + s + "\t");
+            comprobarTexto("a" + s + "B");
+        }
+
+        // 2. Todos los pares de caracteres cubiertos por la tabla
+        char[] par = new char[2];
+        for (int a = 0; a < LIMITE_TABLA; a++) {
+            for (int b = 0; b < LIMITE_TABLA; b++) {
+                par[0] = (char) a;
+                par[1] = (char) b;
+                comprobarTexto(new String(par));
+            }
+        }
+
+        // 3. Cadenas aleatorias mezclando ASCII, Latin, marcas combinantes y otros alfabetos
+        Random r = new Random(7);
+        char[] alfabeto = "aeiouAEIOU\u00f1\u00d1\u00e7\u00c7\u00e1\u00c9\u00fc \t\u0301\u0303\u0130\u0131\u00df\u00e6\u0152\u01c5\u03a3\u03c3\u03c2\u65e5\ud83d\ude00".toCharArray();
+        for (int i = 0; i < 200_000; i++) {
+            char[] t = new char[1 + r.nextInt(12)];
+            for (int j = 0; j < t.length; j++) {
+                t[j] = r.nextInt(4) == 0 ? (char) r.nextInt(LIMITE_TABLA) : alfabeto[r.nextInt(alfabeto.length)];
+            }
+            comprobarTexto(new String(t));
+        }
+        if (!Normalizador.normalizar(null).equals("")) fallo("normalizar(null)", "", Normalizador.normalizar(null));
+
+        // 4. Teléfonos: longitudes de 0 a 17, dígitos ASCII, no ASCII y espacios
+        String[] piezas = {"0", "9", "5", " ", "\t", "a", "\u0661", "-", "+"};
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int largo = r.nextInt(18);
+            for (int j = 0; j < largo; j++) {
+                sb.append(r.nextInt(8) == 0 ? piezas[r.nextInt(piezas.length)] : (char) ('0' + r.nextInt(10)));
+            }
+            comprobarTelefono(sb.toString());
+        }
+        if (Normalizador.esTelefonoValido(null)) fallo("esTelefonoValido(null)", "false", "true");
+    }
+
+    private static void comprobarTexto(String s) {
+        String esperado = Normalizer.normalize(s, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase()
+                .trim();
+        String obtenido = Normalizador.normalizar(s);
+        if (!esperado.equals(obtenido)) fallo(s, esperado, obtenido);
+        comprobados++;
+    }
+
+    private static void comprobarTelefono(String s) {
+        boolean esperado = s.trim().matches("\\d{7,15}");
+        boolean obtenido = Normalizador.esTelefonoValido(s);
+        if (esperado != obtenido) fallo(s, String.valueOf(esperado), String.valueOf(obtenido));
+        comprobados++;
+    }
+
+    private static void fallo(String entrada, String esperado, String obtenido) {
+        System.out.printf("Discrepancia con el locale \"%s\" para %s: esperado %s, obtenido %s%n",
+                locale.toLanguageTag(), entrada.codePoints().mapToObj(cp -> String.format("U+%04X", cp)).toList(),
+                esperado.codePoints().mapToObj(cp -> String.format("U+%04X", cp)).toList(),
+                obtenido.codePoints().mapToObj(cp -> String.format("U+%04X", cp)).toList());
+        System.exit(1);
+    }
+}
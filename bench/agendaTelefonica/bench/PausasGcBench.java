@@ -0,0 +1,166 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Pausas del recolector con la agenda cargada, para cada almacenamiento: objetos
+ * ({@code new Agenda(n)}), compacta ({@link Agenda#compacta}) y fuera del heap
+ * ({@link Agenda#fueraDelHeap}).
+ *
+ * Con N contactos cargados se mide:
+ * <ul>
+ *   <li>la duración de una recolección completa ({@code System.gc()}), que recorre
+ *       todo lo vivo en el heap;</li>
+ *   <li>durante {@code --ms}, una carga de consultas por teléfono y nombre, cambios de
+ *       teléfono y basura de corta y media vida (un búfer circular de 64 MB que obliga
+ *       a promover y a recolectar la generación vieja). Se cuentan las recolecciones y
+ *       su duración con las notificaciones de los GarbageCollectorMXBean.</li>
+ * </ul>
+ * Cada agenda se cierra antes de pasar a la siguiente.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.PausasGcBench
+ *        [--tamano=1000000] [--almacen=objetos,compacta,fueraDelHeap] [--ms=10000]
+ */
+public class PausasGcBench {
+
+    private static final int BASURA_MEDIA = 64 << 20;
+
+    // Duraciones (ms) de las recolecciones notificadas mientras corre la carga
+    private static final List<Long> pausas = new ArrayList<>();
+    private static volatile boolean registrando;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "1000000"));
+        String[] almacenes = opciones.getOrDefault("almacen", "objetos,compacta,fueraDelHeap").split(",");
+        long ms = Long.parseLong(opciones.getOrDefault("ms", "10000"));
+
+        PrintStream consola = System.out;
+        escucharRecolecciones();
+        Datos datos = Datos.crear("acentos", n);
+
+        consola.printf(Locale.ROOT, "%d contactos, %d ms de carga por almacén%n", n, ms);
+        consola.printf(Locale.ROOT, "%-13s %10s %12s %10s %10s %10s %10s %12s%n", "almacen", "heap MB",
+                "GC completa", "GCs", "GC ms", "p99 ms", "max ms", "ops/s");
+
+        for (String almacen : almacenes) {
+            try (Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen.trim(), n)) {
+                llenar(agenda, datos);
+                Medidor.sumidero += agenda.listarContactos(n / 2, 1).size();
+
+                long completa = Long.MAX_VALUE;
+                for (int i = 0; i < 3; i++) {
+                    long inicio = System.nanoTime();
+                    System.gc();
+                    completa = Math.min(completa, System.nanoTime() - inicio);
+                }
+                Runtime rt = Runtime.getRuntime();
+                long heap = rt.totalMemory() - rt.freeMemory();
+
+                synchronized (pausas) {
+                    pausas.clear();
+                }
+                registrando = true;
+                long operaciones = cargar(agenda, datos, ms);
+                registrando = false;
+
+                long[] d;
+                synchronized (pausas) {
+                    d = pausas.stream().mapToLong(Long::longValue).sorted().toArray();
+                }
+                long total = Arrays.stream(d).sum();
+                long p99 = d.length == 0 ? 0 : d[Math.min(d.length - 1, (int) (d.length * 0.99))];
+                long max = d.length == 0 ? 0 : d[d.length - 1];
+                consola.printf(Locale.ROOT, "%-13s %10.1f %12.1f %10d %10d %10d %10d %12.0f%n", almacen.trim(),
+                        heap / 1e6, completa / 1e6, d.length, total, p99, max, operaciones * 1000.0 / ms);
+            }
+            System.gc();
+        }
+    }
+
+    /**
+     * Consultas, cambios de teléfono y basura durante {@code ms}. Cada iteración deja
+     * un bloque en el búfer circular, que sobrevive a varias recolecciones jóvenes.
+     */
+    private static long cargar(Agenda agenda, Datos datos, long ms) {
+        int n = datos.nombres.length;
+        Random r = new Random(7);
+        byte[][] basura = new byte[BASURA_MEDIA / 4096][];
+        long operaciones = 0;
+        long fin = System.nanoTime() + ms * 1_000_000;
+        for (int k = 0; System.nanoTime() < fin; k++) {
+            for (int j = 0; j < 64; j++, operaciones++) {
+                int i = r.nextInt(n);
+                switch (j & 3) {
+                    case 0:
+                        Medidor.sumidero += agenda.existeTelefono(datos.telefonos[i]) ? 1 : 0;
+                        break;
+                    case 1:
+                        Medidor.sumidero += agenda.existeNombreApellido(datos.nombres[i], datos.apellidos[i]) ? 1 : 0;
+                        break;
+                    case 2:
+                        // Alterna cada contacto entre su teléfono y el del rango alternativo
+                        String nuevo = agenda.existeTelefono(datos.telefonos[i])
+                                ? String.valueOf(Datos.TELEFONO_ALTERNATIVO + i) : datos.telefonos[i];
+                        agenda.modificarTelefono(datos.nombres[i], datos.apellidos[i], nuevo);
+                        break;
+                    default:
+                        Medidor.sumidero += agenda.existeContacto(datos.nombres[i], datos.apellidos[i],
+                                datos.telefonos[i]) ? 1 : 0;
+                }
+            }
+            basura[k % basura.length] = new byte[4096];
+        }
+        Medidor.sumidero += basura.length;
+        return operaciones;
+    }
+
+    private static void escucharRecolecciones() {
+        NotificationListener oyente = (notificacion, contexto) -> {
+            if (!registrando || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notificacion.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notificacion.getUserData());
+            // Los ciclos concurrentes no detienen la aplicación
+            if (info.getGcAction().contains("concurrent") || info.getGcCause().contains("concurrent")) return;
+            synchronized (pausas) {
+                pausas.add(info.getGcInfo().getDuration());
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) ((NotificationEmitter) gc).addNotificationListener(oyente, null, null);
+        }
+    }
+
+    /** Altas en bloques de 8192, como la importación */
+    private static void llenar(Agenda agenda, Datos datos) {
+        List<Contacto> bloque = new ArrayList<>(8192);
+        for (int i = 0; i < datos.nombres.length; i++) {
+            bloque.add(new Contacto(new String(datos.nombres[i]), new String(datos.apellidos[i]),
+                    new String(datos.telefonos[i])));
+            if (bloque.size() == 8192) {
+                agenda.anadirEnBloque(bloque);
+                bloque.clear();
+            }
+        }
+        agenda.anadirEnBloque(bloque);
+    }
+}
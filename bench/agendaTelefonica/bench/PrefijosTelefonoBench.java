@@ -0,0 +1,186 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Consultas por prefijo de teléfono ({@link Agenda#listarPorPrefijoTelefono},
+ * {@link Agenda#contarPorPrefijoTelefono} y {@link Agenda#prefijoTelefonoMasLargo}):
+ * primero las compara con un mapa ordenado de referencia tras altas, bajas y cambios de
+ * teléfono al azar (sale con código 1 si difieren); después mide cada consulta en una
+ * agenda grande y la compara con recorrer todos los teléfonos.
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.PrefijosTelefonoBench
+ *        [--tamano=1000000] [--almacen=objetos,compacta] [--digitos=3,6] [--limite=20]
+ *        [--calentamiento=2] [--iteraciones=5] [--ms=1000] [--salida=out/bench/prefijos.json]
+ */
+public class PrefijosTelefonoBench {
+
+    private static final int CONSULTAS = 1 << 12;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "1000000"));
+        String[] almacenes = opciones.getOrDefault("almacen", "objetos,compacta").split(",");
+        String[] digitos = opciones.getOrDefault("digitos", "3,6").split(",");
+        int limite = Integer.parseInt(opciones.getOrDefault("limite", "20"));
+
+        PrintStream consola = System.out;
+        comprobar(consola);
+
+        Medidor m = Medidor.desdeOpciones(opciones, 2, 1000, "prefijos.json", consola);
+        Datos datos = Datos.crear("acentos", n);
+        Random r = new Random(23);
+        List<String[]> tabla = new ArrayList<>();
+        for (String almacen : almacenes) {
+            Agenda agenda = AgendaBenchmark.nuevaAgenda(almacen.trim(), n);
+            List<Contacto> contactos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+            agenda.anadirEnBloque(contactos);
+            contactos = null;
+            long inicio = System.nanoTime();
+            agenda.contarPorPrefijoTelefono("");
+            consola.printf(Locale.ROOT, "%s: construir el índice de teléfonos, %.0f ms%n", almacen.trim(), (System.nanoTime() - inicio) / 1e6);
+
+            // Números de llamada: un teléfono de la agenda con una extensión detrás
+            String[] llamadas = new String[CONSULTAS];
+            for (int i = 0; i < CONSULTAS; i++) llamadas[i] = datos.telefonos[r.nextInt(n)] + r.nextInt(1000);
+
+            for (String d : digitos) {
+                int largo = Integer.parseInt(d.trim());
+                String[] prefijos = new String[CONSULTAS];
+                for (int i = 0; i < CONSULTAS; i++) prefijos[i] = datos.telefonos[r.nextInt(n)].substring(0, largo);
+                Map<String, String> params = new LinkedHashMap<>();
+                params.put("tamano", String.valueOf(n));
+                params.put("almacen", almacen.trim());
+                params.put("digitos", String.valueOf(largo));
+                int[] k = {0};
+                double listar = m.medir("prefijos.listar", params, () -> {
+                    String p = prefijos[k[0]++ & (CONSULTAS - 1)];
+                    Medidor.sumidero += agenda.listarPorPrefijoTelefono(p, 1000, limite).size();
+                    return 1;
+                }).media();
+                double contar = m.medir("prefijos.contar", params, () -> {
+                    Medidor.sumidero += agenda.contarPorPrefijoTelefono(prefijos[k[0]++ & (CONSULTAS - 1)]);
+                    return 1;
+                }).media();
+                tabla.add(new String[]{almacen.trim(), "listar " + largo + " dígitos, desde 1000",
+                        String.format(Locale.ROOT, "%.1f", listar)});
+                tabla.add(new String[]{almacen.trim(), "contar " + largo + " dígitos",
+                        String.format(Locale.ROOT, "%.1f", contar)});
+            }
+
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("tamano", String.valueOf(n));
+            params.put("almacen", almacen.trim());
+            int[] k = {0};
+            double masLargo = m.medir("prefijos.masLargo", params, () -> {
+                Medidor.sumidero += agenda.prefijoTelefonoMasLargo(llamadas[k[0]++ & (CONSULTAS - 1)]).isPresent() ? 1 : 0;
+                return 1;
+            }).media();
+            double recorrido = m.medir("prefijos.recorridoCompleto", params, () -> {
+                String p = llamadas[k[0]++ & (CONSULTAS - 1)].substring(0, 3);
+                Medidor.sumidero += agenda.flujoContactos().filter(c -> c.getTelefono().startsWith(p)).count();
+                return 1;
+            }).media();
+            tabla.add(new String[]{almacen.trim(), "prefijo más largo", String.format(Locale.ROOT, "%.1f", masLargo)});
+            tabla.add(new String[]{almacen.trim(), "contar recorriendo todo", String.format(Locale.ROOT, "%.1f", recorrido)});
+            agenda.close();
+        }
+
+        consola.println();
+        consola.printf(Locale.ROOT, "%-10s %-32s %14s%n", "almacen", "consulta", "ns/op");
+        for (String[] fila : tabla) consola.printf(Locale.ROOT, "%-10s %-32s %14s%n", (Object[]) fila);
+
+        m.guardar();
+    }
+
+    /** Altas, bajas y cambios de teléfono al azar, con un mapa teléfono -> contacto de referencia */
+    private static void comprobar(PrintStream consola) {
+        Random r = new Random(9);
+        long consultas = 0;
+        for (int ronda = 0; ronda < 40; ronda++) {
+            Agenda agenda = ronda % 2 == 0 ? new Agenda(2000) : Agenda.compacta(2000);
+            TreeMap<String, String> referencia = new TreeMap<>();
+            for (int paso = 0; paso < 3000; paso++) {
+                int k = r.nextInt(1500);
+                String nombre = "N" + k, apellido = "A" + k;
+                String telefono = telefono(r);
+                int op = r.nextInt(10);
+                if (op < 5) {
+                    boolean libre = !agenda.existeNombreApellido(nombre, apellido) && !referencia.containsKey(telefono);
+                    if (agenda.anadirContacto(new Contacto(nombre, apellido, telefono)).name().equals("CORRECTO") != libre) {
+                        fallo(consola, "alta de " + telefono);
+                    }
+                    if (libre) referencia.put(telefono, nombre);
+                } else if (op < 7) {
+                    Optional<Contacto> c = agenda.buscarPorNombreApellido(nombre, apellido);
+                    agenda.eliminarContacto(nombre, apellido);
+                    c.ifPresent(x -> referencia.remove(x.getTelefono()));
+                } else {
+                    // El teléfono anterior se lee antes: el contacto puede cambiar en el sitio
+                    String anterior = agenda.buscarPorNombreApellido(nombre, apellido).map(Contacto::getTelefono).orElse(null);
+                    if (anterior != null && !referencia.containsKey(telefono)
+                            && agenda.modificarTelefono(nombre, apellido, telefono).name().equals("CORRECTO")) {
+                        referencia.remove(anterior);
+                        referencia.put(telefono, nombre);
+                    }
+                }
+                if (paso == 0 || paso % 25 != 0) continue;
+
+                // Los teléfonos se generan en un rango pequeño: los prefijos se comparten mucho
+                String prefijo = telefono.substring(0, r.nextInt(6));
+                int desde = r.nextInt(30), limite = 1 + r.nextInt(30);
+                List<String> esperados = new ArrayList<>();
+                int i = 0;
+                for (String t : referencia.tailMap(prefijo).keySet()) {
+                    if (!t.startsWith(prefijo) || esperados.size() == limite) break;
+                    if (i++ >= desde) esperados.add(t);
+                }
+                List<String> obtenidos = new ArrayList<>();
+                for (Contacto c : agenda.listarPorPrefijoTelefono(prefijo, desde, limite)) obtenidos.add(c.getTelefono());
+                if (!obtenidos.equals(esperados)) fallo(consola, "listar " + prefijo + " desde " + desde + ": " + obtenidos + " en lugar de " + esperados);
+
+                int cuenta = referencia.subMap(prefijo, prefijo + Character.MAX_VALUE).size();
+                if (agenda.contarPorPrefijoTelefono(prefijo) != cuenta) fallo(consola, "contar " + prefijo + ": " + agenda.contarPorPrefijoTelefono(prefijo) + " en lugar de " + cuenta);
+
+                String llamada = telefono + r.nextInt(100);
+                String masLargo = null;
+                for (int largo = llamada.length(); largo > 0 && masLargo == null; largo--) {
+                    if (referencia.containsKey(llamada.substring(0, largo))) masLargo = llamada.substring(0, largo);
+                }
+                String obtenido = agenda.prefijoTelefonoMasLargo(llamada).map(Contacto::getTelefono).orElse(null);
+                if (masLargo == null ? obtenido != null : !masLargo.equals(obtenido)) {
+                    fallo(consola, "prefijo más largo de " + llamada + ": " + obtenido + " en lugar de " + masLargo);
+                }
+                consultas += 3;
+            }
+            agenda.close();
+        }
+        consola.println("Comprobación correcta: " + consultas + " consultas iguales a la referencia");
+    }
+
+    /** Teléfono de 7 a 9 dígitos de un rango pequeño, para que unos sean prefijo de otros */
+    private static String telefono(Random r) {
+        int largo = 7 + r.nextInt(3);
+        StringBuilder sb = new StringBuilder("31");
+        while (sb.length() < largo) sb.append(r.nextInt(3));
+        return sb.toString();
+    }
+
+    private static void fallo(PrintStream consola, String que) {
+        consola.println("FALLO: " + que);
+        System.exit(1);
+    }
+}
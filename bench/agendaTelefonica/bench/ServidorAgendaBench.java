@@ -0,0 +1,195 @@
+package agendaTelefonica.bench;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.red.ClienteAgenda;
+import agendaTelefonica.red.ServidorAgenda;
+import agendaTelefonica.servicio.Agenda;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generador de carga para {@link ServidorAgenda}: varias conexiones envían peticiones
+ * sin pausa durante {@code --ms} y se informa de las peticiones por segundo y de los
+ * percentiles de latencia.
+ *
+ * Mezcla: 70% TEL (teléfono existente), 20% PREFIJO de apellido (3 letras, límite 10)
+ * y 10% CAMBIO (cada conexión alterna los teléfonos de sus propios contactos). Con
+ * {@code --profundidad=P} cada conexión envía P peticiones encadenadas y luego lee
+ * las P respuestas; la latencia de cada una se mide desde el envío del grupo.
+ *
+ * Sin {@code --puerto} se arranca un servidor en este proceso con N contactos; con
+ * {@code --puerto} se usa uno ya en marcha, al que primero se le dan de alta los
+ * contactos (las altas repetidas se ignoran; si no caben, se avisa y se termina).
+ *
+ * Uso (ver bench/ejecutar.sh):
+ *   bench/ejecutar.sh agendaTelefonica.bench.ServidorAgendaBench
+ *        [--tamano=100000] [--conexiones=1,4,16] [--profundidad=1,32] [--ms=5000]
+ *        [--host=127.0.0.1 --puerto=7070]
+ */
+public class ServidorAgendaBench {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = AgendaBenchmark.leerOpciones(args);
+        int n = Integer.parseInt(opciones.getOrDefault("tamano", "100000"));
+        String[] conexiones = opciones.getOrDefault("conexiones", "1,4,16").split(",");
+        String[] profundidades = opciones.getOrDefault("profundidad", "1,32").split(",");
+        long ms = Long.parseLong(opciones.getOrDefault("ms", "5000"));
+        String host = opciones.getOrDefault("host", "127.0.0.1");
+
+        PrintStream consola = System.out;
+        Datos datos = Datos.crear("acentos", n);
+        ServidorAgenda servidor = null;
+        int puerto;
+        if (opciones.containsKey("puerto")) {
+            puerto = Integer.parseInt(opciones.get("puerto"));
+            cargarPorRed(host, puerto, datos);
+        } else {
+            Agenda agenda = new Agenda(n);
+            List<Contacto> contactos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) contactos.add(datos.contacto(i));
+            agenda.anadirEnBloque(contactos);
+            servidor = ServidorAgenda.iniciar(agenda, 0);
+            puerto = servidor.getPuerto();
+            consola.println("Servidor en el puerto " + puerto + " con "
+                    + (servidor.usaHilosVirtuales() ? "hilos virtuales" : "hilos de plataforma"));
+        }
+
+        consola.printf(Locale.ROOT, "%-11s %-11s %12s %10s %10s %10s %8s%n",
+                "conexiones", "profundidad", "peticiones/s", "p50 us", "p99 us", "p99.9 us", "errores");
+        for (String c : conexiones) {
+            for (String p : profundidades) {
+                ejecutar(consola, host, puerto, datos, Integer.parseInt(c.trim()), Integer.parseInt(p.trim()), ms);
+            }
+        }
+        if (servidor != null) servidor.close();
+    }
+
+    private static void ejecutar(PrintStream consola, String host, int puerto, Datos datos, int conexiones,
+                                 int profundidad, long ms) throws Exception {
+        Carga[] cargas = new Carga[conexiones];
+        Thread[] hilos = new Thread[conexiones];
+        long fin = System.nanoTime() + ms * 1_000_000;
+        for (int i = 0; i < conexiones; i++) {
+            cargas[i] = new Carga(new ClienteAgenda(host, puerto), datos, i, conexiones, profundidad, fin);
+            hilos[i] = new Thread(cargas[i], "carga-" + i);
+        }
+        long inicio = System.nanoTime();
+        for (Thread t : hilos) t.start();
+        for (Thread t : hilos) t.join();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        int total = 0;
+        long errores = 0;
+        for (Carga c : cargas) {
+            if (c.fallo != null) throw c.fallo;
+            total += c.cantidad;
+            errores += c.errores;
+        }
+        long[] latencias = new long[total];
+        int k = 0;
+        for (Carga c : cargas) {
+            System.arraycopy(c.latencias, 0, latencias, k, c.cantidad);
+            k += c.cantidad;
+        }
+        Arrays.sort(latencias);
+        consola.printf(Locale.ROOT, "%-11d %-11d %12.0f %10.1f %10.1f %10.1f %8d%n", conexiones, profundidad,
+                total / segundos, percentil(latencias, 0.50) / 1e3, percentil(latencias, 0.99) / 1e3,
+                percentil(latencias, 0.999) / 1e3, errores);
+    }
+
+    private static long percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) return 0;
+        return ordenadas[Math.min(ordenadas.length - 1, (int) (ordenadas.length * p))];
+    }
+
+    /** Da de alta los contactos en un servidor externo, en grupos encadenados */
+    private static void cargarPorRed(String host, int puerto, Datos datos) throws IOException {
+        try (ClienteAgenda cliente = new ClienteAgenda(host, puerto)) {
+            int n = datos.tamano();
+            for (int desde = 0; desde < n; desde += 256) {
+                int hasta = Math.min(n, desde + 256);
+                for (int i = desde; i < hasta; i++) {
+                    cliente.enviar("ALTA", datos.nombres[i], datos.apellidos[i], datos.telefonos[i]);
+                }
+                cliente.vaciar();
+                for (int i = desde; i < hasta; i++) {
+                    String respuesta = cliente.recibir();
+                    if (respuesta.startsWith("ERR\tAGENDA_LLENA")) {
+                        System.err.println("La agenda del servidor no admite " + n + " contactos");
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Una conexión enviando grupos de peticiones hasta el instante {@code fin} */
+    private static final class Carga implements Runnable {
+        private final ClienteAgenda cliente;
+        private final Datos datos;
+        private final int id;
+        private final int conexiones;
+        private final int profundidad;
+        private final long fin;
+        private final boolean[] alternado;
+
+        long[] latencias = new long[1 << 16];
+        int cantidad;
+        long errores;
+        Exception fallo;
+
+        Carga(ClienteAgenda cliente, Datos datos, int id, int conexiones, int profundidad, long fin) {
+            this.cliente = cliente;
+            this.datos = datos;
+            this.id = id;
+            this.conexiones = conexiones;
+            this.profundidad = profundidad;
+            this.fin = fin;
+            this.alternado = new boolean[datos.tamano()];
+        }
+
+        @Override
+        public void run() {
+            Random r = new Random(id);
+            int n = datos.tamano();
+            try (cliente) {
+                while (System.nanoTime() < fin) {
+                    for (int j = 0; j < profundidad; j++) {
+                        int tipo = r.nextInt(10);
+                        int i = r.nextInt(n);
+                        if (tipo < 7) {
+                            cliente.enviar("TEL", datos.telefonos[i]);
+                        } else if (tipo < 9) {
+                            String apellido = datos.apellidos[i];
+                            cliente.enviar("PREFIJO", "apellido", apellido.substring(0, Math.min(3, apellido.length())), "10");
+                        } else {
+                            // Sólo contactos de esta conexión, para que los cambios no choquen entre sí
+                            i -= i % conexiones - id;
+                            if (i >= n) i -= conexiones;
+                            alternado[i] = !alternado[i];
+                            String telefono = alternado[i] ? datos.telefonoAlternativo(i) : datos.telefonos[i];
+                            cliente.enviar("CAMBIO", datos.nombres[i], datos.apellidos[i], telefono);
+                        }
+                    }
+                    long inicio = System.nanoTime();
+                    cliente.vaciar();
+                    for (int j = 0; j < profundidad; j++) {
+                        String respuesta = cliente.recibir();
+                        if (respuesta.startsWith("ERR")) errores++;
+                        if (cantidad == latencias.length) latencias = Arrays.copyOf(latencias, cantidad * 2);
+                        latencias[cantidad++] = System.nanoTime() - inicio;
+                    }
+                }
+            } catch (IOException e) {
+                fallo = e;
+            }
+        }
+    }
+}
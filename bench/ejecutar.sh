@@ -0,0 +1,24 @@
+#!/bin/sh
+# Compila la agenda y los benchmarks con javac (sin dependencias ni red) y ejecuta
+# la clase indicada. Por defecto lanza AgendaBenchmark; el resto de argumentos se
+# pasan tal cual, p. ej.:
+#
+#   bench/ejecutar.sh --tamanos=1000,100000 --datos=acentos --salida=out/bench/v1.json
+#   bench/ejecutar.sh agendaTelefonica.bench.NormalizadorEquivalencia
+#
+# Las clases se compilan en out/clases y, sin --salida, los resultados JSON quedan en
+# out/bench, fuera del control de versiones.
+set -e
+cd "$(dirname "$0")/.."
+
+CLASES=out/clases
+rm -rf "$CLASES"
+mkdir -p "$CLASES"
+javac -encoding UTF-8 -d "$CLASES" $(find src bench -name '*.java')
+
+CLASE=agendaTelefonica.bench.AgendaBenchmark
+case "$1" in
+    agendaTelefonica.*) CLASE=$1; shift ;;
+esac
+
+exec java ${JAVA_OPTS:--Xmx3g} -cp "$CLASES" "$CLASE" "$@"
@@ -1,37 +1,88 @@
 package agendaTelefonica.app;
 
+import agendaTelefonica.importacion.ImportadorContactos;
+import agendaTelefonica.importacion.ResumenImportacion;
 import agendaTelefonica.modelo.Contacto;
 import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.InstantaneaAgenda;
+import agendaTelefonica.servicio.ModoLote;
+import agendaTelefonica.servicio.OperacionLote;
+import agendaTelefonica.servicio.ResultadoOperacion;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * Clase principal de la interfaz gráfica para la agenda telefónica.
  * Permite añadir, eliminar, modificar, buscar y listar contactos usando Swing.
  * Ahora se usa JTable para mostrar contactos en columnas: Nombre, Apellido, Teléfono.
+ * La tabla lee las filas de la agenda según las pinta y se actualiza sola con cada
+ * modificación (ver {@link ModeloTablaContactos}).
+ *
+ * El filtro sobre la tabla, la importación, la exportación y la eliminación de varios
+ * contactos se ejecutan en segundo plano con {@link SwingWorker}, para que la ventana
+ * siga respondiendo con agendas grandes: el filtro entrega a la tabla la lista de
+ * coincidencias ya ordenada, y el hilo de eventos no recorre la agenda. Todos los accesos a la agenda, desde el hilo
+ * de eventos o desde esas tareas, pasan por un mismo cerrojo, y las tareas largas lo
+ * sueltan entre tramo y tramo.
  */
 public class InterfazAgenda extends JFrame {
 
     /** La agenda que maneja los contactos */
     private final Agenda agenda;
 
+    /** Cerrojo de la agenda, compartido con el modelo de la tabla y las tareas en segundo plano */
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
     /** Campos de texto para ingresar nombre, apellido y teléfono */
     private final JTextField tfNombre = new JTextField(10),
             tfApellido = new JTextField(10),
             tfTelefono = new JTextField(8);
 
-    /** Columnas de la tabla */
-    private final String[] columnas = {"Nombre", "Apellido", "Teléfono"};
+    /** Filtro incremental sobre la tabla y campo al que se aplica */
+    private final JTextField tfFiltro = new JTextField(20);
+    private final JComboBox<String> cbCampo = new JComboBox<>(new String[]{"Todos", "Nombre", "Apellido", "Teléfono"});
 
-    /** Modelo dinámico para la tabla de contactos */
-    private final DefaultTableModel modeloTabla = new DefaultTableModel(columnas, 0);
+    /** Modelo de la tabla: filas leídas de la agenda bajo demanda */
+    private final ModeloTablaContactos modeloTabla;
 
     /** Tabla para mostrar los contactos en columnas */
-    private final JTable tabla = new JTable(modeloTabla);
+    private final JTable tabla;
+
+    /** Espera desde la última tecla antes de lanzar la búsqueda del filtro */
+    private static final int RETARDO_FILTRO_MS = 250;
+
+    /** Contactos que se eliminan por cada toma del cerrojo; al exportar, cada cuántos se avisa del progreso */
+    private static final int TRAMO = 500;
+
+    private final Timer temporizadorFiltro = new Timer(RETARDO_FILTRO_MS, e -> filtrar());
+
+    /** Búsqueda del filtro en curso; las anteriores se cancelan */
+    private SwingWorker<List<Contacto>, Void> busquedaEnCurso;
+
+    /** Barra de progreso y estado de las tareas en segundo plano */
+    private final JProgressBar barra = new JProgressBar(0, 100);
+    private final JLabel lbEstado = new JLabel(" ");
+
+    /** Botones que lanzan tareas largas: sólo una a la vez */
+    private final List<JButton> botonesTareas = new ArrayList<>();
 
     /**
      * Clase interna que representa un botón con esquinas redondeadas.
@@ -68,9 +119,11 @@ public class InterfazAgenda extends JFrame {
     public InterfazAgenda(Agenda agenda) {
         super("Agenda simple");
         this.agenda = agenda;
+        this.modeloTabla = new ModeloTablaContactos(agenda, cerrojo);
+        this.tabla = new JTable(modeloTabla);
 
         setDefaultCloseOperation(EXIT_ON_CLOSE);
-        setSize(600, 400);
+        setSize(700, 460);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(6, 6));
 
@@ -92,12 +145,19 @@ public class InterfazAgenda extends JFrame {
         botonesPanel.add(bAdd);
         botonesPanel.add(bDel);
 
+        // Filtro incremental justo encima de la tabla
+        JPanel filtroPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 6, 2));
+        filtroPanel.add(new JLabel("Filtrar:"));
+        filtroPanel.add(tfFiltro);
+        filtroPanel.add(cbCampo);
+
         northPanel.add(camposPanel, BorderLayout.NORTH);
-        northPanel.add(botonesPanel, BorderLayout.SOUTH);
+        northPanel.add(botonesPanel, BorderLayout.CENTER);
+        northPanel.add(filtroPanel, BorderLayout.SOUTH);
         add(northPanel, BorderLayout.NORTH);
 
         // ---- PANEL CENTRAL: JTable para contactos ----
-        tabla.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        tabla.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         tabla.setFillsViewportHeight(true);
         add(new JScrollPane(tabla), BorderLayout.CENTER);
 
@@ -111,18 +171,33 @@ public class InterfazAgenda extends JFrame {
             }
         });
 
-        // ---- PANEL SUR: botones auxiliares ----
+        // ---- PANEL SUR: botones auxiliares y estado de las tareas ----
         JPanel bot = new JPanel(new FlowLayout(FlowLayout.CENTER, 6, 6));
         RoundedButton bExiste = new RoundedButton("Existe Contacto?");
         RoundedButton bEsp = new RoundedButton("Cupos Libres");
         RoundedButton bMod = new RoundedButton("Modificar Tel");
-        RoundedButton bBuscar = new RoundedButton("Buscar");
         RoundedButton bLimpiar = new RoundedButton("Limpiar");
         RoundedButton bDemo = new RoundedButton("Demo");
+        RoundedButton bImportar = new RoundedButton("Importar");
+        RoundedButton bExportar = new RoundedButton("Exportar");
 
         bot.add(bExiste); bot.add(bEsp);bot.add(bMod);
-        bot.add(bBuscar);bot.add(bLimpiar);bot.add(bDemo);
-        add(bot, BorderLayout.SOUTH);
+        bot.add(bLimpiar);bot.add(bDemo);bot.add(bImportar);bot.add(bExportar);
+
+        JPanel estadoPanel = new JPanel(new BorderLayout(6, 0));
+        estadoPanel.setBorder(new EmptyBorder(0, 8, 4, 8));
+        barra.setVisible(false);
+        estadoPanel.add(lbEstado, BorderLayout.CENTER);
+        estadoPanel.add(barra, BorderLayout.EAST);
+
+        JPanel surPanel = new JPanel(new BorderLayout());
+        surPanel.add(bot, BorderLayout.NORTH);
+        surPanel.add(estadoPanel, BorderLayout.SOUTH);
+        add(surPanel, BorderLayout.SOUTH);
+
+        botonesTareas.add(bDel);
+        botonesTareas.add(bImportar);
+        botonesTareas.add(bExportar);
 
         // ---- ACCIONES DE LOS BOTONES ----
 
@@ -137,26 +212,27 @@ public class InterfazAgenda extends JFrame {
                 return;
             }
 
-            String resultado = agenda.anadirContacto(new Contacto(n, a, t));
-            if (!resultado.equals("OK")) {
-                JOptionPane.showMessageDialog(this, resultado);
+            ResultadoOperacion resultado = conCerrojo(() -> agenda.anadirContacto(new Contacto(n, a, t)));
+            if (resultado != ResultadoOperacion.CORRECTO) {
+                JOptionPane.showMessageDialog(this, resultado.getMensaje());
                 return;
             }
 
             // Mostrar alerta de contacto agregado
             JOptionPane.showMessageDialog(this, "Contacto agregado correctamente.", "Éxito", JOptionPane.INFORMATION_MESSAGE);
 
-            actualizar(); // actualiza la tabla
-            limpiar();    // limpia los campos de texto
+            limpiar(); // limpia los campos de texto; la tabla se actualiza sola
         });
 
 
-        // Eliminar contacto
+        // Eliminar el contacto seleccionado, o varios en segundo plano
         bDel.addActionListener(e -> {
-            int fila = tabla.getSelectedRow();
-            if (fila >= 0) {
-                String n = tabla.getValueAt(fila, 0).toString();
-                String a = tabla.getValueAt(fila, 1).toString();
+            int[] filas = tabla.getSelectedRows();
+            if (filas.length > 1) {
+                eliminarVarios(filas);
+            } else if (filas.length == 1) {
+                String n = tabla.getValueAt(filas[0], 0).toString();
+                String a = tabla.getValueAt(filas[0], 1).toString();
 
                 String[] opciones = {"Sí", "No"}; // textos personalizados
                 int opcion = JOptionPane.showOptionDialog(this,
@@ -169,8 +245,8 @@ public class InterfazAgenda extends JFrame {
                         opciones[1]); // opción por defecto "No"
 
                 if (opcion == 0) { // 0 = "Sí"
-                    agenda.eliminarContacto(n, a);
-                    actualizar();
+                    ResultadoOperacion resultado = conCerrojo(() -> agenda.eliminarContacto(n, a));
+                    if (resultado != ResultadoOperacion.CORRECTO) JOptionPane.showMessageDialog(this, resultado.getMensaje());
                 }
             } else {
                 JOptionPane.showMessageDialog(this, "Seleccione un contacto para eliminar.");
@@ -186,14 +262,7 @@ public class InterfazAgenda extends JFrame {
                 JOptionPane.showMessageDialog(this, "Complete nombre y apellido del contacto a modificar.");
                 return;
             }
-            Contacto sel = null;
-            for (Contacto c : agenda.obtenerContactos()) {
-                if (Contacto.normalizarTexto(c.getNombre()).equals(Contacto.normalizarTexto(n)) &&
-                        Contacto.normalizarTexto(c.getApellido()).equals(Contacto.normalizarTexto(a))) {
-                    sel = c;
-                    break;
-                }
-            }
+            Contacto sel = conCerrojo(() -> agenda.buscarPorNombreApellido(n, a).orElse(null));
             if (sel == null) { JOptionPane.showMessageDialog(this, "Contacto no encontrado."); return; }
 
             String nuevoTel = JOptionPane.showInputDialog(this,
@@ -201,8 +270,8 @@ public class InterfazAgenda extends JFrame {
             if (nuevoTel == null || nuevoTel.trim().isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Modificación cancelada o teléfono vacío."); return;
             }
-            agenda.modificarTelefono(n, a, nuevoTel.trim());
-            actualizar();
+            ResultadoOperacion resultado = conCerrojo(() -> agenda.modificarTelefono(n, a, nuevoTel.trim()));
+            if (resultado != ResultadoOperacion.CORRECTO) JOptionPane.showMessageDialog(this, resultado.getMensaje());
         });
 
         // Existe?
@@ -211,85 +280,304 @@ public class InterfazAgenda extends JFrame {
             if (n.isEmpty() || a.isEmpty() || t.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Nombre, apellido y teléfono requeridos."); return;
             }
-            boolean existe = agenda.existeContacto(n, a, t);
+            boolean existe = conCerrojo(() -> agenda.existeContacto(n, a, t));
             JOptionPane.showMessageDialog(this, existe ? "Ya existe" : "No existe");
         });
 
         // Espacios libres
-        bEsp.addActionListener(e -> JOptionPane.showMessageDialog(this, "Espacios libres: " + agenda.espaciosLibres()));
+        bEsp.addActionListener(e -> JOptionPane.showMessageDialog(this, "Espacios libres: " + conCerrojo(agenda::espaciosLibres)));
 
         // Demo de contactos
         bDemo.addActionListener(e -> {
             String[][] d = {{"Juan", "Pérez", "3001234567"}, {"María", "López", "3159876543"}, {"Ana", "Santos", "3012223344"}};
-            for (String[] x : d) {
-                if (!agenda.existeContacto(x[0], x[1], x[2]) && !agenda.agendaLlena()) {
-                    agenda.anadirContacto(new Contacto(x[0], x[1], x[2]));
-                }
-            }
-            actualizar();
+            // Un solo lote: los que ya existen o no caben se descartan sin detener el resto
+            List<OperacionLote> lote = new ArrayList<>();
+            for (String[] x : d) lote.add(OperacionLote.alta(new Contacto(x[0], x[1], x[2])));
+            conCerrojo(() -> agenda.aplicarLote(lote, ModoLote.POR_OPERACION));
+        });
+
+        // Importar contactos desde un archivo CSV o vCard
+        bImportar.addActionListener(e -> {
+            JFileChooser selector = new JFileChooser();
+            if (selector.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            importar(selector.getSelectedFile().toPath());
+        });
+
+        // Exportar todos los contactos a CSV
+        bExportar.addActionListener(e -> {
+            JFileChooser selector = new JFileChooser();
+            if (selector.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            exportar(selector.getSelectedFile().toPath());
         });
 
         // Limpiar campos
         bLimpiar.addActionListener(e -> limpiar());
 
+        // Filtro: cada cambio reinicia la espera y la búsqueda se lanza al dejar de escribir
+        temporizadorFiltro.setRepeats(false);
+        tfFiltro.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                temporizadorFiltro.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                temporizadorFiltro.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                temporizadorFiltro.restart();
+            }
+        });
+        cbCampo.addActionListener(e -> filtrar());
+        // Con un filtro puesto, las modificaciones de la agenda vuelven a lanzarlo
+        modeloTabla.alCambiarConFiltro(temporizadorFiltro::restart);
+
         // ---- ESTÉTICA DE BOTONES ----
         bAdd.setBackground(new Color(46, 204, 113));
         bAdd.setForeground(Color.WHITE);
         bDel.setBackground(new Color(231, 76, 60));
         bDel.setForeground(Color.WHITE); Color azul = new Color(52, 152, 219);
         bMod.setBackground(azul); bMod.setForeground(Color.WHITE);
-        bBuscar.setBackground(azul); bBuscar.setForeground(Color.WHITE);
         bExiste.setBackground(azul); bExiste.setForeground(Color.WHITE);
         bEsp.setBackground(azul); bEsp.setForeground(Color.WHITE);
         bDemo.setBackground(azul); bDemo.setForeground(Color.WHITE);
+        bImportar.setBackground(azul); bImportar.setForeground(Color.WHITE);
+        bExportar.setBackground(azul); bExportar.setForeground(Color.WHITE);
         bLimpiar.setBackground(azul); bLimpiar.setForeground(Color.WHITE);
 
         Font f = new Font("Segoe UI", Font.BOLD, 13);
         bAdd.setFont(f);
         bDel.setFont(f);
         bMod.setFont(f);
-        bBuscar.setFont(f);
         bLimpiar.setFont(f);
+    }
+
+    /** Cerrojo con el que debe usarse la agenda mientras la ventana esté abierta */
+    Lock cerrojoAgenda() {
+        return cerrojo;
+    }
 
-        // Buscar contactos
-        bBuscar.addActionListener(e -> {
-            String[] opciones = {"Nombre", "Apellido", "Teléfono"};
-            int sel = JOptionPane.showOptionDialog(this, "Seleccione el campo para buscar:", "Buscar",
-                    JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, opciones, opciones[0]);
-            if (sel < 0) return;
-            String campo = sel == 0 ? "nombre" : sel == 1 ? "apellido" : "telefono";
-            String valor = JOptionPane.showInputDialog(this, "Ingrese " + opciones[sel] + ":");
-            if (valor == null || valor.trim().isEmpty()) { JOptionPane.showMessageDialog(this, "Valor vacío. Cancelado."); return; }
-
-            List<Contacto> encontrados = new java.util.ArrayList<>();
-            String vNorm = campo.equals("telefono") ? valor.trim() : Contacto.normalizarTexto(valor);
-            for (Contacto c : agenda.obtenerContactos()) {
-                if ("nombre".equals(campo) && Contacto.normalizarTexto(c.getNombre()).equals(vNorm)) encontrados.add(c);
-                else if ("apellido".equals(campo) && Contacto.normalizarTexto(c.getApellido()).equals(vNorm)) encontrados.add(c);
-                else if ("telefono".equals(campo) && c.getTelefono().trim().equals(vNorm)) encontrados.add(c);
+    /** Ejecuta una operación breve sobre la agenda con el cerrojo tomado */
+    private <T> T conCerrojo(Supplier<T> operacion) {
+        cerrojo.lock();
+        try {
+            return operacion.get();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Lanza en segundo plano la búsqueda del filtro y cancela la anterior si no había
+     * terminado. Las coincidencias de los distintos campos se juntan por teléfono, que
+     * no se repite, se ordenan como el listado y la tabla pasa a mostrar sólo esa lista.
+     */
+    private void filtrar() {
+        temporizadorFiltro.stop();
+        if (busquedaEnCurso != null) busquedaEnCurso.cancel(true);
+        String texto = tfFiltro.getText().trim();
+        if (texto.isEmpty()) {
+            busquedaEnCurso = null;
+            modeloTabla.filtrar(null);
+            lbEstado.setText(" ");
+            return;
+        }
+
+        int sel = cbCampo.getSelectedIndex();
+        String[] campos = sel == 0 ? new String[]{"nombre", "apellido", "telefono"}
+                : new String[]{sel == 1 ? "nombre" : sel == 2 ? "apellido" : "telefono"};
+        SwingWorker<List<Contacto>, Void> busqueda = new SwingWorker<>() {
+            @Override
+            protected List<Contacto> doInBackground() throws InterruptedException {
+                Map<String, Contacto> porTelefono = new HashMap<>();
+                for (String campo : campos) {
+                    // Una búsqueda ya superada por otra no espera al cerrojo ni sigue con los demás campos
+                    if (isCancelled()) break;
+                    List<Contacto> encontrados;
+                    cerrojo.lockInterruptibly();
+                    try {
+                        encontrados = agenda.buscarPorPrefijo(campo, texto, Integer.MAX_VALUE);
+                    } finally {
+                        cerrojo.unlock();
+                    }
+                    for (Contacto c : encontrados) porTelefono.putIfAbsent(c.getTelefono(), c);
+                }
+                List<Contacto> coincidencias = new ArrayList<>(porTelefono.values());
+                coincidencias.sort(Agenda.ORDEN);
+                return coincidencias;
             }
 
-            if (encontrados.isEmpty()) JOptionPane.showMessageDialog(this, "No se encontraron contactos para: " + valor);
-            else {
-                StringBuilder sb = new StringBuilder();
-                for (Contacto r : encontrados) sb.append(r).append("\n");
-                JOptionPane.showMessageDialog(this, sb.toString(), "Resultados", JOptionPane.INFORMATION_MESSAGE);
-                actualizar();
+            @Override
+            protected void done() {
+                if (isCancelled() || busquedaEnCurso != this) return;
+                busquedaEnCurso = null;
+                try {
+                    List<Contacto> coincidencias = get();
+                    modeloTabla.filtrar(coincidencias);
+                    lbEstado.setText(coincidencias.size() + " contactos coinciden con \"" + texto + "\"");
+                } catch (InterruptedException | ExecutionException ex) {
+                    lbEstado.setText("No se pudo filtrar: " + ex.getMessage());
+                }
+            }
+        };
+        busquedaEnCurso = busqueda;
+        busqueda.execute();
+    }
+
+    /** Importa el archivo en segundo plano, entregando cada lote a la agenda con el cerrojo */
+    private void importar(Path archivo) {
+        SwingWorker<ResumenImportacion, long[]> importacion = new SwingWorker<>() {
+            @Override
+            protected ResumenImportacion doInBackground() throws IOException {
+                ImportadorContactos importador = new ImportadorContactos(agenda);
+                importador.setCerrojo(cerrojo);
+                importador.setProgreso(r -> publish(new long[]{r.getLeidas(), r.getImportadas()}));
+                return importador.importar(archivo);
+            }
+
+            @Override
+            protected void process(List<long[]> avances) {
+                long[] ultimo = avances.get(avances.size() - 1);
+                lbEstado.setText("Importando: " + ultimo[0] + " filas leídas, " + ultimo[1] + " importadas");
+            }
+
+            @Override
+            protected void done() {
+                terminarTarea();
+                try {
+                    JOptionPane.showMessageDialog(InterfazAgenda.this, get().toString(), "Importación", JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(InterfazAgenda.this, "No se pudo importar: " + ex.getCause().getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // No se sabe cuántas filas tiene el archivo hasta terminar de leerlo
+        iniciarTarea(importacion, "Importando " + archivo.getFileName(), true);
+    }
+
+    /**
+     * Exporta todos los contactos a CSV (cabecera nombre,apellido,telefono, en el orden
+     * de la agenda) en segundo plano. Escribe una instantánea de la agenda, tomada con
+     * el cerrojo en un momento, y la recorre ya sin él: el archivo refleja la agenda
+     * entera en ese momento aunque se modifique mientras tanto.
+     */
+    private void exportar(Path archivo) {
+        SwingWorker<Integer, Void> exportacion = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                InstantaneaAgenda foto = conCerrojo(agenda::instantanea);
+                int escritos = 0;
+                try (BufferedWriter w = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+                    w.write("nombre,apellido,telefono\n");
+                    for (Contacto c : foto) {
+                        escribirCampoCsv(w, c.getNombre());
+                        w.write(',');
+                        escribirCampoCsv(w, c.getApellido());
+                        w.write(',');
+                        w.write(c.getTelefono());
+                        w.write('\n');
+                        if (++escritos % TRAMO == 0) setProgress((int) (100L * escritos / foto.tamano()));
+                    }
+                }
+                return escritos;
             }
-        });
 
-        actualizar(); // mostrar contactos iniciales
+            @Override
+            protected void done() {
+                terminarTarea();
+                try {
+                    JOptionPane.showMessageDialog(InterfazAgenda.this, get() + " contactos exportados a " + archivo.getFileName());
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(InterfazAgenda.this, "No se pudo exportar: " + ex.getCause().getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        iniciarTarea(exportacion, "Exportando a " + archivo.getFileName(), false);
+    }
+
+    /** Campo CSV entre comillas si contiene separadores, comillas o saltos de línea */
+    private static void escribirCampoCsv(Writer w, String campo) throws IOException {
+        if (campo.indexOf(',') < 0 && campo.indexOf(';') < 0 && campo.indexOf('"') < 0
+                && campo.indexOf('\n') < 0 && campo.indexOf('\r') < 0) {
+            w.write(campo);
+            return;
+        }
+        w.write('"');
+        w.write(campo.replace("\"", "\"\""));
+        w.write('"');
+    }
+
+    /**
+     * Elimina los contactos de las filas seleccionadas en segundo plano, en lotes de
+     * {@value #TRAMO} bajas con una toma del cerrojo por lote.
+     */
+    private void eliminarVarios(int[] filasVista) {
+        String[] opciones = {"Sí", "No"};
+        int opcion = JOptionPane.showOptionDialog(this,
+                "¿Está seguro de eliminar los " + filasVista.length + " contactos seleccionados?",
+                "Confirmar eliminación", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE,
+                null, opciones, opciones[1]);
+        if (opcion != 0) return;
+
+        // Nombre y apellido se leen ahora: las filas cambian en cuanto empiezan las bajas
+        List<OperacionLote> bajas = new ArrayList<>(filasVista.length);
+        for (int fila : filasVista) {
+            Contacto c = modeloTabla.contactoEn(tabla.convertRowIndexToModel(fila));
+            if (c != null) bajas.add(OperacionLote.baja(c.getNombre(), c.getApellido()));
+        }
+
+        SwingWorker<Integer, Void> eliminacion = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() {
+                int eliminados = 0;
+                for (int desde = 0; desde < bajas.size(); desde += TRAMO) {
+                    List<OperacionLote> lote = bajas.subList(desde, Math.min(bajas.size(), desde + TRAMO));
+                    ResultadoOperacion[] resultados = conCerrojo(() -> agenda.aplicarLote(lote, ModoLote.POR_OPERACION));
+                    for (ResultadoOperacion r : resultados) if (r == ResultadoOperacion.CORRECTO) eliminados++;
+                    setProgress((int) (100L * (desde + lote.size()) / bajas.size()));
+                }
+                return eliminados;
+            }
+
+            @Override
+            protected void done() {
+                terminarTarea();
+                try {
+                    JOptionPane.showMessageDialog(InterfazAgenda.this, get() + " contactos eliminados.");
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(InterfazAgenda.this, "No se pudo eliminar: " + ex.getCause().getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        iniciarTarea(eliminacion, "Eliminando " + bajas.size() + " contactos", false);
     }
 
-    /** Actualiza la tabla de contactos en JTable */
-    private void actualizar() {
-        modeloTabla.setRowCount(0);
-        List<Contacto> list = agenda.obtenerContactos();
-        list.sort((a, b) -> {
-            int c = a.getNombre().compareToIgnoreCase(b.getNombre());
-            return c != 0 ? c : a.getApellido().compareToIgnoreCase(b.getApellido());
+    /** Muestra la barra, desactiva los botones de tareas largas y lanza la tarea */
+    private void iniciarTarea(SwingWorker<?, ?> tarea, String descripcion, boolean indeterminada) {
+        for (JButton b : botonesTareas) b.setEnabled(false);
+        lbEstado.setText(descripcion);
+        barra.setValue(0);
+        barra.setIndeterminate(indeterminada);
+        barra.setVisible(true);
+        tarea.addPropertyChangeListener(ev -> {
+            if ("progress".equals(ev.getPropertyName())) barra.setValue((Integer) ev.getNewValue());
         });
-        for (Contacto c : list) modeloTabla.addRow(new Object[]{c.getNombre(), c.getApellido(), c.getTelefono()});
+        tarea.execute();
+    }
+
+    private void terminarTarea() {
+        for (JButton b : botonesTareas) b.setEnabled(true);
+        barra.setVisible(false);
+        lbEstado.setText(" ");
     }
 
     /** Limpia los campos de texto */
@@ -1,30 +1,65 @@
 package agendaTelefonica.app;
 
 import java.util.Scanner;
+import agendaTelefonica.importacion.ImportadorContactos;
 import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.persistencia.DiarioAgenda;
 import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.MetricasAgenda;
+import agendaTelefonica.servicio.ModoLote;
+import agendaTelefonica.servicio.OperacionLote;
+import agendaTelefonica.servicio.ResultadoOperacion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.management.JMException;
 
 /**
  * Clase principal que ejecuta la aplicación de consola para gestionar una agenda telefónica.
  * Permite al usuario interactuar con la agenda mediante un menú de opciones.
+ * La agenda se recupera al iniciar desde el directorio indicado como primer argumento
+ * (por defecto "agenda-datos") y cada modificación queda registrada en su diario.
+ * Las operaciones se miden desde el inicio; las métricas se muestran con la opción 10 y
+ * se publican en JMX como {@code agendaTelefonica:type=Agenda,name="consola"}.
  */
 public class MainAgenda {
+    /** Erratas admitidas y contactos mostrados por campo en la búsqueda aproximada */
+    private static final int DISTANCIA_APROXIMADA = 2;
+    private static final int MAX_APROXIMADOS = 20;
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        Agenda agenda = new Agenda(); // Se crea una agenda con tamaño por defecto
-
-        // Se añaden contactos de prueba con teléfonos distintos para validar comportamiento
-        agenda.anadirContacto(new Contacto("Juan", "Pérez", "111111111"));
-        agenda.anadirContacto(new Contacto("JUAN", "pérez", "222222222"));
-        agenda.anadirContacto(new Contacto("María", "López", "333333333"));
-        agenda.anadirContacto(new Contacto("Carlos", "Gómez", "444444444"));
-        agenda.anadirContacto(new Contacto("MARÍA", "lópez", "555555555"));
-        agenda.anadirContacto(new Contacto("Pedro", "Martínez", "666666666"));
-        agenda.anadirContacto(new Contacto("Lucía", "Ramírez", "777777777"));
-        agenda.anadirContacto(new Contacto("Andrés", "Torres", "888888888"));
-        agenda.anadirContacto(new Contacto("Sofía", "Morales", "999999999"));
-        agenda.anadirContacto(new Contacto("Diego", "Castro", "101010101"));
+        Path directorio = Paths.get(args.length > 0 ? args[0] : "agenda-datos");
+        boolean nueva = !Files.exists(directorio);
+        Agenda agenda;
+        DiarioAgenda diario;
+        try {
+            agenda = DiarioAgenda.recuperar(directorio, Agenda.DEFAULT_SIZE);
+            diario = DiarioAgenda.abrir(directorio, agenda);
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir la agenda en " + directorio + ": " + e.getMessage());
+            return;
+        }
+        agenda.activarMetricas(true);
+        MetricasAgenda metricas = agenda.metricas().orElseThrow();
+        try {
+            metricas.publicarEnJmx("consola");
+        } catch (JMException e) {
+            System.out.println("No se pudieron publicar las métricas en JMX: " + e.getMessage());
+        }
+        if (nueva) {
+            anadirContactosDePrueba(agenda);
+        } else {
+            System.out.println("Agenda recuperada desde " + directorio + ": " + agenda.cantidadContactos() + " contactos.");
+        }
 
         int opcion = -1;
 
@@ -39,6 +74,8 @@ public class MainAgenda {
             System.out.println("6. Modificar teléfono");
             System.out.println("7. Ver si agenda está llena");
             System.out.println("8. Espacios libres");
+            System.out.println("9. Importar contactos (CSV o vCard)");
+            System.out.println("10. Ver métricas");
             System.out.println("0. Salir");
             System.out.print("Seleccione una opción: ");
 
@@ -67,7 +104,7 @@ public class MainAgenda {
                         String telefono = scanner.nextLine().trim();
 
                         Contacto contacto = new Contacto(nombre, apellido, telefono);
-                        agenda.anadirContacto(contacto);
+                        mostrarResultado(agenda.anadirContacto(contacto), "Contacto añadido correctamente.");
                     } catch (IllegalArgumentException e) {
                         System.out.println("Error al crear contacto: " + e.getMessage());
                     }
@@ -88,7 +125,7 @@ public class MainAgenda {
 
                 case 3:
                     // Listar todos los contactos ordenados
-                    agenda.listarContactos();
+                    mostrarListado(agenda);
                     break;
 
                 case 4:
@@ -97,6 +134,7 @@ public class MainAgenda {
                     System.out.println("1. Por nombre");
                     System.out.println("2. Por apellido");
                     System.out.println("3. Por teléfono");
+                    System.out.println("4. Aproximada (nombre o apellido con errores)");
                     System.out.print("Seleccione una opción: ");
 
                     int opcionBusqueda;
@@ -110,15 +148,19 @@ public class MainAgenda {
                     if (opcionBusqueda == 1) {
                         System.out.print("Ingrese el nombre: ");
                         String n = scanner.nextLine();
-                        agenda.buscarContacto("nombre", n);
+                        mostrarBusqueda(agenda, "nombre", n);
                     } else if (opcionBusqueda == 2) {
                         System.out.print("Ingrese el apellido: ");
                         String a = scanner.nextLine();
-                        agenda.buscarContacto("apellido", a);
+                        mostrarBusqueda(agenda, "apellido", a);
                     } else if (opcionBusqueda == 3) {
                         System.out.print("Ingrese el teléfono: ");
                         String t = scanner.nextLine();
-                        agenda.buscarContacto("telefono", t);
+                        mostrarBusqueda(agenda, "telefono", t);
+                    } else if (opcionBusqueda == 4) {
+                        System.out.print("Ingrese el nombre o el apellido: ");
+                        String texto = scanner.nextLine();
+                        mostrarBusquedaAproximada(agenda, texto);
                     } else {
                         System.out.println("Opción inválida.");
                     }
@@ -131,7 +173,8 @@ public class MainAgenda {
                     System.out.print("Ingrese el apellido del contacto a eliminar: ");
                     String apellidoEliminar = scanner.nextLine().trim();
 
-                    agenda.eliminarContacto(nombreEliminar, apellidoEliminar);
+                    mostrarResultado(agenda.eliminarContacto(nombreEliminar, apellidoEliminar),
+                            "El contacto fue eliminado con éxito.");
                     break;
 
                 case 6:
@@ -143,7 +186,13 @@ public class MainAgenda {
                     System.out.print("Nuevo teléfono (solo dígitos, 7-15): ");
                     String nuevoTel = scanner.nextLine().trim();
 
-                    agenda.modificarTelefono(nombreMod, apellidoMod, nuevoTel);
+                    ResultadoOperacion modificado = agenda.modificarTelefono(nombreMod, apellidoMod, nuevoTel);
+                    if (modificado == ResultadoOperacion.CORRECTO) {
+                        System.out.println("Teléfono actualizado. Nuevo contacto: "
+                                + agenda.buscarPorNombreApellido(nombreMod, apellidoMod).orElse(null));
+                    } else {
+                        System.out.println(modificado.getMensaje());
+                    }
                     break;
 
                 case 7:
@@ -160,8 +209,31 @@ public class MainAgenda {
                     System.out.println("Espacios libres: " + agenda.espaciosLibres());
                     break;
 
+                case 9:
+                    // Importa un archivo completo y muestra el resumen de filas rechazadas
+                    System.out.print("Ruta del archivo (.csv o .vcf): ");
+                    String ruta = scanner.nextLine().trim();
+                    try {
+                        System.out.println(new ImportadorContactos(agenda).importar(Paths.get(ruta)));
+                    } catch (IOException | InvalidPathException e) {
+                        System.out.println("No se pudo importar: " + e.getMessage());
+                    }
+                    break;
+
+                case 10:
+                    // Llamadas, latencias y rechazos desde el inicio
+                    System.out.print(metricas.informe());
+                    break;
+
                 case 0:
-                    // Salida del programa
+                    // Salida del programa: se deja una instantánea para que la próxima carga sea rápida
+                    try {
+                        diario.compactar();
+                        diario.close();
+                        System.out.println("Agenda guardada en " + directorio);
+                    } catch (IOException e) {
+                        System.out.println("No se pudo guardar la agenda: " + e.getMessage());
+                    }
                     System.out.println("Saliendo de la agenda...");
                     break;
 
@@ -171,4 +243,93 @@ public class MainAgenda {
 
         } while (opcion != 0); // Repite hasta que el usuario decida salir
     }
-}
\ No newline at end of file
+
+    /**
+     * Muestra el mensaje de éxito o el del error que devolvió la agenda.
+     */
+    private static void mostrarResultado(ResultadoOperacion resultado, String exito) {
+        System.out.println(resultado == ResultadoOperacion.CORRECTO ? exito : resultado.getMensaje());
+    }
+
+    /**
+     * Muestra todos los contactos ordenados alfabéticamente por nombre y apellido.
+     */
+    private static void mostrarListado(Agenda agenda) {
+        if (agenda.cantidadContactos() == 0) {
+            System.out.println("La agenda no tiene contactos.");
+            return;
+        }
+
+        // Se recorren sin copiar el listado completo
+        int i = 1;
+        for (Iterator<Contacto> it = agenda.iteradorContactos(); it.hasNext(); i++) {
+            Contacto c = it.next();
+            System.out.println("Contacto " + i + ": Nombre: "
+                    + c.getNombre() + " | Apellido: " + c.getApellido()
+                    + " | Teléfono: " + c.getTelefono());
+        }
+    }
+
+    /**
+     * Busca contactos por nombre, apellido o teléfono y muestra los resultados.
+     */
+    private static void mostrarBusqueda(Agenda agenda, String campo, String valor) {
+        if (valor == null || valor.trim().isEmpty()) {
+            System.out.println("Debe ingresar un valor para buscar.");
+            return;
+        }
+
+        List<Contacto> resultados = agenda.buscarContacto(campo, valor);
+        if (resultados.isEmpty()) {
+            System.out.println("No se encontraron contactos para ese criterio.");
+        } else {
+            System.out.println("Resultados:");
+            for (Contacto r : resultados) {
+                System.out.println(" - " + r);
+            }
+        }
+    }
+
+    /**
+     * Busca el texto como nombre y como apellido admitiendo erratas y muestra los
+     * contactos encontrados, los más parecidos primero.
+     */
+    private static void mostrarBusquedaAproximada(Agenda agenda, String texto) {
+        if (texto == null || texto.trim().isEmpty()) {
+            System.out.println("Debe ingresar un valor para buscar.");
+            return;
+        }
+
+        Set<Contacto> resultados = new LinkedHashSet<>();
+        resultados.addAll(agenda.buscarAproximado("apellido", texto, DISTANCIA_APROXIMADA, MAX_APROXIMADOS));
+        resultados.addAll(agenda.buscarAproximado("nombre", texto, DISTANCIA_APROXIMADA, MAX_APROXIMADOS));
+        if (resultados.isEmpty()) {
+            System.out.println("No se encontraron contactos parecidos.");
+        } else {
+            System.out.println("Resultados:");
+            for (Contacto r : resultados) {
+                System.out.println(" - " + r);
+            }
+        }
+    }
+
+    /**
+     * Llena una agenda recién creada con contactos de prueba.
+     */
+    private static void anadirContactosDePrueba(Agenda agenda) {
+        // Se añaden contactos de prueba con teléfonos distintos para validar comportamiento;
+        // los repetidos por nombre y apellido se rechazan sin detener el resto del lote
+        agenda.aplicarLote(List.of(
+                OperacionLote.alta(new Contacto("Juan", "Pérez", "111111111")),
+                OperacionLote.alta(new Contacto("JUAN", "pérez", "222222222")),
+                OperacionLote.alta(new Contacto("María", "López", "333333333")),
+                OperacionLote.alta(new Contacto("Carlos", "Gómez", "444444444")),
+                OperacionLote.alta(new Contacto("MARÍA", "lópez", "555555555")),
+                OperacionLote.alta(new Contacto("Pedro", "Martínez", "666666666")),
+                OperacionLote.alta(new Contacto("Lucía", "Ramírez", "777777777")),
+                OperacionLote.alta(new Contacto("Andrés", "Torres", "888888888")),
+                OperacionLote.alta(new Contacto("Sofía", "Morales", "999999999")),
+                OperacionLote.alta(new Contacto("Diego", "Castro", "101010101"))
+        ), ModoLote.POR_OPERACION);
+    }
+}
@@ -1,24 +1,62 @@
 package agendaTelefonica.app;
 
+import agendaTelefonica.persistencia.DiarioAgenda;
 import agendaTelefonica.servicio.Agenda;
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Clase principal para lanzar la interfaz gráfica de la agenda telefónica.
  * Utiliza Swing para crear una ventana interactiva.
+ * La agenda se recupera del directorio indicado como primer argumento (por defecto
+ * "agenda-datos"), cada modificación queda registrada en su diario y al cerrar la
+ * ventana se deja una instantánea. El segundo argumento, opcional, es la capacidad de la
+ * agenda (por defecto {@link Agenda#DEFAULT_SIZE}).
  */
 public class MainGui {
     public static void main(String[] args) {
+        Path directorio = Paths.get(args.length > 0 ? args[0] : "agenda-datos");
+        int capacidad = args.length > 1 ? Integer.parseInt(args[1]) : Agenda.DEFAULT_SIZE;
+
         // Ejecuta el código en el hilo de eventos de Swing (EDT) para evitar problemas de concurrencia
         SwingUtilities.invokeLater(() -> {
-            // Se crea una nueva instancia de Agenda (vacía por defecto)
-            Agenda agenda = new Agenda();
+            // Se recupera la agenda guardada (vacía por defecto) y se empieza a registrar en el diario
+            Agenda agenda;
+            DiarioAgenda diario;
+            try {
+                agenda = DiarioAgenda.recuperar(directorio, capacidad);
+                diario = DiarioAgenda.abrir(directorio, agenda);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(null, "No se pudo abrir la agenda: " + e.getMessage());
+                return;
+            }
 
             // Se crea la ventana principal de la interfaz gráfica, pasando la agenda como dependencia
             InterfazAgenda ventana = new InterfazAgenda(agenda);
 
+            // Al cerrar la ventana se compacta el diario y se cierra antes de salir, con el
+            // cerrojo de la ventana por si aún queda una tarea en segundo plano
+            ventana.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    ventana.cerrojoAgenda().lock();
+                    try {
+                        diario.compactar();
+                        diario.close();
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(ventana, "No se pudo guardar la agenda: " + ex.getMessage());
+                    } finally {
+                        ventana.cerrojoAgenda().unlock();
+                    }
+                }
+            });
+
             // Se hace visible la ventana
             ventana.setVisible(true);
         });
     }
-}
\ No newline at end of file
+}
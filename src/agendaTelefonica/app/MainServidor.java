@@ -0,0 +1,72 @@
+package agendaTelefonica.app;
+
+import agendaTelefonica.persistencia.DiarioAgenda;
+import agendaTelefonica.red.ServidorAgenda;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.MetricasAgenda;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import javax.management.JMException;
+
+/**
+ * Publica la agenda en la red local con {@link ServidorAgenda}, para usarla desde otros
+ * procesos. La agenda se recupera del directorio indicado como primer argumento (por
+ * defecto "agenda-datos"), el puerto es el segundo (por defecto 7070) y la capacidad el
+ * tercero (por defecto 100000). Cada modificación queda registrada en el diario; al
+ * detener el proceso (Ctrl+C) se deja una instantánea. Las operaciones se miden y las
+ * métricas se publican en JMX como {@code agendaTelefonica:type=Agenda,name="servidor"},
+ * y las últimas modificaciones se guardan para que los clientes las pidan con EVENTOS.
+ */
+public class MainServidor {
+    private static final int CAPACIDAD_POR_DEFECTO = 100_000;
+
+    /** Eventos que se guardan para los clientes que piden EVENTOS */
+    private static final int CAPACIDAD_EVENTOS = 1 << 16;
+
+    public static void main(String[] args) throws InterruptedException {
+        Path directorio = Paths.get(args.length > 0 ? args[0] : "agenda-datos");
+        int puerto = args.length > 1 ? Integer.parseInt(args[1]) : ServidorAgenda.PUERTO_POR_DEFECTO;
+        int capacidad = args.length > 2 ? Integer.parseInt(args[2]) : CAPACIDAD_POR_DEFECTO;
+
+        Agenda agenda;
+        DiarioAgenda diario;
+        ServidorAgenda servidor;
+        try {
+            agenda = DiarioAgenda.recuperar(directorio, capacidad);
+            diario = DiarioAgenda.abrir(directorio, agenda);
+            agenda.activarMetricas(true);
+            agenda.activarEventos(CAPACIDAD_EVENTOS);
+            servidor = ServidorAgenda.iniciar(agenda, diario, puerto);
+        } catch (IOException e) {
+            System.out.println("No se pudo iniciar el servidor: " + e.getMessage());
+            return;
+        }
+        System.out.println("Agenda de " + directorio + " (" + agenda.cantidadContactos() + " contactos) en 127.0.0.1:"
+                + servidor.getPuerto() + (servidor.usaHilosVirtuales() ? ", hilos virtuales" : ", hilos de plataforma"));
+
+        MetricasAgenda metricas = agenda.metricas().orElseThrow();
+        try {
+            metricas.publicarEnJmx("servidor");
+        } catch (JMException e) {
+            System.out.println("No se pudieron publicar las métricas en JMX: " + e.getMessage());
+        }
+
+        // Al detener el proceso se cierran las conexiones antes de guardar la agenda
+        CountDownLatch fin = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                servidor.close();
+                diario.compactar();
+                diario.close();
+                System.out.println("Agenda guardada en " + directorio);
+            } catch (IOException e) {
+                System.out.println("No se pudo guardar la agenda: " + e.getMessage());
+            }
+            fin.countDown();
+        }));
+        fin.await();
+    }
+}
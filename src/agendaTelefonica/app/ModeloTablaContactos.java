@@ -0,0 +1,254 @@
+package agendaTelefonica.app;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.OyenteAgenda;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Modelo de la tabla de contactos que lee las filas de la agenda a medida que la
+ * tabla las pinta, en bloques de {@value #BLOQUE} filas del listado ordenado, en lugar
+ * de copiar todos los contactos: con cien mil contactos sólo se construyen los visibles.
+ *
+ * El modelo escucha la agenda y, tras cada modificación, avisa a la tabla sólo de las
+ * filas insertadas, eliminadas o cambiadas. Los avisos se acumulan y se envían juntos
+ * en el hilo de eventos, después de la operación que los produjo; si son más de
+ * {@value #MAX_AVISOS} (una importación, por ejemplo) se avisa de que cambió todo, que
+ * cuesta menos que miles de avisos sueltos.
+ *
+ * Con un filtro puesto (ver {@link #filtrar}) la tabla muestra sólo la lista de
+ * contactos que coinciden, buscada fuera del hilo de eventos, y no vuelve a leer la
+ * agenda: sus modificaciones no se avisan fila a fila, sino que piden volver a filtrar.
+ *
+ * La agenda puede modificarse desde cualquier hilo siempre que se haga con el cerrojo
+ * que recibe el modelo, que también lo toma para leerla; los avisos a la tabla se
+ * envían siempre en el hilo de eventos.
+ */
+class ModeloTablaContactos extends AbstractTableModel implements OyenteAgenda {
+
+    /** Filas que se leen de la agenda de una vez */
+    static final int BLOQUE = 256;
+
+    /** Modificaciones acumuladas a partir de las cuales se avisa de un cambio total */
+    static final int MAX_AVISOS = 1000;
+
+    private static final String[] COLUMNAS = {"Nombre", "Apellido", "Teléfono"};
+
+    private enum Tipo {ALTA, BAJA, CAMBIO}
+
+    /** Una modificación de la agenda aún no comunicada a la tabla */
+    private static final class Cambio {
+        final Tipo tipo;
+        final Contacto contacto;
+
+        Cambio(Tipo tipo, Contacto contacto) {
+            this.tipo = tipo;
+            this.contacto = contacto;
+        }
+    }
+
+    private final Agenda agenda;
+    private final Lock cerrojo;
+
+    // Filas de la agenda que la tabla conoce: sólo cambia al enviar los avisos, para que
+    // cada aviso sea coherente con el anterior aunque la agenda ya tenga todas las modificaciones
+    private int filas;
+
+    // Contactos que coinciden con el filtro, en el orden del listado; null sin filtro
+    private List<Contacto> filtrados;
+
+    // Se ejecuta en el hilo de eventos cuando la agenda cambia con un filtro puesto
+    private Runnable alCambiarConFiltro = () -> {
+    };
+
+    // Bloque de filas leído por última vez; se descarta al enviar los avisos
+    private List<Contacto> bloque = Collections.emptyList();
+    private int inicioBloque;
+
+    // Modificaciones aún sin enviar, anotadas desde el hilo que modificó la agenda;
+    // protegidas por su propio monitor
+    private final List<Cambio> pendientes = new ArrayList<>();
+    private boolean desbordado;
+
+    /** @param cerrojo el que toma quien modifica la agenda */
+    ModeloTablaContactos(Agenda agenda, Lock cerrojo) {
+        this.agenda = agenda;
+        this.cerrojo = cerrojo;
+        cerrojo.lock();
+        try {
+            this.filas = agenda.cantidadContactos();
+            agenda.agregarOyente(this);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * El contacto de esa fila del modelo, o null si la agenda ya no tiene tantos
+     * contactos (hay una baja que aún no se ha comunicado a la tabla)
+     */
+    Contacto contactoEn(int fila) {
+        if (filtrados != null) return fila < filtrados.size() ? filtrados.get(fila) : null;
+        if (fila < inicioBloque || fila >= inicioBloque + bloque.size()) {
+            // Se lee el bloque que contiene la fila, alineado para que el desplazamiento
+            // hacia arriba y hacia abajo reutilice los mismos bloques
+            cerrojo.lock();
+            try {
+                inicioBloque = fila - fila % BLOQUE;
+                bloque = agenda.listarContactos(inicioBloque, BLOQUE);
+            } finally {
+                cerrojo.unlock();
+            }
+            if (fila >= inicioBloque + bloque.size()) return null;
+        }
+        return bloque.get(fila - inicioBloque);
+    }
+
+    /**
+     * Muestra sólo esos contactos, ya en el orden del listado, o de nuevo la agenda
+     * entera con null. Debe llamarse en el hilo de eventos.
+     */
+    void filtrar(List<Contacto> contactos) {
+        filtrados = contactos;
+        bloque = Collections.emptyList();
+        fireTableDataChanged();
+    }
+
+    /** Acción para volver a filtrar cuando la agenda cambia con un filtro puesto */
+    void alCambiarConFiltro(Runnable accion) {
+        alCambiarConFiltro = accion;
+    }
+
+    @Override
+    public int getRowCount() {
+        return filtrados != null ? filtrados.size() : filas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int columna) {
+        return COLUMNAS[columna];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columna) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int fila, int columna) {
+        Contacto c = contactoEn(fila);
+        if (c == null) return "";
+        switch (columna) {
+            case 0:
+                return c.getNombre();
+            case 1:
+                return c.getApellido();
+            default:
+                return c.getTelefono();
+        }
+    }
+
+    @Override
+    public void contactoAnadido(Contacto c) {
+        anotar(Tipo.ALTA, c);
+    }
+
+    @Override
+    public void contactoEliminado(Contacto c) {
+        anotar(Tipo.BAJA, c);
+    }
+
+    @Override
+    public void telefonoModificado(Contacto c, String telefonoAnterior) {
+        anotar(Tipo.CAMBIO, c);
+    }
+
+    private void anotar(Tipo tipo, Contacto c) {
+        synchronized (pendientes) {
+            // Sólo la primera modificación de la tanda programa el envío
+            if (pendientes.isEmpty() && !desbordado) SwingUtilities.invokeLater(this::avisar);
+            if (pendientes.size() < MAX_AVISOS) pendientes.add(new Cambio(tipo, c));
+            else desbordado = true;
+        }
+    }
+
+    /**
+     * Comunica a la tabla las modificaciones acumuladas. La agenda ya las tiene todas,
+     * así que las filas se calculan sobre el estado final: las altas se avisan en orden
+     * creciente de fila y las bajas en orden decreciente de la fila que ocupaban, de
+     * modo que cada aviso es correcto respecto al anterior. Una tanda que mezcla altas y
+     * bajas, o que es demasiado grande, se avisa como cambio total.
+     */
+    private void avisar() {
+        List<Cambio> cambios;
+        boolean coherente;
+        synchronized (pendientes) {
+            cambios = new ArrayList<>(pendientes);
+            coherente = !desbordado;
+            pendientes.clear();
+            desbordado = false;
+        }
+        bloque = Collections.emptyList();
+
+        if (filtrados != null) {
+            // La tabla muestra el filtro, no la agenda: sólo se anota el nuevo tamaño
+            cerrojo.lock();
+            try {
+                filas = agenda.cantidadContactos();
+            } finally {
+                cerrojo.unlock();
+            }
+            alCambiarConFiltro.run();
+            return;
+        }
+
+        int total;
+        List<Integer> altas = new ArrayList<>(), bajas = new ArrayList<>(), actualizadas = new ArrayList<>();
+        cerrojo.lock();
+        try {
+            // Si otro hilo modifica la agenda mientras tanto, sus avisos llegan en la
+            // tanda siguiente y el recuento de esta no cuadra: se avisa de un cambio total
+            total = agenda.cantidadContactos();
+            for (int i = 0; coherente && i < cambios.size(); i++) {
+                Cambio cambio = cambios.get(i);
+                int posicion = agenda.posicionEnListado(cambio.contacto);
+                if (cambio.tipo == Tipo.ALTA && posicion >= 0) altas.add(posicion);
+                else if (cambio.tipo == Tipo.BAJA && posicion < 0) bajas.add(-posicion - 1);
+                else if (cambio.tipo == Tipo.CAMBIO && posicion >= 0) actualizadas.add(posicion);
+                else coherente = false; // otra modificación de la tanda deshizo esta
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+        if (!coherente || (!altas.isEmpty() && !bajas.isEmpty()) || filas + altas.size() - bajas.size() != total) {
+            filas = total;
+            fireTableDataChanged();
+            return;
+        }
+
+        Collections.sort(altas);
+        for (int fila : altas) {
+            filas++;
+            fireTableRowsInserted(fila, fila);
+        }
+        // Una baja en la posición p del estado final ocupaba p más las bajas anteriores a ella
+        Collections.sort(bajas);
+        for (int i = bajas.size() - 1; i >= 0; i--) {
+            int fila = bajas.get(i) + i;
+            filas--;
+            fireTableRowsDeleted(fila, fila);
+        }
+        for (int fila : actualizadas) fireTableRowsUpdated(fila, fila);
+    }
+}
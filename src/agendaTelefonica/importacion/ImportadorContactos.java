@@ -0,0 +1,575 @@
+package agendaTelefonica.importacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.modelo.Normalizador;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.ResultadoOperacion;
+
+/**
+ * Importa contactos a una agenda desde archivos CSV o vCard de cualquier tamaño.
+ *
+ * El archivo se lee en streaming y las filas pasan por lotes de tamaño fijo en dos
+ * etapas. La primera separa los campos, los valida y construye los contactos (con sus
+ * formas normalizadas); es la parte costosa y se reparte en un {@link ForkJoinPool}
+ * mientras el lector ya llena el lote siguiente. La segunda entrega los contactos
+ * válidos a {@link Agenda#anadirEnBloque}, que descarta los duplicados en orden de
+ * aparición (gana la primera fila, como con altas sucesivas) y los incorpora en una
+ * sola operación. La memoria usada no depende del tamaño del archivo, sólo de los dos
+ * lotes en vuelo.
+ *
+ * Las reglas son las de {@link Agenda#anadirContacto}: nombre y apellido no vacíos,
+ * teléfono de 7 a 15 dígitos, sin repetir nombre+apellido (ignorando acentos y
+ * mayúsculas) ni teléfono, y sin superar la capacidad. Del teléfono se quitan antes
+ * los separadores habituales (espacios, guiones, puntos y paréntesis).
+ *
+ * CSV: separador ',' o ';' (se deduce de la primera fila), campos entre comillas con
+ * "" como escape y saltos de línea permitidos dentro de las comillas. Si la primera
+ * fila es una cabecera con nombre, apellido y teléfono, se usan sus columnas; si no,
+ * las tres primeras columnas en ese orden.
+ *
+ * vCard (2.1, 3.0 y 4.0): se toman N (apellido;nombre), o FN si falta N, y el primer TEL.
+ */
+public class ImportadorContactos {
+
+    /** Filas por lote si no se indica otro tamaño */
+    public static final int TAMANO_LOTE = 8192;
+
+    // Una fila con comillas sin cerrar no puede crecer indefinidamente
+    private static final int MAX_FILA = 64 * 1024;
+
+    private static final int BUFFER_LECTURA = 1 << 16;
+
+    // Filas por tarea en la etapa de validación
+    private static final int FILAS_POR_TAREA = 512;
+
+    /** Filas pendientes de procesar y resultados de cada etapa */
+    private static final class Lote {
+        final String[] nombres, apellidos, telefonos, originales;
+        final long[] lineas;
+        final Contacto[] contactos;
+        final MotivoRechazo[] motivos;
+        final List<Contacto> validos;
+        final int[] posiciones;
+        int n;
+
+        // Sólo en CSV: las filas llegan sin separar y se dividen al validarlas
+        char separador;
+        int[] columnas;
+
+        Lote(int capacidad) {
+            nombres = new String[capacidad];
+            apellidos = new String[capacidad];
+            telefonos = new String[capacidad];
+            originales = new String[capacidad];
+            lineas = new long[capacidad];
+            contactos = new Contacto[capacidad];
+            motivos = new MotivoRechazo[capacidad];
+            validos = new ArrayList<>(capacidad);
+            posiciones = new int[capacidad];
+        }
+
+        void anadir(String nombre, String apellido, String telefono, String original, long linea) {
+            nombres[n] = nombre;
+            apellidos[n] = apellido;
+            telefonos[n] = telefono;
+            originales[n] = original;
+            lineas[n] = linea;
+            n++;
+        }
+
+        boolean lleno() {
+            return n == nombres.length;
+        }
+
+        void vaciar() {
+            Arrays.fill(nombres, 0, n, null);
+            Arrays.fill(apellidos, 0, n, null);
+            Arrays.fill(telefonos, 0, n, null);
+            Arrays.fill(originales, 0, n, null);
+            Arrays.fill(contactos, 0, n, null);
+            Arrays.fill(motivos, 0, n, null);
+            validos.clear();
+            n = 0;
+        }
+    }
+
+    /** Etapa de validación de un tramo del lote, dividida en mitades hasta FILAS_POR_TAREA */
+    private static final class Validacion extends RecursiveAction {
+        private final Lote lote;
+        private final int desde, hasta;
+
+        Validacion(Lote lote, int desde, int hasta) {
+            this.lote = lote;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde <= FILAS_POR_TAREA) {
+                validar(lote, desde, hasta);
+            } else {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new Validacion(lote, desde, medio), new Validacion(lote, medio, hasta));
+            }
+        }
+    }
+
+    /**
+     * Dos lotes alternados: mientras uno se valida en el pool, el lector llena el otro.
+     * Las altas en la agenda se hacen siempre desde el hilo que importa y en orden.
+     */
+    private final class Canalizacion {
+        final ResumenImportacion resumen = new ResumenImportacion();
+        Lote llenando = new Lote(tamanoLote);
+        Lote enCurso;
+        ForkJoinTask<?> validacion;
+
+        /** Manda a validar el lote que se estaba llenando y confirma el anterior */
+        void entregar() {
+            Lote listo = llenando;
+            if (listo.n == 0) return;
+            if (pool == null) {
+                validar(listo, 0, listo.n);
+                confirmar(listo, resumen);
+                return;
+            }
+            ForkJoinTask<?> tarea = pool.submit(new Validacion(listo, 0, listo.n));
+            Lote libre = confirmarEnCurso();
+            enCurso = listo;
+            validacion = tarea;
+            llenando = libre != null ? libre : new Lote(tamanoLote);
+        }
+
+        /** Espera la validación en curso, confirma su lote y lo devuelve vacío */
+        Lote confirmarEnCurso() {
+            if (enCurso == null) return null;
+            validacion.join();
+            Lote l = enCurso;
+            enCurso = null;
+            validacion = null;
+            confirmar(l, resumen);
+            return l;
+        }
+
+        ResumenImportacion terminar() {
+            entregar();
+            confirmarEnCurso();
+            return resumen;
+        }
+    }
+
+    private final Agenda agenda;
+    private final int tamanoLote;
+    private final ForkJoinPool pool;
+    private Lock cerrojo;
+    private Consumer<ResumenImportacion> progreso;
+
+    /**
+     * Importador con el tamaño de lote por defecto que valida en el pool común.
+     */
+    public ImportadorContactos(Agenda agenda) {
+        this(agenda, TAMANO_LOTE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param tamanoLote filas por lote
+     * @param pool       pool donde se validan los lotes, o null para hacerlo todo en el
+     *                   hilo que importa
+     */
+    public ImportadorContactos(Agenda agenda, int tamanoLote, ForkJoinPool pool) {
+        if (agenda == null) throw new IllegalArgumentException("La agenda no puede ser nula.");
+        if (tamanoLote < 1) throw new IllegalArgumentException("El tamaño de lote debe ser positivo.");
+        this.agenda = agenda;
+        this.tamanoLote = tamanoLote;
+        this.pool = pool;
+    }
+
+    /**
+     * Cerrojo que se toma sólo mientras cada lote se entrega a la agenda, para que otros
+     * hilos que usan la agenda con el mismo cerrojo puedan hacerlo entre lote y lote
+     * (una interfaz gráfica, por ejemplo). Con null, el valor por defecto, no se toma
+     * ninguno.
+     */
+    public void setCerrojo(Lock cerrojo) {
+        this.cerrojo = cerrojo;
+    }
+
+    /**
+     * Se llama en el hilo que importa después de entregar cada lote, con el resumen
+     * acumulado hasta ese momento; null, el valor por defecto, para no avisar.
+     */
+    public void setProgreso(Consumer<ResumenImportacion> progreso) {
+        this.progreso = progreso;
+    }
+
+    /**
+     * Importa el archivo indicado. Los archivos .vcf y .vcard se leen como vCard y el
+     * resto como CSV, en UTF-8.
+     */
+    public ResumenImportacion importar(Path archivo) throws IOException {
+        String nombre = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (BufferedReader lector = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(archivo), StandardCharsets.UTF_8), BUFFER_LECTURA)) {
+            return nombre.endsWith(".vcf") || nombre.endsWith(".vcard") ? importarVCard(lector) : importarCsv(lector);
+        }
+    }
+
+    /**
+     * Importa contactos en formato CSV. No cierra el lector.
+     */
+    public ResumenImportacion importarCsv(Reader lector) throws IOException {
+        BufferedReader r = comoBuffered(lector);
+        Canalizacion canal = new Canalizacion();
+        ResumenImportacion resumen = canal.resumen;
+        int[] columnas = {0, 1, 2};
+        char separador = 0;
+        boolean primera = true;
+
+        String linea;
+        long numero = 0;
+        while ((linea = r.readLine()) != null) {
+            numero++;
+            long inicio = numero;
+            if (primera && linea.startsWith("\uFEFF")) linea = linea.substring(1);
+            if (linea.isBlank()) continue;
+            if (separador == 0) separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+
+            // Con un número impar de comillas la fila sigue en las líneas siguientes
+            boolean completa = comillasPares(linea);
+            while (!completa && linea.length() < MAX_FILA) {
+                String siguiente = r.readLine();
+                if (siguiente == null) break;
+                numero++;
+                linea = linea + '\n' + siguiente;
+                completa = comillasPares(linea);
+            }
+
+            if (primera) {
+                primera = false;
+                List<String> campos = new ArrayList<>(8);
+                dividirCsv(linea, separador, campos);
+                int[] cabecera = columnasCabecera(campos);
+                if (cabecera != null) {
+                    columnas = cabecera;
+                    continue;
+                }
+            }
+
+            resumen.contarLeida();
+            if (!completa) {
+                resumen.rechazar(inicio, MotivoRechazo.FILA_MALFORMADA, linea);
+                continue;
+            }
+            // Los campos se separan en la etapa de validación, fuera de este hilo
+            Lote lote = canal.llenando;
+            lote.separador = separador;
+            lote.columnas = columnas;
+            lote.anadir(null, null, null, linea, inicio);
+            if (lote.lleno()) canal.entregar();
+        }
+        return canal.terminar();
+    }
+
+    /**
+     * Importa contactos en formato vCard. No cierra el lector.
+     */
+    public ResumenImportacion importarVCard(Reader lector) throws IOException {
+        BufferedReader r = comoBuffered(lector);
+        Canalizacion canal = new Canalizacion();
+        ResumenImportacion resumen = canal.resumen;
+
+        boolean dentro = false;
+        long inicioTarjeta = 0;
+        String nombre = null, apellido = null, completo = null, telefono = null;
+
+        // Las líneas que empiezan con espacio o tabulador continúan la anterior
+        String actual = null;
+        long numeroActual = 0, numero = 0;
+        while (true) {
+            String fisica = r.readLine();
+            if (fisica != null) {
+                numero++;
+                if (numero == 1 && fisica.startsWith("\uFEFF")) fisica = fisica.substring(1);
+                if (actual != null && !fisica.isEmpty() && (fisica.charAt(0) == ' ' || fisica.charAt(0) == '\t')) {
+                    if (actual.length() < MAX_FILA) actual = actual + fisica.substring(1);
+                    continue;
+                }
+            }
+
+            if (actual != null) {
+                int dosPuntos = actual.indexOf(':');
+                if (dosPuntos > 0) {
+                    String propiedad = nombrePropiedad(actual, dosPuntos);
+                    String valor = actual.substring(dosPuntos + 1);
+
+                    if (propiedad.equals("BEGIN") && valor.trim().equalsIgnoreCase("VCARD")) {
+                        if (dentro) {
+                            // Tarjeta sin END: se descarta y empieza la nueva
+                            resumen.contarLeida();
+                            resumen.rechazar(inicioTarjeta, MotivoRechazo.FILA_MALFORMADA, "BEGIN:VCARD sin END");
+                        }
+                        dentro = true;
+                        inicioTarjeta = numeroActual;
+                        nombre = apellido = completo = telefono = null;
+                    } else if (dentro && propiedad.equals("END") && valor.trim().equalsIgnoreCase("VCARD")) {
+                        dentro = false;
+                        resumen.contarLeida();
+                        if ((nombre == null || nombre.isBlank()) && (apellido == null || apellido.isBlank()) && completo != null) {
+                            // Sin N: el primer término del nombre completo es el nombre y el resto el apellido
+                            String fn = completo.trim();
+                            int espacio = fn.indexOf(' ');
+                            nombre = espacio < 0 ? fn : fn.substring(0, espacio);
+                            apellido = espacio < 0 ? "" : fn.substring(espacio + 1);
+                        }
+                        String n = nombre == null ? "" : nombre;
+                        String a = apellido == null ? "" : apellido;
+                        String t = telefono == null ? "" : telefono;
+                        Lote lote = canal.llenando;
+                        lote.columnas = null;
+                        lote.anadir(n, a, t, n + " " + a + ", " + t, inicioTarjeta);
+                        if (lote.lleno()) canal.entregar();
+                    } else if (dentro && propiedad.equals("N")) {
+                        List<String> partes = dividirEscapado(valor);
+                        apellido = partes.size() > 0 ? partes.get(0) : "";
+                        nombre = partes.size() > 1 ? partes.get(1) : "";
+                    } else if (dentro && propiedad.equals("FN")) {
+                        completo = dividirEscapado(valor).get(0);
+                    } else if (dentro && propiedad.equals("TEL") && telefono == null) {
+                        telefono = valor.regionMatches(true, 0, "tel:", 0, 4) ? valor.substring(4) : valor;
+                    }
+                }
+            }
+
+            if (fisica == null) break;
+            actual = fisica;
+            numeroActual = numero;
+        }
+
+        if (dentro) {
+            resumen.contarLeida();
+            resumen.rechazar(inicioTarjeta, MotivoRechazo.FILA_MALFORMADA, "BEGIN:VCARD sin END");
+        }
+        return canal.terminar();
+    }
+
+    /**
+     * Etapa 1: separa los campos (CSV), los valida y construye los contactos de las
+     * filas [desde, hasta). Cada fila sólo se toca desde una tarea.
+     */
+    private static void validar(Lote lote, int desde, int hasta) {
+        List<String> campos = lote.columnas != null ? new ArrayList<>(8) : null;
+        for (int i = desde; i < hasta; i++) {
+            if (campos != null) {
+                dividirCsv(lote.originales[i], lote.separador, campos);
+                int[] col = lote.columnas;
+                if (campos.size() <= Math.max(col[0], Math.max(col[1], col[2]))) {
+                    lote.motivos[i] = MotivoRechazo.FILA_MALFORMADA;
+                    continue;
+                }
+                lote.nombres[i] = campos.get(col[0]);
+                lote.apellidos[i] = campos.get(col[1]);
+                lote.telefonos[i] = campos.get(col[2]);
+            }
+            MotivoRechazo motivo = validarCampos(lote, i);
+            lote.motivos[i] = motivo;
+            if (motivo == null) lote.contactos[i] = new Contacto(lote.nombres[i], lote.apellidos[i], lote.telefonos[i]);
+        }
+    }
+
+    /**
+     * Etapa 2: entrega los contactos válidos a la agenda en un solo bloque, anota el
+     * resultado de cada fila y vacía el lote.
+     */
+    private void confirmar(Lote lote, ResumenImportacion resumen) {
+        for (int i = 0; i < lote.n; i++) {
+            if (lote.contactos[i] != null) {
+                lote.posiciones[lote.validos.size()] = i;
+                lote.validos.add(lote.contactos[i]);
+            }
+        }
+        ResultadoOperacion[] resultados;
+        if (cerrojo != null) cerrojo.lock();
+        try {
+            resultados = agenda.anadirEnBloque(lote.validos);
+        } finally {
+            if (cerrojo != null) cerrojo.unlock();
+        }
+        for (int j = 0; j < resultados.length; j++) {
+            lote.motivos[lote.posiciones[j]] = motivo(resultados[j]);
+        }
+
+        for (int i = 0; i < lote.n; i++) {
+            if (lote.motivos[i] == null) resumen.contarImportada();
+            else resumen.rechazar(lote.lineas[i], lote.motivos[i], lote.originales[i]);
+        }
+        lote.vaciar();
+        if (progreso != null) progreso.accept(resumen);
+    }
+
+    /** Motivo de rechazo equivalente al resultado de la agenda, o null si se añadió */
+    private static MotivoRechazo motivo(ResultadoOperacion resultado) {
+        switch (resultado) {
+            case CORRECTO:
+                return null;
+            case AGENDA_LLENA:
+                return MotivoRechazo.AGENDA_LLENA;
+            case NOMBRE_APELLIDO_REPETIDO:
+                return MotivoRechazo.NOMBRE_APELLIDO_REPETIDO;
+            case TELEFONO_REPETIDO:
+                return MotivoRechazo.TELEFONO_REPETIDO;
+            default:
+                // La etapa 1 no deja pasar contactos nulos
+                throw new IllegalStateException("Resultado inesperado: " + resultado);
+        }
+    }
+
+    /** Aplica las validaciones del constructor de {@link Contacto} sin lanzar excepciones */
+    private static MotivoRechazo validarCampos(Lote lote, int i) {
+        if (lote.nombres[i] == null || lote.nombres[i].isBlank()) return MotivoRechazo.NOMBRE_VACIO;
+        if (lote.apellidos[i] == null || lote.apellidos[i].isBlank()) return MotivoRechazo.APELLIDO_VACIO;
+        String telefono = lote.telefonos[i] == null ? null : limpiarTelefono(lote.telefonos[i]);
+        if (!Normalizador.esTelefonoValido(telefono)) return MotivoRechazo.TELEFONO_INVALIDO;
+        lote.telefonos[i] = telefono;
+        return null;
+    }
+
+    /** Quita espacios, guiones, puntos y paréntesis; devuelve la misma cadena si no hay ninguno */
+    static String limpiarTelefono(String telefono) {
+        int i = 0;
+        while (i < telefono.length() && !esSeparador(telefono.charAt(i))) i++;
+        if (i == telefono.length()) return telefono;
+
+        StringBuilder sb = new StringBuilder(telefono.length());
+        sb.append(telefono, 0, i);
+        for (; i < telefono.length(); i++) {
+            char ch = telefono.charAt(i);
+            if (!esSeparador(ch)) sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private static boolean esSeparador(char c) {
+        return c == ' ' || c == '-' || c == '.' || c == '(' || c == ')' || c == '\t';
+    }
+
+    /** Indica si la fila tiene un número par de comillas, es decir, si no acaba dentro de un campo */
+    private static boolean comillasPares(String linea) {
+        int comillas = 0;
+        for (int i = linea.indexOf('"'); i >= 0; i = linea.indexOf('"', i + 1)) comillas++;
+        return (comillas & 1) == 0;
+    }
+
+    /**
+     * Divide una fila CSV en campos. Devuelve false si la fila termina dentro de un
+     * campo entre comillas (el campo continúa en la línea siguiente).
+     */
+    static boolean dividirCsv(String linea, char separador, List<String> campos) {
+        campos.clear();
+        if (linea.indexOf('"') < 0) {
+            // Caso habitual: sin comillas, basta con cortar en cada separador
+            int desde = 0, hasta;
+            while ((hasta = linea.indexOf(separador, desde)) >= 0) {
+                campos.add(linea.substring(desde, hasta));
+                desde = hasta + 1;
+            }
+            campos.add(linea.substring(desde));
+            return true;
+        }
+
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return !entreComillas;
+    }
+
+    /**
+     * Si los campos forman una cabecera con nombre, apellido y teléfono, devuelve la
+     * columna de cada uno; si no, null.
+     */
+    private static int[] columnasCabecera(List<String> campos) {
+        int[] columnas = {-1, -1, -1};
+        for (int i = 0; i < campos.size(); i++) {
+            String c = Normalizador.normalizar(campos.get(i));
+            if (columnas[0] < 0 && (c.equals("nombre") || c.equals("nombres") || c.equals("name") || c.equals("first name"))) {
+                columnas[0] = i;
+            } else if (columnas[1] < 0 && (c.equals("apellido") || c.equals("apellidos") || c.equals("surname") || c.equals("last name"))) {
+                columnas[1] = i;
+            } else if (columnas[2] < 0 && (c.equals("telefono") || c.equals("tel") || c.equals("movil") || c.equals("phone"))) {
+                columnas[2] = i;
+            }
+        }
+        return columnas[0] >= 0 && columnas[1] >= 0 && columnas[2] >= 0 ? columnas : null;
+    }
+
+    /** Nombre de la propiedad vCard en mayúsculas, sin grupo ("item1.") ni parámetros */
+    private static String nombrePropiedad(String linea, int dosPuntos) {
+        int fin = linea.indexOf(';');
+        if (fin < 0 || fin > dosPuntos) fin = dosPuntos;
+        int inicio = linea.lastIndexOf('.', fin - 1) + 1;
+        return linea.substring(inicio, fin).trim().toUpperCase(Locale.ROOT);
+    }
+
+    /** Divide un valor vCard por ';' respetando los escapes \; \, \\ y \n */
+    private static List<String> dividirEscapado(String valor) {
+        List<String> partes = new ArrayList<>(5);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '\\' && i + 1 < valor.length()) {
+                char s = valor.charAt(++i);
+                sb.append(s == 'n' || s == 'N' ? ' ' : s);
+            } else if (c == ';') {
+                partes.add(sb.toString().trim());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        partes.add(sb.toString().trim());
+        return partes;
+    }
+
+    private static BufferedReader comoBuffered(Reader lector) {
+        return lector instanceof BufferedReader ? (BufferedReader) lector : new BufferedReader(lector, BUFFER_LECTURA);
+    }
+}
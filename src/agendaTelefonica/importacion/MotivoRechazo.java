@@ -0,0 +1,25 @@
+package agendaTelefonica.importacion;
+
+/**
+ * Motivos por los que una fila importada no llega a la agenda.
+ * Los de validación y duplicados siguen las mismas reglas que {@code Agenda.anadirContacto}.
+ */
+public enum MotivoRechazo {
+    FILA_MALFORMADA("La fila no tiene los campos esperados"),
+    NOMBRE_VACIO("El nombre no puede estar vacío"),
+    APELLIDO_VACIO("El apellido no puede estar vacío"),
+    TELEFONO_INVALIDO("Teléfono inválido: debe contener sólo números (7-15 dígitos)"),
+    AGENDA_LLENA("La agenda está llena"),
+    NOMBRE_APELLIDO_REPETIDO("Ya existe un contacto con el mismo nombre y apellido"),
+    TELEFONO_REPETIDO("Ya existe un contacto con el mismo número de teléfono");
+
+    private final String descripcion;
+
+    MotivoRechazo(String descripcion) {
+        this.descripcion = descripcion;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+}
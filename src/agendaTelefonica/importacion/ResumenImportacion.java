@@ -0,0 +1,118 @@
+package agendaTelefonica.importacion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Resultado de una importación: filas leídas e importadas, rechazos por motivo y
+ * unas pocas filas rechazadas de ejemplo. La memoria no crece con el tamaño del archivo.
+ */
+public final class ResumenImportacion {
+
+    /** Filas rechazadas que se conservan como ejemplo por cada motivo */
+    public static final int MUESTRAS_POR_MOTIVO = 5;
+
+    // Largo máximo del contenido guardado en una muestra
+    private static final int LARGO_MUESTRA = 120;
+
+    /**
+     * Una fila rechazada: número de línea en el archivo, motivo y contenido original.
+     */
+    public static final class Rechazo {
+        private final long linea;
+        private final MotivoRechazo motivo;
+        private final String contenido;
+
+        Rechazo(long linea, MotivoRechazo motivo, String contenido) {
+            this.linea = linea;
+            this.motivo = motivo;
+            this.contenido = contenido;
+        }
+
+        public long getLinea() {
+            return linea;
+        }
+
+        public MotivoRechazo getMotivo() {
+            return motivo;
+        }
+
+        public String getContenido() {
+            return contenido;
+        }
+
+        @Override
+        public String toString() {
+            return "línea " + linea + ": " + motivo.getDescripcion() + " -> " + contenido;
+        }
+    }
+
+    private long leidas;
+    private long importadas;
+    private final long[] rechazadas = new long[MotivoRechazo.values().length];
+    private final List<Rechazo> muestras = new ArrayList<>();
+
+    void contarLeida() {
+        leidas++;
+    }
+
+    void contarImportada() {
+        importadas++;
+    }
+
+    void rechazar(long linea, MotivoRechazo motivo, String contenido) {
+        if (rechazadas[motivo.ordinal()]++ < MUESTRAS_POR_MOTIVO) {
+            if (contenido.length() > LARGO_MUESTRA) contenido = contenido.substring(0, LARGO_MUESTRA) + "...";
+            muestras.add(new Rechazo(linea, motivo, contenido));
+        }
+    }
+
+    /** Filas de datos leídas del archivo (sin contar cabecera ni líneas en blanco) */
+    public long getLeidas() {
+        return leidas;
+    }
+
+    public long getImportadas() {
+        return importadas;
+    }
+
+    public long getRechazadas() {
+        long total = 0;
+        for (long r : rechazadas) total += r;
+        return total;
+    }
+
+    public long getRechazadas(MotivoRechazo motivo) {
+        return rechazadas[motivo.ordinal()];
+    }
+
+    /** Ejemplos de filas rechazadas, ordenados por línea */
+    public List<Rechazo> getMuestras() {
+        // Las filas malformadas se rechazan al leerlas y el resto al procesar su lote
+        List<Rechazo> ordenadas = new ArrayList<>(muestras);
+        ordenadas.sort(Comparator.comparingLong(Rechazo::getLinea));
+        return Collections.unmodifiableList(ordenadas);
+    }
+
+    /**
+     * Informe legible: totales, rechazos por motivo y las filas de ejemplo.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Filas leídas: ").append(leidas)
+                .append(", importadas: ").append(importadas)
+                .append(", rechazadas: ").append(getRechazadas());
+        for (MotivoRechazo m : MotivoRechazo.values()) {
+            long n = rechazadas[m.ordinal()];
+            if (n > 0) sb.append("\n  ").append(m.getDescripcion()).append(": ").append(n);
+        }
+        if (!muestras.isEmpty()) {
+            sb.append("\nEjemplos de filas rechazadas:");
+            for (Rechazo r : getMuestras()) sb.append("\n  ").append(r);
+        }
+        return sb.toString();
+    }
+}
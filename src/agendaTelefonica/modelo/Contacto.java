@@ -1,6 +1,5 @@
 package agendaTelefonica.modelo;
 
-import java.text.Normalizer;
 import java.util.Objects;
 
 /**
@@ -12,6 +11,13 @@ public class Contacto {
     private String apellido;
     private String telefono;
 
+    // Formas normalizadas de nombre y apellido, calculadas una sola vez por cada cambio
+    private String nombreNormalizado;
+    private String apellidoNormalizado;
+
+    // Clave de ordenación precalculada (nombre y apellido sin distinguir mayúsculas)
+    private String claveOrden;
+
     /**
      * Constructor que inicializa un contacto con nombre, apellido y teléfono.
      * Realiza validaciones para asegurar que los campos no estén vacíos
@@ -22,12 +28,28 @@ public class Contacto {
             throw new IllegalArgumentException("El nombre no puede estar vacío.");
         if (apellido == null || apellido.trim().isEmpty())
             throw new IllegalArgumentException("El apellido no puede estar vacío.");
-        if (telefono == null || !telefono.trim().matches("\\d{7,15}")) {
+        if (!Normalizador.esTelefonoValido(telefono)) {
             throw new IllegalArgumentException("Teléfono inválido: debe contener sólo números (7-15 dígitos).");
         }
         this.nombre = nombre.trim();
         this.apellido = apellido.trim();
         this.telefono = telefono.trim();
+        this.nombreNormalizado = normalizarTexto(this.nombre);
+        this.apellidoNormalizado = normalizarTexto(this.apellido);
+        this.claveOrden = calcularClaveOrden();
+    }
+
+    /**
+     * Copia de otro contacto. No repite las validaciones ni la normalización: comparte
+     * con el original los textos, que son inmutables.
+     */
+    public Contacto(Contacto otro) {
+        this.nombre = otro.nombre;
+        this.apellido = otro.apellido;
+        this.telefono = otro.telefono;
+        this.nombreNormalizado = otro.nombreNormalizado;
+        this.apellidoNormalizado = otro.apellidoNormalizado;
+        this.claveOrden = otro.claveOrden;
     }
 
     // Métodos getter y setter para acceder y modificar los atributos del contacto
@@ -39,6 +61,16 @@ public class Contacto {
     public void setNombre(String nombre) {
         // Si el nombre es nulo, se asigna una cadena vacía para evitar errores
         this.nombre = nombre == null ? "" : nombre.trim();
+        this.nombreNormalizado = normalizarTexto(this.nombre);
+        this.claveOrden = calcularClaveOrden();
+    }
+
+    /**
+     * Devuelve el nombre sin acentos, en minúsculas y sin espacios en los extremos.
+     * El valor se calcula al asignar el nombre, no en cada llamada.
+     */
+    public String getNombreNormalizado() {
+        return nombreNormalizado;
     }
 
     public String getApellido() {
@@ -47,18 +79,37 @@ public class Contacto {
 
     public void setApellido(String apellido) {
         this.apellido = apellido == null ? "" : apellido.trim();
+        this.apellidoNormalizado = normalizarTexto(this.apellido);
+        this.claveOrden = calcularClaveOrden();
+    }
+
+    /**
+     * Devuelve el apellido normalizado, calculado al asignar el apellido.
+     */
+    public String getApellidoNormalizado() {
+        return apellidoNormalizado;
     }
 
     public String getTelefono() {
         return telefono;
     }
 
+    /**
+     * Devuelve la clave con la que se ordenan los contactos en los listados.
+     * Comparar dos claves con {@link String#compareTo} equivale a ordenar por nombre y
+     * luego por apellido con {@link String#CASE_INSENSITIVE_ORDER}, sin repetir la
+     * conversión de mayúsculas en cada comparación.
+     */
+    public String getClaveOrden() {
+        return claveOrden;
+    }
+
     /**
      * Setter que valida el nuevo número antes de asignarlo.
      * Solo se aceptan números entre 7 y 15 dígitos.
      */
     public void setTelefono(String telefono) {
-        if (telefono == null || !telefono.trim().matches("\\d{7,15}")) {
+        if (!Normalizador.esTelefonoValido(telefono)) {
             throw new IllegalArgumentException("Teléfono inválido: debe contener sólo números (7-15 dígitos).");
         }
         this.telefono = telefono.trim();
@@ -68,15 +119,16 @@ public class Contacto {
      * Sobrescribe el método equals para comparar contactos.
      * Dos contactos se consideran iguales si tienen el mismo nombre, apellido y teléfono,
      * ignorando acentos, mayúsculas y espacios.
+     * Usa las formas normalizadas ya calculadas, por lo que no reserva memoria.
      */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Contacto)) return false;
         Contacto contacto = (Contacto) o;
-        return normalizarTexto(nombre).equals(normalizarTexto(contacto.nombre)) &&
-                normalizarTexto(apellido).equals(normalizarTexto(contacto.apellido)) &&
-                telefono.trim().equals(contacto.telefono.trim());
+        return nombreNormalizado.equals(contacto.nombreNormalizado) &&
+                apellidoNormalizado.equals(contacto.apellidoNormalizado) &&
+                telefono.equals(contacto.telefono);
     }
 
     /**
@@ -86,9 +138,9 @@ public class Contacto {
     @Override
     public int hashCode() {
         return Objects.hash(
-                normalizarTexto(nombre),
-                normalizarTexto(apellido),
-                telefono.trim()
+                nombreNormalizado,
+                apellidoNormalizado,
+                telefono
         );
     }
 
@@ -96,13 +148,30 @@ public class Contacto {
      * Método utilitario que normaliza texto eliminando acentos,
      * convirtiendo a minúsculas y eliminando espacios.
      * Se usa para comparar nombres y apellidos de forma robusta.
+     * Delega en {@link Normalizador}, que evita regex y copias intermedias.
      */
     public static String normalizarTexto(String texto) {
-        if (texto == null) return "";
-        return Normalizer.normalize(texto, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "") // Elimina marcas diacríticas (acentos)
-                .toLowerCase()
-                .trim();
+        return Normalizador.normalizar(texto);
+    }
+
+    /**
+     * Aplica a cada carácter la misma conversión que CASE_INSENSITIVE_ORDER y separa
+     * nombre y apellido con '\0', que ordena antes que cualquier otro carácter.
+     */
+    private String calcularClaveOrden() {
+        StringBuilder sb = new StringBuilder(nombre.length() + apellido.length() + 1);
+        plegarMayusculas(nombre, sb);
+        sb.append('\0');
+        plegarMayusculas(apellido, sb);
+        return sb.toString();
+    }
+
+    private static void plegarMayusculas(String texto, StringBuilder sb) {
+        for (int i = 0; i < texto.length(); ) {
+            int cp = texto.codePointAt(i);
+            sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+            i += Character.charCount(cp);
+        }
     }
 
     /**
@@ -0,0 +1,211 @@
+package agendaTelefonica.modelo;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalizador de texto y validador de teléfonos sin expresiones regulares.
+ *
+ * El resultado de {@link #normalizar(String)} es idéntico al de la forma original
+ * (NFD, eliminar marcas diacríticas, minúsculas y trim). Los textos formados sólo por
+ * ASCII, Latin-1 y Latin Extended se resuelven en una única pasada con una tabla de
+ * plegado; cualquier otro carácter cae en la ruta general con {@link Normalizer}.
+ */
+public final class Normalizador {
+
+    /** Primer carácter que ya no cubre la tabla (fin de Latin Extended-B) */
+    private static final int LIMITE_TABLA = 0x250;
+
+    /** Marca de la tabla para caracteres que no se pueden plegar a un único carácter */
+    private static final char SIN_PLEGADO = '\uFFFF';
+
+    /** Longitudes válidas de un teléfono */
+    private static final int MIN_DIGITOS = 7;
+    private static final int MAX_DIGITOS = 15;
+
+    /**
+     * Tabla de plegado junto con el locale con el que se construyó.
+     * toLowerCase depende del locale por defecto, así que si cambia se reconstruye.
+     */
+    private static final class Tabla {
+        final Locale locale;
+        final char[] plegado;
+
+        Tabla(Locale locale) {
+            this.locale = locale;
+            this.plegado = new char[LIMITE_TABLA];
+            for (char c = 0; c < LIMITE_TABLA; c++) {
+                String r = normalizarGeneral(String.valueOf(c), false);
+                plegado[c] = r.length() == 1 ? r.charAt(0) : SIN_PLEGADO;
+            }
+        }
+    }
+
+    private static volatile Tabla tabla = new Tabla(Locale.getDefault());
+
+    private Normalizador() {
+    }
+
+    /**
+     * Elimina acentos, convierte a minúsculas y quita los espacios de los extremos.
+     * Devuelve "" si el texto es nulo y el mismo objeto si ya estaba normalizado.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+
+        char[] plegado = tablaVigente();
+        int len = texto.length();
+        char[] salida = null;
+
+        for (int i = 0; i < len; i++) {
+            char c = texto.charAt(i);
+            char m = c < LIMITE_TABLA ? plegado[c] : SIN_PLEGADO;
+            if (m == SIN_PLEGADO) return normalizarGeneral(texto, true);
+            if (salida == null && m != c) {
+                // Sólo se reserva el buffer al encontrar el primer carácter que cambia
+                salida = new char[len];
+                texto.getChars(0, i, salida, 0);
+            }
+            if (salida != null) salida[i] = m;
+        }
+
+        // Equivalente a trim() sobre el resultado
+        int ini = 0, fin = len;
+        if (salida == null) {
+            while (ini < fin && texto.charAt(ini) <= ' ') ini++;
+            while (fin > ini && texto.charAt(fin - 1) <= ' ') fin--;
+            return ini == 0 && fin == len ? texto : texto.substring(ini, fin);
+        }
+        while (ini < fin && salida[ini] <= ' ') ini++;
+        while (fin > ini && salida[fin - 1] <= ' ') fin--;
+        return new String(salida, ini, fin - ini);
+    }
+
+    /**
+     * Indica si el texto, quitando espacios en los extremos, tiene entre 7 y 15 dígitos ASCII.
+     * Equivale a {@code telefono.trim().matches("\\d{7,15}")} sin compilar la expresión.
+     */
+    public static boolean esTelefonoValido(String telefono) {
+        if (telefono == null) return false;
+
+        int ini = 0, fin = telefono.length();
+        while (ini < fin && telefono.charAt(ini) <= ' ') ini++;
+        while (fin > ini && telefono.charAt(fin - 1) <= ' ') fin--;
+
+        int digitos = fin - ini;
+        if (digitos < MIN_DIGITOS || digitos > MAX_DIGITOS) return false;
+        for (int i = ini; i < fin; i++) {
+            char c = telefono.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Clave fonética en español de un texto ya normalizado: dos textos que se pronuncian
+     * igual tienen la misma clave aunque se escriban distinto ("ramirez" y "ramires",
+     * "lucia" y "lusia", "yolanda" y "llolanda"). Se unifican b/v/w, c/s/z (seseo),
+     * c/k/q ante a, o, u, g/j ante e, i, ll/y, la h muda, la x como "ks" y la n ante b o
+     * p; las letras y los espacios repetidos cuentan una vez. Los caracteres que no son
+     * letras ni espacios se omiten.
+     */
+    public static String claveFonetica(String normalizado) {
+        StringBuilder sb = new StringBuilder(normalizado.length());
+        int len = normalizado.length();
+        for (int i = 0; i < len; i++) {
+            char c = normalizado.charAt(i);
+            char sig = i + 1 < len ? normalizado.charAt(i + 1) : ' ';
+            char m;
+            switch (c) {
+                case 'b': case 'v': case 'w':
+                    m = 'b';
+                    break;
+                case 'c':
+                    if (sig == 'h') {
+                        m = 'C';
+                        i++;
+                    } else {
+                        m = sig == 'e' || sig == 'i' ? 's' : 'k';
+                    }
+                    break;
+                case 'q':
+                    // "que" y "qui": la u no suena
+                    if (sig == 'u' && i + 2 < len && esEoI(normalizado.charAt(i + 2))) i++;
+                    m = 'k';
+                    break;
+                case 'g':
+                    if (esEoI(sig)) {
+                        m = 'j';
+                    } else {
+                        if (sig == 'u' && i + 2 < len && esEoI(normalizado.charAt(i + 2))) i++;
+                        m = 'g';
+                    }
+                    break;
+                case 'h':
+                    continue;
+                case 'l':
+                    if (sig == 'l') {
+                        m = 'y';
+                        i++;
+                    } else {
+                        m = 'l';
+                    }
+                    break;
+                case 'y':
+                    // Ante vocal es consonante; si no, suena como i ("rey", "y")
+                    m = esVocal(sig) ? 'y' : 'i';
+                    break;
+                case 'x':
+                    agregarFonema(sb, 'k');
+                    m = 's';
+                    break;
+                case 'z':
+                    m = 's';
+                    break;
+                case 'n':
+                    m = sig == 'b' || sig == 'v' || sig == 'p' ? 'm' : 'n';
+                    break;
+                default:
+                    if ((c < 'a' || c > 'z') && c != ' ') continue;
+                    m = c;
+            }
+            agregarFonema(sb, m);
+        }
+        return sb.toString();
+    }
+
+    /** Añade el fonema salvo que repita el anterior */
+    private static void agregarFonema(StringBuilder sb, char m) {
+        if (sb.length() == 0 || sb.charAt(sb.length() - 1) != m) sb.append(m);
+    }
+
+    private static boolean esEoI(char c) {
+        return c == 'e' || c == 'i';
+    }
+
+    private static boolean esVocal(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+
+    /**
+     * Normalización original basada en NFD y expresión regular.
+     * Se usa para los caracteres fuera de la tabla y para construirla.
+     */
+    static String normalizarGeneral(String texto, boolean recortar) {
+        String r = Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "") // Elimina marcas diacríticas (acentos)
+                .toLowerCase();
+        return recortar ? r.trim() : r;
+    }
+
+    /** Devuelve la tabla del locale actual, reconstruyéndola si el locale cambió */
+    private static char[] tablaVigente() {
+        Tabla t = tabla;
+        Locale actual = Locale.getDefault();
+        if (!t.locale.equals(actual)) {
+            t = new Tabla(actual);
+            tabla = t;
+        }
+        return t.plegado;
+    }
+}
@@ -0,0 +1,192 @@
+package agendaTelefonica.persistencia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+
+/**
+ * Persistencia de la agenda en un archivo binario compacto.
+ *
+ * Formato (big-endian):
+ * <pre>
+ *   cabecera: int magia 'AGND' | short versión | short reservado | int maxSize | int cantidad
+ *   registro: byte dígitos | long teléfono | short len + UTF-8 nombre | short len + UTF-8 apellido
+ * </pre>
+ * El teléfono ocupa siempre 9 bytes: el número de dígitos conserva los ceros a la
+ * izquierda. Los registros se guardan en el orden del listado, y la carga lee el
+ * archivo mapeado en memoria sin interpretar texto línea a línea.
+ */
+public final class ArchivoAgenda {
+
+    static final int MAGIA = 0x41474E44; // "AGND"
+    static final short VERSION = 1;
+    static final int TAMANO_CABECERA = 16;
+
+    // Tamaño del buffer de escritura
+    private static final int BUFFER_ESCRITURA = 1 << 20;
+
+    private ArchivoAgenda() {
+    }
+
+    /**
+     * Guarda la agenda completa. Se escribe primero en un archivo temporal que después
+     * reemplaza al destino, para no dejar un archivo a medias si el proceso se interrumpe.
+     */
+    public static void guardar(Agenda agenda, Path archivo) throws IOException {
+        guardar(agenda.listarContactos(0, agenda.cantidadContactos()),
+                agenda.cantidadContactos() + agenda.espaciosLibres(), archivo);
+    }
+
+    /**
+     * Guarda los contactos indicados, ya ordenados, como una agenda de capacidad {@code maxSize}.
+     */
+    static void guardar(List<Contacto> contactos, int maxSize, Path archivo) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_ESCRITURA);
+            buf.putInt(MAGIA).putShort(VERSION).putShort((short) 0)
+                    .putInt(maxSize)
+                    .putInt(contactos.size());
+
+            for (Contacto c : contactos) {
+                byte[] nombre = c.getNombre().getBytes(StandardCharsets.UTF_8);
+                byte[] apellido = c.getApellido().getBytes(StandardCharsets.UTF_8);
+                if (nombre.length > 0xFFFF || apellido.length > 0xFFFF) {
+                    throw new IOException("Registro demasiado grande: " + c);
+                }
+                int largo = 9 + 2 + nombre.length + 2 + apellido.length;
+                if (buf.remaining() < largo) vaciar(canal, buf);
+
+                escribirTelefono(buf, c.getTelefono());
+                escribirTexto(buf, nombre);
+                escribirTexto(buf, apellido);
+            }
+            vaciar(canal, buf);
+            canal.force(true);
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(archivo.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Sincroniza el directorio con el disco para que sean duraderos los archivos creados
+     * o renombrados en él: el fsync de un archivo no incluye su entrada en el directorio.
+     */
+    static void sincronizarDirectorio(Path directorio) throws IOException {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows no deja abrir un directorio para sincronizarlo
+        }
+    }
+
+    /**
+     * Carga una agenda desde el archivo indicado, leyéndolo a través de un
+     * {@link MappedByteBuffer}. Los contactos se entregan juntos con
+     * {@link Agenda#anadirEnBloque}: como ya vienen en el orden del listado, la agenda
+     * construye su árbol de una vez en lugar de insertarlos uno a uno.
+     *
+     * @throws IOException si el archivo no existe, no tiene el formato esperado o está truncado
+     */
+    public static Agenda cargar(Path archivo) throws IOException {
+        int[] maxSize = new int[1];
+        List<Contacto> contactos = new ArrayList<>();
+        leer(archivo, capacidad -> maxSize[0] = capacidad, contactos::add);
+        Agenda agenda = new Agenda(maxSize[0]);
+        agenda.anadirEnBloque(contactos);
+        return agenda;
+    }
+
+    /**
+     * Lee el archivo entregando primero la capacidad guardada y después cada contacto,
+     * en el orden en que se guardaron.
+     */
+    static void leer(Path archivo, IntConsumer capacidad, Consumer<Contacto> destino) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE) throw new IOException("Archivo demasiado grande para mapear: " + tamano);
+            MappedByteBuffer buf = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+
+            if (tamano < TAMANO_CABECERA || buf.getInt() != MAGIA) {
+                throw new IOException("El archivo no es una agenda: " + archivo);
+            }
+            short version = buf.getShort();
+            if (version != VERSION) throw new IOException("Versión de agenda no soportada: " + version);
+            buf.getShort();
+            int maxSize = buf.getInt();
+            int cantidad = buf.getInt();
+
+            capacidad.accept(maxSize);
+            byte[] bytes = new byte[256];
+            try {
+                for (int i = 0; i < cantidad; i++) {
+                    String telefono = leerTelefono(buf);
+                    bytes = asegurar(bytes, buf.getShort(buf.position()) & 0xFFFF);
+                    String nombre = leerTexto(buf, bytes);
+                    bytes = asegurar(bytes, buf.getShort(buf.position()) & 0xFFFF);
+                    String apellido = leerTexto(buf, bytes);
+                    destino.accept(new Contacto(nombre, apellido, telefono));
+                }
+            } catch (RuntimeException e) {
+                // BufferUnderflowException o datos inválidos: el archivo está dañado
+                throw new IOException("Agenda dañada o truncada: " + archivo, e);
+            }
+        }
+    }
+
+    /** Escribe el teléfono como cantidad de dígitos + valor numérico */
+    static void escribirTelefono(ByteBuffer buf, String telefono) {
+        buf.put((byte) telefono.length());
+        buf.putLong(Long.parseLong(telefono));
+    }
+
+    /** Reconstruye el teléfono rellenando con ceros a la izquierda hasta su cantidad de dígitos */
+    static String leerTelefono(ByteBuffer buf) {
+        int digitos = buf.get();
+        long valor = buf.getLong();
+        if (digitos < 1 || digitos > 19 || valor < 0) throw new IllegalStateException("Teléfono corrupto");
+        char[] c = new char[digitos];
+        for (int i = digitos - 1; i >= 0; i--) {
+            c[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return new String(c);
+    }
+
+    static void escribirTexto(ByteBuffer buf, byte[] utf8) {
+        buf.putShort((short) utf8.length);
+        buf.put(utf8);
+    }
+
+    static String leerTexto(ByteBuffer buf, byte[] bytes) {
+        int largo = buf.getShort() & 0xFFFF;
+        buf.get(bytes, 0, largo);
+        return new String(bytes, 0, largo, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] asegurar(byte[] bytes, int largo) {
+        return bytes.length >= largo ? bytes : new byte[largo];
+    }
+
+    private static void vaciar(FileChannel canal, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) canal.write(buf);
+        buf.clear();
+    }
+}
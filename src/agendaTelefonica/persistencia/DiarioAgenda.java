@@ -0,0 +1,588 @@
+package agendaTelefonica.persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.InstantaneaAgenda;
+import agendaTelefonica.servicio.OyenteAgenda;
+
+/**
+ * Diario de escritura anticipada de la agenda, con instantáneas periódicas.
+ *
+ * Cada alta, baja o cambio de teléfono se añade al final del diario como un registro
+ * binario pequeño, así que el coste de una modificación no depende del tamaño de la
+ * agenda. Un hilo escritor agrupa los registros pendientes y hace un solo fsync por
+ * lote (group commit): el lote se cierra al reunir {@code registrosPorLote} registros
+ * o al pasar {@code msEntreLotes} desde el primero que quedó pendiente.
+ *
+ * Archivos del directorio:
+ * <pre>
+ *   instantanea-N.dat  agenda completa (formato {@link ArchivoAgenda}) previa al segmento N
+ *   diario-N.wal       registros del segmento N
+ *   registro: int largo | int crc32 | byte tipo | datos
+ *     ALTA    teléfono | nombre | apellido
+ *     BAJA    nombre | apellido
+ *     CAMBIO  nombre | apellido | teléfono nuevo
+ * </pre>
+ * Cuando el segmento actual supera {@code bytesParaCompactar} se empieza uno nuevo y
+ * la agenda se vuelca en segundo plano a una instantánea; cuando está escrita y el hilo
+ * escritor ya sincronizó todo lo encolado para los segmentos anteriores, se borran
+ * éstos y la instantánea previa. La recuperación carga la última instantánea y
+ * reaplica los segmentos posteriores.
+ *
+ * Los métodos de {@link OyenteAgenda} sólo encolan el registro: la modificación es
+ * duradera cuando termina el lote que la contiene, o al volver de {@link #sincronizar()}.
+ */
+public final class DiarioAgenda implements OyenteAgenda, Closeable {
+
+    public static final int REGISTROS_POR_LOTE = 256;
+    public static final long MS_ENTRE_LOTES = 5;
+    public static final long BYTES_PARA_COMPACTAR = 64L << 20;
+
+    private static final byte ALTA = 1;
+    private static final byte BAJA = 2;
+    private static final byte CAMBIO = 3;
+
+    private static final String PREFIJO_INSTANTANEA = "instantanea-";
+    private static final String SUFIJO_INSTANTANEA = ".dat";
+    private static final String PREFIJO_SEGMENTO = "diario-";
+    private static final String SUFIJO_SEGMENTO = ".wal";
+
+    // Registros encolados para un mismo segmento, en orden de llegada
+    private static final class Tramo {
+        final int segmento;
+        ByteBuffer datos = ByteBuffer.allocate(4096);
+
+        Tramo(int segmento) {
+            this.segmento = segmento;
+        }
+
+        void anadir(byte[] registro) {
+            if (datos.remaining() < registro.length) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(datos.capacity() * 2, datos.position() + registro.length));
+                datos.flip();
+                mayor.put(datos);
+                datos = mayor;
+            }
+            datos.put(registro);
+        }
+    }
+
+    private final Path directorio;
+    private final Agenda agenda;
+    private final int registrosPorLote;
+    private final long nanosEntreLotes;
+    private final long bytesParaCompactar;
+
+    // Estado compartido con el hilo escritor, protegido por 'cerrojo'
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hayTrabajo = cerrojo.newCondition();
+    private final Condition hayDurables = cerrojo.newCondition();
+    private final ArrayDeque<Tramo> pendientes = new ArrayDeque<>();
+    private int registrosPendientes;
+    private long primerPendiente;
+    private long registrados;
+    private long durables;
+    private boolean urgente;
+    private boolean cerrado;
+    private IOException error;
+    private int segmentoActual;
+    private long bytesSegmento;
+
+    // Sólo los usa el hilo escritor
+    private FileChannel canal;
+    private int segmentoCanal = -1;
+
+    private final Thread escritor;
+    private final ExecutorService compactador;
+    private volatile boolean compactando;
+    private volatile IOException errorCompactacion;
+
+    private DiarioAgenda(Path directorio, Agenda agenda, int segmento, int registrosPorLote,
+                         long msEntreLotes, long bytesParaCompactar) {
+        this.directorio = directorio;
+        this.agenda = agenda;
+        this.segmentoActual = segmento;
+        this.registrosPorLote = registrosPorLote;
+        this.nanosEntreLotes = TimeUnit.MILLISECONDS.toNanos(msEntreLotes);
+        this.bytesParaCompactar = bytesParaCompactar;
+
+        escritor = new Thread(this::escribir, "diario-agenda");
+        escritor.setDaemon(true);
+        compactador = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "compactacion-agenda");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Abre el diario en el directorio con la configuración por defecto.
+     *
+     * @see #abrir(Path, Agenda, int, long, long)
+     */
+    public static DiarioAgenda abrir(Path directorio, Agenda agenda) throws IOException {
+        return abrir(directorio, agenda, REGISTROS_POR_LOTE, MS_ENTRE_LOTES, BYTES_PARA_COMPACTAR);
+    }
+
+    /**
+     * Empieza a registrar las modificaciones de la agenda en un segmento nuevo del
+     * directorio. La agenda debe ser la que devolvió {@link #recuperar} para ese mismo
+     * directorio (o una agenda nueva si el directorio está vacío).
+     *
+     * @param registrosPorLote   registros que fuerzan un fsync sin esperar al plazo
+     * @param msEntreLotes       espera máxima de un registro antes de su fsync
+     * @param bytesParaCompactar tamaño del segmento a partir del cual se hace una instantánea
+     */
+    public static DiarioAgenda abrir(Path directorio, Agenda agenda, int registrosPorLote,
+                                     long msEntreLotes, long bytesParaCompactar) throws IOException {
+        if (registrosPorLote < 1 || msEntreLotes < 0 || bytesParaCompactar < 1) {
+            throw new IllegalArgumentException("Configuración del diario inválida.");
+        }
+        Files.createDirectories(directorio);
+        int ultimo = Math.max(ultimoNumero(directorio, PREFIJO_SEGMENTO, SUFIJO_SEGMENTO),
+                ultimoNumero(directorio, PREFIJO_INSTANTANEA, SUFIJO_INSTANTANEA));
+
+        DiarioAgenda diario = new DiarioAgenda(directorio, agenda, ultimo + 1,
+                registrosPorLote, msEntreLotes, bytesParaCompactar);
+        diario.escritor.start();
+        agenda.agregarOyente(diario);
+        return diario;
+    }
+
+    /**
+     * Reconstruye la agenda guardada en el directorio: carga la última instantánea y
+     * reaplica, en orden, los registros de los segmentos posteriores. Un registro
+     * incompleto al final del último segmento (escritura interrumpida) se descarta y
+     * el segmento se trunca en ese punto.
+     *
+     * @param maxSizePorDefecto capacidad de la agenda si todavía no hay instantánea
+     * @throws IOException si una instantánea o un segmento intermedio están dañados
+     */
+    public static Agenda recuperar(Path directorio, int maxSizePorDefecto) throws IOException {
+        // Contactos por nombre y apellido normalizados, igual que los identifica la agenda
+        Map<String, Contacto> contactos = new LinkedHashMap<>();
+        int[] maxSize = {maxSizePorDefecto};
+        int desde = 0;
+
+        if (Files.isDirectory(directorio)) {
+            int instantanea = ultimoNumero(directorio, PREFIJO_INSTANTANEA, SUFIJO_INSTANTANEA);
+            if (instantanea >= 0) {
+                ArchivoAgenda.leer(archivoInstantanea(directorio, instantanea),
+                        capacidad -> maxSize[0] = capacidad,
+                        c -> contactos.put(clave(c.getNombre(), c.getApellido()), c));
+                desde = instantanea;
+            }
+
+            TreeMap<Integer, Path> segmentos = numerados(directorio, PREFIJO_SEGMENTO, SUFIJO_SEGMENTO);
+            for (Map.Entry<Integer, Path> e : segmentos.tailMap(desde, true).entrySet()) {
+                boolean ultimo = e.getKey().equals(segmentos.lastKey());
+                reaplicar(e.getValue(), contactos, ultimo);
+            }
+        }
+
+        Agenda agenda = new Agenda(maxSize[0]);
+        agenda.anadirEnBloque(new ArrayList<>(contactos.values()));
+        return agenda;
+    }
+
+    @Override
+    public void contactoAnadido(Contacto c) {
+        byte[] nombre = utf8(c.getNombre());
+        byte[] apellido = utf8(c.getApellido());
+        ByteBuffer carga = ByteBuffer.allocate(1 + 9 + 2 + nombre.length + 2 + apellido.length);
+        carga.put(ALTA);
+        ArchivoAgenda.escribirTelefono(carga, c.getTelefono());
+        ArchivoAgenda.escribirTexto(carga, nombre);
+        ArchivoAgenda.escribirTexto(carga, apellido);
+        registrar(carga);
+    }
+
+    @Override
+    public void contactoEliminado(Contacto c) {
+        byte[] nombre = utf8(c.getNombre());
+        byte[] apellido = utf8(c.getApellido());
+        ByteBuffer carga = ByteBuffer.allocate(1 + 2 + nombre.length + 2 + apellido.length);
+        carga.put(BAJA);
+        ArchivoAgenda.escribirTexto(carga, nombre);
+        ArchivoAgenda.escribirTexto(carga, apellido);
+        registrar(carga);
+    }
+
+    @Override
+    public void telefonoModificado(Contacto c, String telefonoAnterior) {
+        byte[] nombre = utf8(c.getNombre());
+        byte[] apellido = utf8(c.getApellido());
+        ByteBuffer carga = ByteBuffer.allocate(1 + 2 + nombre.length + 2 + apellido.length + 9);
+        carga.put(CAMBIO);
+        ArchivoAgenda.escribirTexto(carga, nombre);
+        ArchivoAgenda.escribirTexto(carga, apellido);
+        ArchivoAgenda.escribirTelefono(carga, c.getTelefono());
+        registrar(carga);
+    }
+
+    /**
+     * Espera a que todos los registros encolados hasta ahora estén escritos y
+     * sincronizados con el disco.
+     *
+     * @throws IOException si el hilo escritor falló
+     */
+    public void sincronizar() throws IOException {
+        long objetivo;
+        cerrojo.lock();
+        try {
+            objetivo = registrados;
+            urgente = true;
+            hayTrabajo.signal();
+        } finally {
+            cerrojo.unlock();
+        }
+        esperarDurables(objetivo);
+    }
+
+    /** Espera a que el hilo escritor haya sincronizado los {@code objetivo} primeros registros */
+    private void esperarDurables(long objetivo) throws IOException {
+        cerrojo.lock();
+        try {
+            while (durables < objetivo && error == null) {
+                hayDurables.awaitUninterruptibly();
+            }
+            if (error != null) throw error;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Empieza un segmento nuevo y vuelca la agenda a una instantánea en segundo plano.
+     * Debe llamarse desde el hilo que modifica la agenda. No hace nada si ya hay una
+     * compactación en curso.
+     */
+    public void compactar() {
+        if (compactando) return;
+        compactando = true;
+
+        int cubre;
+        long anteriores;
+        cerrojo.lock();
+        try {
+            cubre = ++segmentoActual;
+            bytesSegmento = 0;
+            // Los registros encolados hasta aquí van a los segmentos que se borrarán
+            anteriores = registrados;
+        } finally {
+            cerrojo.unlock();
+        }
+
+        // La instantánea es inmutable: lo que cambie la agenda mientras se escribe no la
+        // toca y queda en el segmento nuevo
+        InstantaneaAgenda foto = agenda.instantanea();
+        int maxSize = agenda.cantidadContactos() + agenda.espaciosLibres();
+
+        compactador.execute(() -> {
+            try {
+                ArchivoAgenda.guardar(foto.contactos(), maxSize, archivoInstantanea(directorio, cubre));
+                // Con el escritor aún vaciando el segmento anterior, borrarlo haría que lo
+                // volviera a crear sin los registros previos y la recuperación lo aplicaría
+                // encima de la instantánea
+                esperarDurables(anteriores);
+                for (Map.Entry<Integer, Path> e : numerados(directorio, PREFIJO_INSTANTANEA, SUFIJO_INSTANTANEA).headMap(cubre).entrySet()) {
+                    Files.deleteIfExists(e.getValue());
+                }
+                for (Map.Entry<Integer, Path> e : numerados(directorio, PREFIJO_SEGMENTO, SUFIJO_SEGMENTO).headMap(cubre).entrySet()) {
+                    Files.deleteIfExists(e.getValue());
+                }
+                errorCompactacion = null;
+            } catch (IOException e) {
+                // Los segmentos anteriores se conservan: no se pierde nada y se reintentará
+                errorCompactacion = e;
+            } finally {
+                compactando = false;
+            }
+        });
+    }
+
+    /**
+     * Deja de escuchar la agenda, escribe y sincroniza los registros pendientes y
+     * espera a que termine la compactación en curso.
+     *
+     * @throws IOException si falló la escritura del diario o la última compactación
+     */
+    @Override
+    public void close() throws IOException {
+        agenda.quitarOyente(this);
+        cerrojo.lock();
+        try {
+            cerrado = true;
+            hayTrabajo.signal();
+        } finally {
+            cerrojo.unlock();
+        }
+        compactador.shutdown();
+        try {
+            escritor.join();
+            compactador.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido al cerrar el diario.", e);
+        }
+        if (error != null) throw error;
+        if (errorCompactacion != null) throw errorCompactacion;
+    }
+
+    /** Encola un registro y, si el segmento ya creció bastante, lanza una compactación */
+    private void registrar(ByteBuffer carga) {
+        CRC32 crc = new CRC32();
+        crc.update(carga.array(), 0, carga.position());
+        byte[] registro = new byte[8 + carga.position()];
+        ByteBuffer.wrap(registro).putInt(carga.position()).putInt((int) crc.getValue())
+                .put(carga.array(), 0, carga.position());
+
+        boolean compactar;
+        cerrojo.lock();
+        try {
+            if (error != null) throw new UncheckedIOException("El diario de la agenda dejó de escribir.", error);
+            if (cerrado) throw new IllegalStateException("El diario de la agenda está cerrado.");
+
+            Tramo t = pendientes.peekLast();
+            if (t == null || t.segmento != segmentoActual) {
+                t = new Tramo(segmentoActual);
+                pendientes.addLast(t);
+            }
+            t.anadir(registro);
+            if (registrosPendientes++ == 0) primerPendiente = System.nanoTime();
+            registrados++;
+            bytesSegmento += registro.length;
+            if (registrosPendientes == 1 || registrosPendientes >= registrosPorLote) hayTrabajo.signal();
+            compactar = bytesSegmento >= bytesParaCompactar;
+        } finally {
+            cerrojo.unlock();
+        }
+        if (compactar) compactar();
+    }
+
+    /** Bucle del hilo escritor: un write por tramo y un fsync por lote */
+    private void escribir() {
+        try {
+            while (true) {
+                List<Tramo> lote;
+                long hasta;
+                cerrojo.lock();
+                try {
+                    while (!loteListo()) {
+                        if (registrosPendientes == 0) {
+                            hayTrabajo.awaitUninterruptibly();
+                        } else {
+                            hayTrabajo.awaitNanos(primerPendiente + nanosEntreLotes - System.nanoTime());
+                        }
+                    }
+                    if (registrosPendientes == 0 && cerrado) break;
+                    lote = new ArrayList<>(pendientes);
+                    pendientes.clear();
+                    registrosPendientes = 0;
+                    urgente = false;
+                    hasta = registrados;
+                } finally {
+                    cerrojo.unlock();
+                }
+
+                for (Tramo t : lote) {
+                    if (t.segmento != segmentoCanal) abrirSegmento(t.segmento);
+                    t.datos.flip();
+                    while (t.datos.hasRemaining()) canal.write(t.datos);
+                }
+                if (canal != null) canal.force(false);
+
+                cerrojo.lock();
+                try {
+                    durables = hasta;
+                    hayDurables.signalAll();
+                } finally {
+                    cerrojo.unlock();
+                }
+            }
+            if (canal != null) canal.close();
+        } catch (IOException e) {
+            fallar(e);
+        } catch (InterruptedException e) {
+            fallar(new InterruptedIOException("Se interrumpió el hilo escritor del diario."));
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            fallar(new IOException("Falló el hilo escritor del diario.", e));
+            throw e;
+        }
+    }
+
+    /**
+     * Deja constancia de por qué se detiene el hilo escritor y despierta a quienes
+     * esperan registros duraderos, que ya no llegarán.
+     */
+    private void fallar(IOException e) {
+        cerrojo.lock();
+        try {
+            error = e;
+            hayDurables.signalAll();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Se llama con el cerrojo tomado */
+    private boolean loteListo() {
+        if (cerrado || urgente) return true;
+        if (registrosPendientes == 0) return false;
+        return registrosPendientes >= registrosPorLote || System.nanoTime() - primerPendiente >= nanosEntreLotes;
+    }
+
+    private void abrirSegmento(int segmento) throws IOException {
+        if (canal != null) {
+            canal.force(false);
+            canal.close();
+        }
+        canal = FileChannel.open(archivoSegmento(directorio, segmento), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentoCanal = segmento;
+        // Sin esto, el fsync de sus registros no garantiza que el archivo siga ahí tras un corte
+        ArchivoAgenda.sincronizarDirectorio(directorio);
+    }
+
+    /**
+     * Aplica los registros válidos del segmento sobre los contactos. Si el segmento es
+     * el último, un registro incompleto o con CRC incorrecto marca el final de lo que
+     * llegó a escribirse y el archivo se trunca ahí.
+     */
+    private static void reaplicar(Path segmento, Map<String, Contacto> contactos, boolean ultimo) throws IOException {
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE) throw new IOException("Segmento demasiado grande: " + segmento);
+            // Se lee a memoria en lugar de mapearlo: un archivo mapeado no siempre se puede truncar
+            ByteBuffer buf = ByteBuffer.allocate((int) tamano);
+            while (buf.hasRemaining() && canal.read(buf) >= 0) {
+            }
+            buf.flip();
+            byte[] bytes = new byte[256];
+            CRC32 crc = new CRC32();
+
+            while (buf.hasRemaining()) {
+                int inicio = buf.position();
+                int largo = buf.remaining() >= 8 ? buf.getInt() : -1;
+                int esperado = largo >= 0 ? buf.getInt() : 0;
+                if (largo < 1 || largo > buf.remaining()) {
+                    descartarCola(canal, segmento, inicio, ultimo);
+                    return;
+                }
+                ByteBuffer carga = buf.slice(buf.position(), largo);
+                crc.reset();
+                crc.update(carga.duplicate());
+                if ((int) crc.getValue() != esperado) {
+                    descartarCola(canal, segmento, inicio, ultimo);
+                    return;
+                }
+                buf.position(buf.position() + largo);
+
+                try {
+                    byte tipo = carga.get();
+                    if (tipo == ALTA) {
+                        String telefono = ArchivoAgenda.leerTelefono(carga);
+                        bytes = asegurar(bytes, carga);
+                        String nombre = ArchivoAgenda.leerTexto(carga, bytes);
+                        bytes = asegurar(bytes, carga);
+                        String apellido = ArchivoAgenda.leerTexto(carga, bytes);
+                        contactos.put(clave(nombre, apellido), new Contacto(nombre, apellido, telefono));
+                    } else if (tipo == BAJA || tipo == CAMBIO) {
+                        bytes = asegurar(bytes, carga);
+                        String nombre = ArchivoAgenda.leerTexto(carga, bytes);
+                        bytes = asegurar(bytes, carga);
+                        String apellido = ArchivoAgenda.leerTexto(carga, bytes);
+                        if (tipo == BAJA) {
+                            contactos.remove(clave(nombre, apellido));
+                        } else {
+                            String telefono = ArchivoAgenda.leerTelefono(carga);
+                            Contacto c = contactos.get(clave(nombre, apellido));
+                            if (c != null) c.setTelefono(telefono);
+                        }
+                    } else {
+                        throw new IllegalStateException("Tipo de registro desconocido: " + tipo);
+                    }
+                } catch (RuntimeException e) {
+                    // El CRC era correcto: el registro no es una escritura interrumpida
+                    throw new IOException("Registro inválido en " + segmento + " (posición " + inicio + ")", e);
+                }
+            }
+        }
+    }
+
+    private static void descartarCola(FileChannel canal, Path segmento, long posicion, boolean ultimo) throws IOException {
+        if (!ultimo) throw new IOException("Diario dañado: " + segmento + " (posición " + posicion + ")");
+        canal.truncate(posicion);
+        canal.force(true);
+    }
+
+    /** Mayor número N entre los archivos prefijo-N-sufijo del directorio, o -1 si no hay */
+    private static int ultimoNumero(Path directorio, String prefijo, String sufijo) throws IOException {
+        TreeMap<Integer, Path> archivos = numerados(directorio, prefijo, sufijo);
+        return archivos.isEmpty() ? -1 : archivos.lastKey();
+    }
+
+    private static TreeMap<Integer, Path> numerados(Path directorio, String prefijo, String sufijo) throws IOException {
+        TreeMap<Integer, Path> archivos = new TreeMap<>();
+        if (!Files.isDirectory(directorio)) return archivos;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directorio, prefijo + "*" + sufijo)) {
+            for (Path p : ds) {
+                String nombre = p.getFileName().toString();
+                try {
+                    archivos.put(Integer.parseInt(nombre.substring(prefijo.length(), nombre.length() - sufijo.length())), p);
+                } catch (NumberFormatException e) {
+                    // No es un archivo del diario: se ignora
+                }
+            }
+        }
+        return archivos;
+    }
+
+    private static Path archivoInstantanea(Path directorio, int numero) {
+        return directorio.resolve(PREFIJO_INSTANTANEA + numero + SUFIJO_INSTANTANEA);
+    }
+
+    private static Path archivoSegmento(Path directorio, int numero) {
+        return directorio.resolve(PREFIJO_SEGMENTO + numero + SUFIJO_SEGMENTO);
+    }
+
+    private static String clave(String nombre, String apellido) {
+        return Contacto.normalizarTexto(nombre) + '\0' + Contacto.normalizarTexto(apellido);
+    }
+
+    private static byte[] utf8(String texto) {
+        byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) throw new IllegalArgumentException("Texto demasiado largo para el diario.");
+        return b;
+    }
+
+    private static byte[] asegurar(byte[] bytes, ByteBuffer buf) {
+        int largo = buf.getShort(buf.position()) & 0xFFFF;
+        return bytes.length >= largo ? bytes : new byte[largo];
+    }
+}
@@ -0,0 +1,77 @@
+package agendaTelefonica.red;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cliente del protocolo de {@link ServidorAgenda}.
+ *
+ * {@link #pedir} envía una petición y espera su respuesta. Para encadenar peticiones
+ * se llama varias veces a {@link #enviar}, luego a {@link #vaciar} y se leen las
+ * respuestas en el mismo orden con {@link #recibir}. No es seguro para varios hilos.
+ */
+public final class ClienteAgenda implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader entrada;
+    private final BufferedWriter salida;
+
+    public ClienteAgenda(String host, int puerto) throws IOException {
+        socket = new Socket(host, puerto);
+        socket.setTcpNoDelay(true);
+        entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+        salida = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Deja la petición en el búfer de salida, sin enviarla todavía.
+     *
+     * @param campos el comando (TEL, PREFIJO, ALTA, BAJA, CAMBIO, EVENTOS o PING) y sus campos
+     * @throws IllegalArgumentException si algún campo contiene un tabulador o un salto de línea
+     */
+    public void enviar(String... campos) throws IOException {
+        for (int i = 0; i < campos.length; i++) {
+            String campo = campos[i];
+            if (campo.indexOf('\t') >= 0 || campo.indexOf('\n') >= 0 || campo.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Los campos no pueden contener tabuladores ni saltos de línea");
+            }
+            if (i > 0) salida.write('\t');
+            salida.write(campo);
+        }
+        salida.write('\n');
+    }
+
+    /** Envía las peticiones que estén en el búfer */
+    public void vaciar() throws IOException {
+        salida.flush();
+    }
+
+    /**
+     * Siguiente respuesta, sin el salto de línea.
+     *
+     * @throws IOException si el servidor cerró la conexión
+     */
+    public String recibir() throws IOException {
+        String linea = entrada.readLine();
+        if (linea == null) throw new IOException("El servidor cerró la conexión");
+        return linea;
+    }
+
+    /** Envía una petición y espera su respuesta */
+    public String pedir(String... campos) throws IOException {
+        enviar(campos);
+        vaciar();
+        return recibir();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
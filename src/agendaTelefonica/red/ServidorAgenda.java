@@ -0,0 +1,394 @@
+package agendaTelefonica.red;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.persistencia.DiarioAgenda;
+import agendaTelefonica.servicio.Agenda;
+import agendaTelefonica.servicio.EventoAgenda;
+import agendaTelefonica.servicio.FlujoEventos;
+import agendaTelefonica.servicio.ResultadoOperacion;
+
+/**
+ * Servidor TCP de consultas y modificaciones sobre una {@link Agenda}, sólo en la
+ * interfaz local (127.0.0.1).
+ *
+ * Protocolo de líneas en UTF-8 terminadas en '\n', con los campos separados por
+ * tabuladores. Cada petición recibe exactamente una línea de respuesta, en el mismo
+ * orden, así que el cliente puede encadenar varias peticiones sin esperar las
+ * respuestas:
+ * <pre>
+ *   TEL     teléfono                    OK nombre apellido teléfono | NO
+ *   PREFIJO campo texto límite          OK n (nombre apellido teléfono) x n
+ *   ALTA    nombre apellido teléfono    OK | ERR código mensaje
+ *   BAJA    nombre apellido             OK | ERR código mensaje
+ *   CAMBIO  nombre apellido teléfono    OK | ERR código mensaje
+ *   EVENTOS desde máximo                OK n siguiente (tipo secuencia nombre apellido teléfono anterior) x n
+ *                                       | ERR código mensaje
+ *   PING                                OK
+ * </pre>
+ * {@code campo} es nombre, apellido o telefono, como en {@link Agenda#buscarPorPrefijo}.
+ * Los códigos de error son los de {@link ResultadoOperacion}, más DATOS_INVALIDOS
+ * (el contacto no pasa las validaciones de {@link Contacto}) y PETICION_INVALIDA.
+ *
+ * EVENTOS devuelve los eventos del {@link FlujoEventos} de la agenda a partir de la
+ * secuencia {@code desde} (0 para empezar por el más antiguo que queda) y la secuencia
+ * por la que seguir en la siguiente petición; {@code anterior} es el teléfono previo de
+ * un CAMBIO_TELEFONO y va vacío en los demás. Así un cliente se mantiene al día pidiendo
+ * sólo lo que cambió. Responde ERR EVENTOS_DESACTIVADOS si la agenda no publica
+ * eventos y ERR EVENTOS_PERDIDOS si {@code desde} ya salió del anillo.
+ *
+ * Cada conexión se atiende en su propio hilo: virtual si la JVM los ofrece (Java 21
+ * o posterior) y de plataforma si no. La agenda no es segura para varios hilos, así
+ * que todas las peticiones pasan por un mismo cerrojo; las que un cliente ya ha
+ * enviado encadenadas se atienden juntas con una sola toma del cerrojo y una sola
+ * escritura de las respuestas.
+ *
+ * Si el servidor se inicia con un {@link DiarioAgenda}, el OK de ALTA, BAJA o CAMBIO
+ * sólo se envía cuando el diario ha sincronizado la modificación con el disco: las
+ * respuestas de una tanda esperan a un único {@link DiarioAgenda#sincronizar()}, que
+ * las conexiones simultáneas comparten en el mismo lote del diario. Si el diario
+ * falla, la conexión se cierra sin responder. Sin diario, una modificación confirmada
+ * se pierde si el proceso termina.
+ */
+public final class ServidorAgenda implements Closeable {
+
+    public static final int PUERTO_POR_DEFECTO = 7070;
+
+    /** Resultados como mucho en una respuesta a PREFIJO o a EVENTOS */
+    public static final int MAX_RESULTADOS = 1000;
+
+    // Peticiones encadenadas que se atienden con una sola toma del cerrojo
+    private static final int MAX_ENCADENADAS = 256;
+
+    private static final int MAX_LINEA = 8192;
+
+    // Pausa tras un fallo al aceptar una conexión, que se duplica mientras siga fallando
+    private static final long MS_ESPERA_MINIMA = 10;
+    private static final long MS_ESPERA_MAXIMA = 1000;
+
+    private final Agenda agenda;
+    private final DiarioAgenda diario;
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final ServerSocket servidor;
+    private final ExecutorService hilos;
+    private final boolean hilosVirtuales;
+    private final Set<Socket> conexiones = ConcurrentHashMap.newKeySet();
+    private final Thread aceptador;
+    private volatile boolean cerrado;
+
+    private ServidorAgenda(Agenda agenda, DiarioAgenda diario, int puerto) throws IOException {
+        this.agenda = agenda;
+        this.diario = diario;
+        this.servidor = new ServerSocket(puerto, 128, InetAddress.getLoopbackAddress());
+        ExecutorService virtuales = hilosVirtuales();
+        this.hilosVirtuales = virtuales != null;
+        this.hilos = virtuales != null ? virtuales : Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "conexion-agenda");
+            t.setDaemon(true);
+            return t;
+        });
+        this.aceptador = new Thread(this::aceptar, "servidor-agenda");
+        aceptador.setDaemon(true);
+    }
+
+    /**
+     * Empieza a aceptar conexiones en el puerto indicado (0 para uno libre cualquiera).
+     * Quien llama no debe usar la agenda directamente mientras el servidor esté abierto.
+     */
+    public static ServidorAgenda iniciar(Agenda agenda, int puerto) throws IOException {
+        return iniciar(agenda, null, puerto);
+    }
+
+    /**
+     * Como {@link #iniciar(Agenda, int)}, pero sólo confirma las modificaciones cuando
+     * {@code diario}, que registra las de esta agenda, las ha hecho duraderas.
+     */
+    public static ServidorAgenda iniciar(Agenda agenda, DiarioAgenda diario, int puerto) throws IOException {
+        ServidorAgenda s = new ServidorAgenda(agenda, diario, puerto);
+        s.aceptador.start();
+        return s;
+    }
+
+    public int getPuerto() {
+        return servidor.getLocalPort();
+    }
+
+    /** Indica si cada conexión se atiende en un hilo virtual */
+    public boolean usaHilosVirtuales() {
+        return hilosVirtuales;
+    }
+
+    /** Deja de aceptar conexiones, cierra las abiertas y espera a que terminen sus hilos */
+    @Override
+    public void close() throws IOException {
+        if (cerrado) return;
+        cerrado = true;
+        servidor.close();
+        for (Socket s : conexiones) s.close();
+        hilos.shutdown();
+        try {
+            aceptador.join();
+            hilos.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ejecutor de un hilo virtual por tarea, buscado por reflexión para compilar con
+     * Java 17; null si esta JVM no lo tiene (o lo tiene como vista previa desactivada).
+     */
+    private static ExecutorService hilosVirtuales() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void aceptar() {
+        long espera = MS_ESPERA_MINIMA;
+        while (!cerrado) {
+            Socket s;
+            try {
+                s = servidor.accept();
+                espera = MS_ESPERA_MINIMA;
+            } catch (IOException e) {
+                // El socket se cerró; si no, falló la aceptación (por ejemplo, sin descriptores
+                // libres) y se reintenta tras una pausa, en lugar de volver a fallar en bucle
+                if (cerrado || servidor.isClosed()) break;
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                espera = Math.min(MS_ESPERA_MAXIMA, espera * 2);
+                continue;
+            }
+            conexiones.add(s);
+            try {
+                hilos.execute(() -> atender(s));
+            } catch (RejectedExecutionException e) {
+                cerrarSinError(s);
+            }
+        }
+    }
+
+    private void atender(Socket s) {
+        try (s; BufferedInputStream entrada = new BufferedInputStream(s.getInputStream(), 1 << 16);
+             BufferedOutputStream salida = new BufferedOutputStream(s.getOutputStream(), 1 << 16)) {
+            s.setTcpNoDelay(true);
+            ByteArrayOutputStream linea = new ByteArrayOutputStream();
+            List<String> peticiones = new ArrayList<>();
+            StringBuilder respuestas = new StringBuilder();
+            boolean abierta = true;
+            while (abierta) {
+                String p = leerLinea(entrada, linea);
+                if (p == null) break;
+                peticiones.add(p);
+                // Lo que el cliente ya envió encadenado se atiende junto
+                while (peticiones.size() < MAX_ENCADENADAS && entrada.available() > 0) {
+                    p = leerLinea(entrada, linea);
+                    if (p == null) {
+                        abierta = false;
+                        break;
+                    }
+                    peticiones.add(p);
+                }
+
+                boolean modificada = false;
+                cerrojo.lock();
+                try {
+                    for (String peticion : peticiones) modificada |= responder(peticion, respuestas);
+                } finally {
+                    cerrojo.unlock();
+                }
+                // Fuera del cerrojo, para que las demás conexiones sigan mientras tanto
+                if (modificada && diario != null) diario.sincronizar();
+                salida.write(respuestas.toString().getBytes(StandardCharsets.UTF_8));
+                salida.flush();
+                peticiones.clear();
+                respuestas.setLength(0);
+            }
+        } catch (ProtocolException e) {
+            // Línea demasiado larga: no se puede seguir el protocolo, se corta la conexión
+        } catch (SocketException e) {
+            // El cliente cerró la conexión o el servidor se está cerrando
+        } catch (IOException e) {
+            // Error de E/S de esta conexión; las demás siguen
+        } finally {
+            conexiones.remove(s);
+        }
+    }
+
+    /** Siguiente línea sin el '\n' (ni un '\r' previo), o null al final del flujo */
+    private static String leerLinea(BufferedInputStream entrada, ByteArrayOutputStream linea) throws IOException {
+        linea.reset();
+        int b;
+        while ((b = entrada.read()) != '\n') {
+            if (b < 0) return linea.size() == 0 ? null : linea.toString(StandardCharsets.UTF_8);
+            if (linea.size() == MAX_LINEA) throw new ProtocolException("Línea de más de " + MAX_LINEA + " bytes");
+            linea.write(b);
+        }
+        String texto = linea.toString(StandardCharsets.UTF_8);
+        return texto.endsWith("\r") ? texto.substring(0, texto.length() - 1) : texto;
+    }
+
+    /**
+     * Añade a {@code respuestas} la línea que responde a la petición.
+     *
+     * @return true si la petición modificó la agenda
+     */
+    private boolean responder(String peticion, StringBuilder respuestas) {
+        String[] campos = peticion.split("\t", -1);
+        boolean modificada = false;
+        try {
+            switch (campos[0]) {
+                case "TEL": {
+                    comprobarCampos(campos, 2);
+                    List<Contacto> encontrados = agenda.buscarContacto("telefono", campos[1]);
+                    if (encontrados.isEmpty()) {
+                        respuestas.append("NO");
+                    } else {
+                        respuestas.append("OK");
+                        anadirContacto(respuestas, encontrados.get(0));
+                    }
+                    break;
+                }
+                case "PREFIJO": {
+                    comprobarCampos(campos, 4);
+                    int limite = Math.min(MAX_RESULTADOS, Integer.parseInt(campos[3]));
+                    List<Contacto> encontrados = agenda.buscarPorPrefijo(campos[1], campos[2], limite);
+                    respuestas.append("OK\t").append(encontrados.size());
+                    for (Contacto c : encontrados) anadirContacto(respuestas, c);
+                    break;
+                }
+                case "ALTA": {
+                    comprobarCampos(campos, 4);
+                    Contacto c;
+                    try {
+                        c = new Contacto(campos[1], campos[2], campos[3]);
+                    } catch (IllegalArgumentException e) {
+                        error(respuestas, "DATOS_INVALIDOS", e.getMessage());
+                        break;
+                    }
+                    modificada = resultado(respuestas, agenda.anadirContacto(c));
+                    break;
+                }
+                case "BAJA":
+                    comprobarCampos(campos, 3);
+                    modificada = resultado(respuestas, agenda.eliminarContacto(campos[1], campos[2]));
+                    break;
+                case "CAMBIO":
+                    comprobarCampos(campos, 4);
+                    modificada = resultado(respuestas, agenda.modificarTelefono(campos[1], campos[2], campos[3]));
+                    break;
+                case "EVENTOS":
+                    comprobarCampos(campos, 3);
+                    eventos(Long.parseLong(campos[1]), Math.min(MAX_RESULTADOS, Integer.parseInt(campos[2])), respuestas);
+                    break;
+                case "PING":
+                    respuestas.append("OK");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Petición desconocida: " + campos[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            // Número de campos, límite o campo de búsqueda incorrectos
+            error(respuestas, "PETICION_INVALIDA", e.getMessage());
+        }
+        respuestas.append('\n');
+        return modificada;
+    }
+
+    private void eventos(long desde, int max, StringBuilder respuestas) {
+        FlujoEventos flujo = agenda.eventos().orElse(null);
+        if (flujo == null) {
+            error(respuestas, "EVENTOS_DESACTIVADOS", "La agenda no publica eventos");
+            return;
+        }
+        FlujoEventos.Suscripcion suscripcion;
+        List<EventoAgenda> leidos;
+        try {
+            suscripcion = flujo.suscribir(desde <= 0 ? flujo.primeraDisponible() : desde);
+            leidos = suscripcion.leer(max);
+        } catch (IllegalStateException e) {
+            error(respuestas, "EVENTOS_PERDIDOS", e.getMessage());
+            return;
+        }
+        respuestas.append("OK\t").append(leidos.size()).append('\t').append(suscripcion.siguiente());
+        for (EventoAgenda e : leidos) {
+            respuestas.append('\t').append(e.getTipo().name()).append('\t').append(e.getSecuencia());
+            anadirContacto(respuestas, e.getContacto());
+            respuestas.append('\t');
+            if (e.getTelefonoAnterior() != null) respuestas.append(e.getTelefonoAnterior());
+        }
+    }
+
+    private static void comprobarCampos(String[] campos, int esperados) {
+        if (campos.length != esperados) {
+            throw new IllegalArgumentException(campos[0] + " espera " + (esperados - 1) + " campos");
+        }
+    }
+
+    /** Añade OK o el error del resultado, y devuelve si la operación se hizo */
+    private static boolean resultado(StringBuilder respuestas, ResultadoOperacion r) {
+        if (r == ResultadoOperacion.CORRECTO) {
+            respuestas.append("OK");
+            return true;
+        }
+        error(respuestas, r.name(), r.getMensaje());
+        return false;
+    }
+
+    private static void error(StringBuilder respuestas, String codigo, String mensaje) {
+        respuestas.append("ERR\t").append(codigo).append('\t');
+        limpio(respuestas, mensaje);
+    }
+
+    private static void anadirContacto(StringBuilder respuestas, Contacto c) {
+        respuestas.append('\t');
+        limpio(respuestas, c.getNombre());
+        respuestas.append('\t');
+        limpio(respuestas, c.getApellido());
+        respuestas.append('\t').append(c.getTelefono());
+    }
+
+    /** Añade el texto cambiando tabuladores y saltos de línea por espacios */
+    private static void limpio(StringBuilder respuestas, String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char ch = texto.charAt(i);
+            respuestas.append(ch == '\t' || ch == '\n' || ch == '\r' ? ' ' : ch);
+        }
+    }
+
+    private static void cerrarSinError(Socket s) {
+        try {
+            s.close();
+        } catch (IOException e) {
+            // Ya no se usa
+        }
+    }
+}
@@ -1,58 +1,356 @@
 package agendaTelefonica.servicio;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.modelo.Normalizador;
+import agendaTelefonica.servicio.MetricasAgenda.Operacion;
 
-public class Agenda {
-    // Lista que almacena los contactos registrados
-    private List<Contacto> contactos;
+/**
+ * Agenda de contactos sin duplicados por nombre+apellido ni por teléfono, con una
+ * capacidad máxima. No escribe en consola: las operaciones devuelven un
+ * {@link ResultadoOperacion}, listas o {@link Optional}, y mostrarlos es cosa de quien
+ * llama. No es segura para varios hilos; para eso está {@link AgendaConcurrente}.
+ *
+ * La agenda guarda copias propias de los contactos que recibe y entrega copias de los
+ * guardados, en listados, búsquedas y avisos a los oyentes: modificar un contacto
+ * antes o después de pasarlo por la agenda no cambia sus índices ni sus instantáneas.
+ */
+public class Agenda implements AutoCloseable {
+    /** Orden de los listados: nombre y apellido sin distinguir mayúsculas; el teléfono desempata */
+    public static final Comparator<Contacto> ORDEN =
+            Comparator.comparing(Contacto::getClaveOrden).thenComparing(Contacto::getTelefono);
+
+    // Contactos ordenados e indexados por nombre+apellido y por teléfono
+    private final AlmacenContactos almacen;
+
+    // Índices de búsqueda por prefijo y fragmento; se crean en la primera búsqueda
+    private IndicesBusqueda busqueda;
+
+    // Teléfonos en un trie de dígitos para las consultas por prefijo; se crea en la primera
+    private TriePrefijos prefijosTelefono;
+
+    // Nombres y apellidos distintos para las búsquedas aproximadas; se crean en la primera
+    private IndicesAproximados aproximados;
+
+    // Árbol persistente para las instantáneas de los almacenes que no tienen el suyo
+    // (ver AlmacenContactos#arbol); comparte con los índices los contactos, que nunca
+    // salen de la agenda ni se modifican. Se crea con la primera
+    private ArbolContactos arbolInstantaneas;
+
+    // Última instantánea tomada, que se reutiliza mientras la agenda no cambie
+    private InstantaneaAgenda ultimaInstantanea;
+
+    // Altas, bajas y cambios de teléfono aplicados; numera las instantáneas y los eventos
+    private long version;
+
+    // Eventos de cada modificación para los suscriptores; null mientras no se activen
+    private FlujoEventos eventos;
+
+    // Caché de búsquedas por teléfono; null mientras no se active
+    private CacheTelefonos cacheTelefonos;
+
+    // Latencias y rechazos por operación; null mientras no se activen
+    private MetricasAgenda metricas;
+
+    // Oyentes notificados tras cada alta, baja o cambio de teléfono
+    private final List<OyenteAgenda> oyentes = new CopyOnWriteArrayList<>();
 
     // Capacidad máxima de la agenda
     private int maxSize;
 
     // Tamaño por defecto si no se especifica
-    private static final int DEFAULT_SIZE = 10;
+    public static final int DEFAULT_SIZE = 10;
 
     // Constructor que inicializa la agenda con tamaño por defecto
     public Agenda() {
-        this.contactos = new ArrayList<>();
-        this.maxSize = DEFAULT_SIZE;
+        this(DEFAULT_SIZE);
     }
 
     // Constructor que permite definir el tamaño máximo de la agenda
     public Agenda(int maxSize) {
-        this.contactos = new ArrayList<>();
+        this(maxSize, new AlmacenObjetos());
+    }
+
+    private Agenda(int maxSize, AlmacenContactos almacen) {
         this.maxSize = maxSize;
+        this.almacen = almacen;
+    }
+
+    /**
+     * Agenda con almacenamiento compacto para millones de contactos: teléfonos en un
+     * arreglo de long y textos internados en una arena de bytes, sin un objeto por
+     * contacto. Se comporta igual que {@link #Agenda(int)}; los índices de búsqueda
+     * por prefijo, si se usan, sí guardan un objeto por contacto.
+     */
+    public static Agenda compacta(int maxSize) {
+        return new Agenda(maxSize, new AlmacenColumnar());
+    }
+
+    /**
+     * Agenda para directorios de decenas de millones de contactos que guarda los
+     * contactos y sus índices fuera del heap, en buffers directos, para que las pausas
+     * del recolector no dependan de cuántos haya. Se comporta como {@link #compacta};
+     * hay que cerrarla con {@link #close} para devolver la memoria. La memoria directa
+     * disponible se ajusta con {@code -XX:MaxDirectMemorySize}.
+     */
+    public static Agenda fueraDelHeap(int maxSize) {
+        return new Agenda(maxSize, new AlmacenFueraDelHeap(Math.min(maxSize, 1 << 16)));
     }
 
     /**
      * Añade un nuevo contacto a la agenda si no hay duplicados y hay espacio disponible.
-     * Retorna un mensaje indicando el resultado de la operación.
      */
-    public String anadirContacto(Contacto c) {
-        if (c == null) return "No se puede añadir: el contacto es nulo.";
+    public ResultadoOperacion anadirContacto(Contacto c) {
+        if (metricas == null) return anadir(c);
+        long inicio = System.nanoTime();
+        ResultadoOperacion r = anadir(c);
+        medir(Operacion.ALTA, inicio, r);
+        return r;
+    }
+
+    private ResultadoOperacion anadir(Contacto c) {
+        if (c == null) return ResultadoOperacion.CONTACTO_NULO;
+
+        if (espaciosLibres() == 0) return ResultadoOperacion.AGENDA_LLENA;
+
+        // Verifica duplicados por nombre+apellido o por número de teléfono usando los índices
+        String clave = clave(c);
+        if (almacen.contieneClave(clave)) return ResultadoOperacion.NOMBRE_APELLIDO_REPETIDO;
+        if (almacen.contieneTelefono(c.getTelefono())) return ResultadoOperacion.TELEFONO_REPETIDO;
 
-        if (espaciosLibres() == 0) return "No se puede añadir el contacto: la agenda está llena.";
+        c = new Contacto(c);
+        almacen.anadir(clave, c);
+        if (busqueda != null) busqueda.anadir(c);
+        if (aproximados != null) aproximados.anadir(c);
+        if (prefijosTelefono != null) prefijosTelefono.anadir(c.getTelefono(), c);
+        if (arbolInstantaneas != null) arbolInstantaneas = arbolInstantaneas.anadir(c);
+        avisarAlta(c);
+        return ResultadoOperacion.CORRECTO;
+    }
+
+    /**
+     * Alta masiva en una sola operación. Cada contacto se comprueba en orden con las
+     * mismas reglas que {@link #anadirContacto}: si dos del bloque chocan entre sí, se
+     * queda el primero. Los aceptados se entregan juntos al almacén, que puede
+     * ordenarlos y fusionarlos con los existentes en un solo recorrido en lugar de
+     * insertarlos uno a uno.
+     *
+     * @return el resultado de cada contacto, en la misma posición que en {@code nuevos}
+     */
+    public ResultadoOperacion[] anadirEnBloque(List<Contacto> nuevos) {
+        if (metricas == null) return anadirBloque(nuevos);
+        long inicio = System.nanoTime();
+        ResultadoOperacion[] r = anadirBloque(nuevos);
+        medir(Operacion.ALTA_EN_BLOQUE, inicio, r);
+        return r;
+    }
+
+    private ResultadoOperacion[] anadirBloque(List<Contacto> nuevos) {
+        ResultadoOperacion[] resultados = new ResultadoOperacion[nuevos.size()];
+        Contacto[] aceptados = new Contacto[Math.min(nuevos.size(), espaciosLibres())];
+        String[] claves = new String[aceptados.length];
+        int k = 0;
+
+        // Comprobación en orden contra el almacén y contra los ya aceptados del bloque;
+        // los conjuntos nacen con sitio para todos y no se redimensionan por el camino
+        Set<String> clavesBloque = new HashSet<>(capacidadHash(aceptados.length));
+        Set<String> telefonosBloque = new HashSet<>(capacidadHash(aceptados.length));
+        for (int i = 0; i < resultados.length; i++) {
+            Contacto c = nuevos.get(i);
+            if (c == null) {
+                resultados[i] = ResultadoOperacion.CONTACTO_NULO;
+            } else if (k == aceptados.length) {
+                resultados[i] = ResultadoOperacion.AGENDA_LLENA;
+            } else {
+                String clave = clave(c);
+                if (almacen.contieneClave(clave) || !clavesBloque.add(clave)) {
+                    resultados[i] = ResultadoOperacion.NOMBRE_APELLIDO_REPETIDO;
+                } else if (almacen.contieneTelefono(c.getTelefono()) || !telefonosBloque.add(c.getTelefono())) {
+                    clavesBloque.remove(clave);
+                    resultados[i] = ResultadoOperacion.TELEFONO_REPETIDO;
+                } else {
+                    claves[k] = clave;
+                    aceptados[k++] = new Contacto(c);
+                    resultados[i] = ResultadoOperacion.CORRECTO;
+                }
+            }
+        }
+        if (k > 0) anadirAceptados(claves, aceptados, k);
+        return resultados;
+    }
+
+    /**
+     * Aplica un lote de altas, bajas y cambios de teléfono. Todas las operaciones se
+     * validan primero, en orden y en una sola pasada, contra los índices y contra el
+     * efecto de las anteriores del lote (una baja deja libres su nombre y su teléfono
+     * para las siguientes). Las reglas son las de {@link #anadirContacto},
+     * {@link #eliminarContacto} y {@link #modificarTelefono}.
+     *
+     * Con {@link ModoLote#TODO_O_NADA}, si alguna falla la agenda no cambia y las
+     * válidas quedan como {@link ResultadoOperacion#NO_APLICADO}. Con
+     * {@link ModoLote#POR_OPERACION} se aplican las válidas. Las altas seguidas se
+     * entregan juntas al almacén, como en {@link #anadirEnBloque}, y los oyentes
+     * reciben cada modificación aplicada en el orden del lote.
+     *
+     * @return el resultado de cada operación, en la misma posición que en {@code operaciones}
+     */
+    public ResultadoOperacion[] aplicarLote(List<OperacionLote> operaciones, ModoLote modo) {
+        if (metricas == null) return aplicar(operaciones, modo);
+        long inicio = System.nanoTime();
+        ResultadoOperacion[] r = aplicar(operaciones, modo);
+        medir(Operacion.LOTE, inicio, r);
+        return r;
+    }
+
+    private ResultadoOperacion[] aplicar(List<OperacionLote> operaciones, ModoLote modo) {
+        int n = operaciones.size();
+        ResultadoOperacion[] resultados = new ResultadoOperacion[n];
+        String[] claves = new String[n];
+
+        // Estado de la agenda tras las operaciones válidas ya vistas, sólo de lo que el
+        // lote toca: clave -> teléfono y teléfono -> clave (null si quedó libre)
+        Map<String, String> telefonoDeClave = new HashMap<>();
+        Map<String, String> claveDeTelefono = new HashMap<>();
+        int ocupados = almacen.tamano();
+        boolean fallo = false;
+
+        for (int i = 0; i < n; i++) {
+            OperacionLote op = operaciones.get(i);
+            ResultadoOperacion r;
+            if (op.getTipo() == OperacionLote.Tipo.ALTA) {
+                Contacto c = op.getContacto();
+                if (c == null) {
+                    r = ResultadoOperacion.CONTACTO_NULO;
+                } else if (ocupados >= maxSize) {
+                    r = ResultadoOperacion.AGENDA_LLENA;
+                } else {
+                    String clave = clave(c);
+                    if (telefonoEnLote(telefonoDeClave, clave) != null) {
+                        r = ResultadoOperacion.NOMBRE_APELLIDO_REPETIDO;
+                    } else if (claveEnLote(claveDeTelefono, c.getTelefono()) != null) {
+                        r = ResultadoOperacion.TELEFONO_REPETIDO;
+                    } else {
+                        claves[i] = clave;
+                        telefonoDeClave.put(clave, c.getTelefono());
+                        claveDeTelefono.put(c.getTelefono(), clave);
+                        ocupados++;
+                        r = ResultadoOperacion.CORRECTO;
+                    }
+                }
+            } else if (op.getNombre() == null || op.getApellido() == null) {
+                r = ResultadoOperacion.DATOS_INCOMPLETOS;
+            } else {
+                String clave = clave(op.getNombre(), op.getApellido());
+                claves[i] = clave;
+                String telefonoActual = telefonoEnLote(telefonoDeClave, clave);
+                if (telefonoActual == null) {
+                    r = ResultadoOperacion.CONTACTO_NO_ENCONTRADO;
+                } else if (op.getTipo() == OperacionLote.Tipo.BAJA) {
+                    telefonoDeClave.put(clave, null);
+                    claveDeTelefono.put(telefonoActual, null);
+                    ocupados--;
+                    r = ResultadoOperacion.CORRECTO;
+                } else if (!Normalizador.esTelefonoValido(op.getTelefono())) {
+                    r = ResultadoOperacion.TELEFONO_INVALIDO;
+                } else {
+                    String telefono = op.getTelefono().trim();
+                    String duena = claveEnLote(claveDeTelefono, telefono);
+                    if (duena != null && !duena.equals(clave)) {
+                        r = ResultadoOperacion.TELEFONO_REPETIDO;
+                    } else {
+                        claveDeTelefono.put(telefonoActual, null);
+                        claveDeTelefono.put(telefono, clave);
+                        telefonoDeClave.put(clave, telefono);
+                        r = ResultadoOperacion.CORRECTO;
+                    }
+                }
+            }
+            resultados[i] = r;
+            fallo |= r != ResultadoOperacion.CORRECTO;
+        }
+
+        if (fallo && modo == ModoLote.TODO_O_NADA) {
+            for (int i = 0; i < n; i++) {
+                if (resultados[i] == ResultadoOperacion.CORRECTO) resultados[i] = ResultadoOperacion.NO_APLICADO;
+            }
+            return resultados;
+        }
+
+        // Nada de lo que sigue puede fallar: la validación ya simuló el lote completo
+        Contacto[] altas = new Contacto[n];
+        String[] clavesAltas = new String[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (resultados[i] != ResultadoOperacion.CORRECTO) continue;
+            OperacionLote op = operaciones.get(i);
+            if (op.getTipo() == OperacionLote.Tipo.ALTA) {
+                clavesAltas[k] = claves[i];
+                altas[k++] = new Contacto(op.getContacto());
+                continue;
+            }
+            // Las altas pendientes van antes: la operación puede referirse a una de ellas
+            if (k > 0) anadirAceptados(clavesAltas, altas, k);
+            k = 0;
+            if (op.getTipo() == OperacionLote.Tipo.BAJA) {
+                quitar(claves[i]);
+            } else {
+                cambiarTelefono(claves[i], almacen.porClave(claves[i]), op.getTelefono().trim());
+            }
+        }
+        if (k > 0) anadirAceptados(clavesAltas, altas, k);
+        return resultados;
+    }
 
-        // Verifica duplicados por nombre+apellido o por número de teléfono
-        for (Contacto existente : contactos) {
-            boolean mismoNombreApellido = Contacto.normalizarTexto(existente.getNombre())
-                    .equals(Contacto.normalizarTexto(c.getNombre())) &&
-                    Contacto.normalizarTexto(existente.getApellido())
-                            .equals(Contacto.normalizarTexto(c.getApellido()));
+    /** Teléfono del contacto con esa clave según el lote o, si el lote no la tocó, el almacén */
+    private String telefonoEnLote(Map<String, String> telefonoDeClave, String clave) {
+        if (telefonoDeClave.containsKey(clave)) return telefonoDeClave.get(clave);
+        Contacto c = almacen.porClave(clave);
+        return c == null ? null : c.getTelefono();
+    }
 
-            boolean mismoTelefono = existente.getTelefono().equals(c.getTelefono());
+    /** Clave del contacto con ese teléfono según el lote o, si el lote no lo tocó, el almacén */
+    private String claveEnLote(Map<String, String> claveDeTelefono, String telefono) {
+        if (claveDeTelefono.containsKey(telefono)) return claveDeTelefono.get(telefono);
+        Contacto c = almacen.porTelefono(telefono);
+        return c == null ? null : clave(c);
+    }
 
-            if (mismoNombreApellido) return "Ya existe un contacto con el mismo nombre y apellido.";
-            if (mismoTelefono) return "Ya existe un contacto con el mismo número de teléfono.";
+    /** Entrega al almacén contactos ya comprobados y avisa a índices y oyentes */
+    private void anadirAceptados(String[] claves, Contacto[] aceptados, int k) {
+        if (almacen.anadirTodos(claves, aceptados, k)) {
+            // Los índices de búsqueda se reconstruirán cuando se necesiten
+            busqueda = null;
+            aproximados = null;
+            prefijosTelefono = null;
+            arbolInstantaneas = null;
+        } else {
+            if (busqueda != null) for (int i = 0; i < k; i++) busqueda.anadir(aceptados[i]);
+            if (aproximados != null) for (int i = 0; i < k; i++) aproximados.anadir(aceptados[i]);
+            if (prefijosTelefono != null) for (int i = 0; i < k; i++) prefijosTelefono.anadir(aceptados[i].getTelefono(), aceptados[i]);
+            if (arbolInstantaneas != null) for (int i = 0; i < k; i++) arbolInstantaneas = arbolInstantaneas.anadir(aceptados[i]);
         }
+        for (int i = 0; i < k; i++) avisarAlta(aceptados[i]);
+    }
 
-        contactos.add(c);
-        return "OK";
+    /** Cuenta un alta ya aplicada y la publica a eventos y oyentes */
+    private void avisarAlta(Contacto c) {
+        version++;
+        if (eventos != null) eventos.publicar(new EventoAgenda(version, EventoAgenda.Tipo.ALTA, c, null));
+        for (OyenteAgenda o : oyentes) o.contactoAnadido(new Contacto(c));
     }
 
     /**
@@ -61,143 +359,559 @@ public class Agenda {
     public boolean existeContacto(String nombre, String apellido, String telefono) {
         if (nombre == null || apellido == null || telefono == null) return false;
 
-        String n = Contacto.normalizarTexto(nombre);
-        String a = Contacto.normalizarTexto(apellido);
-        String t = telefono.trim();
+        Contacto c = almacen.porClave(clave(nombre, apellido));
+        return c != null && c.getTelefono().trim().equals(telefono.trim());
+    }
+
+    /**
+     * Indica si ya hay un contacto con ese nombre y apellido, ignorando acentos,
+     * mayúsculas y espacios (la misma regla que aplica {@link #anadirContacto}).
+     */
+    public boolean existeNombreApellido(String nombre, String apellido) {
+        if (nombre == null || apellido == null) return false;
+        return almacen.contieneClave(clave(nombre, apellido));
+    }
+
+    /**
+     * Indica si ya hay un contacto con ese número de teléfono.
+     */
+    public boolean existeTelefono(String telefono) {
+        return telefono != null && almacen.contieneTelefono(telefono.trim());
+    }
+
+    /**
+     * Todos los contactos ordenados alfabéticamente por nombre y apellido, en una lista
+     * nueva; para listados grandes conviene {@link #iteradorContactos} o
+     * {@link #flujoContactos}, que no los reúnen todos de una vez.
+     */
+    public List<Contacto> listarContactos() {
+        return listarContactos(0, almacen.tamano());
+    }
+
+    /**
+     * Recorre los contactos en el orden del listado sin reunirlos en una lista; cada uno
+     * es una copia construida al pedirlo. Con el almacén por
+     * defecto recorre los que había al empezar aunque la agenda cambie entre medias; con
+     * los compactos cada contacto se construye al pedirlo y el recorrido falla con
+     * ConcurrentModificationException si la agenda cambia.
+     */
+    public Iterator<Contacto> iteradorContactos() {
+        Iterator<Contacto> it = almacen.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
 
-        for (Contacto c : contactos) {
-            if (Contacto.normalizarTexto(c.getNombre()).equals(n) &&
-                    Contacto.normalizarTexto(c.getApellido()).equals(a) &&
-                    c.getTelefono().trim().equals(t)) {
-                return true;
+            @Override
+            public Contacto next() {
+                return new Contacto(it.next());
             }
-        }
-        return false;
+        };
     }
 
     /**
-     * Muestra todos los contactos ordenados alfabéticamente por nombre y apellido.
+     * Los contactos en el orden del listado como {@link Stream} secuencial y perezoso,
+     * con las mismas reglas que {@link #iteradorContactos}.
      */
-    public void listarContactos() {
-        if (contactos.isEmpty()) {
-            System.out.println("La agenda no tiene contactos.");
-            return;
-        }
+    public Stream<Contacto> flujoContactos() {
+        return StreamSupport.stream(Spliterators.spliterator(iteradorContactos(), almacen.tamano(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
 
-        // Ordena los contactos por nombre y luego por apellido, ignorando mayúsculas
-        contactos.sort(
-                Comparator.comparing((Contacto c) -> c.getNombre().trim(), String.CASE_INSENSITIVE_ORDER)
-                        .thenComparing(c -> c.getApellido().trim(), String.CASE_INSENSITIVE_ORDER)
-        );
+    /**
+     * Devuelve una página del listado ordenado: como mucho {@code limite} contactos a partir
+     * de la posición {@code offset}. Con el almacén por defecto cuesta O(log N + limite):
+     * baja por un árbol que sabe cuántos contactos hay en cada subárbol, sin copiar ni
+     * ordenar el listado después de cada cambio.
+     */
+    public List<Contacto> listarContactos(int offset, int limite) {
+        if (metricas == null) return copias(almacen.pagina(offset, limite));
+        long inicio = System.nanoTime();
+        List<Contacto> pagina = copias(almacen.pagina(offset, limite));
+        metricas.registrar(Operacion.LISTADO, System.nanoTime() - inicio);
+        return pagina;
+    }
 
-        int i = 1;
-        for (Contacto c : contactos) {
-            System.out.println("Contacto " + i + ": Nombre: "
-                    + c.getNombre() + " | Apellido: " + c.getApellido()
-                    + " | Teléfono: " + c.getTelefono());
-            i++;
+    /**
+     * Instantánea inmutable de los contactos actuales, que se puede recorrer aunque la
+     * agenda siga cambiando (ver {@link InstantaneaAgenda}). Sin cambios entre medias
+     * devuelve la misma instantánea. Con el almacén por defecto cuesta siempre O(1):
+     * comparte el árbol persistente en el que el almacén guarda sus contactos, sin
+     * copiarlos. Con los compactos la primera construye en O(N) un árbol aparte, que
+     * desde entonces se actualiza en O(log N) con cada alta, baja o cambio de teléfono y
+     * se descarta, como los índices de búsqueda, si un alta en bloque reconstruye el almacén.
+     */
+    public InstantaneaAgenda instantanea() {
+        if (ultimaInstantanea == null || ultimaInstantanea.version() != version) {
+            ArbolContactos arbol = almacen.arbol();
+            if (arbol == null) {
+                if (arbolInstantaneas == null) {
+                    // El almacén construye cada contacto al recorrerlo: no hace falta copiarlos
+                    Contacto[] contactos = new Contacto[almacen.tamano()];
+                    int i = 0;
+                    for (Contacto c : almacen) contactos[i++] = c;
+                    arbolInstantaneas = ArbolContactos.deOrdenados(contactos, contactos.length);
+                }
+                arbol = arbolInstantaneas;
+            }
+            ultimaInstantanea = new InstantaneaAgenda(arbol, version);
         }
+        return ultimaInstantanea;
     }
 
     /**
-     * Busca contactos por nombre, apellido o teléfono.
-     * Muestra los resultados en consola.
+     * Posición en el listado ordenado de un contacto con los datos de {@code c}, buscada
+     * por bisección sobre las páginas de un elemento. Si no está, devuelve
+     * {@code -(punto de inserción) - 1}, como {@link java.util.Arrays#binarySearch}: así
+     * también sirve para saber en qué fila estaba un contacto recién eliminado.
      */
-    public void buscarContacto(String campo, String valor) {
-        if (valor == null || valor.trim().isEmpty()) {
-            System.out.println("Debe ingresar un valor para buscar.");
-            return;
+    public int posicionEnListado(Contacto c) {
+        int bajo = 0, alto = almacen.tamano() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int cmp = ORDEN.compare(almacen.pagina(medio, 1).get(0), c);
+            if (cmp < 0) bajo = medio + 1;
+            else if (cmp > 0) alto = medio - 1;
+            else return medio;
         }
+        return -bajo - 1;
+    }
+
+    /**
+     * Devuelve la cantidad de contactos registrados.
+     */
+    public int cantidadContactos() {
+        return almacen.tamano();
+    }
+
+    /**
+     * Busca contactos por nombre, apellido o teléfono. Nombre y apellido se comparan
+     * sin acentos ni mayúsculas; un valor vacío no encuentra nada.
+     *
+     * @param campo "nombre", "apellido" o "telefono"
+     * @return los contactos encontrados, o una lista vacía
+     * @throws IllegalArgumentException si el campo no es uno de los anteriores
+     */
+    public List<Contacto> buscarContacto(String campo, String valor) {
+        if (metricas == null) return buscar(campo, valor);
+        boolean sinIndices = busqueda == null;
+        long inicio = System.nanoTime();
+        List<Contacto> resultados = buscar(campo, valor);
+        Operacion op = "nombre".equalsIgnoreCase(campo) ? Operacion.BUSQUEDA_NOMBRE
+                : "apellido".equalsIgnoreCase(campo) ? Operacion.BUSQUEDA_APELLIDO
+                : Operacion.BUSQUEDA_TELEFONO;
+        metricas.registrar(op, System.nanoTime() - inicio);
+        // Una búsqueda sólo cambia los tamaños si construyó los índices o tocó la caché
+        if (sinIndices || cacheTelefonos != null) anotarTamanos();
+        return resultados;
+    }
 
-        // Normaliza el valor según el campo
+    private List<Contacto> buscar(String campo, String valor) {
+        if (valor == null || valor.trim().isEmpty()) return new ArrayList<>();
+
+        // Normaliza el valor según el campo (los contactos ya guardan su forma normalizada)
         String vNorm = "telefono".equalsIgnoreCase(campo)
                 ? valor.trim()
                 : Contacto.normalizarTexto(valor);
 
-        List<Contacto> resultados = new ArrayList<>();
+        // Resuelve la búsqueda con el índice del campo especificado
+        List<Contacto> resultados;
+        if ("nombre".equalsIgnoreCase(campo)) {
+            resultados = copias(indicesBusqueda().porNombre(vNorm, Integer.MAX_VALUE));
+        } else if ("apellido".equalsIgnoreCase(campo)) {
+            resultados = copias(indicesBusqueda().porApellido(vNorm, Integer.MAX_VALUE));
+        } else if ("telefono".equalsIgnoreCase(campo)) {
+            resultados = new ArrayList<>();
+            Contacto c = porTelefono(vNorm);
+            if (c != null) resultados.add(new Contacto(c));
+        } else {
+            throw new IllegalArgumentException("Campo de búsqueda inválido. Use: nombre | apellido | telefono");
+        }
+        return resultados;
+    }
 
-        // Filtra contactos según el campo especificado
-        for (Contacto c : contactos) {
-            if ("nombre".equalsIgnoreCase(campo)) {
-                if (Contacto.normalizarTexto(c.getNombre()).equals(vNorm)) resultados.add(c);
-            } else if ("apellido".equalsIgnoreCase(campo)) {
-                if (Contacto.normalizarTexto(c.getApellido()).equals(vNorm)) resultados.add(c);
-            } else if ("telefono".equalsIgnoreCase(campo)) {
-                if (c.getTelefono().trim().equals(vNorm)) resultados.add(c);
-            } else {
-                System.out.println("Campo de búsqueda inválido. Use: nombre | apellido | telefono");
-                return;
-            }
+    /** Contacto con ese teléfono, pasando por la caché si está activada */
+    private Contacto porTelefono(String telefono) {
+        if (cacheTelefonos == null) return almacen.porTelefono(telefono);
+        Contacto c = cacheTelefonos.obtener(telefono);
+        if (c == null) {
+            c = almacen.porTelefono(telefono);
+            if (c != null) cacheTelefonos.guardar(telefono, c);
         }
+        return c;
+    }
 
-        // Muestra resultados o mensaje si no se encontró nada
-        if (resultados.isEmpty()) {
-            System.out.println("No se encontraron contactos para ese criterio.");
-        } else {
-            System.out.println("Resultados:");
-            for (Contacto r : resultados) {
-                System.out.println(" - " + r);
-            }
+    /**
+     * Activa una caché de como mucho {@code capacidad} entradas para
+     * {@code buscarContacto("telefono", ...)}, útil cuando unos pocos números se
+     * consultan constantemente y cada consulta al almacén cuesta (agendas compactas o
+     * fuera del heap). Con la caché llena sólo entran los números más consultados que
+     * el que saldría. Las bajas y los cambios de teléfono la mantienen exacta. Con 0
+     * se desactiva; volver a activarla empieza con la caché y las estadísticas vacías.
+     *
+     * @throws IllegalArgumentException si la capacidad es negativa
+     */
+    public void activarCacheTelefonos(int capacidad) {
+        if (capacidad < 0) throw new IllegalArgumentException("La capacidad de la caché no puede ser negativa");
+        cacheTelefonos = capacidad == 0 ? null : new CacheTelefonos(capacidad);
+    }
+
+    /** Aciertos, fallos y ocupación de la caché de teléfonos; todo a 0 si no está activada */
+    public EstadisticasCache estadisticasCacheTelefonos() {
+        return cacheTelefonos == null ? new EstadisticasCache(0, 0, 0, 0, 0, 0) : cacheTelefonos.estadisticas();
+    }
+
+    /**
+     * Empieza a publicar cada alta, baja y cambio de teléfono en un {@link FlujoEventos}
+     * que guarda los últimos {@code capacidad} eventos (redondeada a potencia de dos),
+     * para que otros hilos se suscriban y se actualicen evento a evento en lugar de
+     * volver a leer la agenda. Los eventos se numeran con la versión de la agenda, así
+     * que el primero será el {@code instantanea().version() + 1}. Con 0 se desactiva;
+     * volver a activarlos crea un flujo nuevo y las suscripciones al anterior ya no
+     * reciben nada.
+     *
+     * @throws IllegalArgumentException si la capacidad es negativa o mayor que 2^30
+     */
+    public void activarEventos(int capacidad) {
+        if (capacidad < 0 || capacidad > 1 << 30) {
+            throw new IllegalArgumentException("La capacidad del flujo de eventos debe estar entre 0 y 2^30");
         }
+        eventos = capacidad == 0 ? null : new FlujoEventos(capacidad, version);
+    }
+
+    /** El flujo de eventos activado con {@link #activarEventos}, si lo está */
+    public Optional<FlujoEventos> eventos() {
+        return Optional.ofNullable(eventos);
     }
 
     /**
-     * Elimina un contacto que coincida con el nombre y apellido proporcionados.
+     * Empieza a medir las operaciones de la agenda: llamadas y latencias de altas,
+     * bajas, cambios de teléfono, búsquedas (por campo) y listados, rechazos por motivo
+     * y tamaño de los índices. Medir cuesta dos lecturas del reloj por operación.
+     * Con {@code false} se deja de medir; volver a activarlas empieza de cero.
+     */
+    public void activarMetricas(boolean activar) {
+        if (!activar) {
+            metricas = null;
+        } else if (metricas == null) {
+            metricas = new MetricasAgenda();
+            anotarTamanos();
+        }
+    }
+
+    /** Las métricas activadas con {@link #activarMetricas}, si lo están */
+    public Optional<MetricasAgenda> metricas() {
+        return Optional.ofNullable(metricas);
+    }
+
+    /** Registra la operación con su resultado y anota los tamaños tras ella */
+    private void medir(Operacion op, long inicio, ResultadoOperacion resultado) {
+        metricas.registrar(op, System.nanoTime() - inicio, resultado);
+        anotarTamanos();
+    }
+
+    private void medir(Operacion op, long inicio, ResultadoOperacion[] resultados) {
+        metricas.registrar(op, System.nanoTime() - inicio, resultados);
+        anotarTamanos();
+    }
+
+    private void anotarTamanos() {
+        metricas.anotarTamanos(almacen.tamano(), maxSize,
+                cacheTelefonos == null ? 0 : cacheTelefonos.tamano(),
+                busqueda == null ? 0 : almacen.tamano(),
+                busqueda == null ? 0 : busqueda.entradasTrigramas());
+    }
+
+    /**
+     * El contacto con ese nombre y apellido, ignorando acentos, mayúsculas y espacios,
+     * si existe.
      */
-    public void eliminarContacto(String nombre, String apellido) {
-        String nombreLimpio = Contacto.normalizarTexto(nombre);
-        String apellidoLimpio = Contacto.normalizarTexto(apellido);
-
-        // Se crea una copia para evitar errores al modificar la lista mientras se recorre
-        for (Contacto actual : new ArrayList<>(contactos)) {
-            if (Contacto.normalizarTexto(actual.getNombre()).equals(nombreLimpio) &&
-                    Contacto.normalizarTexto(actual.getApellido()).equals(apellidoLimpio)) {
-                contactos.remove(actual);
-                System.out.println("El contacto fue eliminado con éxito.");
-                return;
+    public Optional<Contacto> buscarPorNombreApellido(String nombre, String apellido) {
+        if (nombre == null || apellido == null) return Optional.empty();
+        return Optional.ofNullable(almacen.porClave(clave(nombre, apellido))).map(Contacto::new);
+    }
+
+    /**
+     * Búsqueda incremental para autocompletar: devuelve como mucho {@code limite} contactos
+     * cuyo nombre o apellido normalizado empieza por el texto indicado, o cuyo teléfono
+     * contiene el fragmento de dígitos indicado.
+     * Los resultados salen ordenados por nombre y apellido normalizados (por apellido y
+     * nombre al buscar por apellido, por número al buscar por teléfono).
+     *
+     * @param campo "nombre", "apellido" o "telefono"
+     * @throws IllegalArgumentException si el campo no es uno de los anteriores
+     */
+    public List<Contacto> buscarPorPrefijo(String campo, String texto, int limite) {
+        if (metricas == null) return buscarPrefijo(campo, texto, limite);
+        boolean sinIndices = busqueda == null;
+        long inicio = System.nanoTime();
+        List<Contacto> resultados = buscarPrefijo(campo, texto, limite);
+        metricas.registrar(Operacion.BUSQUEDA_PREFIJO, System.nanoTime() - inicio);
+        if (sinIndices) anotarTamanos();
+        return resultados;
+    }
+
+    private List<Contacto> buscarPrefijo(String campo, String texto, int limite) {
+        if (texto == null) return new ArrayList<>();
+
+        if ("nombre".equalsIgnoreCase(campo)) {
+            return copias(indicesBusqueda().conPrefijoNombre(Contacto.normalizarTexto(texto), limite));
+        } else if ("apellido".equalsIgnoreCase(campo)) {
+            return copias(indicesBusqueda().conPrefijoApellido(Contacto.normalizarTexto(texto), limite));
+        } else if ("telefono".equalsIgnoreCase(campo)) {
+            String fragmento = texto.trim();
+            for (int i = 0; i < fragmento.length(); i++) {
+                char d = fragmento.charAt(i);
+                if (d < '0' || d > '9') return new ArrayList<>();
             }
+            return copias(indicesBusqueda().conFragmentoTelefono(fragmento, limite, almacen));
         }
-        System.out.println("El contacto no existe en la agenda.");
+        throw new IllegalArgumentException("Campo de búsqueda inválido. Use: nombre | apellido | telefono");
     }
 
     /**
-     * Modifica el número de teléfono de un contacto si no está duplicado y es válido.
+     * Contactos cuyo teléfono empieza por el prefijo de dígitos (todos con el prefijo
+     * vacío), ordenados por número: como mucho {@code limite} a partir de la posición
+     * {@code desde} de ese rango. El coste depende de los dígitos del prefijo y de los
+     * contactos devueltos, no de {@code desde} ni del tamaño de la agenda. Un prefijo
+     * con caracteres que no son dígitos no encuentra nada.
      */
-    public void modificarTelefono(String nombre, String apellido, String nuevoTelefono) {
-        if (nombre == null || apellido == null) {
-            System.out.println("Nombre y apellido requeridos para modificar teléfono.");
-            return;
+    public List<Contacto> listarPorPrefijoTelefono(String prefijo, int desde, int limite) {
+        if (metricas == null) return telefonosConPrefijo(prefijo, desde, limite);
+        long inicio = System.nanoTime();
+        List<Contacto> resultados = telefonosConPrefijo(prefijo, desde, limite);
+        metricas.registrar(Operacion.PREFIJO_TELEFONO, System.nanoTime() - inicio);
+        return resultados;
+    }
+
+    private List<Contacto> telefonosConPrefijo(String prefijo, int desde, int limite) {
+        if (!sonDigitos(prefijo)) return new ArrayList<>();
+        return copias(prefijosTelefono().conPrefijo(prefijo.trim(), desde, limite));
+    }
+
+    /**
+     * Cuántos contactos tienen un teléfono que empieza por el prefijo de dígitos, sin
+     * recorrerlos: el coste depende sólo de los dígitos del prefijo.
+     */
+    public int contarPorPrefijoTelefono(String prefijo) {
+        if (metricas == null) return telefonosContados(prefijo);
+        long inicio = System.nanoTime();
+        int cuenta = telefonosContados(prefijo);
+        metricas.registrar(Operacion.PREFIJO_TELEFONO, System.nanoTime() - inicio);
+        return cuenta;
+    }
+
+    private int telefonosContados(String prefijo) {
+        return sonDigitos(prefijo) ? prefijosTelefono().contar(prefijo.trim()) : 0;
+    }
+
+    /**
+     * El contacto cuyo teléfono es el prefijo más largo del número indicado (o el número
+     * entero), para encaminar una llamada: con "6015550100" y "60155501004412" en la
+     * agenda, el número "60155501004412" da el segundo y "601555010099" el primero. El
+     * coste depende sólo de los dígitos del número.
+     */
+    public Optional<Contacto> prefijoTelefonoMasLargo(String numero) {
+        if (metricas == null) return telefonoMasLargoDe(numero);
+        long inicio = System.nanoTime();
+        Optional<Contacto> contacto = telefonoMasLargoDe(numero);
+        metricas.registrar(Operacion.PREFIJO_TELEFONO, System.nanoTime() - inicio);
+        return contacto;
+    }
+
+    private Optional<Contacto> telefonoMasLargoDe(String numero) {
+        if (!sonDigitos(numero)) return Optional.empty();
+        return Optional.ofNullable(prefijosTelefono().prefijoMasLargoDe(numero.trim())).map(Contacto::new);
+    }
+
+    /** Trie de teléfonos, construido en la primera consulta por prefijo de teléfono */
+    private TriePrefijos prefijosTelefono() {
+        if (prefijosTelefono == null) {
+            prefijosTelefono = new TriePrefijos();
+            for (Contacto c : almacen) prefijosTelefono.anadir(c.getTelefono(), c);
         }
+        return prefijosTelefono;
+    }
 
-        String nombreLimpio = Contacto.normalizarTexto(nombre);
-        String apellidoLimpio = Contacto.normalizarTexto(apellido);
+    /** Indica si el texto, sin espacios en los extremos, sólo tiene dígitos (o está vacío) */
+    private static boolean sonDigitos(String texto) {
+        if (texto == null) return false;
+        String t = texto.trim();
+        for (int i = 0; i < t.length(); i++) {
+            char d = t.charAt(i);
+            if (d < '0' || d > '9') return false;
+        }
+        return true;
+    }
 
-        for (Contacto actual : contactos) {
-            String nombreActual = Contacto.normalizarTexto(actual.getNombre());
-            String apellidoActual = Contacto.normalizarTexto(actual.getApellido());
+    /**
+     * Búsqueda tolerante a errores de escritura y de ortografía: devuelve como mucho
+     * {@code limite} contactos cuyo nombre (o apellido) normalizado está a una distancia
+     * de edición de como mucho {@code maxDistancia} del texto, o se pronuncia igual en
+     * español aunque esté más lejos ("Ramires" encuentra a "Ramírez", "Lusia" a "Lucía";
+     * ver {@link Normalizador#claveFonetica}). Salen primero los más cercanos y, a igual
+     * distancia, por valor y luego por nombre y apellido.
+     *
+     * Los candidatos salen de un BK-tree sobre los valores distintos del campo, no de
+     * recorrer los contactos, así que el coste depende de cuántos valores distintos hay
+     * y crece con {@code maxDistancia}: 1 o 2 bastan para erratas y son rápidos con un
+     * millón de contactos.
+     *
+     * @param campo "nombre" o "apellido"
+     * @throws IllegalArgumentException si el campo no es uno de los anteriores o la
+     *                                  distancia es negativa
+     */
+    public List<Contacto> buscarAproximado(String campo, String texto, int maxDistancia, int limite) {
+        if (metricas == null) return buscarCercanos(campo, texto, maxDistancia, limite);
+        boolean sinIndices = busqueda == null;
+        long inicio = System.nanoTime();
+        List<Contacto> resultados = buscarCercanos(campo, texto, maxDistancia, limite);
+        metricas.registrar(Operacion.BUSQUEDA_APROXIMADA, System.nanoTime() - inicio);
+        if (sinIndices) anotarTamanos();
+        return resultados;
+    }
 
-            if (nombreActual.equals(nombreLimpio) && apellidoActual.equals(apellidoLimpio)) {
+    private List<Contacto> buscarCercanos(String campo, String texto, int maxDistancia, int limite) {
+        boolean porNombre = "nombre".equalsIgnoreCase(campo);
+        if (!porNombre && !"apellido".equalsIgnoreCase(campo)) {
+            throw new IllegalArgumentException("Campo de búsqueda inválido. Use: nombre | apellido");
+        }
+        if (maxDistancia < 0) throw new IllegalArgumentException("La distancia máxima no puede ser negativa");
 
-                // Validación básica del formato del teléfono
-                if (nuevoTelefono == null || !nuevoTelefono.trim().matches("\\d{7,15}")) {
-                    System.out.println("Teléfono inválido: debe contener sólo números (7-15 dígitos).");
-                    return;
-                }
+        List<Contacto> resultados = new ArrayList<>();
+        String consulta = Contacto.normalizarTexto(texto);
+        if (consulta.isEmpty()) return resultados;
+
+        if (aproximados == null) aproximados = new IndicesAproximados(almacen);
+        List<IndicesAproximados.Coincidencia> cercanos = porNombre
+                ? aproximados.nombresCercanos(consulta, maxDistancia)
+                : aproximados.apellidosCercanos(consulta, maxDistancia);
+        // Cada valor se resuelve en sus contactos con los índices de prefijos
+        for (IndicesAproximados.Coincidencia c : cercanos) {
+            int restantes = limite - resultados.size();
+            if (restantes <= 0) break;
+            resultados.addAll(copias(porNombre
+                    ? indicesBusqueda().porNombre(c.valor, restantes)
+                    : indicesBusqueda().porApellido(c.valor, restantes)));
+        }
+        return resultados;
+    }
 
-                // Verifica que el nuevo número no esté asignado a otro contacto
-                for (Contacto existente : contactos) {
-                    if (existente != actual && existente.getTelefono().equals(nuevoTelefono.trim())) {
-                        System.out.println("Ese número ya está asignado a otro contacto.");
-                        return;
-                    }
-                }
+    /**
+     * Elimina un contacto que coincida con el nombre y apellido proporcionados.
+     */
+    public ResultadoOperacion eliminarContacto(String nombre, String apellido) {
+        if (metricas == null) return eliminar(nombre, apellido);
+        long inicio = System.nanoTime();
+        ResultadoOperacion r = eliminar(nombre, apellido);
+        medir(Operacion.BAJA, inicio, r);
+        return r;
+    }
 
-                actual.setTelefono(nuevoTelefono.trim());
-                System.out.println("Teléfono actualizado. Nuevo contacto: " + actual);
-                return;
-            }
+    private ResultadoOperacion eliminar(String nombre, String apellido) {
+        if (nombre == null || apellido == null) return ResultadoOperacion.DATOS_INCOMPLETOS;
+        if (quitar(clave(nombre, apellido)) == null) return ResultadoOperacion.CONTACTO_NO_ENCONTRADO;
+        return ResultadoOperacion.CORRECTO;
+    }
+
+    /** Quita el contacto con esa clave, si está, y avisa a índices y oyentes */
+    private Contacto quitar(String clave) {
+        Contacto actual = almacen.eliminar(clave);
+        if (actual == null) return null;
+
+        if (cacheTelefonos != null) cacheTelefonos.invalidar(actual.getTelefono());
+        if (busqueda != null) busqueda.eliminar(actual);
+        if (aproximados != null) aproximados.eliminar(actual);
+        if (prefijosTelefono != null) prefijosTelefono.eliminar(actual.getTelefono());
+        if (arbolInstantaneas != null) arbolInstantaneas = arbolInstantaneas.eliminar(actual.getClaveOrden(), actual.getTelefono());
+        version++;
+        if (eventos != null) eventos.publicar(new EventoAgenda(version, EventoAgenda.Tipo.BAJA, actual, null));
+        for (OyenteAgenda o : oyentes) o.contactoEliminado(new Contacto(actual));
+        return actual;
+    }
+
+    /**
+     * Modifica el número de teléfono de un contacto si no está duplicado y es válido.
+     */
+    public ResultadoOperacion modificarTelefono(String nombre, String apellido, String nuevoTelefono) {
+        if (metricas == null) return modificar(nombre, apellido, nuevoTelefono);
+        long inicio = System.nanoTime();
+        ResultadoOperacion r = modificar(nombre, apellido, nuevoTelefono);
+        medir(Operacion.CAMBIO_TELEFONO, inicio, r);
+        return r;
+    }
+
+    private ResultadoOperacion modificar(String nombre, String apellido, String nuevoTelefono) {
+        if (nombre == null || apellido == null) return ResultadoOperacion.DATOS_INCOMPLETOS;
+
+        String clave = clave(nombre, apellido);
+        Contacto actual = almacen.porClave(clave);
+        if (actual == null) return ResultadoOperacion.CONTACTO_NO_ENCONTRADO;
+
+        // Validación básica del formato del teléfono
+        if (!Normalizador.esTelefonoValido(nuevoTelefono)) return ResultadoOperacion.TELEFONO_INVALIDO;
+
+        // Verifica que el nuevo número no esté asignado a otro contacto
+        String telefono = nuevoTelefono.trim();
+        Contacto existente = almacen.porTelefono(telefono);
+        if (existente != null && !clave(existente).equals(clave)) return ResultadoOperacion.TELEFONO_REPETIDO;
+
+        cambiarTelefono(clave, actual, telefono);
+        return ResultadoOperacion.CORRECTO;
+    }
+
+    /** Asigna un teléfono libre (o el mismo) al contacto y avisa a índices y oyentes */
+    private void cambiarTelefono(String clave, Contacto actual, String telefono) {
+        // El almacén reindexa el contacto bajo su nuevo número
+        String telefonoAnterior = actual.getTelefono();
+        if (cacheTelefonos != null) cacheTelefonos.invalidar(telefonoAnterior);
+        if (busqueda != null) busqueda.antesDeCambiarTelefono(actual);
+        Contacto nuevo = almacen.cambiarTelefono(clave, telefono);
+        if (busqueda != null) busqueda.despuesDeCambiarTelefono(nuevo);
+        if (prefijosTelefono != null) {
+            prefijosTelefono.eliminar(telefonoAnterior);
+            prefijosTelefono.anadir(telefono, nuevo);
+        }
+        if (arbolInstantaneas != null) {
+            arbolInstantaneas = arbolInstantaneas.eliminar(nuevo.getClaveOrden(), telefonoAnterior).anadir(nuevo);
         }
-        System.out.println("No se encontró el contacto para modificar.");
+        version++;
+        if (eventos != null) eventos.publicar(new EventoAgenda(version, EventoAgenda.Tipo.CAMBIO_TELEFONO, nuevo, telefonoAnterior));
+        for (OyenteAgenda o : oyentes) o.telefonoModificado(new Contacto(nuevo), telefonoAnterior);
+    }
+
+    /**
+     * Registra un oyente que será notificado de cada modificación de la agenda.
+     */
+    public void agregarOyente(OyenteAgenda oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Deja de notificar al oyente indicado.
+     */
+    public void quitarOyente(OyenteAgenda oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Reserva memoria para {@code capacidad} contactos de una vez, o la devuelve si la
+     * agenda ocupa menos. Útil antes de una carga masiva; sólo tiene efecto en las
+     * agendas creadas con {@link #compacta} o {@link #fueraDelHeap}.
+     */
+    public void redimensionar(int capacidad) {
+        almacen.redimensionar(capacidad);
+    }
+
+    /**
+     * Libera la memoria fuera del heap de una agenda creada con {@link #fueraDelHeap}.
+     * Después de cerrarla cualquier operación lanza IllegalStateException. En las demás
+     * agendas no hace nada.
+     */
+    @Override
+    public void close() {
+        almacen.cerrar();
     }
 
     /**
@@ -211,13 +925,51 @@ public class Agenda {
      * Devuelve la cantidad de espacios disponibles en la agenda.
      */
     public int espaciosLibres() {
-        return maxSize - contactos.size();
+        return maxSize - almacen.tamano();
     }
 
     /**
-     * Devuelve una copia de la lista de contactos para evitar modificaciones externas.
+     * Devuelve los índices de búsqueda, construyéndolos en la primera llamada.
+     */
+    private IndicesBusqueda indicesBusqueda() {
+        if (busqueda == null) busqueda = new IndicesBusqueda(almacen);
+        return busqueda;
+    }
+
+    /**
+     * Construye la clave de los índices a partir de nombre y apellido normalizados.
+     * El separador '\0' evita colisiones como "ana"+"maria" frente a "anam"+"aria".
+     */
+    private static String clave(String nombre, String apellido) {
+        return TriePrefijos.clave(Contacto.normalizarTexto(nombre), Contacto.normalizarTexto(apellido));
+    }
+
+    /**
+     * Clave de índice de un contacto, construida con sus formas normalizadas en caché.
+     */
+    private static String clave(Contacto c) {
+        return TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado());
+    }
+
+    /**
+     * Devuelve una lista nueva con copias de todos los contactos: modificarlos no
+     * cambia la agenda.
      */
     public List<Contacto> obtenerContactos() {
-        return new ArrayList<>(this.contactos);
+        List<Contacto> copia = new ArrayList<>(almacen.tamano());
+        for (Contacto c : almacen) copia.add(new Contacto(c));
+        return copia;
+    }
+
+    /** Capacidad inicial con la que un HashMap o HashSet guarda {@code n} elementos sin crecer */
+    static int capacidadHash(int n) {
+        return (int) Math.min(Integer.MAX_VALUE, n * 4L / 3 + 1);
+    }
+
+    /** Copias de los contactos guardados, para entregarlas fuera de la agenda */
+    private static List<Contacto> copias(List<Contacto> guardados) {
+        List<Contacto> copias = new ArrayList<>(guardados.size());
+        for (Contacto c : guardados) copias.add(new Contacto(c));
+        return copias;
     }
 }
\ No newline at end of file
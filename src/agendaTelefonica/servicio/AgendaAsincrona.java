@@ -0,0 +1,173 @@
+package agendaTelefonica.servicio;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Fachada asíncrona de una {@link Agenda}: cada operación devuelve enseguida un
+ * {@link CompletableFuture} y se ejecuta después en el ejecutor indicado, de modo que
+ * quien llama nunca se queda esperando a un alta que reindexa o a un oyente que escribe
+ * en disco.
+ *
+ * La agenda no es segura para varios hilos, así que las operaciones se ejecutan de una
+ * en una y en el orden en que se pidieron, aunque el ejecutor tenga varios hilos. Una
+ * búsqueda pedida después de que vuelva una llamada de modificación ve esa modificación.
+ *
+ * Las búsquedas iguales (mismo campo y valor, o mismo prefijo y límite) que coinciden
+ * en la cola se combinan: se ejecutan una sola vez y todas reciben la misma lista, que
+ * no se puede modificar. Las modificaciones en cola tienen un máximo; con la cola llena,
+ * la nueva modificación no se encola y su futuro termina con
+ * {@link RejectedExecutionException}, para que quien llama reduzca el ritmo.
+ *
+ * Mientras se use esta fachada, la agenda no debe usarse directamente.
+ */
+public class AgendaAsincrona {
+
+    /** Modificaciones en cola como mucho si no se indica otro máximo */
+    public static final int MAX_PENDIENTES_POR_DEFECTO = 1024;
+
+    // Tareas ejecutadas seguidas antes de devolver el hilo al ejecutor
+    private static final int TAREAS_POR_TURNO = 64;
+
+    private final Agenda agenda;
+    private final Executor ejecutor;
+    private final int maxPendientes;
+
+    private final Queue<Runnable> tareas = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final AtomicInteger modificacionesPendientes = new AtomicInteger();
+
+    // Búsquedas encoladas y aún sin ejecutar, por clave; las iguales se combinan
+    private final ConcurrentHashMap<String, CompletableFuture<List<Contacto>>> busquedas = new ConcurrentHashMap<>();
+    private final AtomicLong combinadas = new AtomicLong();
+
+    public AgendaAsincrona(Agenda agenda) {
+        this(agenda, ForkJoinPool.commonPool(), MAX_PENDIENTES_POR_DEFECTO);
+    }
+
+    /**
+     * @param ejecutor      donde se ejecutan las operaciones; debe aceptar todas las tareas
+     * @param maxPendientes modificaciones en cola como mucho
+     * @throws IllegalArgumentException si maxPendientes no es positivo
+     */
+    public AgendaAsincrona(Agenda agenda, Executor ejecutor, int maxPendientes) {
+        if (agenda == null || ejecutor == null) {
+            throw new IllegalArgumentException("La agenda y el ejecutor no pueden ser nulos");
+        }
+        if (maxPendientes <= 0) {
+            throw new IllegalArgumentException("El máximo de modificaciones pendientes debe ser positivo");
+        }
+        this.agenda = agenda;
+        this.ejecutor = ejecutor;
+        this.maxPendientes = maxPendientes;
+    }
+
+    /** Como {@link Agenda#buscarContacto}; un campo desconocido termina el futuro con IllegalArgumentException */
+    public CompletableFuture<List<Contacto>> buscarAsync(String campo, String valor) {
+        return buscar("=" + campo + '\0' + valor, () -> agenda.buscarContacto(campo, valor));
+    }
+
+    /** Como {@link Agenda#buscarPorPrefijo} */
+    public CompletableFuture<List<Contacto>> buscarPorPrefijoAsync(String campo, String texto, int limite) {
+        return buscar("^" + campo + '\0' + texto + '\0' + limite, () -> agenda.buscarPorPrefijo(campo, texto, limite));
+    }
+
+    public CompletableFuture<ResultadoOperacion> anadirAsync(Contacto c) {
+        return modificar(() -> agenda.anadirContacto(c));
+    }
+
+    public CompletableFuture<ResultadoOperacion> eliminarAsync(String nombre, String apellido) {
+        return modificar(() -> agenda.eliminarContacto(nombre, apellido));
+    }
+
+    public CompletableFuture<ResultadoOperacion> modificarTelefonoAsync(String nombre, String apellido, String nuevoTelefono) {
+        return modificar(() -> agenda.modificarTelefono(nombre, apellido, nuevoTelefono));
+    }
+
+    /** Como {@link Agenda#aplicarLote}; el lote entero ocupa un solo puesto en la cola */
+    public CompletableFuture<ResultadoOperacion[]> aplicarLoteAsync(List<OperacionLote> operaciones, ModoLote modo) {
+        return modificar(() -> agenda.aplicarLote(operaciones, modo));
+    }
+
+    /** Modificaciones encoladas o en curso */
+    public int modificacionesPendientes() {
+        return modificacionesPendientes.get();
+    }
+
+    /** Búsquedas que se resolvieron con otra igual ya encolada */
+    public long busquedasCombinadas() {
+        return combinadas.get();
+    }
+
+    private CompletableFuture<List<Contacto>> buscar(String clave, Supplier<List<Contacto>> busqueda) {
+        CompletableFuture<List<Contacto>> nueva = new CompletableFuture<>();
+        CompletableFuture<List<Contacto>> existente = busquedas.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            combinadas.incrementAndGet();
+            // Una copia, para que quien la reciba no pueda completar la de los demás
+            return existente.copy();
+        }
+        encolar(() -> {
+            // Fuera del mapa antes de ejecutarla: una búsqueda posterior ya no puede unirse
+            busquedas.remove(clave, nueva);
+            try {
+                nueva.complete(List.copyOf(busqueda.get()));
+            } catch (RuntimeException e) {
+                nueva.completeExceptionally(e);
+            }
+        });
+        return nueva.copy();
+    }
+
+    private <T> CompletableFuture<T> modificar(Supplier<T> modificacion) {
+        if (modificacionesPendientes.incrementAndGet() > maxPendientes) {
+            modificacionesPendientes.decrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Hay " + maxPendientes + " modificaciones pendientes"));
+        }
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        encolar(() -> {
+            try {
+                resultado.complete(modificacion.get());
+            } catch (RuntimeException e) {
+                resultado.completeExceptionally(e);
+            } finally {
+                modificacionesPendientes.decrementAndGet();
+            }
+        });
+        // Las búsquedas ya encoladas no ven esta modificación: las siguientes no deben unirse a ellas
+        busquedas.clear();
+        return resultado;
+    }
+
+    private void encolar(Runnable tarea) {
+        tareas.add(tarea);
+        // Sólo quien encuentra la cola vacía pone a trabajar al ejecutor
+        if (enCola.getAndIncrement() == 0) ejecutor.execute(this::atenderCola);
+    }
+
+    /** Ejecuta las tareas en orden; nunca hay dos turnos a la vez */
+    private void atenderCola() {
+        int hechas = 0;
+        while (true) {
+            tareas.poll().run();
+            if (enCola.decrementAndGet() == 0) return;
+            if (++hechas == TAREAS_POR_TURNO) {
+                // Quedan tareas: se cede el hilo y se sigue en otro turno
+                ejecutor.execute(this::atenderCola);
+                return;
+            }
+        }
+    }
+}
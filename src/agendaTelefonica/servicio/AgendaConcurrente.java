@@ -0,0 +1,320 @@
+package agendaTelefonica.servicio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.modelo.Normalizador;
+
+/**
+ * Agenda segura para hilos, pensada para atender muchas peticiones a la vez.
+ *
+ * Las lecturas no toman cerrojos: consultan mapas concurrentes (ConcurrentHashMap
+ * por nombre+apellido y mapas de saltos ordenados para el listado, los prefijos y
+ * los teléfonos). Los listados y búsquedas son débilmente consistentes: reflejan
+ * cada alta o baja completa, pero pueden ver o no una que esté en curso.
+ *
+ * Las escrituras toman cerrojos por franjas: cada clave (nombre+apellido normalizados
+ * o teléfono) cae en una de {@value #FRANJAS} franjas, y una operación bloquea las de
+ * todas sus claves en orden creciente, así que dos hilos nunca se esperan en ciclo.
+ * Con eso la comprobación de duplicados y el alta son atómicas para cualquier par de
+ * operaciones que compartan una clave, mientras que las que no comparten ninguna
+ * avanzan en paralelo. La capacidad se reserva con un contador atómico después de
+ * comprobar los duplicados, de modo que una reserva siempre termina en alta.
+ *
+ * Los contactos guardados no se modifican: cambiar un teléfono sustituye el contacto
+ * por uno nuevo. Quien añade un contacto no debe modificarlo después.
+ */
+public class AgendaConcurrente {
+
+    /** Número de franjas de cerrojos (potencia de dos) */
+    static final int FRANJAS = 64;
+
+    private final ConcurrentHashMap<String, Contacto> porNombreApellido = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Contacto> porTelefono = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<Contacto> ordenados = new ConcurrentSkipListSet<>(Agenda.ORDEN);
+
+    // Claves "nombre\0apellido" y "apellido\0nombre" normalizadas, para buscar por prefijo
+    private final ConcurrentSkipListMap<String, Contacto> prefijosNombre = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Contacto> prefijosApellido = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock[] franjas = new ReentrantLock[FRANJAS];
+    private final AtomicInteger ocupados = new AtomicInteger();
+    private final int maxSize;
+
+    private final List<OyenteAgenda> oyentes = new CopyOnWriteArrayList<>();
+
+    public AgendaConcurrente() {
+        this(Agenda.DEFAULT_SIZE);
+    }
+
+    public AgendaConcurrente(int maxSize) {
+        this.maxSize = maxSize;
+        for (int i = 0; i < FRANJAS; i++) franjas[i] = new ReentrantLock();
+    }
+
+    /**
+     * Añade el contacto si hay espacio y no repite nombre+apellido ni teléfono.
+     */
+    public ResultadoOperacion anadirContacto(Contacto c) {
+        if (c == null) return ResultadoOperacion.CONTACTO_NULO;
+        if (ocupados.get() >= maxSize) return ResultadoOperacion.AGENDA_LLENA;
+
+        String clave = clave(c);
+        String telefono = c.getTelefono();
+        int[] bloqueadas = bloquear(clave, telefono, null);
+        try {
+            if (porNombreApellido.containsKey(clave)) return ResultadoOperacion.NOMBRE_APELLIDO_REPETIDO;
+            if (porTelefono.containsKey(telefono)) return ResultadoOperacion.TELEFONO_REPETIDO;
+            if (!reservarEspacio()) return ResultadoOperacion.AGENDA_LLENA;
+
+            ordenados.add(c);
+            prefijosNombre.put(TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado()), c);
+            prefijosApellido.put(TriePrefijos.clave(c.getApellidoNormalizado(), c.getNombreNormalizado()), c);
+            porTelefono.put(telefono, c);
+            porNombreApellido.put(clave, c);
+            for (OyenteAgenda o : oyentes) o.contactoAnadido(c);
+            return ResultadoOperacion.CORRECTO;
+        } finally {
+            desbloquear(bloqueadas);
+        }
+    }
+
+    /**
+     * Elimina el contacto con ese nombre y apellido.
+     */
+    public ResultadoOperacion eliminarContacto(String nombre, String apellido) {
+        if (nombre == null || apellido == null) return ResultadoOperacion.DATOS_INCOMPLETOS;
+        String clave = clave(nombre, apellido);
+
+        while (true) {
+            Contacto actual = porNombreApellido.get(clave);
+            if (actual == null) return ResultadoOperacion.CONTACTO_NO_ENCONTRADO;
+
+            int[] bloqueadas = bloquear(clave, actual.getTelefono(), null);
+            try {
+                // Otro hilo pudo cambiar o borrar el contacto antes de tomar los cerrojos
+                if (porNombreApellido.get(clave) != actual) continue;
+
+                porNombreApellido.remove(clave);
+                porTelefono.remove(actual.getTelefono());
+                prefijosNombre.remove(TriePrefijos.clave(actual.getNombreNormalizado(), actual.getApellidoNormalizado()));
+                prefijosApellido.remove(TriePrefijos.clave(actual.getApellidoNormalizado(), actual.getNombreNormalizado()));
+                ordenados.remove(actual);
+                ocupados.decrementAndGet();
+                for (OyenteAgenda o : oyentes) o.contactoEliminado(actual);
+                return ResultadoOperacion.CORRECTO;
+            } finally {
+                desbloquear(bloqueadas);
+            }
+        }
+    }
+
+    /**
+     * Cambia el teléfono del contacto si el nuevo es válido y no pertenece a otro.
+     */
+    public ResultadoOperacion modificarTelefono(String nombre, String apellido, String nuevoTelefono) {
+        if (nombre == null || apellido == null) return ResultadoOperacion.DATOS_INCOMPLETOS;
+        String clave = clave(nombre, apellido);
+
+        while (true) {
+            Contacto actual = porNombreApellido.get(clave);
+            if (actual == null) return ResultadoOperacion.CONTACTO_NO_ENCONTRADO;
+            if (!Normalizador.esTelefonoValido(nuevoTelefono)) return ResultadoOperacion.TELEFONO_INVALIDO;
+            String telefono = nuevoTelefono.trim();
+
+            int[] bloqueadas = bloquear(clave, actual.getTelefono(), telefono);
+            try {
+                if (porNombreApellido.get(clave) != actual) continue;
+                Contacto existente = porTelefono.get(telefono);
+                if (existente != null && existente != actual) return ResultadoOperacion.TELEFONO_REPETIDO;
+                if (existente == actual) {
+                    for (OyenteAgenda o : oyentes) o.telefonoModificado(actual, telefono);
+                    return ResultadoOperacion.CORRECTO;
+                }
+
+                // Se publica el nuevo antes de retirar el anterior: un lector concurrente
+                // puede ver ambos un instante, pero nunca ninguno
+                Contacto nuevo = new Contacto(actual.getNombre(), actual.getApellido(), telefono);
+                ordenados.add(nuevo);
+                prefijosNombre.put(TriePrefijos.clave(nuevo.getNombreNormalizado(), nuevo.getApellidoNormalizado()), nuevo);
+                prefijosApellido.put(TriePrefijos.clave(nuevo.getApellidoNormalizado(), nuevo.getNombreNormalizado()), nuevo);
+                porNombreApellido.put(clave, nuevo);
+                porTelefono.put(telefono, nuevo);
+                porTelefono.remove(actual.getTelefono(), actual);
+                ordenados.remove(actual);
+                for (OyenteAgenda o : oyentes) o.telefonoModificado(nuevo, actual.getTelefono());
+                return ResultadoOperacion.CORRECTO;
+            } finally {
+                desbloquear(bloqueadas);
+            }
+        }
+    }
+
+    /**
+     * Verifica si existe un contacto con nombre, apellido y teléfono exactos.
+     */
+    public boolean existeContacto(String nombre, String apellido, String telefono) {
+        if (nombre == null || apellido == null || telefono == null) return false;
+        Contacto c = porNombreApellido.get(clave(nombre, apellido));
+        return c != null && c.getTelefono().equals(telefono.trim());
+    }
+
+    public boolean existeNombreApellido(String nombre, String apellido) {
+        if (nombre == null || apellido == null) return false;
+        return porNombreApellido.containsKey(clave(nombre, apellido));
+    }
+
+    public boolean existeTelefono(String telefono) {
+        return telefono != null && porTelefono.containsKey(telefono.trim());
+    }
+
+    /**
+     * Contactos cuyo nombre, apellido o teléfono coincide exactamente con el valor
+     * (nombre y apellido sin distinguir acentos ni mayúsculas).
+     *
+     * @throws IllegalArgumentException si el campo no es nombre, apellido o telefono
+     */
+    public List<Contacto> buscar(String campo, String valor) {
+        List<Contacto> resultados = new ArrayList<>();
+        if (valor == null || valor.trim().isEmpty()) return resultados;
+
+        if ("telefono".equalsIgnoreCase(campo)) {
+            Contacto c = porTelefono.get(valor.trim());
+            if (c != null) resultados.add(c);
+            return resultados;
+        }
+        // Con el separador al final sólo coinciden las claves cuyo primer campo es exacto
+        return buscarEnIndice(campo, Contacto.normalizarTexto(valor) + TriePrefijos.SEPARADOR, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Búsqueda incremental con las mismas reglas que {@link Agenda#buscarPorPrefijo}.
+     * Un fragmento de teléfono recorre los teléfonos en orden hasta reunir
+     * {@code limite} coincidencias.
+     *
+     * @throws IllegalArgumentException si el campo no es nombre, apellido o telefono
+     */
+    public List<Contacto> buscarPorPrefijo(String campo, String texto, int limite) {
+        if (texto == null) return new ArrayList<>();
+        if ("telefono".equalsIgnoreCase(campo)) {
+            String fragmento = texto.trim();
+            List<Contacto> resultados = new ArrayList<>();
+            for (int i = 0; i < fragmento.length(); i++) {
+                char d = fragmento.charAt(i);
+                if (d < '0' || d > '9') return resultados;
+            }
+            for (Map.Entry<String, Contacto> e : porTelefono.entrySet()) {
+                if (resultados.size() >= limite) break;
+                if (e.getKey().contains(fragmento)) resultados.add(e.getValue());
+            }
+            return resultados;
+        }
+        return buscarEnIndice(campo, Contacto.normalizarTexto(texto), limite);
+    }
+
+    private List<Contacto> buscarEnIndice(String campo, String prefijo, int limite) {
+        ConcurrentSkipListMap<String, Contacto> indice;
+        if ("nombre".equalsIgnoreCase(campo)) indice = prefijosNombre;
+        else if ("apellido".equalsIgnoreCase(campo)) indice = prefijosApellido;
+        else throw new IllegalArgumentException("Campo de búsqueda inválido. Use: nombre | apellido | telefono");
+
+        List<Contacto> resultados = new ArrayList<>();
+        for (Map.Entry<String, Contacto> e : indice.tailMap(prefijo).entrySet()) {
+            if (resultados.size() >= limite || !e.getKey().startsWith(prefijo)) break;
+            resultados.add(e.getValue());
+        }
+        return resultados;
+    }
+
+    /**
+     * Devuelve como mucho {@code limite} contactos del listado ordenado a partir de
+     * {@code offset}. Recorre el mapa ordenado, así que cuesta O(offset + limite).
+     */
+    public List<Contacto> listarContactos(int offset, int limite) {
+        List<Contacto> pagina = new ArrayList<>(Math.min(Math.max(limite, 0), 1024));
+        Iterator<Contacto> it = ordenados.iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) it.next();
+        while (pagina.size() < limite && it.hasNext()) pagina.add(it.next());
+        return pagina;
+    }
+
+    /** Copia de todos los contactos en orden */
+    public List<Contacto> obtenerContactos() {
+        return new ArrayList<>(ordenados);
+    }
+
+    public int cantidadContactos() {
+        return ocupados.get();
+    }
+
+    public int espaciosLibres() {
+        return Math.max(0, maxSize - ocupados.get());
+    }
+
+    public boolean agendaLlena() {
+        return espaciosLibres() == 0;
+    }
+
+    /**
+     * Registra un oyente. Se invoca con los cerrojos de la operación tomados, así que
+     * los eventos de una misma clave llegan en el orden en que se aplicaron.
+     */
+    public void agregarOyente(OyenteAgenda oyente) {
+        oyentes.add(oyente);
+    }
+
+    public void quitarOyente(OyenteAgenda oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /** Reserva un hueco si queda alguno */
+    private boolean reservarEspacio() {
+        while (true) {
+            int actual = ocupados.get();
+            if (actual >= maxSize) return false;
+            if (ocupados.compareAndSet(actual, actual + 1)) return true;
+        }
+    }
+
+    /**
+     * Bloquea las franjas de las claves (la tercera puede ser null) en orden creciente
+     * y sin repetir. Devuelve las franjas ordenadas para {@link #desbloquear}.
+     */
+    private int[] bloquear(String a, String b, String c) {
+        int[] f = c == null ? new int[]{franja(a), franja(b)} : new int[]{franja(a), franja(b), franja(c)};
+        Arrays.sort(f);
+        for (int i = 0; i < f.length; i++) {
+            if (i == 0 || f[i] != f[i - 1]) franjas[f[i]].lock();
+        }
+        return f;
+    }
+
+    private void desbloquear(int[] f) {
+        for (int i = f.length - 1; i >= 0; i--) {
+            if (i == 0 || f[i] != f[i - 1]) franjas[f[i]].unlock();
+        }
+    }
+
+    private static int franja(String clave) {
+        int h = clave.hashCode();
+        return (h ^ (h >>> 16)) & (FRANJAS - 1);
+    }
+
+    private static String clave(String nombre, String apellido) {
+        return TriePrefijos.clave(Contacto.normalizarTexto(nombre), Contacto.normalizarTexto(apellido));
+    }
+
+    private static String clave(Contacto c) {
+        return TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado());
+    }
+}
@@ -0,0 +1,392 @@
+package agendaTelefonica.servicio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Almacén compacto para agendas muy grandes: no guarda objetos por contacto.
+ *
+ * Cada contacto es una fila de tres columnas primitivas: el teléfono codificado en
+ * un long y la posición de su nombre y de su apellido en una {@link ArenaTextos},
+ * donde cada texto distinto se guarda una sola vez en UTF-8 (los apellidos y nombres
+ * repetidos se comparten). El índice por teléfono es una {@link TablaLongInt} y el de
+ * nombre+apellido una tabla hash de enteros que compara contra las formas
+ * normalizadas guardadas en la arena, sin crear cadenas.
+ *
+ * Los {@link Contacto} que devuelve son vistas nuevas construidas en cada consulta;
+ * modificarlas no cambia el almacén. El orden del listado se calcula al pedirlo
+ * después de un cambio (O(N log N) sobre enteros) en vez de mantenerse en cada alta.
+ */
+class AlmacenColumnar implements AlmacenContactos {
+
+    // El teléfono (7-15 dígitos) ocupa los 50 bits bajos y su largo los de encima,
+    // para conservar los ceros a la izquierda
+    private static final int BITS_VALOR = 50;
+    private static final long MASCARA_VALOR = (1L << BITS_VALOR) - 1;
+    private static final long[] POTENCIAS = new long[16];
+
+    static {
+        POTENCIAS[0] = 1;
+        for (int i = 1; i < POTENCIAS.length; i++) POTENCIAS[i] = POTENCIAS[i - 1] * 10;
+    }
+
+    // Columnas; una fila libre tiene teléfono 0 y posiciones -1
+    private long[] telefonos = new long[16];
+    private int[] nombres = new int[16];
+    private int[] apellidos = new int[16];
+    private int filas;
+    private int tamano;
+
+    // Filas liberadas por las bajas, para reutilizarlas
+    private int[] libres = new int[16];
+    private int cantidadLibres;
+
+    private final ArenaTextos arena = new ArenaTextos();
+    private final TablaLongInt porTelefono = new TablaLongInt();
+
+    // Índice nombre+apellido: fila + 1 (0 = vacía) y hash de la clave, sondeo lineal
+    private int[] claveFilas = new int[32];
+    private int[] claveHashes = new int[32];
+
+    // Filas en orden de listado; se recalcula cuando cambia el almacén
+    private int[] orden;
+    private int modificaciones;
+
+    @Override
+    public int tamano() {
+        return tamano;
+    }
+
+    @Override
+    public boolean contieneClave(String clave) {
+        return buscarCasilla(clave.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    @Override
+    public boolean contieneTelefono(String telefono) {
+        long codigo = codificarTelefono(telefono);
+        return codigo != 0 && porTelefono.obtener(codigo) != TablaLongInt.AUSENTE;
+    }
+
+    @Override
+    public Contacto porClave(String clave) {
+        int casilla = buscarCasilla(clave.getBytes(StandardCharsets.UTF_8));
+        return casilla < 0 ? null : vista(claveFilas[casilla] - 1);
+    }
+
+    @Override
+    public Contacto porTelefono(String telefono) {
+        long codigo = codificarTelefono(telefono);
+        int fila = codigo == 0 ? TablaLongInt.AUSENTE : porTelefono.obtener(codigo);
+        return fila == TablaLongInt.AUSENTE ? null : vista(fila);
+    }
+
+    @Override
+    public void anadir(String clave, Contacto c) {
+        int fila;
+        if (cantidadLibres > 0) {
+            fila = libres[--cantidadLibres];
+        } else {
+            if (filas == telefonos.length) crecer();
+            fila = filas++;
+        }
+        long codigo = codificarTelefono(c.getTelefono());
+        telefonos[fila] = codigo;
+        nombres[fila] = arena.internar(c.getNombre());
+        apellidos[fila] = arena.internar(c.getApellido());
+        porTelefono.poner(codigo, fila);
+
+        if ((tamano + 1) * 2 > claveFilas.length) redimensionarClaves(claveFilas.length * 2);
+        int h = hashClave(fila);
+        int mascara = claveFilas.length - 1;
+        int i = h & mascara;
+        while (claveFilas[i] != 0) i = (i + 1) & mascara;
+        claveFilas[i] = fila + 1;
+        claveHashes[i] = h;
+
+        tamano++;
+        cambio();
+    }
+
+    @Override
+    public boolean anadirTodos(String[] claves, Contacto[] nuevos, int cantidad) {
+        for (int i = 0; i < cantidad; i++) anadir(claves[i], nuevos[i]);
+        return false;
+    }
+
+    @Override
+    public Contacto eliminar(String clave) {
+        int casilla = buscarCasilla(clave.getBytes(StandardCharsets.UTF_8));
+        if (casilla < 0) return null;
+        int fila = claveFilas[casilla] - 1;
+        Contacto actual = vista(fila);
+
+        quitarClave(casilla);
+        porTelefono.quitar(telefonos[fila]);
+        arena.liberar(nombres[fila]);
+        arena.liberar(apellidos[fila]);
+        telefonos[fila] = 0;
+        nombres[fila] = -1;
+        apellidos[fila] = -1;
+        if (cantidadLibres == libres.length) libres = Arrays.copyOf(libres, libres.length * 2);
+        libres[cantidadLibres++] = fila;
+        tamano--;
+        cambio();
+
+        if (arena.necesitaCompactar()) arena.compactar(new int[][]{nombres, apellidos}, filas);
+        return actual;
+    }
+
+    @Override
+    public Contacto cambiarTelefono(String clave, String telefono) {
+        int fila = claveFilas[buscarCasilla(clave.getBytes(StandardCharsets.UTF_8))] - 1;
+        long codigo = codificarTelefono(telefono);
+        porTelefono.quitar(telefonos[fila]);
+        telefonos[fila] = codigo;
+        porTelefono.poner(codigo, fila);
+        cambio();
+        return vista(fila);
+    }
+
+    @Override
+    public List<Contacto> pagina(int desde, int limite) {
+        int[] filasOrdenadas = orden();
+        int inicio = Math.max(0, Math.min(desde, filasOrdenadas.length));
+        int fin = (int) Math.min(filasOrdenadas.length, (long) inicio + Math.max(0, limite));
+        List<Contacto> resultado = new ArrayList<>(fin - inicio);
+        for (int i = inicio; i < fin; i++) resultado.add(vista(filasOrdenadas[i]));
+        return resultado;
+    }
+
+    /** Recorre el listado ordenado; falla si el almacén cambia durante el recorrido */
+    @Override
+    public Iterator<Contacto> iterator() {
+        int[] filasOrdenadas = orden();
+        int esperadas = modificaciones;
+        return new Iterator<>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < filasOrdenadas.length;
+            }
+
+            @Override
+            public Contacto next() {
+                if (modificaciones != esperadas) throw new ConcurrentModificationException();
+                if (i >= filasOrdenadas.length) throw new NoSuchElementException();
+                return vista(filasOrdenadas[i++]);
+            }
+        };
+    }
+
+    /** Ajusta las columnas a {@code capacidad} filas, sin bajar de las ya usadas */
+    @Override
+    public void redimensionar(int capacidad) {
+        int filasNuevas = Math.max(Math.max(capacidad, filas), 16);
+        telefonos = Arrays.copyOf(telefonos, filasNuevas);
+        nombres = Arrays.copyOf(nombres, filasNuevas);
+        apellidos = Arrays.copyOf(apellidos, filasNuevas);
+    }
+
+    /**
+     * Bytes que ocupan las columnas, los índices y la arena (capacidad reservada,
+     * no sólo la usada).
+     */
+    long bytesUsados() {
+        long columnas = (long) telefonos.length * (Long.BYTES + 2 * Integer.BYTES) + (long) libres.length * Integer.BYTES;
+        long claves = (long) claveFilas.length * 2 * Integer.BYTES;
+        long listado = orden == null ? 0 : (long) orden.length * Integer.BYTES;
+        return columnas + claves + listado + porTelefono.bytesUsados() + arena.bytesUsados();
+    }
+
+    /**
+     * Codifica un teléfono de 7 a 15 dígitos, o devuelve 0 si el texto no lo es.
+     */
+    static long codificarTelefono(String telefono) {
+        int largo = telefono.length();
+        if (largo < 7 || largo > 15) return 0;
+        long valor = 0;
+        for (int i = 0; i < largo; i++) {
+            char d = telefono.charAt(i);
+            if (d < '0' || d > '9') return 0;
+            valor = valor * 10 + (d - '0');
+        }
+        return (long) largo << BITS_VALOR | valor;
+    }
+
+    static String decodificarTelefono(long codigo) {
+        int largo = (int) (codigo >>> BITS_VALOR);
+        long valor = codigo & MASCARA_VALOR;
+        char[] digitos = new char[largo];
+        for (int i = largo - 1; i >= 0; i--) {
+            digitos[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return new String(digitos);
+    }
+
+    private Contacto vista(int fila) {
+        return new Contacto(arena.texto(nombres[fila]), arena.texto(apellidos[fila]),
+                decodificarTelefono(telefonos[fila]));
+    }
+
+    private void cambio() {
+        orden = null;
+        modificaciones++;
+    }
+
+    /**
+     * Casilla del índice con esa clave (bytes UTF-8 de "nombre\0apellido"
+     * normalizados), o -1.
+     */
+    private int buscarCasilla(byte[] clave) {
+        int separador = 0;
+        while (separador < clave.length && clave[separador] != 0) separador++;
+        if (separador == clave.length) return -1;
+
+        int h = ArenaTextos.hash(clave, 0, clave.length);
+        int mascara = claveFilas.length - 1;
+        for (int i = h & mascara; claveFilas[i] != 0; i = (i + 1) & mascara) {
+            if (claveHashes[i] != h) continue;
+            int fila = claveFilas[i] - 1;
+            if (arena.normalizadoIgual(nombres[fila], clave, 0, separador)
+                    && arena.normalizadoIgual(apellidos[fila], clave, separador + 1, clave.length - separador - 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Hash de la clave de una fila, igual al de sus bytes UTF-8 */
+    private int hashClave(int fila) {
+        return arena.hashNormalizado(31 * arena.hashNormalizado(0, nombres[fila]), apellidos[fila]);
+    }
+
+    /** Borrado con desplazamiento hacia atrás, como en {@link TablaLongInt} */
+    private void quitarClave(int casilla) {
+        int mascara = claveFilas.length - 1;
+        int hueco = casilla;
+        for (int j = (casilla + 1) & mascara; claveFilas[j] != 0; j = (j + 1) & mascara) {
+            int ideal = claveHashes[j] & mascara;
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claveFilas[hueco] = claveFilas[j];
+                claveHashes[hueco] = claveHashes[j];
+                hueco = j;
+            }
+        }
+        claveFilas[hueco] = 0;
+    }
+
+    private void redimensionarClaves(int casillas) {
+        int[] viejasFilas = claveFilas, viejosHashes = claveHashes;
+        claveFilas = new int[casillas];
+        claveHashes = new int[casillas];
+        for (int j = 0; j < viejasFilas.length; j++) {
+            if (viejasFilas[j] == 0) continue;
+            int i = viejosHashes[j] & (casillas - 1);
+            while (claveFilas[i] != 0) i = (i + 1) & (casillas - 1);
+            claveFilas[i] = viejasFilas[j];
+            claveHashes[i] = viejosHashes[j];
+        }
+    }
+
+    private void crecer() {
+        int capacidad = telefonos.length * 2;
+        telefonos = Arrays.copyOf(telefonos, capacidad);
+        nombres = Arrays.copyOf(nombres, capacidad);
+        apellidos = Arrays.copyOf(apellidos, capacidad);
+    }
+
+    /**
+     * Filas vivas en el orden de {@link Agenda#ORDEN}. Cada texto distinto se pliega
+     * una sola vez y recibe un rango; después se ordenan las filas comparando sólo
+     * enteros: (rango del nombre, rango del apellido) y el teléfono.
+     */
+    private int[] orden() {
+        if (orden != null) return orden;
+
+        // Rango de cada texto según su forma plegada, con empates para las iguales
+        TablaLongInt indiceTexto = new TablaLongInt(tamano);
+        List<String> plegados = new ArrayList<>();
+        List<Integer> posiciones = new ArrayList<>();
+        for (int f = 0; f < filas; f++) {
+            if (telefonos[f] == 0) continue;
+            for (int pos : new int[]{nombres[f], apellidos[f]}) {
+                if (indiceTexto.obtener(pos + 1L) == TablaLongInt.AUSENTE) {
+                    indiceTexto.poner(pos + 1L, plegados.size());
+                    plegados.add(plegar(arena.texto(pos)));
+                    posiciones.add(pos);
+                }
+            }
+        }
+        Integer[] porTexto = new Integer[plegados.size()];
+        for (int i = 0; i < porTexto.length; i++) porTexto[i] = i;
+        Arrays.sort(porTexto, (a, b) -> plegados.get(a).compareTo(plegados.get(b)));
+        int[] rango = new int[porTexto.length];
+        for (int i = 0, r = 0; i < porTexto.length; i++) {
+            if (i > 0 && !plegados.get(porTexto[i]).equals(plegados.get(porTexto[i - 1]))) r++;
+            rango[porTexto[i]] = r;
+        }
+
+        int[] vivas = new int[tamano];
+        long[] primario = new long[filas];
+        long[] secundario = new long[filas];
+        for (int f = 0, k = 0; f < filas; f++) {
+            if (telefonos[f] == 0) continue;
+            vivas[k++] = f;
+            primario[f] = (long) rango[indiceTexto.obtener(nombres[f] + 1L)] << 32
+                    | rango[indiceTexto.obtener(apellidos[f] + 1L)];
+            secundario[f] = ordenTelefono(telefonos[f]);
+        }
+        ordenarFilas(vivas, new int[vivas.length], 0, vivas.length, primario, secundario);
+        orden = vivas;
+        return orden;
+    }
+
+    /**
+     * Clave numérica que ordena los teléfonos igual que comparar sus textos: los dígitos
+     * alineados a la izquierda y, si uno es prefijo del otro, primero el más corto.
+     */
+    static long ordenTelefono(long codigo) {
+        int largo = (int) (codigo >>> BITS_VALOR);
+        return (codigo & MASCARA_VALOR) * POTENCIAS[15 - largo] << 4 | largo;
+    }
+
+    /** Ordenación por mezcla de las filas según las claves precalculadas */
+    private static void ordenarFilas(int[] a, int[] aux, int desde, int hasta, long[] primario, long[] secundario) {
+        if (hasta - desde < 2) return;
+        int medio = (desde + hasta) >>> 1;
+        ordenarFilas(a, aux, desde, medio, primario, secundario);
+        ordenarFilas(a, aux, medio, hasta, primario, secundario);
+        if (comparar(a[medio - 1], a[medio], primario, secundario) <= 0) return;
+        System.arraycopy(a, desde, aux, desde, hasta - desde);
+        for (int i = desde, j = medio, k = desde; k < hasta; k++) {
+            if (j >= hasta || (i < medio && comparar(aux[i], aux[j], primario, secundario) <= 0)) a[k] = aux[i++];
+            else a[k] = aux[j++];
+        }
+    }
+
+    private static int comparar(int x, int y, long[] primario, long[] secundario) {
+        int c = Long.compare(primario[x], primario[y]);
+        return c != 0 ? c : Long.compare(secundario[x], secundario[y]);
+    }
+
+    /** La misma conversión que usa {@link Contacto#getClaveOrden} para cada carácter */
+    static String plegar(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); ) {
+            int cp = texto.codePointAt(i);
+            sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package agendaTelefonica.servicio;
+
+import java.util.List;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Motor de almacenamiento de {@link Agenda}: guarda los contactos, los indexa por
+ * nombre+apellido y por teléfono y los recorre en el orden de {@link Agenda#ORDEN}.
+ *
+ * Las reglas (capacidad, duplicados, validación) son de la agenda; el almacén sólo
+ * guarda lo que se le pide. Las claves son las de {@link TriePrefijos#clave} sobre
+ * nombre y apellido normalizados.
+ *
+ * Un almacén puede devolver vistas construidas al vuelo en lugar de los objetos que
+ * recibió: dos llamadas pueden devolver instancias distintas del mismo contacto.
+ */
+interface AlmacenContactos extends Iterable<Contacto> {
+
+    int tamano();
+
+    boolean contieneClave(String clave);
+
+    boolean contieneTelefono(String telefono);
+
+    /** Contacto con esa clave nombre+apellido, o null */
+    Contacto porClave(String clave);
+
+    /** Contacto con ese teléfono, o null */
+    Contacto porTelefono(String telefono);
+
+    /** Guarda un contacto cuya clave y teléfono no están en el almacén */
+    void anadir(String clave, Contacto c);
+
+    /**
+     * Guarda de una vez {@code cantidad} contactos ya comprobados (sin duplicados entre
+     * sí ni con el almacén), cada uno con su clave en la misma posición de {@code claves}.
+     *
+     * @return true si el almacén se reconstruyó entero, en cuyo caso los índices de
+     * búsqueda de la agenda deben descartarse en lugar de actualizarse
+     */
+    boolean anadirTodos(String[] claves, Contacto[] nuevos, int cantidad);
+
+    /** Quita el contacto con esa clave y lo devuelve, o null si no estaba */
+    Contacto eliminar(String clave);
+
+    /**
+     * Asigna un teléfono que no está en el almacén al contacto con esa clave.
+     *
+     * @return el contacto con el número nuevo
+     */
+    Contacto cambiarTelefono(String clave, String telefono);
+
+    /** Como mucho {@code limite} contactos del listado ordenado a partir de {@code desde} */
+    List<Contacto> pagina(int desde, int limite);
+
+    /**
+     * Árbol persistente con los contactos actuales, si el almacén guarda así su orden y
+     * nunca modifica los contactos guardados; null si no. Las instantáneas de la agenda
+     * lo comparten en lugar de mantener uno propio.
+     */
+    default ArbolContactos arbol() {
+        return null;
+    }
+
+    /**
+     * Ajusta la memoria reservada para {@code capacidad} contactos, sin bajar de lo que
+     * ya está en uso. Los almacenes que no reservan por adelantado lo ignoran.
+     */
+    default void redimensionar(int capacidad) {
+    }
+
+    /** Libera la memoria que el recolector no gestiona; después el almacén no se usa más */
+    default void cerrar() {
+    }
+}
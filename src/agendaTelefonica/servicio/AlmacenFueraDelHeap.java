@@ -0,0 +1,544 @@
+package agendaTelefonica.servicio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Almacén para directorios de decenas de millones de contactos que deja todos los
+ * datos fuera del heap, en {@link MemoriaDirecta}: el recolector sólo ve unos pocos
+ * objetos, así que sus pausas no crecen con la cantidad de contactos.
+ *
+ * Regiones:
+ * <ul>
+ *   <li>filas: 16 bytes por contacto, {@code long teléfono | long posición del texto};
+ *       las filas libres tienen teléfono 0 y enlazan con la siguiente libre.</li>
+ *   <li>textos: una entrada por contacto con nombre y apellido en UTF-8, sus formas
+ *       normalizadas y sus formas plegadas para ordenar (UTF-16, que compara como
+ *       {@link String#compareTo}). Las bajas dejan hueco; se compacta cuando lo libre
+ *       supera la mitad.</li>
+ *   <li>índice por teléfono: casillas de 16 bytes {@code long código | int fila}.</li>
+ *   <li>índice por nombre+apellido: casillas de 8 bytes {@code int fila + 1 | int hash},
+ *       que se comparan contra las formas normalizadas de la región de textos.</li>
+ * </ul>
+ * Ambos índices usan sondeo lineal con borrado por desplazamiento hacia atrás, como
+ * {@link TablaLongInt}.
+ *
+ * Los contactos que devuelve son vistas nuevas en cada consulta. El orden del listado
+ * se calcula, también fuera del heap, al pedirlo después de un cambio. Hay que llamar
+ * a {@link #cerrar} para devolver la memoria; después cualquier operación falla.
+ */
+class AlmacenFueraDelHeap implements AlmacenContactos {
+
+    private static final int BYTES_FILA = 16;
+    private static final int BYTES_CASILLA_TELEFONO = 16;
+    private static final int BYTES_CASILLA_CLAVE = 8;
+    private static final int CABECERA_TEXTO = 6 * Integer.BYTES;
+    private static final int SIN_FILA = -1;
+
+    // Se compactan los textos cuando lo libre supera la mitad y al menos este tamaño
+    private static final long BASURA_MINIMA = 1L << 20;
+
+    private MemoriaDirecta filas;
+    private MemoriaDirecta textos;
+    private MemoriaDirecta indiceTelefonos;
+    private MemoriaDirecta indiceClaves;
+
+    private int filasUsadas;
+    private int primeraLibre = SIN_FILA;
+    private int tamano;
+    private long bytesTextos;
+    private long basuraTextos;
+    private int casillasTelefono;
+    private int casillasClave;
+
+    // Orden del listado (int por posición); null si hay que recalcularlo
+    private MemoriaDirecta orden;
+    private int modificaciones;
+
+    // Búferes de trabajo para comparar textos sin reservar en cada consulta
+    private byte[] auxiliarA = new byte[256];
+    private byte[] auxiliarB = new byte[256];
+
+    AlmacenFueraDelHeap(int capacidadInicial) {
+        int capacidad = Math.max(16, capacidadInicial);
+        filas = new MemoriaDirecta((long) capacidad * BYTES_FILA);
+        textos = new MemoriaDirecta((long) capacidad * 64);
+        casillasTelefono = casillasPara(capacidad);
+        casillasClave = casillasTelefono;
+        indiceTelefonos = new MemoriaDirecta((long) casillasTelefono * BYTES_CASILLA_TELEFONO);
+        indiceClaves = new MemoriaDirecta((long) casillasClave * BYTES_CASILLA_CLAVE);
+    }
+
+    @Override
+    public int tamano() {
+        comprobarAbierto();
+        return tamano;
+    }
+
+    @Override
+    public boolean contieneClave(String clave) {
+        comprobarAbierto();
+        return buscarCasillaClave(clave.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    @Override
+    public boolean contieneTelefono(String telefono) {
+        comprobarAbierto();
+        long codigo = AlmacenColumnar.codificarTelefono(telefono);
+        return codigo != 0 && buscarCasillaTelefono(codigo) >= 0;
+    }
+
+    @Override
+    public Contacto porClave(String clave) {
+        comprobarAbierto();
+        int casilla = buscarCasillaClave(clave.getBytes(StandardCharsets.UTF_8));
+        return casilla < 0 ? null : vista(filaDeClave(casilla));
+    }
+
+    @Override
+    public Contacto porTelefono(String telefono) {
+        comprobarAbierto();
+        long codigo = AlmacenColumnar.codificarTelefono(telefono);
+        int casilla = codigo == 0 ? -1 : buscarCasillaTelefono(codigo);
+        return casilla < 0 ? null : vista(indiceTelefonos.leerInt((long) casilla * BYTES_CASILLA_TELEFONO + 8));
+    }
+
+    @Override
+    public void anadir(String clave, Contacto c) {
+        comprobarAbierto();
+        int fila;
+        if (primeraLibre != SIN_FILA) {
+            fila = primeraLibre;
+            primeraLibre = (int) filas.leerLong((long) fila * BYTES_FILA + 8);
+        } else {
+            fila = filasUsadas++;
+            filas.asegurar((long) filasUsadas * BYTES_FILA);
+        }
+        long codigo = AlmacenColumnar.codificarTelefono(c.getTelefono());
+        filas.escribirLong((long) fila * BYTES_FILA, codigo);
+        filas.escribirLong((long) fila * BYTES_FILA + 8, escribirTexto(c));
+
+        if ((tamano + 1) * 2L > casillasTelefono) redimensionarIndices(casillasPara(tamano + 1));
+        ponerTelefono(codigo, fila);
+        byte[] bytesClave = clave.getBytes(StandardCharsets.UTF_8);
+        ponerClave(ArenaTextos.hash(bytesClave, 0, bytesClave.length), fila);
+        tamano++;
+        cambio();
+    }
+
+    @Override
+    public boolean anadirTodos(String[] claves, Contacto[] nuevos, int cantidad) {
+        for (int i = 0; i < cantidad; i++) anadir(claves[i], nuevos[i]);
+        return false;
+    }
+
+    @Override
+    public Contacto eliminar(String clave) {
+        comprobarAbierto();
+        int casilla = buscarCasillaClave(clave.getBytes(StandardCharsets.UTF_8));
+        if (casilla < 0) return null;
+        int fila = filaDeClave(casilla);
+        Contacto actual = vista(fila);
+
+        long posFila = (long) fila * BYTES_FILA;
+        long texto = filas.leerLong(posFila + 8);
+        quitarCasilla(indiceClaves, casillasClave, BYTES_CASILLA_CLAVE, casilla);
+        quitarCasilla(indiceTelefonos, casillasTelefono, BYTES_CASILLA_TELEFONO,
+                buscarCasillaTelefono(filas.leerLong(posFila)));
+        basuraTextos += finTexto(texto) - texto;
+        filas.escribirLong(posFila, 0);
+        filas.escribirLong(posFila + 8, primeraLibre);
+        primeraLibre = fila;
+        tamano--;
+        cambio();
+
+        if (basuraTextos > BASURA_MINIMA && basuraTextos * 2 > bytesTextos) compactarTextos();
+        return actual;
+    }
+
+    @Override
+    public Contacto cambiarTelefono(String clave, String telefono) {
+        comprobarAbierto();
+        int fila = filaDeClave(buscarCasillaClave(clave.getBytes(StandardCharsets.UTF_8)));
+        long posFila = (long) fila * BYTES_FILA;
+        quitarCasilla(indiceTelefonos, casillasTelefono, BYTES_CASILLA_TELEFONO,
+                buscarCasillaTelefono(filas.leerLong(posFila)));
+        long codigo = AlmacenColumnar.codificarTelefono(telefono);
+        filas.escribirLong(posFila, codigo);
+        ponerTelefono(codigo, fila);
+        cambio();
+        return vista(fila);
+    }
+
+    @Override
+    public List<Contacto> pagina(int desde, int limite) {
+        comprobarAbierto();
+        MemoriaDirecta ordenadas = orden();
+        int inicio = Math.max(0, Math.min(desde, tamano));
+        int fin = (int) Math.min(tamano, (long) inicio + Math.max(0, limite));
+        List<Contacto> resultado = new ArrayList<>(fin - inicio);
+        for (int i = inicio; i < fin; i++) resultado.add(vista(ordenadas.leerInt((long) i * Integer.BYTES)));
+        return resultado;
+    }
+
+    /** Recorre el listado ordenado; falla si el almacén cambia durante el recorrido */
+    @Override
+    public Iterator<Contacto> iterator() {
+        comprobarAbierto();
+        MemoriaDirecta ordenadas = orden();
+        int total = tamano;
+        int esperadas = modificaciones;
+        return new Iterator<>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < total;
+            }
+
+            @Override
+            public Contacto next() {
+                comprobarAbierto();
+                if (modificaciones != esperadas) throw new ConcurrentModificationException();
+                if (i >= total) throw new NoSuchElementException();
+                return vista(ordenadas.leerInt((long) i++ * Integer.BYTES));
+            }
+        };
+    }
+
+    /**
+     * Prepara las regiones para {@code capacidad} contactos: amplía o reduce los
+     * índices y la región de filas (nunca por debajo de lo que ya está en uso).
+     */
+    @Override
+    public void redimensionar(int capacidad) {
+        comprobarAbierto();
+        int objetivo = Math.max(capacidad, tamano);
+        int casillas = casillasPara(objetivo);
+        if (casillas != casillasTelefono) redimensionarIndices(casillas);
+        long bytesFilas = (long) Math.max(objetivo, filasUsadas) * BYTES_FILA;
+        if (bytesFilas > filas.capacidad()) filas.asegurar(bytesFilas);
+        else filas.recortar(bytesFilas);
+    }
+
+    @Override
+    public void cerrar() {
+        if (filas == null) return;
+        filas.close();
+        textos.close();
+        indiceTelefonos.close();
+        indiceClaves.close();
+        if (orden != null) orden.close();
+        filas = textos = indiceTelefonos = indiceClaves = orden = null;
+    }
+
+    /** Bytes reservados fuera del heap por todas las regiones */
+    long bytesReservados() {
+        comprobarAbierto();
+        return filas.capacidad() + textos.capacidad() + indiceTelefonos.capacidad()
+                + indiceClaves.capacidad() + (orden == null ? 0 : orden.capacidad());
+    }
+
+    private void comprobarAbierto() {
+        if (filas == null) throw new IllegalStateException("El almacén está cerrado");
+    }
+
+    private void cambio() {
+        if (orden != null) orden.close();
+        orden = null;
+        modificaciones++;
+    }
+
+    // ---- Textos ----
+
+    /** Escribe la entrada de texto del contacto y devuelve su posición */
+    private long escribirTexto(Contacto c) {
+        byte[][] partes = {
+                c.getNombre().getBytes(StandardCharsets.UTF_8),
+                c.getApellido().getBytes(StandardCharsets.UTF_8),
+                c.getNombreNormalizado().getBytes(StandardCharsets.UTF_8),
+                c.getApellidoNormalizado().getBytes(StandardCharsets.UTF_8),
+                AlmacenColumnar.plegar(c.getNombre()).getBytes(StandardCharsets.UTF_16BE),
+                AlmacenColumnar.plegar(c.getApellido()).getBytes(StandardCharsets.UTF_16BE)
+        };
+        long pos = bytesTextos;
+        long p = pos + CABECERA_TEXTO;
+        for (byte[] parte : partes) p += parte.length;
+        long fin = (p + 3) & ~3L;
+        textos.asegurar(fin);
+
+        p = pos;
+        for (byte[] parte : partes) {
+            textos.escribirInt(p, parte.length);
+            p += Integer.BYTES;
+        }
+        for (byte[] parte : partes) {
+            textos.escribir(p, parte, 0, parte.length);
+            p += parte.length;
+        }
+        bytesTextos = fin;
+        return pos;
+    }
+
+    /** Posición (alineada) siguiente al final de la entrada */
+    private long finTexto(long pos) {
+        long p = pos + CABECERA_TEXTO;
+        for (int i = 0; i < 6; i++) p += textos.leerInt(pos + (long) i * Integer.BYTES);
+        return (p + 3) & ~3L;
+    }
+
+    /** Posición del campo {@code campo} (0..5) dentro de la entrada */
+    private long inicioCampo(long pos, int campo) {
+        long p = pos + CABECERA_TEXTO;
+        for (int i = 0; i < campo; i++) p += textos.leerInt(pos + (long) i * Integer.BYTES);
+        return p;
+    }
+
+    private int largoCampo(long pos, int campo) {
+        return textos.leerInt(pos + (long) campo * Integer.BYTES);
+    }
+
+    private String campoTexto(long pos, int campo) {
+        int largo = largoCampo(pos, campo);
+        byte[] b = new byte[largo];
+        textos.leer(inicioCampo(pos, campo), b, 0, largo);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Copia las entradas vivas a una región nueva, en el orden de las filas */
+    private void compactarTextos() {
+        MemoriaDirecta nueva = new MemoriaDirecta(Math.max(1024, (bytesTextos - basuraTextos) * 3 / 2));
+        long destino = 0;
+        byte[] copia = new byte[1024];
+        for (int f = 0; f < filasUsadas; f++) {
+            long posFila = (long) f * BYTES_FILA;
+            if (filas.leerLong(posFila) == 0) continue;
+            long origen = filas.leerLong(posFila + 8);
+            int largo = (int) (finTexto(origen) - origen);
+            if (copia.length < largo) copia = new byte[largo];
+            textos.leer(origen, copia, 0, largo);
+            nueva.escribir(destino, copia, 0, largo);
+            filas.escribirLong(posFila + 8, destino);
+            destino += largo;
+        }
+        textos.close();
+        textos = nueva;
+        bytesTextos = destino;
+        basuraTextos = 0;
+    }
+
+    private Contacto vista(int fila) {
+        long posFila = (long) fila * BYTES_FILA;
+        long texto = filas.leerLong(posFila + 8);
+        return new Contacto(campoTexto(texto, 0), campoTexto(texto, 1),
+                AlmacenColumnar.decodificarTelefono(filas.leerLong(posFila)));
+    }
+
+    // ---- Índices ----
+
+    private static int casillasPara(int cantidad) {
+        return Integer.highestOneBit(Math.max(8, cantidad) * 2 - 1) * 2;
+    }
+
+    private static int casillaInicial(long codigo, int casillas) {
+        long h = codigo;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & (casillas - 1);
+    }
+
+    private int buscarCasillaTelefono(long codigo) {
+        int mascara = casillasTelefono - 1;
+        for (int i = casillaInicial(codigo, casillasTelefono); ; i = (i + 1) & mascara) {
+            long k = indiceTelefonos.leerLong((long) i * BYTES_CASILLA_TELEFONO);
+            if (k == codigo) return i;
+            if (k == 0) return -1;
+        }
+    }
+
+    private void ponerTelefono(long codigo, int fila) {
+        int mascara = casillasTelefono - 1;
+        int i = casillaInicial(codigo, casillasTelefono);
+        while (indiceTelefonos.leerLong((long) i * BYTES_CASILLA_TELEFONO) != 0) i = (i + 1) & mascara;
+        indiceTelefonos.escribirLong((long) i * BYTES_CASILLA_TELEFONO, codigo);
+        indiceTelefonos.escribirInt((long) i * BYTES_CASILLA_TELEFONO + 8, fila);
+    }
+
+    private void ponerClave(int hash, int fila) {
+        int mascara = casillasClave - 1;
+        int i = hash & mascara;
+        while (indiceClaves.leerInt((long) i * BYTES_CASILLA_CLAVE) != 0) i = (i + 1) & mascara;
+        indiceClaves.escribirInt((long) i * BYTES_CASILLA_CLAVE, fila + 1);
+        indiceClaves.escribirInt((long) i * BYTES_CASILLA_CLAVE + 4, hash);
+    }
+
+    private int filaDeClave(int casilla) {
+        return indiceClaves.leerInt((long) casilla * BYTES_CASILLA_CLAVE) - 1;
+    }
+
+    /**
+     * Casilla del índice con esa clave (bytes UTF-8 de "nombre\0apellido"
+     * normalizados), o -1.
+     */
+    private int buscarCasillaClave(byte[] clave) {
+        int separador = 0;
+        while (separador < clave.length && clave[separador] != 0) separador++;
+        if (separador == clave.length) return -1;
+        int largoApellido = clave.length - separador - 1;
+
+        int h = ArenaTextos.hash(clave, 0, clave.length);
+        int mascara = casillasClave - 1;
+        for (int i = h & mascara; ; i = (i + 1) & mascara) {
+            long pos = (long) i * BYTES_CASILLA_CLAVE;
+            int filaMasUno = indiceClaves.leerInt(pos);
+            if (filaMasUno == 0) return -1;
+            if (indiceClaves.leerInt(pos + 4) != h) continue;
+            long texto = filas.leerLong((long) (filaMasUno - 1) * BYTES_FILA + 8);
+            if (campoIgual(texto, 2, clave, 0, separador) && campoIgual(texto, 3, clave, separador + 1, largoApellido)) {
+                return i;
+            }
+        }
+    }
+
+    private boolean campoIgual(long texto, int campo, byte[] otro, int desde, int largo) {
+        if (largoCampo(texto, campo) != largo) return false;
+        if (auxiliarA.length < largo) auxiliarA = new byte[largo];
+        textos.leer(inicioCampo(texto, campo), auxiliarA, 0, largo);
+        return Arrays.equals(auxiliarA, 0, largo, otro, desde, desde + largo);
+    }
+
+    /** Borrado con desplazamiento hacia atrás en cualquiera de los dos índices */
+    private void quitarCasilla(MemoriaDirecta indice, int casillas, int bytesCasilla, int casilla) {
+        int mascara = casillas - 1;
+        boolean telefonosIndice = indice == indiceTelefonos;
+        int hueco = casilla;
+        for (int j = (casilla + 1) & mascara; ; j = (j + 1) & mascara) {
+            long pos = (long) j * bytesCasilla;
+            int ideal;
+            if (telefonosIndice) {
+                long k = indice.leerLong(pos);
+                if (k == 0) break;
+                ideal = casillaInicial(k, casillas);
+            } else {
+                if (indice.leerInt(pos) == 0) break;
+                ideal = indice.leerInt(pos + 4) & mascara;
+            }
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                long destino = (long) hueco * bytesCasilla;
+                indice.escribirLong(destino, indice.leerLong(pos));
+                if (bytesCasilla > 8) indice.escribirLong(destino + 8, indice.leerLong(pos + 8));
+                hueco = j;
+            }
+        }
+        indice.escribirLong((long) hueco * bytesCasilla, 0);
+        if (bytesCasilla > 8) indice.escribirLong((long) hueco * bytesCasilla + 8, 0);
+    }
+
+    /** Reconstruye los dos índices con otro número de casillas */
+    private void redimensionarIndices(int casillas) {
+        MemoriaDirecta telefonosViejos = indiceTelefonos, clavesViejas = indiceClaves;
+        int casillasViejas = casillasTelefono;
+        indiceTelefonos = new MemoriaDirecta((long) casillas * BYTES_CASILLA_TELEFONO);
+        indiceClaves = new MemoriaDirecta((long) casillas * BYTES_CASILLA_CLAVE);
+        casillasTelefono = casillasClave = casillas;
+        for (int i = 0; i < casillasViejas; i++) {
+            long codigo = telefonosViejos.leerLong((long) i * BYTES_CASILLA_TELEFONO);
+            if (codigo != 0) ponerTelefono(codigo, telefonosViejos.leerInt((long) i * BYTES_CASILLA_TELEFONO + 8));
+            int filaMasUno = clavesViejas.leerInt((long) i * BYTES_CASILLA_CLAVE);
+            if (filaMasUno != 0) ponerClave(clavesViejas.leerInt((long) i * BYTES_CASILLA_CLAVE + 4), filaMasUno - 1);
+        }
+        telefonosViejos.close();
+        clavesViejas.close();
+    }
+
+    // ---- Orden del listado ----
+
+    /**
+     * Filas vivas en el orden de {@link Agenda#ORDEN}, ordenadas por mezcla fuera del
+     * heap. Los primeros 8 bytes del nombre plegado resuelven casi todas las
+     * comparaciones sin leer los textos completos.
+     */
+    private MemoriaDirecta orden() {
+        if (orden != null) return orden;
+        MemoriaDirecta a = new MemoriaDirecta(Math.max(1, (long) tamano * Integer.BYTES));
+        MemoriaDirecta b = new MemoriaDirecta(Math.max(1, (long) tamano * Integer.BYTES));
+        MemoriaDirecta prefijos = new MemoriaDirecta(Math.max(1, (long) filasUsadas * Long.BYTES));
+        try {
+            int k = 0;
+            for (int f = 0; f < filasUsadas; f++) {
+                long posFila = (long) f * BYTES_FILA;
+                if (filas.leerLong(posFila) == 0) continue;
+                a.escribirInt((long) k++ * Integer.BYTES, f);
+                prefijos.escribirLong((long) f * Long.BYTES, prefijo(filas.leerLong(posFila + 8)));
+            }
+
+            // Mezclas ascendentes alternando entre las dos regiones
+            for (int ancho = 1; ancho < tamano; ancho *= 2) {
+                for (int desde = 0; desde < tamano; desde += 2 * ancho) {
+                    int medio = Math.min(desde + ancho, tamano), hasta = Math.min(desde + 2 * ancho, tamano);
+                    int i = desde, j = medio;
+                    for (int d = desde; d < hasta; d++) {
+                        int fi = i < medio ? a.leerInt((long) i * Integer.BYTES) : 0;
+                        int fj = j < hasta ? a.leerInt((long) j * Integer.BYTES) : 0;
+                        if (j >= hasta || (i < medio && comparar(fi, fj, prefijos) <= 0)) {
+                            b.escribirInt((long) d * Integer.BYTES, fi);
+                            i++;
+                        } else {
+                            b.escribirInt((long) d * Integer.BYTES, fj);
+                            j++;
+                        }
+                    }
+                }
+                MemoriaDirecta t = a;
+                a = b;
+                b = t;
+            }
+            orden = a;
+            a = null;
+            return orden;
+        } finally {
+            if (a != null) a.close();
+            b.close();
+            prefijos.close();
+        }
+    }
+
+    /** Primeros 8 bytes del nombre plegado, completados con ceros */
+    private long prefijo(long texto) {
+        int largo = Math.min(8, largoCampo(texto, 4));
+        textos.leer(inicioCampo(texto, 4), auxiliarA, 0, largo);
+        long p = 0;
+        for (int i = 0; i < 8; i++) p = p << 8 | (i < largo ? auxiliarA[i] & 0xff : 0);
+        return p;
+    }
+
+    private int comparar(int filaA, int filaB, MemoriaDirecta prefijos) {
+        int c = Long.compareUnsigned(prefijos.leerLong((long) filaA * Long.BYTES), prefijos.leerLong((long) filaB * Long.BYTES));
+        if (c != 0) return c;
+        long textoA = filas.leerLong((long) filaA * BYTES_FILA + 8);
+        long textoB = filas.leerLong((long) filaB * BYTES_FILA + 8);
+        c = compararCampo(textoA, textoB, 4);
+        if (c == 0) c = compararCampo(textoA, textoB, 5);
+        if (c != 0) return c;
+        return Long.compare(AlmacenColumnar.ordenTelefono(filas.leerLong((long) filaA * BYTES_FILA)),
+                AlmacenColumnar.ordenTelefono(filas.leerLong((long) filaB * BYTES_FILA)));
+    }
+
+    /** Compara byte a byte sin signo (UTF-16BE ordena igual que String.compareTo) */
+    private int compararCampo(long textoA, long textoB, int campo) {
+        int largoA = largoCampo(textoA, campo), largoB = largoCampo(textoB, campo);
+        if (auxiliarA.length < largoA) auxiliarA = new byte[largoA];
+        if (auxiliarB.length < largoB) auxiliarB = new byte[largoB];
+        textos.leer(inicioCampo(textoA, campo), auxiliarA, 0, largoA);
+        textos.leer(inicioCampo(textoB, campo), auxiliarB, 0, largoB);
+        return Arrays.compareUnsigned(auxiliarA, 0, largoA, auxiliarB, 0, largoB);
+    }
+}
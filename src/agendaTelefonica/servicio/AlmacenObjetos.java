@@ -0,0 +1,165 @@
+package agendaTelefonica.servicio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Almacén por defecto: guarda los propios objetos {@link Contacto} en un
+ * {@link ArbolContactos} en el orden del listado, con dos HashMap como índices por
+ * nombre+apellido y por teléfono.
+ *
+ * Los contactos guardados no se modifican: cambiar un teléfono sustituye el contacto
+ * por uno nuevo, así que las instantáneas de la agenda comparten el árbol tal cual.
+ * La agenda le entrega copias propias de los contactos y nunca saca los guardados.
+ */
+class AlmacenObjetos implements AlmacenContactos {
+
+    // Un alta en bloque se fusiona con los existentes si aporta al menos 1/4 del almacén
+    private static final int FUSION_MINIMA = 4;
+
+    // Contactos registrados, en el orden del listado
+    private ArbolContactos contactos = ArbolContactos.VACIO;
+
+    // Índice secundario: clave normalizada nombre+apellido -> contacto
+    private Map<String, Contacto> porNombreApellido = new HashMap<>();
+
+    // Índice secundario: teléfono -> contacto
+    private Map<String, Contacto> porTelefono = new HashMap<>();
+
+    @Override
+    public int tamano() {
+        return contactos.tamano();
+    }
+
+    @Override
+    public boolean contieneClave(String clave) {
+        return porNombreApellido.containsKey(clave);
+    }
+
+    @Override
+    public boolean contieneTelefono(String telefono) {
+        return porTelefono.containsKey(telefono);
+    }
+
+    @Override
+    public Contacto porClave(String clave) {
+        return porNombreApellido.get(clave);
+    }
+
+    @Override
+    public Contacto porTelefono(String telefono) {
+        return porTelefono.get(telefono);
+    }
+
+    @Override
+    public void anadir(String clave, Contacto c) {
+        contactos = contactos.anadir(c);
+        porNombreApellido.put(clave, c);
+        porTelefono.put(c.getTelefono(), c);
+    }
+
+    /**
+     * Si el bloque es grande respecto al almacén, los nuevos se ordenan en paralelo y
+     * se fusionan con los existentes en un solo recorrido, y el árbol se construye de
+     * nuevo, ya equilibrado, a partir de la fusión en O(N); si no, se insertan uno a uno.
+     */
+    @Override
+    public boolean anadirTodos(String[] claves, Contacto[] nuevos, int cantidad) {
+        if (contactos.tamano() == 0) {
+            // Carga inicial: índices con sitio para todo el bloque, sin redimensionarse
+            porNombreApellido = new HashMap<>(Agenda.capacidadHash(cantidad));
+            porTelefono = new HashMap<>(Agenda.capacidadHash(cantidad));
+        }
+        for (int i = 0; i < cantidad; i++) {
+            Contacto c = nuevos[i];
+            porNombreApellido.put(claves[i], c);
+            porTelefono.put(c.getTelefono(), c);
+        }
+
+        if (cantidad < contactos.tamano() / FUSION_MINIMA) {
+            for (int i = 0; i < cantidad; i++) contactos = contactos.anadir(nuevos[i]);
+            return false;
+        }
+
+        Contacto[] nuevosOrdenados = Arrays.copyOf(nuevos, cantidad);
+        Arrays.parallelSort(nuevosOrdenados, Agenda.ORDEN);
+        Contacto[] fusion = fusionar(contactos, nuevosOrdenados);
+        contactos = ArbolContactos.deOrdenados(fusion, fusion.length);
+        return true;
+    }
+
+    @Override
+    public Contacto eliminar(String clave) {
+        Contacto actual = porNombreApellido.remove(clave);
+        if (actual == null) return null;
+        porTelefono.remove(actual.getTelefono());
+        contactos = contactos.eliminar(actual.getClaveOrden(), actual.getTelefono());
+        return actual;
+    }
+
+    @Override
+    public Contacto cambiarTelefono(String clave, String telefono) {
+        // Una copia con el número nuevo sustituye al contacto en los índices y en el árbol
+        // (el teléfono también desempata el orden)
+        Contacto actual = porNombreApellido.get(clave);
+        Contacto nuevo = new Contacto(actual);
+        nuevo.setTelefono(telefono);
+        porTelefono.remove(actual.getTelefono());
+        contactos = contactos.eliminar(actual.getClaveOrden(), actual.getTelefono()).anadir(nuevo);
+        porNombreApellido.put(clave, nuevo);
+        porTelefono.put(telefono, nuevo);
+        return nuevo;
+    }
+
+    /**
+     * El árbol baja hasta la posición {@code desde} por los tamaños de los subárboles y
+     * recorre desde ahí: O(log N + k), sin copiar el resto del listado.
+     */
+    @Override
+    public List<Contacto> pagina(int desde, int limite) {
+        int inicio = Math.max(0, Math.min(desde, contactos.tamano()));
+        int fin = (int) Math.min(contactos.tamano(), (long) inicio + Math.max(0, limite));
+        List<Contacto> pagina = new ArrayList<>(fin - inicio);
+        Iterator<Contacto> it = contactos.iterador(inicio);
+        for (int i = inicio; i < fin; i++) pagina.add(it.next());
+        return pagina;
+    }
+
+    @Override
+    public Iterator<Contacto> iterator() {
+        return contactos.iterador(0);
+    }
+
+    @Override
+    public ArbolContactos arbol() {
+        return contactos;
+    }
+
+    /** Mezcla el árbol con un arreglo ordenado según {@link Agenda#ORDEN} */
+    private static Contacto[] fusionar(ArbolContactos a, Contacto[] b) {
+        Contacto[] r = new Contacto[a.tamano() + b.length];
+        Iterator<Contacto> it = a.iterador(0);
+        Contacto siguiente = it.hasNext() ? it.next() : null;
+        int j = 0, k = 0;
+        while (siguiente != null && j < b.length) {
+            if (Agenda.ORDEN.compare(siguiente, b[j]) <= 0) {
+                r[k++] = siguiente;
+                siguiente = it.hasNext() ? it.next() : null;
+            } else {
+                r[k++] = b[j++];
+            }
+        }
+        while (siguiente != null) {
+            r[k++] = siguiente;
+            siguiente = it.hasNext() ? it.next() : null;
+        }
+        while (j < b.length) r[k++] = b[j++];
+        return r;
+    }
+}
@@ -0,0 +1,194 @@
+package agendaTelefonica.servicio;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Árbol AVL persistente con los contactos en el orden de {@link Agenda#ORDEN}, en el
+ * que cada nodo sabe cuántos contactos hay en su subárbol para llegar a una posición
+ * en O(log n).
+ *
+ * Nunca se modifica: añadir o quitar devuelve un árbol nuevo que copia sólo los nodos
+ * del camino afectado, O(log n), y comparte todos los demás con el anterior, que sigue
+ * intacto. Por eso se puede recorrer desde otro hilo mientras alguien construye las
+ * versiones siguientes. Guarda los contactos que recibe, sin copiarlos: quien se los
+ * entrega no debe modificarlos después.
+ */
+final class ArbolContactos {
+
+    static final ArbolContactos VACIO = new ArbolContactos(null);
+
+    private static final class Nodo {
+        final Contacto contacto;
+        final Nodo izq;
+        final Nodo der;
+        // Contactos en el subárbol y altura del subárbol (una hoja mide 1)
+        final int tamano;
+        final int altura;
+
+        Nodo(Contacto contacto, Nodo izq, Nodo der) {
+            this.contacto = contacto;
+            this.izq = izq;
+            this.der = der;
+            this.tamano = tamano(izq) + tamano(der) + 1;
+            this.altura = Math.max(altura(izq), altura(der)) + 1;
+        }
+    }
+
+    private final Nodo raiz;
+
+    private ArbolContactos(Nodo raiz) {
+        this.raiz = raiz;
+    }
+
+    /** Árbol equilibrado con los {@code n} primeros contactos del arreglo, que ya están en orden, en O(n) */
+    static ArbolContactos deOrdenados(Contacto[] ordenados, int n) {
+        return new ArbolContactos(construir(ordenados, 0, n));
+    }
+
+    int tamano() {
+        return tamano(raiz);
+    }
+
+    /** Contacto guardado en la posición indicada */
+    Contacto obtener(int posicion) {
+        Nodo n = raiz;
+        while (true) {
+            int izquierda = tamano(n.izq);
+            if (posicion < izquierda) {
+                n = n.izq;
+            } else if (posicion == izquierda) {
+                return n.contacto;
+            } else {
+                posicion -= izquierda + 1;
+                n = n.der;
+            }
+        }
+    }
+
+    /** Árbol con el contacto; si ya había uno igual en el orden, lo sustituye */
+    ArbolContactos anadir(Contacto c) {
+        return new ArbolContactos(anadir(raiz, c));
+    }
+
+    /** Árbol sin el contacto con esa clave de orden y ese teléfono; este mismo si no estaba */
+    ArbolContactos eliminar(String claveOrden, String telefono) {
+        Nodo nueva = eliminar(raiz, claveOrden, telefono);
+        return nueva == raiz ? this : new ArbolContactos(nueva);
+    }
+
+    /**
+     * Recorre los contactos guardados en orden a partir de la posición indicada, con una
+     * pila del alto del árbol.
+     */
+    Iterator<Contacto> iterador(int desde) {
+        return new Iterator<>() {
+            private final Nodo[] pila = new Nodo[altura(raiz)];
+            private int cima;
+
+            {
+                // Camino hasta la posición inicial, apilando los nodos que quedan por delante
+                Nodo n = raiz;
+                int i = desde;
+                while (n != null) {
+                    int izquierda = tamano(n.izq);
+                    if (i <= izquierda) {
+                        pila[cima++] = n;
+                        if (i == izquierda) break;
+                        n = n.izq;
+                    } else {
+                        i -= izquierda + 1;
+                        n = n.der;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return cima > 0;
+            }
+
+            @Override
+            public Contacto next() {
+                if (cima == 0) throw new NoSuchElementException();
+                Nodo n = pila[--cima];
+                for (Nodo m = n.der; m != null; m = m.izq) pila[cima++] = m;
+                return n.contacto;
+            }
+        };
+    }
+
+    private static Nodo construir(Contacto[] ordenados, int desde, int hasta) {
+        if (desde >= hasta) return null;
+        int medio = (desde + hasta) >>> 1;
+        return new Nodo(ordenados[medio], construir(ordenados, desde, medio), construir(ordenados, medio + 1, hasta));
+    }
+
+    private static Nodo anadir(Nodo n, Contacto c) {
+        if (n == null) return new Nodo(c, null, null);
+        int cmp = comparar(c.getClaveOrden(), c.getTelefono(), n.contacto);
+        if (cmp < 0) return equilibrar(n.contacto, anadir(n.izq, c), n.der);
+        if (cmp > 0) return equilibrar(n.contacto, n.izq, anadir(n.der, c));
+        return new Nodo(c, n.izq, n.der);
+    }
+
+    private static Nodo eliminar(Nodo n, String claveOrden, String telefono) {
+        if (n == null) return null;
+        int cmp = comparar(claveOrden, telefono, n.contacto);
+        if (cmp < 0) {
+            Nodo izq = eliminar(n.izq, claveOrden, telefono);
+            return izq == n.izq ? n : equilibrar(n.contacto, izq, n.der);
+        }
+        if (cmp > 0) {
+            Nodo der = eliminar(n.der, claveOrden, telefono);
+            return der == n.der ? n : equilibrar(n.contacto, n.izq, der);
+        }
+        if (n.izq == null) return n.der;
+        if (n.der == null) return n.izq;
+        // El sucesor ocupa el sitio del nodo quitado
+        Nodo sucesor = n.der;
+        while (sucesor.izq != null) sucesor = sucesor.izq;
+        return equilibrar(sucesor.contacto, n.izq, quitarPrimero(n.der));
+    }
+
+    private static Nodo quitarPrimero(Nodo n) {
+        if (n.izq == null) return n.der;
+        return equilibrar(n.contacto, quitarPrimero(n.izq), n.der);
+    }
+
+    /** Nodo nuevo con esos hijos, con una o dos rotaciones si sus alturas difieren en dos */
+    private static Nodo equilibrar(Contacto c, Nodo izq, Nodo der) {
+        int hi = altura(izq), hd = altura(der);
+        if (hi > hd + 1) {
+            if (altura(izq.izq) >= altura(izq.der)) {
+                return new Nodo(izq.contacto, izq.izq, new Nodo(c, izq.der, der));
+            }
+            return new Nodo(izq.der.contacto, new Nodo(izq.contacto, izq.izq, izq.der.izq),
+                    new Nodo(c, izq.der.der, der));
+        }
+        if (hd > hi + 1) {
+            if (altura(der.der) >= altura(der.izq)) {
+                return new Nodo(der.contacto, new Nodo(c, izq, der.izq), der.der);
+            }
+            return new Nodo(der.izq.contacto, new Nodo(c, izq, der.izq.izq),
+                    new Nodo(der.contacto, der.izq.der, der.der));
+        }
+        return new Nodo(c, izq, der);
+    }
+
+    /** Lo mismo que {@link Agenda#ORDEN}, sin necesitar un contacto para el primer término */
+    private static int comparar(String claveOrden, String telefono, Contacto c) {
+        int cmp = claveOrden.compareTo(c.getClaveOrden());
+        return cmp != 0 ? cmp : telefono.compareTo(c.getTelefono());
+    }
+
+    private static int tamano(Nodo n) {
+        return n == null ? 0 : n.tamano;
+    }
+
+    private static int altura(Nodo n) {
+        return n == null ? 0 : n.altura;
+    }
+}
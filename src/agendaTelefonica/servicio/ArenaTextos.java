@@ -0,0 +1,270 @@
+package agendaTelefonica.servicio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import agendaTelefonica.modelo.Normalizador;
+
+/**
+ * Textos internados en un único arreglo de bytes. Cada texto distinto se guarda una
+ * sola vez, en UTF-8 y junto a su forma normalizada, y se identifica por su posición
+ * en la arena. Un contador de referencias por texto permite saber cuándo deja de
+ * usarse; el espacio libre se recupera compactando la arena.
+ *
+ * Formato de cada entrada:
+ * {@code int referencias | varint largo | original | varint largo | normalizado}
+ */
+final class ArenaTextos {
+
+    // Se compacta cuando lo libre supera la mitad de la arena y al menos este tamaño
+    private static final int BASURA_MINIMA = 1 << 20;
+
+    private byte[] bytes = new byte[1024];
+    private int usados;
+    private int basura;
+
+    // Tabla de internado por texto original: posición + 1 (0 = casilla vacía) y su hash
+    private int[] posiciones = new int[64];
+    private int[] hashes = new int[64];
+    private int cantidad;
+
+    /**
+     * Devuelve la posición del texto, añadiéndolo si no estaba, y suma una referencia.
+     */
+    int internar(String texto) {
+        byte[] utf8 = texto.getBytes(StandardCharsets.UTF_8);
+        int h = hash(utf8, 0, utf8.length);
+        int mascara = posiciones.length - 1;
+        int i = h & mascara;
+        for (; posiciones[i] != 0; i = (i + 1) & mascara) {
+            int pos = posiciones[i] - 1;
+            if (hashes[i] == h && igualOriginal(pos, utf8)) {
+                escribirInt(pos, leerInt(pos) + 1);
+                return pos;
+            }
+        }
+
+        byte[] normalizado = Normalizador.normalizar(texto).getBytes(StandardCharsets.UTF_8);
+        int pos = usados;
+        asegurar(4 + 10 + utf8.length + normalizado.length);
+        escribirInt(pos, 1);
+        usados = escribirBloque(escribirBloque(pos + 4, utf8), normalizado);
+
+        if ((cantidad + 1) * 2 > posiciones.length) {
+            redimensionar(posiciones.length * 2);
+            i = h & (posiciones.length - 1);
+            while (posiciones[i] != 0) i = (i + 1) & (posiciones.length - 1);
+        }
+        posiciones[i] = pos + 1;
+        hashes[i] = h;
+        cantidad++;
+        return pos;
+    }
+
+    /** Resta una referencia; el texto sin referencias deja de estar internado */
+    void liberar(int pos) {
+        int referencias = leerInt(pos) - 1;
+        escribirInt(pos, referencias);
+        if (referencias > 0) return;
+
+        int inicio = pos + 4;
+        int largo = leerVarint(inicio);
+        int h = hash(bytes, inicio + tamanoVarint(largo), largo);
+        quitarDeTabla(pos, h);
+        basura += tamanoEntrada(pos) - pos;
+    }
+
+    /** Indica si conviene llamar a {@link #compactar} */
+    boolean necesitaCompactar() {
+        return basura > BASURA_MINIMA && basura * 2 > usados;
+    }
+
+    /**
+     * Copia las entradas vivas al principio de un arreglo nuevo y corrige las
+     * posiciones guardadas en las columnas (los valores negativos se ignoran).
+     */
+    void compactar(int[][] columnas, int filas) {
+        byte[] viejos = bytes;
+        byte[] nuevos = new byte[Math.max(1024, usados - basura + (usados - basura) / 2)];
+        int destino = 0;
+        // En la entrada vieja se deja la posición nueva en lugar de las referencias
+        for (int pos = 0; pos < usados; ) {
+            int fin = tamanoEntrada(pos);
+            if (leerInt(pos) > 0) {
+                System.arraycopy(viejos, pos, nuevos, destino, fin - pos);
+                escribirInt(viejos, pos, destino);
+                destino += fin - pos;
+            } else {
+                escribirInt(viejos, pos, -1);
+            }
+            pos = fin;
+        }
+        for (int[] columna : columnas) {
+            for (int f = 0; f < filas; f++) {
+                if (columna[f] >= 0) columna[f] = leerInt(viejos, columna[f]);
+            }
+        }
+        bytes = nuevos;
+        usados = destino;
+        basura = 0;
+
+        Arrays.fill(posiciones, 0);
+        for (int pos = 0; pos < usados; pos = tamanoEntrada(pos)) {
+            int inicio = pos + 4;
+            int largo = leerVarint(inicio);
+            int h = hash(bytes, inicio + tamanoVarint(largo), largo);
+            int i = h & (posiciones.length - 1);
+            while (posiciones[i] != 0) i = (i + 1) & (posiciones.length - 1);
+            posiciones[i] = pos + 1;
+            hashes[i] = h;
+        }
+    }
+
+    String texto(int pos) {
+        int inicio = pos + 4;
+        int largo = leerVarint(inicio);
+        return new String(bytes, inicio + tamanoVarint(largo), largo, StandardCharsets.UTF_8);
+    }
+
+    /** Posición del primer byte de la forma normalizada */
+    int inicioNormalizado(int pos) {
+        int inicio = pos + 4;
+        int largo = leerVarint(inicio);
+        inicio += tamanoVarint(largo) + largo;
+        return inicio + tamanoVarint(leerVarint(inicio));
+    }
+
+    int largoNormalizado(int pos) {
+        int inicio = pos + 4;
+        int largo = leerVarint(inicio);
+        return leerVarint(inicio + tamanoVarint(largo) + largo);
+    }
+
+    /** Compara la forma normalizada del texto con {@code largo} bytes de {@code otro} */
+    boolean normalizadoIgual(int pos, byte[] otro, int desde, int largo) {
+        if (largoNormalizado(pos) != largo) return false;
+        int inicio = inicioNormalizado(pos);
+        return Arrays.equals(bytes, inicio, inicio + largo, otro, desde, desde + largo);
+    }
+
+    /** Continúa el hash {@code h} con los bytes de la forma normalizada */
+    int hashNormalizado(int h, int pos) {
+        int inicio = inicioNormalizado(pos);
+        int fin = inicio + largoNormalizado(pos);
+        for (int i = inicio; i < fin; i++) h = 31 * h + bytes[i];
+        return h;
+    }
+
+    /** Bytes del arreglo y de la tabla de internado */
+    long bytesUsados() {
+        return bytes.length + (long) posiciones.length * 2 * Integer.BYTES;
+    }
+
+    static int hash(byte[] b, int desde, int largo) {
+        int h = 0;
+        for (int i = desde; i < desde + largo; i++) h = 31 * h + b[i];
+        return h;
+    }
+
+    private boolean igualOriginal(int pos, byte[] utf8) {
+        int inicio = pos + 4;
+        int largo = leerVarint(inicio);
+        if (largo != utf8.length) return false;
+        inicio += tamanoVarint(largo);
+        return Arrays.equals(bytes, inicio, inicio + largo, utf8, 0, largo);
+    }
+
+    private void quitarDeTabla(int pos, int h) {
+        int mascara = posiciones.length - 1;
+        int i = h & mascara;
+        while (posiciones[i] != pos + 1) i = (i + 1) & mascara;
+        cantidad--;
+        int hueco = i;
+        for (int j = (i + 1) & mascara; posiciones[j] != 0; j = (j + 1) & mascara) {
+            int ideal = hashes[j] & mascara;
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                posiciones[hueco] = posiciones[j];
+                hashes[hueco] = hashes[j];
+                hueco = j;
+            }
+        }
+        posiciones[hueco] = 0;
+    }
+
+    private void redimensionar(int casillas) {
+        int[] viejasPos = posiciones, viejosHashes = hashes;
+        posiciones = new int[casillas];
+        hashes = new int[casillas];
+        for (int j = 0; j < viejasPos.length; j++) {
+            if (viejasPos[j] == 0) continue;
+            int i = viejosHashes[j] & (casillas - 1);
+            while (posiciones[i] != 0) i = (i + 1) & (casillas - 1);
+            posiciones[i] = viejasPos[j];
+            hashes[i] = viejosHashes[j];
+        }
+    }
+
+    /** Posición siguiente al final de la entrada */
+    private int tamanoEntrada(int pos) {
+        int i = pos + 4;
+        int largo = leerVarint(i);
+        i += tamanoVarint(largo) + largo;
+        largo = leerVarint(i);
+        return i + tamanoVarint(largo) + largo;
+    }
+
+    private void asegurar(int extra) {
+        if (usados + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, usados + extra));
+        }
+    }
+
+    private int escribirBloque(int pos, byte[] b) {
+        int largo = b.length;
+        while (largo >= 0x80) {
+            bytes[pos++] = (byte) (largo | 0x80);
+            largo >>>= 7;
+        }
+        bytes[pos++] = (byte) largo;
+        System.arraycopy(b, 0, bytes, pos, b.length);
+        return pos + b.length;
+    }
+
+    private int leerVarint(int pos) {
+        int v = 0, desplazamiento = 0, b;
+        do {
+            b = bytes[pos++];
+            v |= (b & 0x7f) << desplazamiento;
+            desplazamiento += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    private static int tamanoVarint(int v) {
+        int n = 1;
+        while (v >= 0x80) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    private int leerInt(int pos) {
+        return leerInt(bytes, pos);
+    }
+
+    private void escribirInt(int pos, int v) {
+        escribirInt(bytes, pos, v);
+    }
+
+    private static int leerInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) << 24 | (b[pos + 1] & 0xff) << 16 | (b[pos + 2] & 0xff) << 8 | (b[pos + 3] & 0xff);
+    }
+
+    private static void escribirInt(byte[] b, int pos, int v) {
+        b[pos] = (byte) (v >>> 24);
+        b[pos + 1] = (byte) (v >>> 16);
+        b[pos + 2] = (byte) (v >>> 8);
+        b[pos + 3] = (byte) v;
+    }
+}
@@ -0,0 +1,133 @@
+package agendaTelefonica.servicio;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Caché acotada de teléfono a contacto para las búsquedas inversas de {@link Agenda}.
+ *
+ * Las entradas se guardan en orden de uso (LRU) y, con la caché llena, un teléfono
+ * nuevo sólo entra si se ha consultado más veces que el menos usado de la caché, que
+ * es el que sale (admisión TinyLFU). Las consultas se cuentan en un esbozo count-min
+ * de contadores de 4 bits, con cuatro contadores por teléfono y el mínimo como
+ * estimación; cada 10 consultas por entrada los contadores se dividen a la mitad, para
+ * que los números que dejaron de consultarse pierdan peso. Así un barrido de números
+ * consultados una sola vez no expulsa a los que se consultan constantemente.
+ *
+ * Sólo guarda contactos encontrados, nunca ausencias: un alta no necesita invalidar
+ * nada. La agenda invalida el teléfono anterior en cada baja y cambio de teléfono.
+ */
+final class CacheTelefonos {
+
+    private static final long MASCARA_MITAD = 0x7777_7777_7777_7777L;
+    private static final int[] SEMILLAS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int capacidad;
+    private final LinkedHashMap<String, Contacto> entradas;
+
+    // Esbozo count-min: 16 contadores de 4 bits por long
+    private final long[] contadores;
+    private final int muestrasPorReinicio;
+    private int muestras;
+
+    private long aciertos;
+    private long fallos;
+    private long expulsiones;
+    private long rechazos;
+
+    /** @throws IllegalArgumentException si la capacidad no es positiva */
+    CacheTelefonos(int capacidad) {
+        if (capacidad <= 0) throw new IllegalArgumentException("La capacidad de la caché debe ser positiva");
+        this.capacidad = capacidad;
+        this.entradas = new LinkedHashMap<>(Math.min(capacidad, 1 << 16) * 2, 0.75f, true);
+        // Unos 4 contadores por entrada, redondeado a una potencia de dos de longs
+        int longs = Integer.highestOneBit(Math.max(8, capacidad / 4) * 2 - 1);
+        this.contadores = new long[longs];
+        this.muestrasPorReinicio = 10 * capacidad;
+    }
+
+    /** El contacto guardado para ese teléfono, o null; cuenta la consulta en cualquier caso */
+    Contacto obtener(String telefono) {
+        contar(telefono);
+        Contacto c = entradas.get(telefono);
+        if (c != null) aciertos++;
+        else fallos++;
+        return c;
+    }
+
+    /** Guarda el contacto encontrado en el almacén tras un fallo, si la política lo admite */
+    void guardar(String telefono, Contacto c) {
+        if (entradas.size() >= capacidad) {
+            Iterator<Map.Entry<String, Contacto>> it = entradas.entrySet().iterator();
+            String victima = it.next().getKey();
+            if (frecuencia(telefono) <= frecuencia(victima)) {
+                rechazos++;
+                return;
+            }
+            it.remove();
+            expulsiones++;
+        }
+        entradas.put(telefono, c);
+    }
+
+    void invalidar(String telefono) {
+        entradas.remove(telefono);
+    }
+
+    int tamano() {
+        return entradas.size();
+    }
+
+    EstadisticasCache estadisticas() {
+        return new EstadisticasCache(capacidad, entradas.size(), aciertos, fallos, expulsiones, rechazos);
+    }
+
+    private void contar(String telefono) {
+        int h = dispersar(telefono.hashCode());
+        boolean cambio = false;
+        for (int i = 0; i < 4; i++) {
+            int indice = indice(h, i);
+            int desplazamiento = desplazamiento(h, i);
+            if (((contadores[indice] >>> desplazamiento) & 0xF) != 0xF) {
+                contadores[indice] += 1L << desplazamiento;
+                cambio = true;
+            }
+        }
+        if (cambio && ++muestras == muestrasPorReinicio) envejecer();
+    }
+
+    private int frecuencia(String telefono) {
+        int h = dispersar(telefono.hashCode());
+        int minimo = 0xF;
+        for (int i = 0; i < 4; i++) {
+            minimo = Math.min(minimo, (int) ((contadores[indice(h, i)] >>> desplazamiento(h, i)) & 0xF));
+        }
+        return minimo;
+    }
+
+    /** Divide todos los contadores a la mitad */
+    private void envejecer() {
+        for (int i = 0; i < contadores.length; i++) contadores[i] = (contadores[i] >>> 1) & MASCARA_MITAD;
+        muestras /= 2;
+    }
+
+    // Cada una de las cuatro funciones elige el long con su propia semilla y el
+    // contador dentro del long con un byte distinto del hash
+    private int indice(int h, int i) {
+        int x = h * SEMILLAS[i];
+        return (x ^ (x >>> 17)) & (contadores.length - 1);
+    }
+
+    private static int desplazamiento(int h, int i) {
+        return ((h >>> (8 * i)) & 0xF) << 2;
+    }
+
+    private static int dispersar(int h) {
+        h ^= h >>> 16;
+        h *= 0x45D9F3B;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,65 @@
+package agendaTelefonica.servicio;
+
+import java.util.Locale;
+
+/**
+ * Instantánea de los contadores de la caché de teléfonos de una {@link Agenda},
+ * acumulados desde que se activó.
+ */
+public final class EstadisticasCache {
+
+    private final int capacidad;
+    private final int entradas;
+    private final long aciertos;
+    private final long fallos;
+    private final long expulsiones;
+    private final long rechazos;
+
+    EstadisticasCache(int capacidad, int entradas, long aciertos, long fallos, long expulsiones, long rechazos) {
+        this.capacidad = capacidad;
+        this.entradas = entradas;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.expulsiones = expulsiones;
+        this.rechazos = rechazos;
+    }
+
+    /** Entradas como mucho; 0 si la caché no está activada */
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public int getEntradas() {
+        return entradas;
+    }
+
+    public long getAciertos() {
+        return aciertos;
+    }
+
+    public long getFallos() {
+        return fallos;
+    }
+
+    /** Entradas que salieron para dejar sitio a otras */
+    public long getExpulsiones() {
+        return expulsiones;
+    }
+
+    /** Teléfonos encontrados que no entraron por consultarse menos que el candidato a salir */
+    public long getRechazos() {
+        return rechazos;
+    }
+
+    /** Aciertos sobre el total de consultas, entre 0 y 1 (0 si no hubo ninguna) */
+    public double tasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d/%d entradas, %d aciertos, %d fallos (%.1f %%), %d expulsiones, %d rechazos",
+                entradas, capacidad, aciertos, fallos, 100 * tasaAciertos(), expulsiones, rechazos);
+    }
+}
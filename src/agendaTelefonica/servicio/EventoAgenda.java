@@ -0,0 +1,55 @@
+package agendaTelefonica.servicio;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Una modificación aplicada a una {@link Agenda}, tal como la publica su
+ * {@link FlujoEventos}. Es inmutable: guarda su propia copia del contacto y
+ * {@link #getContacto} devuelve otra cada vez.
+ */
+public final class EventoAgenda {
+
+    public enum Tipo {
+        ALTA, BAJA, CAMBIO_TELEFONO
+    }
+
+    private final long secuencia;
+    private final Tipo tipo;
+    private final Contacto contacto;
+    private final String telefonoAnterior;
+
+    EventoAgenda(long secuencia, Tipo tipo, Contacto contacto, String telefonoAnterior) {
+        this.secuencia = secuencia;
+        this.tipo = tipo;
+        this.contacto = new Contacto(contacto);
+        this.telefonoAnterior = telefonoAnterior;
+    }
+
+    /**
+     * Número del evento: uno más que el anterior de la misma agenda, e igual a la
+     * {@link InstantaneaAgenda#version} de la agenda justo después de aplicarlo.
+     */
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /** El contacto añadido, el eliminado o, en un cambio, con su número nuevo */
+    public Contacto getContacto() {
+        return new Contacto(contacto);
+    }
+
+    /** El número que tenía el contacto antes de un cambio de teléfono; null en los demás */
+    public String getTelefonoAnterior() {
+        return telefonoAnterior;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + secuencia + " " + tipo + " " + contacto
+                + (telefonoAnterior == null ? "" : " (antes " + telefonoAnterior + ")");
+    }
+}
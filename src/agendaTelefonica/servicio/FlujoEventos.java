@@ -0,0 +1,181 @@
+package agendaTelefonica.servicio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Eventos de las modificaciones de una {@link Agenda}, activados con
+ * {@link Agenda#activarEventos}: cada alta, baja y cambio de teléfono aplicado se
+ * publica como un {@link EventoAgenda} con un número de secuencia creciente, sin huecos.
+ *
+ * Los eventos se guardan en un anillo de capacidad fija que la agenda escribe sin
+ * esperar nunca a nadie: el evento n + capacidad ocupa el sitio del n. Cada
+ * {@link Suscripcion} lleva su propia posición y lee desde su hilo, sin cerrojos, de
+ * modo que varios consumidores avanzan cada uno a su ritmo. Uno que se retrase más de
+ * la capacidad pierde eventos y se entera al leer; para reanudarlo se toma, desde el
+ * hilo de la agenda, una {@link Agenda#instantanea} y se suscribe desde su versión + 1,
+ * o desde la última secuencia que procesó + 1 si aún está en el anillo.
+ */
+public final class FlujoEventos {
+
+    private final EventoAgenda[] anillo;
+    private final int mascara;
+
+    // Secuencia del último evento publicado (la versión de la agenda al activar el flujo
+    // si aún no hay ninguno) y del primero que se publicó
+    private volatile long ultima;
+    private final long primera;
+
+    // Para despertar a los consumidores que esperan; sólo se toma si hay alguno
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hayEventos = cerrojo.newCondition();
+    private volatile int esperando;
+
+    /**
+     * @param capacidad eventos que guarda el anillo; se redondea a la potencia de dos siguiente
+     * @param ultima    secuencia del último evento anterior al flujo
+     */
+    FlujoEventos(int capacidad, long ultima) {
+        int tamano = capacidad <= 1 ? 1 : Integer.highestOneBit(capacidad - 1) << 1;
+        this.anillo = new EventoAgenda[tamano];
+        this.mascara = tamano - 1;
+        this.ultima = ultima;
+        this.primera = ultima + 1;
+    }
+
+    /** Publica el evento siguiente; sólo desde el hilo que modifica la agenda */
+    void publicar(EventoAgenda e) {
+        anillo[(int) (e.getSecuencia() & mascara)] = e;
+        ultima = e.getSecuencia();
+        if (esperando > 0) {
+            cerrojo.lock();
+            try {
+                hayEventos.signalAll();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    /** Eventos que caben en el anillo */
+    public int capacidad() {
+        return anillo.length;
+    }
+
+    /** Secuencia del último evento publicado */
+    public long ultimaSecuencia() {
+        return ultima;
+    }
+
+    /** Secuencia del evento más antiguo que sigue en el anillo (ultimaSecuencia() + 1 si no hay ninguno) */
+    public long primeraDisponible() {
+        return Math.max(primera, ultima - anillo.length + 1);
+    }
+
+    /** Suscripción a los eventos que se publiquen a partir de ahora */
+    public Suscripcion suscribir() {
+        return new Suscripcion(ultima + 1);
+    }
+
+    /**
+     * Suscripción que empieza en el evento {@code desde}, para reanudar un consumidor.
+     *
+     * @throws IllegalArgumentException si {@code desde} es posterior al próximo evento
+     * @throws IllegalStateException    si el evento {@code desde} ya no está en el anillo
+     */
+    public Suscripcion suscribir(long desde) {
+        long siguiente = ultima + 1;
+        if (desde > siguiente) {
+            throw new IllegalArgumentException("El evento " + desde + " aún no existe; el próximo será el " + siguiente);
+        }
+        Suscripcion s = new Suscripcion(desde);
+        if (s.seQuedoAtras()) throw s.perdidos();
+        return s;
+    }
+
+    /**
+     * Posición de un consumidor en el flujo. Cada suscripción es de un solo hilo; para
+     * varios consumidores, una suscripción por cada uno.
+     */
+    public final class Suscripcion {
+
+        private long siguiente;
+
+        private Suscripcion(long siguiente) {
+            this.siguiente = siguiente;
+        }
+
+        /** Secuencia del próximo evento que devolverá */
+        public long siguiente() {
+            return siguiente;
+        }
+
+        /** Eventos publicados que aún no ha leído, incluidos los que ya se perdieron */
+        public long pendientes() {
+            return ultima - siguiente + 1;
+        }
+
+        /**
+         * Indica si el anillo ya sobrescribió el próximo evento que tocaba leer: la
+         * suscripción no puede seguir y el consumidor tiene que volver a sincronizarse.
+         */
+        public boolean seQuedoAtras() {
+            return siguiente < primeraDisponible();
+        }
+
+        /**
+         * Como mucho {@code max} eventos pendientes, en orden; vacía si no hay ninguno.
+         * No espera.
+         *
+         * @throws IllegalStateException si la suscripción se quedó atrás (ver {@link #seQuedoAtras})
+         */
+        public List<EventoAgenda> leer(int max) {
+            if (seQuedoAtras()) throw perdidos();
+            long hasta = Math.min(ultima, siguiente + Math.max(0, max) - 1);
+            List<EventoAgenda> eventos = new ArrayList<>((int) Math.max(0, Math.min(hasta - siguiente + 1, 1024)));
+            for (long s = siguiente; s <= hasta; s++) {
+                EventoAgenda e = anillo[(int) (s & mascara)];
+                // Si la agenda ya escribió encima, el evento del sitio es posterior
+                if (e == null || e.getSecuencia() != s) {
+                    siguiente = s;
+                    throw perdidos();
+                }
+                eventos.add(e);
+            }
+            siguiente = hasta + 1;
+            return eventos;
+        }
+
+        /**
+         * Como {@link #leer}, pero si no hay ningún evento pendiente espera a que se
+         * publique alguno como mucho el tiempo indicado. Devuelve una lista vacía si
+         * se agota el tiempo.
+         *
+         * @throws IllegalStateException si la suscripción se quedó atrás
+         * @throws InterruptedException  si se interrumpe el hilo mientras espera
+         */
+        public List<EventoAgenda> esperar(int max, long tiempo, TimeUnit unidad) throws InterruptedException {
+            if (ultima < siguiente) {
+                long nanos = unidad.toNanos(tiempo);
+                cerrojo.lock();
+                try {
+                    esperando++;
+                    // Se vuelve a mirar tras anotarse: un evento publicado antes ya no avisa
+                    while (ultima < siguiente && nanos > 0) nanos = hayEventos.awaitNanos(nanos);
+                } finally {
+                    esperando--;
+                    cerrojo.unlock();
+                }
+            }
+            return leer(max);
+        }
+
+        private IllegalStateException perdidos() {
+            return new IllegalStateException("Se perdieron los eventos desde el " + siguiente
+                    + ": el más antiguo que queda es el " + primeraDisponible());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package agendaTelefonica.servicio;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos con cubetas log-lineales, como HdrHistogram:
+ * cada potencia de dos se divide en {@value #SUBCUBETAS} cubetas iguales, así que un
+ * percentil se conoce con un error relativo de como mucho 1/{@value #SUBCUBETAS} (6 %)
+ * sea de 50 ns o de 5 s, con un número fijo de contadores. Los valores por encima de
+ * unos 18 minutos se cuentan en la última cubeta.
+ *
+ * Registrar cuesta un cálculo de cubeta y un incremento de {@link LongAdder}, que
+ * reparte los incrementos entre celdas cuando varios hilos registran a la vez. Se
+ * puede leer desde cualquier hilo, también por JMX, mientras otro registra; la
+ * lectura no es una instantánea exacta, pero cada contador es coherente.
+ */
+public final class HistogramaLatencias implements HistogramaLatenciasMXBean {
+
+    /** Cubetas por potencia de dos */
+    static final int SUBCUBETAS = 16;
+
+    // Con 2^BITS valores exactos por debajo de 2 * SUBCUBETAS
+    private static final int BITS = 5;
+    private static final long MAXIMO_REGISTRABLE = (1L << 40) - 1;
+
+    private final LongAdder[] cubetas = new LongAdder[indice(MAXIMO_REGISTRABLE) + 1];
+    private final LongAdder cuenta = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public HistogramaLatencias() {
+        for (int i = 0; i < cubetas.length; i++) cubetas[i] = new LongAdder();
+    }
+
+    /** Registra una duración; las negativas cuentan como 0 */
+    public void registrar(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAXIMO_REGISTRABLE);
+        cubetas[indice(v)].increment();
+        cuenta.increment();
+        suma.add(v);
+        maximo.accumulate(v);
+    }
+
+    /**
+     * Valor por debajo del cual (o igual) queda la fracción {@code q} de los registros,
+     * redondeado al extremo superior de su cubeta; 0 si no hay registros.
+     *
+     * @throws IllegalArgumentException si q no está entre 0 y 1
+     */
+    public long percentil(double q) {
+        if (!(q >= 0 && q <= 1)) throw new IllegalArgumentException("El percentil debe estar entre 0 y 1");
+        long[] copia = new long[cubetas.length];
+        long total = 0;
+        for (int i = 0; i < copia.length; i++) total += copia[i] = cubetas[i].sum();
+        if (total == 0) return 0;
+
+        long objetivo = Math.max(1, (long) Math.ceil(q * total));
+        long acumulado = 0;
+        for (int i = 0; i < copia.length; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) return Math.min(limiteSuperior(i), maximo.get());
+        }
+        return maximo.get();
+    }
+
+    /** Vacía el histograma; los registros simultáneos pueden conservarse o no */
+    public void reiniciar() {
+        for (LongAdder c : cubetas) c.reset();
+        cuenta.reset();
+        suma.reset();
+        maximo.reset();
+    }
+
+    @Override
+    public long getCuenta() {
+        return cuenta.sum();
+    }
+
+    @Override
+    public double getMediaNanos() {
+        long n = cuenta.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    @Override
+    public long getMaximoNanos() {
+        return maximo.get();
+    }
+
+    @Override
+    public long getPercentil50Nanos() {
+        return percentil(0.50);
+    }
+
+    @Override
+    public long getPercentil90Nanos() {
+        return percentil(0.90);
+    }
+
+    @Override
+    public long getPercentil99Nanos() {
+        return percentil(0.99);
+    }
+
+    @Override
+    public long getPercentil999Nanos() {
+        return percentil(0.999);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "n=%d media=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d ns",
+                getCuenta(), getMediaNanos(), getPercentil50Nanos(), getPercentil90Nanos(),
+                getPercentil99Nanos(), getPercentil999Nanos(), getMaximoNanos());
+    }
+
+    /**
+     * Cubeta del valor: los menores de 2 * SUBCUBETAS tienen la suya; los demás se
+     * desplazan hasta quedarse con sus BITS bits más altos, el primero siempre a 1, y
+     * cada desplazamiento abre un nuevo tramo de SUBCUBETAS cubetas.
+     */
+    static int indice(long v) {
+        int desplazamiento = Math.max(0, 64 - Long.numberOfLeadingZeros(v) - BITS);
+        return desplazamiento * SUBCUBETAS + (int) (v >>> desplazamiento);
+    }
+
+    /** Mayor valor que cae en la cubeta i */
+    static long limiteSuperior(int i) {
+        int desplazamiento = Math.max(0, i / SUBCUBETAS - 1);
+        long inicio = (long) (i - desplazamiento * SUBCUBETAS) << desplazamiento;
+        return inicio + (1L << desplazamiento) - 1;
+    }
+}
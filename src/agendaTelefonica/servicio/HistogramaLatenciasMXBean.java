@@ -0,0 +1,22 @@
+package agendaTelefonica.servicio;
+
+/**
+ * Vista JMX de un {@link HistogramaLatencias}: una operación de la agenda, con su
+ * número de llamadas y sus latencias en nanosegundos.
+ */
+public interface HistogramaLatenciasMXBean {
+
+    long getCuenta();
+
+    double getMediaNanos();
+
+    long getMaximoNanos();
+
+    long getPercentil50Nanos();
+
+    long getPercentil90Nanos();
+
+    long getPercentil99Nanos();
+
+    long getPercentil999Nanos();
+}
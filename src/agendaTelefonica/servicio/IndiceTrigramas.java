@@ -0,0 +1,160 @@
+package agendaTelefonica.servicio;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Índice de trigramas de dígitos para buscar teléfonos por un fragmento cualquiera.
+ *
+ * Cada teléfono se registra en las listas de sus trigramas distintos (000-999). Una
+ * consulta toma la lista más corta entre los trigramas del fragmento y sólo verifica
+ * esos candidatos, en lugar de recorrer toda la agenda.
+ *
+ * Las listas están ordenadas por teléfono, que no se repite en la agenda: altas y bajas
+ * encuentran su posición por búsqueda binaria, sin comparar identidades, y una
+ * consulta se detiene en cuanto reúne los resultados pedidos.
+ */
+class IndiceTrigramas {
+
+    private static final int TRIGRAMAS = 1000;
+
+    // Orden de los resultados: por número de teléfono
+    static final Comparator<Contacto> POR_TELEFONO = Comparator.comparing(Contacto::getTelefono);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Contacto>[] listas = new List[TRIGRAMAS];
+
+    // Suma de los tamaños de todas las listas
+    private int entradas;
+
+    IndiceTrigramas() {
+    }
+
+    /** Índice con esos contactos: cada lista se llena y se ordena una sola vez */
+    IndiceTrigramas(Iterable<Contacto> contactos) {
+        for (Contacto c : contactos) {
+            String t = c.getTelefono();
+            for (int i = 0; i + 3 <= t.length(); i++) {
+                int tri = trigrama(t, i);
+                if (repetido(t, i, tri)) continue;
+                if (listas[tri] == null) listas[tri] = new ArrayList<>();
+                listas[tri].add(c);
+                entradas++;
+            }
+        }
+        for (List<Contacto> l : listas) {
+            if (l != null) l.sort(POR_TELEFONO);
+        }
+    }
+
+    void anadir(Contacto c) {
+        String t = c.getTelefono();
+        for (int i = 0; i + 3 <= t.length(); i++) {
+            int tri = trigrama(t, i);
+            if (repetido(t, i, tri)) continue;
+            if (listas[tri] == null) listas[tri] = new ArrayList<>();
+            List<Contacto> l = listas[tri];
+            int pos = buscar(l, t);
+            if (pos >= 0) {
+                l.set(pos, c);
+            } else {
+                l.add(-pos - 1, c);
+                entradas++;
+            }
+        }
+    }
+
+    /**
+     * Quita el contacto de las listas de su teléfono actual. Debe llamarse antes
+     * de cambiarle el número.
+     */
+    void eliminar(Contacto c) {
+        String t = c.getTelefono();
+        for (int i = 0; i + 3 <= t.length(); i++) {
+            int tri = trigrama(t, i);
+            if (repetido(t, i, tri) || listas[tri] == null) continue;
+            int pos = buscar(listas[tri], t);
+            if (pos >= 0) {
+                listas[tri].remove(pos);
+                entradas--;
+            }
+        }
+    }
+
+    int entradas() {
+        return entradas;
+    }
+
+    /**
+     * Devuelve, ordenados por teléfono, como mucho {@code limite} contactos cuyo
+     * teléfono contiene el fragmento. Los fragmentos de menos de tres dígitos
+     * no tienen trigramas y se resuelven recorriendo {@code todos}.
+     */
+    List<Contacto> conFragmento(String fragmento, int limite, Iterable<Contacto> todos) {
+        if (limite <= 0) return new ArrayList<>();
+        if (fragmento.length() >= 3) {
+            List<Contacto> menor = null;
+            for (int i = 0; i + 3 <= fragmento.length(); i++) {
+                List<Contacto> l = listas[trigrama(fragmento, i)];
+                if (l == null || l.isEmpty()) return new ArrayList<>();
+                if (menor == null || l.size() < menor.size()) menor = l;
+            }
+            // La lista ya está ordenada por teléfono: los primeros que coinciden son los menores
+            List<Contacto> r = new ArrayList<>();
+            for (Contacto c : menor) {
+                if (!c.getTelefono().contains(fragmento)) continue;
+                r.add(c);
+                if (r.size() == limite) break;
+            }
+            return r;
+        }
+
+        // Montículo de máximos acotado: conserva los 'limite' teléfonos menores
+        PriorityQueue<Contacto> mejores = new PriorityQueue<>(POR_TELEFONO.reversed());
+        for (Contacto c : todos) {
+            if (!c.getTelefono().contains(fragmento)) continue;
+            if (mejores.size() < limite) {
+                mejores.add(c);
+            } else if (POR_TELEFONO.compare(c, mejores.peek()) < 0) {
+                mejores.poll();
+                mejores.add(c);
+            }
+        }
+        List<Contacto> r = new ArrayList<>(mejores);
+        r.sort(POR_TELEFONO);
+        return r;
+    }
+
+    /** Posición del teléfono en una lista, o -(posición de inserción) - 1 si no está */
+    private static int buscar(List<Contacto> l, String telefono) {
+        int bajo = 0, alto = l.size() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int cmp = l.get(medio).getTelefono().compareTo(telefono);
+            if (cmp < 0) bajo = medio + 1;
+            else if (cmp > 0) alto = medio - 1;
+            else return medio;
+        }
+        return -bajo - 1;
+    }
+
+    /**
+     * Indica si el trigrama en la posición i ya apareció antes en el mismo teléfono.
+     * Un teléfono tiene como mucho 13 trigramas, así que basta con revisarlos.
+     */
+    private static boolean repetido(String t, int i, int tri) {
+        for (int j = 0; j < i; j++) {
+            if (trigrama(t, j) == tri) return true;
+        }
+        return false;
+    }
+
+    /** Sólo se llama con dígitos ASCII: los teléfonos ya vienen validados */
+    private static int trigrama(String s, int i) {
+        return (s.charAt(i) - '0') * 100 + (s.charAt(i + 1) - '0') * 10 + (s.charAt(i + 2) - '0');
+    }
+}
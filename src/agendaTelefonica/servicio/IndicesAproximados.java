@@ -0,0 +1,202 @@
+package agendaTelefonica.servicio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import agendaTelefonica.modelo.Contacto;
+import agendaTelefonica.modelo.Normalizador;
+
+/**
+ * Índices para buscar nombres y apellidos con errores de escritura: cada uno guarda
+ * los valores normalizados distintos de la agenda, no los contactos, que luego se
+ * obtienen de los índices de prefijos por valor exacto.
+ *
+ * Como {@link IndicesBusqueda}, la agenda los construye en la primera búsqueda
+ * aproximada y desde entonces los mantiene en cada alta y baja.
+ */
+class IndicesAproximados {
+
+    /** Un valor distinto y su distancia al texto buscado */
+    static final class Coincidencia {
+        final String valor;
+        final int distancia;
+
+        Coincidencia(String valor, int distancia) {
+            this.valor = valor;
+            this.distancia = distancia;
+        }
+    }
+
+    static final Comparator<Coincidencia> POR_DISTANCIA =
+            Comparator.<Coincidencia>comparingInt(c -> c.distancia).thenComparing(c -> c.valor);
+
+    private final Diccionario nombres = new Diccionario();
+    private final Diccionario apellidos = new Diccionario();
+
+    IndicesAproximados(Iterable<Contacto> contactos) {
+        for (Contacto c : contactos) anadir(c);
+    }
+
+    void anadir(Contacto c) {
+        nombres.anadir(c.getNombreNormalizado());
+        apellidos.anadir(c.getApellidoNormalizado());
+    }
+
+    void eliminar(Contacto c) {
+        nombres.eliminar(c.getNombreNormalizado());
+        apellidos.eliminar(c.getApellidoNormalizado());
+    }
+
+    /** Nombres distintos cercanos al texto normalizado, del más cercano al más lejano */
+    List<Coincidencia> nombresCercanos(String normalizado, int maxDistancia) {
+        return nombres.cercanos(normalizado, maxDistancia);
+    }
+
+    List<Coincidencia> apellidosCercanos(String normalizado, int maxDistancia) {
+        return apellidos.cercanos(normalizado, maxDistancia);
+    }
+
+    /**
+     * Valores distintos de un campo, con cuántos contactos usan cada uno, en dos
+     * estructuras: un BK-tree por distancia de Levenshtein y un mapa por clave fonética.
+     *
+     * En el BK-tree cada hijo cuelga de su padre según la distancia entre ambos, y por
+     * la desigualdad triangular una búsqueda a distancia k desde un nodo a distancia d
+     * sólo baja por los hijos entre d - k y d + k. Los valores que dejan de usarse
+     * siguen en el árbol, sin contactos, y se saltan; si vuelven a usarse, reaparecen.
+     * Cuando los nodos sin uso superan a los valores en uso, el árbol se reconstruye
+     * sólo con éstos, así que el coste se reparte entre las bajas que lo provocaron.
+     */
+    private static final class Diccionario {
+
+        private static final class Nodo {
+            final String valor;
+            // hijos[d - 1]: subárbol de valores a distancia d
+            Nodo[] hijos;
+
+            Nodo(String valor) {
+                this.valor = valor;
+            }
+        }
+
+        private final Map<String, Integer> usos = new HashMap<>();
+        private final Map<String, List<String>> porClaveFonetica = new HashMap<>();
+        private Nodo raiz;
+        // Nodos del árbol, en uso o no
+        private int nodos;
+
+        // Filas reutilizadas por la distancia de Levenshtein
+        private int[] anterior = new int[16];
+        private int[] actual = new int[16];
+
+        void anadir(String valor) {
+            if (valor.isEmpty() || usos.merge(valor, 1, Integer::sum) > 1) return;
+            porClaveFonetica.computeIfAbsent(Normalizador.claveFonetica(valor), k -> new ArrayList<>(1)).add(valor);
+            insertarEnArbol(valor);
+        }
+
+        void eliminar(String valor) {
+            Integer n = usos.get(valor);
+            if (n == null) return;
+            if (n > 1) {
+                usos.put(valor, n - 1);
+                return;
+            }
+            usos.remove(valor);
+            String clave = Normalizador.claveFonetica(valor);
+            List<String> homofonos = porClaveFonetica.get(clave);
+            homofonos.remove(valor);
+            if (homofonos.isEmpty()) porClaveFonetica.remove(clave);
+            if (nodos - usos.size() > usos.size()) reconstruirArbol();
+        }
+
+        /** Vuelve a construir el BK-tree sólo con los valores en uso */
+        private void reconstruirArbol() {
+            raiz = null;
+            nodos = 0;
+            for (String v : usos.keySet()) insertarEnArbol(v);
+        }
+
+        /**
+         * Valores en uso a distancia de edición como mucho {@code maxDistancia}, más los
+         * que suenan igual aunque estén más lejos, ordenados por distancia y valor.
+         */
+        List<Coincidencia> cercanos(String consulta, int maxDistancia) {
+            Map<String, Integer> encontrados = new HashMap<>();
+            for (String v : porClaveFonetica.getOrDefault(Normalizador.claveFonetica(consulta), List.of())) {
+                encontrados.put(v, distancia(consulta, v));
+            }
+
+            ArrayDeque<Nodo> pendientes = new ArrayDeque<>();
+            if (raiz != null) pendientes.push(raiz);
+            while (!pendientes.isEmpty()) {
+                Nodo nodo = pendientes.pop();
+                int d = distancia(consulta, nodo.valor);
+                if (d <= maxDistancia && usos.containsKey(nodo.valor)) encontrados.put(nodo.valor, d);
+                if (nodo.hijos == null) continue;
+                int desde = Math.max(1, d - maxDistancia), hasta = Math.min(nodo.hijos.length, d + maxDistancia);
+                for (int i = desde; i <= hasta; i++) {
+                    if (nodo.hijos[i - 1] != null) pendientes.push(nodo.hijos[i - 1]);
+                }
+            }
+
+            List<Coincidencia> resultado = new ArrayList<>(encontrados.size());
+            for (Map.Entry<String, Integer> e : encontrados.entrySet()) {
+                resultado.add(new Coincidencia(e.getKey(), e.getValue()));
+            }
+            resultado.sort(POR_DISTANCIA);
+            return resultado;
+        }
+
+        private void insertarEnArbol(String valor) {
+            if (raiz == null) {
+                raiz = new Nodo(valor);
+                nodos++;
+                return;
+            }
+            Nodo nodo = raiz;
+            while (true) {
+                int d = distancia(valor, nodo.valor);
+                // Un valor que vuelve a usarse ya tiene su nodo
+                if (d == 0) return;
+                if (nodo.hijos == null || nodo.hijos.length < d) {
+                    nodo.hijos = nodo.hijos == null ? new Nodo[d] : Arrays.copyOf(nodo.hijos, d);
+                }
+                if (nodo.hijos[d - 1] == null) {
+                    nodo.hijos[d - 1] = new Nodo(valor);
+                    nodos++;
+                    return;
+                }
+                nodo = nodo.hijos[d - 1];
+            }
+        }
+
+        /** Distancia de Levenshtein: inserciones, borrados y sustituciones de un carácter */
+        private int distancia(String a, String b) {
+            int m = b.length();
+            if (anterior.length <= m) {
+                anterior = new int[m + 1];
+                actual = new int[m + 1];
+            }
+            int[] fila = anterior, nueva = actual;
+            for (int j = 0; j <= m; j++) fila[j] = j;
+            for (int i = 1; i <= a.length(); i++) {
+                nueva[0] = i;
+                char ca = a.charAt(i - 1);
+                for (int j = 1; j <= m; j++) {
+                    int sustitucion = fila[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                    nueva[j] = Math.min(sustitucion, Math.min(fila[j], nueva[j - 1]) + 1);
+                }
+                int[] t = fila;
+                fila = nueva;
+                nueva = t;
+            }
+            return fila[m];
+        }
+    }
+}
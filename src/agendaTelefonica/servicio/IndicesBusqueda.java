@@ -0,0 +1,85 @@
+package agendaTelefonica.servicio;
+
+import java.util.List;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Índices secundarios que sólo necesitan las búsquedas: prefijos de nombre y de
+ * apellido y fragmentos de teléfono.
+ *
+ * La agenda los construye la primera vez que se busca y desde entonces los mantiene
+ * en cada alta, baja y cambio de teléfono. Así cargar o importar una agenda grande
+ * no paga por índices que quizás nunca se consulten.
+ */
+class IndicesBusqueda {
+
+    // Claves "nombre\0apellido" y "apellido\0nombre", únicas en la agenda
+    private final TriePrefijos prefijosNombre = new TriePrefijos();
+    private final TriePrefijos prefijosApellido = new TriePrefijos();
+    private final IndiceTrigramas trigramasTelefono;
+
+    IndicesBusqueda(Iterable<Contacto> contactos) {
+        for (Contacto c : contactos) {
+            prefijosNombre.anadir(TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado()), c);
+            prefijosApellido.anadir(TriePrefijos.clave(c.getApellidoNormalizado(), c.getNombreNormalizado()), c);
+        }
+        trigramasTelefono = new IndiceTrigramas(contactos);
+    }
+
+    void anadir(Contacto c) {
+        prefijosNombre.anadir(TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado()), c);
+        prefijosApellido.anadir(TriePrefijos.clave(c.getApellidoNormalizado(), c.getNombreNormalizado()), c);
+        trigramasTelefono.anadir(c);
+    }
+
+    void eliminar(Contacto c) {
+        String clave = TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado());
+        trigramasTelefono.eliminar(c);
+        prefijosNombre.eliminar(clave);
+        prefijosApellido.eliminar(TriePrefijos.clave(c.getApellidoNormalizado(), c.getNombreNormalizado()));
+    }
+
+    /** Debe llamarse antes de asignar el nuevo número al contacto */
+    void antesDeCambiarTelefono(Contacto c) {
+        trigramasTelefono.eliminar(c);
+    }
+
+    /**
+     * Debe llamarse después de asignar el nuevo número al contacto. El almacén puede
+     * devolver otra instancia con el número nuevo, así que se vuelve a asociar también
+     * a sus claves de nombre y apellido.
+     */
+    void despuesDeCambiarTelefono(Contacto c) {
+        prefijosNombre.anadir(TriePrefijos.clave(c.getNombreNormalizado(), c.getApellidoNormalizado()), c);
+        prefijosApellido.anadir(TriePrefijos.clave(c.getApellidoNormalizado(), c.getNombreNormalizado()), c);
+        trigramasTelefono.anadir(c);
+    }
+
+    /** Como mucho {@code limite} contactos cuyo nombre normalizado es exactamente el indicado */
+    List<Contacto> porNombre(String nombreNormalizado, int limite) {
+        return prefijosNombre.conPrefijo(nombreNormalizado + TriePrefijos.SEPARADOR, limite);
+    }
+
+    /** Como mucho {@code limite} contactos cuyo apellido normalizado es exactamente el indicado */
+    List<Contacto> porApellido(String apellidoNormalizado, int limite) {
+        return prefijosApellido.conPrefijo(apellidoNormalizado + TriePrefijos.SEPARADOR, limite);
+    }
+
+    List<Contacto> conPrefijoNombre(String prefijo, int limite) {
+        return prefijosNombre.conPrefijo(prefijo, limite);
+    }
+
+    List<Contacto> conPrefijoApellido(String prefijo, int limite) {
+        return prefijosApellido.conPrefijo(prefijo, limite);
+    }
+
+    /** Apariciones de contactos en el índice de trigramas, para las métricas */
+    int entradasTrigramas() {
+        return trigramasTelefono.entradas();
+    }
+
+    List<Contacto> conFragmentoTelefono(String fragmento, int limite, Iterable<Contacto> todos) {
+        return trigramasTelefono.conFragmento(fragmento, limite, todos);
+    }
+}
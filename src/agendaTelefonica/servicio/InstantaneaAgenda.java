@@ -0,0 +1,124 @@
+package agendaTelefonica.servicio;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Foto inmutable de una {@link Agenda}, tomada con {@link Agenda#instantanea}: los
+ * contactos tal como estaban en ese momento, en el orden del listado. Las
+ * modificaciones posteriores de la agenda no la cambian, así que se puede recorrer
+ * desde otro hilo, sin cerrojos, mientras la agenda sigue cambiando.
+ *
+ * Tomarla no copia nada: los contactos están en un árbol persistente (el del propio
+ * almacén por defecto, que nunca modifica los contactos guardados) y la instantánea
+ * se queda con la versión del momento; las versiones sucesivas comparten todos los
+ * nodos que no cambiaron. Los contactos que devuelve son copias construidas al
+ * consultarlos y modificarlas no cambia la instantánea.
+ */
+public final class InstantaneaAgenda implements Iterable<Contacto> {
+
+    private final ArbolContactos arbol;
+    private final long version;
+
+    InstantaneaAgenda(ArbolContactos arbol, long version) {
+        this.arbol = arbol;
+        this.version = version;
+    }
+
+    /**
+     * Número de modificaciones (altas, bajas y cambios de teléfono) que llevaba la agenda
+     * al tomarla. Dos instantáneas de la misma agenda con la misma versión tienen los
+     * mismos contactos.
+     */
+    public long version() {
+        return version;
+    }
+
+    public int tamano() {
+        return arbol.tamano();
+    }
+
+    /**
+     * Contacto en esa posición del listado, en O(log n).
+     *
+     * @throws IndexOutOfBoundsException si la posición no está entre 0 y tamano() - 1
+     */
+    public Contacto obtener(int posicion) {
+        if (posicion < 0 || posicion >= arbol.tamano()) {
+            throw new IndexOutOfBoundsException("Posición " + posicion + " fuera de la instantánea de " + arbol.tamano() + " contactos");
+        }
+        return new Contacto(arbol.obtener(posicion));
+    }
+
+    /**
+     * Como mucho {@code limite} contactos a partir de la posición {@code desde}, con las
+     * mismas reglas que {@link Agenda#listarContactos(int, int)}.
+     */
+    public List<Contacto> pagina(int desde, int limite) {
+        int inicio = Math.max(0, Math.min(desde, arbol.tamano()));
+        int fin = (int) Math.min(arbol.tamano(), (long) inicio + Math.max(0, limite));
+        List<Contacto> resultado = new ArrayList<>(fin - inicio);
+        Iterator<Contacto> it = arbol.iterador(inicio);
+        for (int i = inicio; i < fin; i++) resultado.add(new Contacto(it.next()));
+        return resultado;
+    }
+
+    /**
+     * Los contactos como lista de sólo lectura, sin reunirlos: {@code get} cuesta
+     * O(log n) y recorrerla, O(1) por contacto; cada uno es una copia.
+     */
+    public List<Contacto> contactos() {
+        return new AbstractList<>() {
+            @Override
+            public Contacto get(int posicion) {
+                return obtener(posicion);
+            }
+
+            @Override
+            public int size() {
+                return arbol.tamano();
+            }
+
+            @Override
+            public Iterator<Contacto> iterator() {
+                return InstantaneaAgenda.this.iterator();
+            }
+        };
+    }
+
+    /** Recorre los contactos en orden; nunca falla por cambios en la agenda */
+    @Override
+    public Iterator<Contacto> iterator() {
+        Iterator<Contacto> it = arbol.iterador(0);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Contacto next() {
+                return new Contacto(it.next());
+            }
+        };
+    }
+
+    /** Los contactos como {@link Stream} secuencial y perezoso */
+    public Stream<Contacto> flujo() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), arbol.tamano(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    @Override
+    public String toString() {
+        return "InstantaneaAgenda[version=" + version + ", contactos=" + arbol.tamano() + "]";
+    }
+}
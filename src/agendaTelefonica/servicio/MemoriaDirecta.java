@@ -0,0 +1,181 @@
+package agendaTelefonica.servicio;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Región de memoria fuera del heap direccionada con posiciones long, formada por
+ * {@link ByteBuffer} directos de hasta {@value #BITS_SEGMENTO} bits (128 MB), de modo
+ * que puede superar los 2 GB de un solo buffer. Mientras cabe en un segmento crece
+ * duplicándose; a partir de ahí añade segmentos sin copiar los anteriores.
+ *
+ * La memoria nueva empieza a cero. Los int y long se leen y escriben alineados a su
+ * tamaño, así que nunca cruzan de un segmento a otro; las copias de bytes sí pueden
+ * cruzarlos.
+ *
+ * La memoria se devuelve al sistema en {@link #close} si la JVM permite liberar el
+ * buffer de inmediato; si no, cuando el recolector descarte los buffers. Después de
+ * cerrarla, cualquier acceso lanza {@link IllegalStateException}.
+ */
+final class MemoriaDirecta implements AutoCloseable {
+
+    static final int BITS_SEGMENTO = 27;
+    private static final long TAMANO_SEGMENTO = 1L << BITS_SEGMENTO;
+    private static final long MASCARA = TAMANO_SEGMENTO - 1;
+
+    // sun.misc.Unsafe.invokeCleaner, si está disponible, para liberar sin esperar al GC
+    private static final Object UNSAFE;
+    private static final Method LIBERAR;
+
+    static {
+        Object unsafe = null;
+        Method liberar = null;
+        try {
+            Class<?> clase = Class.forName("sun.misc.Unsafe");
+            Field campo = clase.getDeclaredField("theUnsafe");
+            campo.setAccessible(true);
+            unsafe = campo.get(null);
+            liberar = clase.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            liberar = null;
+        }
+        UNSAFE = unsafe;
+        LIBERAR = liberar;
+    }
+
+    private ByteBuffer[] segmentos;
+    private long capacidad;
+
+    MemoriaDirecta(long capacidadInicial) {
+        segmentos = new ByteBuffer[0];
+        asegurar(Math.max(capacidadInicial, 64));
+    }
+
+    long capacidad() {
+        comprobarAbierta();
+        return capacidad;
+    }
+
+    /** Amplía la región para que quepan al menos {@code necesaria} bytes */
+    void asegurar(long necesaria) {
+        comprobarAbierta();
+        while (capacidad < necesaria) {
+            int n = segmentos.length;
+            if (n > 0 && segmentos[n - 1].capacity() < TAMANO_SEGMENTO) {
+                // El único segmento aún no está completo: se sustituye por uno mayor
+                ByteBuffer viejo = segmentos[0];
+                long nuevoTamano = Math.min(TAMANO_SEGMENTO, Math.max(viejo.capacity() * 2L, siguientePotencia(necesaria)));
+                ByteBuffer nuevo = reservar((int) nuevoTamano);
+                nuevo.put(viejo.duplicate().clear());
+                liberar(viejo);
+                segmentos[0] = nuevo;
+                capacidad = nuevoTamano;
+            } else if (n == 0) {
+                long tamano = Math.min(TAMANO_SEGMENTO, siguientePotencia(necesaria));
+                segmentos = new ByteBuffer[]{reservar((int) tamano)};
+                capacidad = tamano;
+            } else {
+                segmentos = Arrays.copyOf(segmentos, n + 1);
+                segmentos[n] = reservar((int) TAMANO_SEGMENTO);
+                capacidad += TAMANO_SEGMENTO;
+            }
+        }
+    }
+
+    /**
+     * Reduce la región a {@code capacidad} bytes (redondeada hacia arriba a segmentos
+     * completos), liberando los segmentos sobrantes.
+     */
+    void recortar(long nuevaCapacidad) {
+        comprobarAbierta();
+        if (segmentos.length <= 1) return;
+        int conservar = (int) Math.max(1, (nuevaCapacidad + MASCARA) >>> BITS_SEGMENTO);
+        if (conservar >= segmentos.length) return;
+        for (int i = conservar; i < segmentos.length; i++) liberar(segmentos[i]);
+        segmentos = Arrays.copyOf(segmentos, conservar);
+        capacidad = (long) conservar * TAMANO_SEGMENTO;
+    }
+
+    long leerLong(long pos) {
+        return segmento(pos).getLong((int) (pos & MASCARA));
+    }
+
+    void escribirLong(long pos, long v) {
+        segmento(pos).putLong((int) (pos & MASCARA), v);
+    }
+
+    int leerInt(long pos) {
+        return segmento(pos).getInt((int) (pos & MASCARA));
+    }
+
+    void escribirInt(long pos, int v) {
+        segmento(pos).putInt((int) (pos & MASCARA), v);
+    }
+
+    /** Copia {@code largo} bytes desde la región a {@code destino} */
+    void leer(long pos, byte[] destino, int desde, int largo) {
+        while (largo > 0) {
+            ByteBuffer s = segmento(pos);
+            int inicio = (int) (pos & MASCARA);
+            int n = Math.min(largo, s.capacity() - inicio);
+            s.get(inicio, destino, desde, n);
+            pos += n;
+            desde += n;
+            largo -= n;
+        }
+    }
+
+    /** Copia {@code largo} bytes de {@code origen} a la región */
+    void escribir(long pos, byte[] origen, int desde, int largo) {
+        while (largo > 0) {
+            ByteBuffer s = segmento(pos);
+            int inicio = (int) (pos & MASCARA);
+            int n = Math.min(largo, s.capacity() - inicio);
+            s.put(inicio, origen, desde, n);
+            pos += n;
+            desde += n;
+            largo -= n;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (segmentos == null) return;
+        for (ByteBuffer s : segmentos) liberar(s);
+        segmentos = null;
+        capacidad = 0;
+    }
+
+    private void comprobarAbierta() {
+        if (segmentos == null) throw new IllegalStateException("La memoria ya fue liberada");
+    }
+
+    /** Segmento que contiene esa posición; falla si la región ya se liberó */
+    private ByteBuffer segmento(long pos) {
+        ByteBuffer[] s = segmentos;
+        if (s == null) throw new IllegalStateException("La memoria ya fue liberada");
+        return s[(int) (pos >>> BITS_SEGMENTO)];
+    }
+
+    private static ByteBuffer reservar(int bytes) {
+        // Orden nativo: evita invertir los bytes en cada lectura de int o long
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static void liberar(ByteBuffer b) {
+        if (LIBERAR == null) return;
+        try {
+            LIBERAR.invoke(UNSAFE, b);
+        } catch (ReflectiveOperationException e) {
+            // Se liberará cuando el recolector descarte el buffer
+        }
+    }
+
+    private static long siguientePotencia(long v) {
+        return v <= 64 ? 64 : Long.highestOneBit(v - 1) << 1;
+    }
+}
@@ -0,0 +1,219 @@
+package agendaTelefonica.servicio;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de una {@link Agenda}, activadas con {@link Agenda#activarMetricas}: cuántas
+ * veces se llamó a cada operación y con qué latencias, cuántas modificaciones se
+ * rechazaron y por qué, y el tamaño de los índices tras la última operación.
+ *
+ * La agenda registra desde su hilo con contadores {@link LongAdder} y las métricas se
+ * pueden leer desde cualquier otro, directamente o por JMX tras
+ * {@link #publicarEnJmx}, sin detener a la agenda.
+ */
+public final class MetricasAgenda implements MetricasAgendaMXBean {
+
+    /** Dominio de los nombres JMX */
+    public static final String DOMINIO_JMX = "agendaTelefonica";
+
+    /** Operaciones medidas; las búsquedas exactas se miden por campo */
+    public enum Operacion {
+        ALTA, ALTA_EN_BLOQUE, LOTE, BUSQUEDA_NOMBRE, BUSQUEDA_APELLIDO, BUSQUEDA_TELEFONO,
+        BUSQUEDA_PREFIJO, BUSQUEDA_APROXIMADA, PREFIJO_TELEFONO, BAJA, CAMBIO_TELEFONO, LISTADO;
+
+        /** Nombre en los informes y en JMX, p. ej. "cambioTelefono" */
+        public String nombre() {
+            StringBuilder sb = new StringBuilder();
+            boolean mayuscula = false;
+            for (char c : name().toCharArray()) {
+                if (c == '_') {
+                    mayuscula = true;
+                } else {
+                    sb.append(mayuscula ? c : Character.toLowerCase(c));
+                    mayuscula = false;
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final Operacion[] OPERACIONES = Operacion.values();
+    private static final ResultadoOperacion[] RESULTADOS = ResultadoOperacion.values();
+
+    private final HistogramaLatencias[] latencias = new HistogramaLatencias[OPERACIONES.length];
+    private final LongAdder[] rechazos = new LongAdder[RESULTADOS.length];
+
+    // Tamaños que la agenda anota tras cada operación, para leerlos desde otros hilos
+    private volatile int contactos;
+    private volatile int capacidad;
+    private volatile int entradasCacheTelefonos;
+    private volatile int contactosIndicesBusqueda;
+    private volatile int entradasTrigramas;
+
+    // Nombres con los que se publicó en JMX; vacío si no se publicó
+    private final List<ObjectName> nombresJmx = new ArrayList<>();
+
+    MetricasAgenda() {
+        for (int i = 0; i < latencias.length; i++) latencias[i] = new HistogramaLatencias();
+        for (int i = 0; i < rechazos.length; i++) rechazos[i] = new LongAdder();
+    }
+
+    void registrar(Operacion op, long nanos) {
+        latencias[op.ordinal()].registrar(nanos);
+    }
+
+    void registrar(Operacion op, long nanos, ResultadoOperacion resultado) {
+        latencias[op.ordinal()].registrar(nanos);
+        if (resultado != ResultadoOperacion.CORRECTO) rechazos[resultado.ordinal()].increment();
+    }
+
+    /** Una llamada con varios resultados: cada uno distinto de CORRECTO cuenta como rechazo */
+    void registrar(Operacion op, long nanos, ResultadoOperacion[] resultados) {
+        latencias[op.ordinal()].registrar(nanos);
+        for (ResultadoOperacion r : resultados) {
+            if (r != ResultadoOperacion.CORRECTO) rechazos[r.ordinal()].increment();
+        }
+    }
+
+    void anotarTamanos(int contactos, int capacidad, int entradasCacheTelefonos,
+                       int contactosIndicesBusqueda, int entradasTrigramas) {
+        this.contactos = contactos;
+        this.capacidad = capacidad;
+        this.entradasCacheTelefonos = entradasCacheTelefonos;
+        this.contactosIndicesBusqueda = contactosIndicesBusqueda;
+        this.entradasTrigramas = entradasTrigramas;
+    }
+
+    /** Latencias y número de llamadas de la operación */
+    public HistogramaLatencias latencias(Operacion op) {
+        return latencias[op.ordinal()];
+    }
+
+    /** Modificaciones rechazadas con ese resultado (0 para CORRECTO) */
+    public long rechazos(ResultadoOperacion motivo) {
+        return rechazos[motivo.ordinal()].sum();
+    }
+
+    /**
+     * Publica las métricas en el servidor JMX de la plataforma como
+     * {@code agendaTelefonica:type=Agenda,name=<nombre>} y cada operación como
+     * {@code agendaTelefonica:type=Agenda,name=<nombre>,operacion=<operación>}, para
+     * consultarlas con jconsole o VisualVM.
+     *
+     * @throws IllegalStateException si ya están publicadas
+     * @throws JMException si el nombre no es válido o ya lo usa otra agenda
+     */
+    public synchronized void publicarEnJmx(String nombre) throws JMException {
+        if (!nombresJmx.isEmpty()) throw new IllegalStateException("Las métricas ya están publicadas en JMX");
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        String base = DOMINIO_JMX + ":type=Agenda,name=" + ObjectName.quote(nombre);
+        try {
+            ObjectName general = new ObjectName(base);
+            servidor.registerMBean(this, general);
+            nombresJmx.add(general);
+            for (Operacion op : OPERACIONES) {
+                ObjectName n = new ObjectName(base + ",operacion=" + op.nombre());
+                servidor.registerMBean(latencias[op.ordinal()], n);
+                nombresJmx.add(n);
+            }
+        } catch (JMException e) {
+            retirarDeJmx();
+            throw e;
+        }
+    }
+
+    /** Retira lo publicado con {@link #publicarEnJmx}; sin efecto si no se publicó */
+    public synchronized void retirarDeJmx() throws JMException {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName n : nombresJmx) {
+            if (servidor.isRegistered(n)) servidor.unregisterMBean(n);
+        }
+        nombresJmx.clear();
+    }
+
+    @Override
+    public int getContactos() {
+        return contactos;
+    }
+
+    @Override
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    @Override
+    public int getEntradasCacheTelefonos() {
+        return entradasCacheTelefonos;
+    }
+
+    @Override
+    public int getContactosIndicesBusqueda() {
+        return contactosIndicesBusqueda;
+    }
+
+    @Override
+    public int getEntradasTrigramas() {
+        return entradasTrigramas;
+    }
+
+    @Override
+    public Map<String, Long> getLlamadas() {
+        Map<String, Long> llamadas = new LinkedHashMap<>();
+        for (Operacion op : OPERACIONES) llamadas.put(op.nombre(), latencias[op.ordinal()].getCuenta());
+        return llamadas;
+    }
+
+    @Override
+    public Map<String, Long> getRechazos() {
+        Map<String, Long> porMotivo = new LinkedHashMap<>();
+        for (ResultadoOperacion r : RESULTADOS) {
+            if (r != ResultadoOperacion.CORRECTO) porMotivo.put(r.name(), rechazos[r.ordinal()].sum());
+        }
+        return porMotivo;
+    }
+
+    @Override
+    public long getRechazosTotales() {
+        long total = 0;
+        for (LongAdder r : rechazos) total += r.sum();
+        return total;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (HistogramaLatencias h : latencias) h.reiniciar();
+        for (LongAdder r : rechazos) r.reset();
+    }
+
+    /** Informe de varias líneas con todo lo anterior; omite las operaciones sin llamadas */
+    @Override
+    public String informe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Contactos: %d/%d, caché de teléfonos: %d, índices de búsqueda: %d contactos, %d entradas de trigramas%n",
+                contactos, capacidad, entradasCacheTelefonos, contactosIndicesBusqueda, entradasTrigramas));
+        sb.append("Latencias por operación:").append(System.lineSeparator());
+        for (Operacion op : OPERACIONES) {
+            HistogramaLatencias h = latencias[op.ordinal()];
+            if (h.getCuenta() > 0) sb.append(String.format(Locale.ROOT, "  %-16s %s%n", op.nombre(), h));
+        }
+        sb.append("Rechazos: ").append(getRechazosTotales()).append(System.lineSeparator());
+        for (Map.Entry<String, Long> e : getRechazos().entrySet()) {
+            if (e.getValue() > 0) sb.append(String.format(Locale.ROOT, "  %-24s %d%n", e.getKey(), e.getValue()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return informe();
+    }
+}
@@ -0,0 +1,35 @@
+package agendaTelefonica.servicio;
+
+import java.util.Map;
+
+/**
+ * Vista JMX de las {@link MetricasAgenda}. Las latencias de cada operación se publican
+ * aparte, como {@link HistogramaLatenciasMXBean}.
+ */
+public interface MetricasAgendaMXBean {
+
+    int getContactos();
+
+    int getCapacidad();
+
+    int getEntradasCacheTelefonos();
+
+    /** Contactos en los índices de prefijos; 0 mientras no se hayan construido */
+    int getContactosIndicesBusqueda();
+
+    /** Apariciones de contactos en las listas del índice de trigramas de teléfono */
+    int getEntradasTrigramas();
+
+    /** Llamadas por operación */
+    Map<String, Long> getLlamadas();
+
+    /** Modificaciones rechazadas por motivo, con los nombres de {@link ResultadoOperacion} */
+    Map<String, Long> getRechazos();
+
+    long getRechazosTotales();
+
+    /** Pone a cero latencias y rechazos */
+    void reiniciar();
+
+    String informe();
+}
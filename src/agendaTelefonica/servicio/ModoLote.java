@@ -0,0 +1,11 @@
+package agendaTelefonica.servicio;
+
+/**
+ * Qué hace {@link Agenda#aplicarLote} cuando alguna operación del lote no es válida.
+ */
+public enum ModoLote {
+    /** Si una operación falla no se aplica ninguna; las válidas quedan como NO_APLICADO */
+    TODO_O_NADA,
+    /** Se aplican las operaciones válidas y se descartan las demás */
+    POR_OPERACION
+}
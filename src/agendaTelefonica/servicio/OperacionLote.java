@@ -0,0 +1,71 @@
+package agendaTelefonica.servicio;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Una modificación dentro de un lote para {@link Agenda#aplicarLote}: un alta, una
+ * baja o un cambio de teléfono. Se crea con {@link #alta}, {@link #baja} o
+ * {@link #cambioTelefono}.
+ */
+public final class OperacionLote {
+
+    public enum Tipo { ALTA, BAJA, CAMBIO_TELEFONO }
+
+    private final Tipo tipo;
+    private final Contacto contacto;
+    private final String nombre;
+    private final String apellido;
+    private final String telefono;
+
+    private OperacionLote(Tipo tipo, Contacto contacto, String nombre, String apellido, String telefono) {
+        this.tipo = tipo;
+        this.contacto = contacto;
+        this.nombre = nombre;
+        this.apellido = apellido;
+        this.telefono = telefono;
+    }
+
+    /** Añadir el contacto, con las reglas de {@link Agenda#anadirContacto} */
+    public static OperacionLote alta(Contacto c) {
+        return new OperacionLote(Tipo.ALTA, c, null, null, null);
+    }
+
+    /** Eliminar el contacto con ese nombre y apellido */
+    public static OperacionLote baja(String nombre, String apellido) {
+        return new OperacionLote(Tipo.BAJA, null, nombre, apellido, null);
+    }
+
+    /** Cambiar el teléfono del contacto con ese nombre y apellido */
+    public static OperacionLote cambioTelefono(String nombre, String apellido, String nuevoTelefono) {
+        return new OperacionLote(Tipo.CAMBIO_TELEFONO, null, nombre, apellido, nuevoTelefono);
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /** Contacto a añadir; null salvo en las altas */
+    public Contacto getContacto() {
+        return contacto;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getApellido() {
+        return apellido;
+    }
+
+    /** Teléfono nuevo; null salvo en los cambios de teléfono */
+    public String getTelefono() {
+        return telefono;
+    }
+
+    @Override
+    public String toString() {
+        return tipo == Tipo.ALTA ? "ALTA " + contacto
+                : tipo == Tipo.BAJA ? "BAJA " + nombre + " " + apellido
+                : "CAMBIO_TELEFONO " + nombre + " " + apellido + " -> " + telefono;
+    }
+}
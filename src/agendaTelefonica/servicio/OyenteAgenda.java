@@ -0,0 +1,20 @@
+package agendaTelefonica.servicio;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Recibe las modificaciones que se aplican con éxito sobre una {@link Agenda}.
+ * Se invoca en el mismo hilo que realiza la modificación, después de aplicarla. Para
+ * recibirlas desde otros hilos, numeradas y al ritmo de cada uno, está {@link FlujoEventos}.
+ */
+public interface OyenteAgenda {
+
+    /** Se añadió el contacto a la agenda */
+    void contactoAnadido(Contacto c);
+
+    /** Se eliminó el contacto de la agenda */
+    void contactoEliminado(Contacto c);
+
+    /** El contacto, que ya tiene su nuevo número, antes tenía {@code telefonoAnterior} */
+    void telefonoModificado(Contacto c, String telefonoAnterior);
+}
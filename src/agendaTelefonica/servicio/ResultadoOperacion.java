@@ -0,0 +1,27 @@
+package agendaTelefonica.servicio;
+
+/**
+ * Resultado de una operación que modifica la agenda, con el mensaje que la consola y
+ * la interfaz gráfica muestran en cada caso.
+ */
+public enum ResultadoOperacion {
+    CORRECTO("OK"),
+    CONTACTO_NULO("No se puede añadir: el contacto es nulo."),
+    AGENDA_LLENA("No se puede añadir el contacto: la agenda está llena."),
+    NOMBRE_APELLIDO_REPETIDO("Ya existe un contacto con el mismo nombre y apellido."),
+    TELEFONO_REPETIDO("Ya existe un contacto con el mismo número de teléfono."),
+    CONTACTO_NO_ENCONTRADO("El contacto no existe en la agenda."),
+    TELEFONO_INVALIDO("Teléfono inválido: debe contener sólo números (7-15 dígitos)."),
+    DATOS_INCOMPLETOS("Nombre y apellido requeridos."),
+    NO_APLICADO("No se aplicó: otra operación del lote no era válida.");
+
+    private final String mensaje;
+
+    ResultadoOperacion(String mensaje) {
+        this.mensaje = mensaje;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+}
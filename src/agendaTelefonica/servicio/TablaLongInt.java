@@ -0,0 +1,110 @@
+package agendaTelefonica.servicio;
+
+/**
+ * Tabla hash de long a int sin objetos por entrada: direccionamiento abierto con
+ * sondeo lineal sobre dos arreglos paralelos. La clave 0 está reservada para marcar
+ * las casillas vacías. Los borrados desplazan hacia atrás las entradas siguientes en
+ * lugar de dejar lápidas, así que la tabla no se degrada con las bajas.
+ */
+final class TablaLongInt {
+
+    /** Valor devuelto por {@link #obtener} cuando la clave no está */
+    static final int AUSENTE = -1;
+
+    private long[] claves;
+    private int[] valores;
+    private int cantidad;
+
+    TablaLongInt() {
+        this(16);
+    }
+
+    TablaLongInt(int capacidadEsperada) {
+        int casillas = Integer.highestOneBit(Math.max(4, capacidadEsperada) * 2 - 1) * 2;
+        claves = new long[casillas];
+        valores = new int[casillas];
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    int obtener(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = casilla(clave, mascara); ; i = (i + 1) & mascara) {
+            long k = claves[i];
+            if (k == clave) return valores[i];
+            if (k == 0) return AUSENTE;
+        }
+    }
+
+    /** Asocia el valor a la clave (distinta de 0), sustituyendo el anterior si lo había */
+    void poner(long clave, int valor) {
+        if (clave == 0) throw new IllegalArgumentException("La clave 0 está reservada");
+        if ((cantidad + 1) * 2 > claves.length) redimensionar(claves.length * 2);
+        int mascara = claves.length - 1;
+        int i = casilla(clave, mascara);
+        while (claves[i] != 0 && claves[i] != clave) i = (i + 1) & mascara;
+        if (claves[i] == 0) cantidad++;
+        claves[i] = clave;
+        valores[i] = valor;
+    }
+
+    /** Quita la clave y devuelve su valor, o {@link #AUSENTE} si no estaba */
+    int quitar(long clave) {
+        int mascara = claves.length - 1;
+        int i = casilla(clave, mascara);
+        while (claves[i] != clave) {
+            if (claves[i] == 0) return AUSENTE;
+            i = (i + 1) & mascara;
+        }
+        int valor = valores[i];
+        cantidad--;
+
+        // Desplazamiento hacia atrás: cada entrada posterior del mismo tramo ocupa el
+        // hueco si su casilla ideal no queda entre el hueco y su posición actual
+        int hueco = i;
+        for (int j = (i + 1) & mascara; claves[j] != 0; j = (j + 1) & mascara) {
+            int ideal = casilla(claves[j], mascara);
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        claves[hueco] = 0;
+        return valor;
+    }
+
+    /** Bytes que ocupan los arreglos de la tabla */
+    long bytesUsados() {
+        return (long) claves.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    private void redimensionar(int casillas) {
+        long[] viejasClaves = claves;
+        int[] viejosValores = valores;
+        claves = new long[casillas];
+        valores = new int[casillas];
+        int mascara = casillas - 1;
+        for (int j = 0; j < viejasClaves.length; j++) {
+            long k = viejasClaves[j];
+            if (k == 0) continue;
+            int i = casilla(k, mascara);
+            while (claves[i] != 0) i = (i + 1) & mascara;
+            claves[i] = k;
+            valores[i] = viejosValores[j];
+        }
+    }
+
+    /** Mezcla los bits (finalizador de MurmurHash3) para que claves consecutivas se repartan */
+    private static int casilla(long clave, int mascara) {
+        long h = clave;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mascara;
+    }
+}
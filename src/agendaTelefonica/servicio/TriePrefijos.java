@@ -0,0 +1,304 @@
+package agendaTelefonica.servicio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import agendaTelefonica.modelo.Contacto;
+
+/**
+ * Trie compacto (radix) de claves normalizadas para buscar contactos por prefijo.
+ *
+ * Las claves combinan dos campos normalizados separados por '\0' (p. ej. nombre y
+ * apellido), así que son únicas en la agenda y cada nodo final guarda un solo contacto.
+ * Las aristas llevan fragmentos de clave en lugar de un carácter, de modo que cada
+ * alta crea como mucho dos nodos. Los hijos se guardan ordenados por su primer
+ * carácter: un recorrido en profundidad produce los contactos en orden de clave.
+ * Cada nodo cuenta los contactos de su subárbol, así que contar los que empiezan por un
+ * prefijo, o saltarse los primeros al listarlos, sólo recorre el prefijo.
+ *
+ * También sirve con una sola clave por contacto, como el teléfono.
+ */
+class TriePrefijos {
+
+    /** Separador entre los dos campos de la clave; ordena antes que cualquier carácter */
+    static final char SEPARADOR = '\0';
+
+    // Arreglos compartidos por los nodos hoja para no reservar uno vacío por nodo
+    private static final char[] SIN_PRIMEROS = {};
+    private static final Nodo[] SIN_HIJOS = {};
+
+    private static final class Nodo {
+        // Etiqueta de la arista que llega al nodo: clave[desde, hasta)
+        String clave;
+        int desde, hasta;
+
+        char[] primeros = SIN_PRIMEROS;
+        Nodo[] hijos = SIN_HIJOS;
+        int numHijos;
+
+        // Contacto cuya clave termina en este nodo, o null
+        Contacto contacto;
+
+        // Contactos en este nodo y sus descendientes
+        int cuenta;
+
+        Nodo(String clave, int desde, int hasta, Contacto contacto) {
+            this.clave = clave;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.contacto = contacto;
+        }
+
+        int largo() {
+            return hasta - desde;
+        }
+
+        char caracter(int i) {
+            return clave.charAt(desde + i);
+        }
+
+        void insertarHijo(int pos, Nodo hijo) {
+            if (numHijos == primeros.length) {
+                int cap = Math.max(2, numHijos * 2);
+                primeros = Arrays.copyOf(primeros, cap);
+                hijos = Arrays.copyOf(hijos, cap);
+            }
+            System.arraycopy(primeros, pos, primeros, pos + 1, numHijos - pos);
+            System.arraycopy(hijos, pos, hijos, pos + 1, numHijos - pos);
+            primeros[pos] = hijo.caracter(0);
+            hijos[pos] = hijo;
+            numHijos++;
+        }
+
+        void quitarHijo(int pos) {
+            System.arraycopy(primeros, pos + 1, primeros, pos, numHijos - pos - 1);
+            System.arraycopy(hijos, pos + 1, hijos, pos, numHijos - pos - 1);
+            numHijos--;
+            hijos[numHijos] = null;
+        }
+
+        /** Posición del hijo cuyo primer carácter es c, o -(inserción + 1) si no existe */
+        int buscar(char c) {
+            int lo = 0, hi = numHijos - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char e = primeros[mid];
+                if (e < c) lo = mid + 1;
+                else if (e > c) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
+        }
+    }
+
+    private final Nodo raiz = new Nodo("", 0, 0, null);
+
+    /** Construye la clave del índice a partir de los dos campos normalizados */
+    static String clave(String primero, String segundo) {
+        return primero + SEPARADOR + segundo;
+    }
+
+    /**
+     * Registra el contacto bajo la clave indicada. Si la clave ya existía, se reemplaza.
+     */
+    void anadir(String clave, Contacto c) {
+        // Reemplazar no cambia las cuentas; una clave nueva suma uno en todo el camino
+        boolean nueva = obtener(clave) == null;
+        Nodo n = raiz;
+        int i = 0;
+        while (i < clave.length()) {
+            if (nueva) n.cuenta++;
+            int pos = n.buscar(clave.charAt(i));
+            if (pos < 0) {
+                Nodo hoja = new Nodo(clave, i, clave.length(), c);
+                hoja.cuenta = 1;
+                n.insertarHijo(-pos - 1, hoja);
+                return;
+            }
+
+            Nodo h = n.hijos[pos];
+            int j = 0, largo = h.largo();
+            while (j < largo && i + j < clave.length() && h.caracter(j) == clave.charAt(i + j)) j++;
+            if (j < largo) {
+                // La clave se separa a mitad de la arista: se parte con un nodo intermedio
+                Nodo medio = new Nodo(h.clave, h.desde, h.desde + j, null);
+                medio.cuenta = h.cuenta;
+                h.desde += j;
+                medio.insertarHijo(0, h);
+                n.hijos[pos] = medio;
+                h = medio;
+            }
+            n = h;
+            i += j;
+        }
+        if (nueva) n.cuenta++;
+        n.contacto = c;
+    }
+
+    /**
+     * Devuelve el contacto registrado exactamente bajo la clave, o null.
+     */
+    Contacto obtener(String clave) {
+        Nodo n = raiz;
+        int i = 0;
+        while (i < clave.length()) {
+            int pos = n.buscar(clave.charAt(i));
+            if (pos < 0) return null;
+            Nodo h = n.hijos[pos];
+            if (h.largo() > clave.length() - i || !clave.regionMatches(i, h.clave, h.desde, h.largo())) return null;
+            n = h;
+            i += h.largo();
+        }
+        return n.contacto;
+    }
+
+    /**
+     * Quita la clave del índice y fusiona los nodos que dejan de ser necesarios.
+     */
+    void eliminar(String clave) {
+        Nodo padre = null, n = raiz;
+        int posEnPadre = -1, i = 0;
+        while (i < clave.length()) {
+            int pos = n.buscar(clave.charAt(i));
+            if (pos < 0) return;
+            Nodo h = n.hijos[pos];
+            if (h.largo() > clave.length() - i || !clave.regionMatches(i, h.clave, h.desde, h.largo())) return;
+            padre = n;
+            posEnPadre = pos;
+            n = h;
+            i += h.largo();
+        }
+        if (n == raiz || n.contacto == null) return;
+
+        descontar(clave);
+        n.contacto = null;
+        if (n.numHijos == 0) {
+            padre.quitarHijo(posEnPadre);
+            // El padre puede haber quedado como simple paso intermedio
+            if (padre != raiz && padre.contacto == null && padre.numHijos == 1) fusionarConHijo(padre);
+        } else if (n.numHijos == 1) {
+            fusionarConHijo(n);
+        }
+    }
+
+    /**
+     * Devuelve, en orden de clave, como mucho {@code limite} contactos cuya clave empieza
+     * por el prefijo. El coste es proporcional al prefijo y a los resultados, no al
+     * tamaño de la agenda.
+     */
+    List<Contacto> conPrefijo(String prefijo, int limite) {
+        return conPrefijo(prefijo, 0, limite);
+    }
+
+    /**
+     * Como {@link #conPrefijo(String, int)}, pero saltándose los {@code desde} primeros:
+     * los subárboles que caen enteros antes se saltan por su cuenta, sin recorrerlos.
+     */
+    List<Contacto> conPrefijo(String prefijo, int desde, int limite) {
+        List<Contacto> resultados = new ArrayList<>(Math.min(Math.max(limite, 0), 64));
+        if (limite <= 0) return resultados;
+
+        Nodo n = nodoDelPrefijo(prefijo);
+        if (n != null) recolectar(n, new int[]{Math.max(desde, 0)}, resultados, limite);
+        return resultados;
+    }
+
+    /** Cuántas claves empiezan por el prefijo, recorriendo sólo el prefijo */
+    int contar(String prefijo) {
+        Nodo n = nodoDelPrefijo(prefijo);
+        return n == null ? 0 : n.cuenta;
+    }
+
+    /**
+     * El contacto cuya clave es el prefijo más largo del texto (o el texto entero), o
+     * null si ninguna clave lo es. Recorre como mucho el texto.
+     */
+    Contacto prefijoMasLargoDe(String texto) {
+        Nodo n = raiz;
+        Contacto mejor = raiz.contacto;
+        int i = 0;
+        while (i < texto.length()) {
+            int pos = n.buscar(texto.charAt(i));
+            if (pos < 0) break;
+            Nodo h = n.hijos[pos];
+            if (h.largo() > texto.length() - i || !texto.regionMatches(i, h.clave, h.desde, h.largo())) break;
+            n = h;
+            i += h.largo();
+            if (n.contacto != null) mejor = n.contacto;
+        }
+        return mejor;
+    }
+
+    /**
+     * Nodo cuyo subárbol contiene exactamente las claves que empiezan por el prefijo
+     * (el prefijo puede acabar a mitad de su arista), o null si no hay ninguna.
+     */
+    private Nodo nodoDelPrefijo(String prefijo) {
+        Nodo n = raiz;
+        int i = 0;
+        while (i < prefijo.length()) {
+            int pos = n.buscar(prefijo.charAt(i));
+            if (pos < 0) return null;
+            Nodo h = n.hijos[pos];
+            int comun = Math.min(h.largo(), prefijo.length() - i);
+            if (!prefijo.regionMatches(i, h.clave, h.desde, comun)) return null;
+            n = h;
+            i += comun;
+        }
+        return n;
+    }
+
+    /** Resta uno a la cuenta de cada nodo del camino de una clave que está en el índice */
+    private void descontar(String clave) {
+        Nodo n = raiz;
+        int i = 0;
+        n.cuenta--;
+        while (i < clave.length()) {
+            n = n.hijos[n.buscar(clave.charAt(i))];
+            n.cuenta--;
+            i += n.largo();
+        }
+    }
+
+    /** Une un nodo sin contacto con su único hijo, concatenando las etiquetas */
+    private static void fusionarConHijo(Nodo n) {
+        Nodo hijo = n.hijos[0];
+        if (n.clave == hijo.clave && n.hasta == hijo.desde) {
+            // Ambas etiquetas son tramos contiguos de la misma clave
+            n.hasta = hijo.hasta;
+        } else {
+            n.clave = n.clave.substring(n.desde, n.hasta) + hijo.clave.substring(hijo.desde, hijo.hasta);
+            n.desde = 0;
+            n.hasta = n.clave.length();
+        }
+        n.contacto = hijo.contacto;
+        n.cuenta = hijo.cuenta;
+        n.primeros = hijo.primeros;
+        n.hijos = hijo.hijos;
+        n.numHijos = hijo.numHijos;
+    }
+
+    /**
+     * Recorrido en profundidad que descuenta de saltar[0] los contactos anteriores al
+     * primero pedido y se detiene al alcanzar el límite
+     */
+    private static boolean recolectar(Nodo n, int[] saltar, List<Contacto> resultados, int limite) {
+        if (saltar[0] >= n.cuenta) {
+            saltar[0] -= n.cuenta;
+            return false;
+        }
+        if (n.contacto != null) {
+            if (saltar[0] > 0) {
+                saltar[0]--;
+            } else {
+                resultados.add(n.contacto);
+                if (resultados.size() >= limite) return true;
+            }
+        }
+        for (int i = 0; i < n.numHijos; i++) {
+            if (recolectar(n.hijos[i], saltar, resultados, limite)) return true;
+        }
+        return false;
+    }
+}